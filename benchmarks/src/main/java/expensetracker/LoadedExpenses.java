@@ -0,0 +1,81 @@
+package expensetracker;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+// A generated history of the given size, written as a snapshot in a temporary
+// directory and loaded the way logging in loads a user's expenses. Shared by
+// the benchmarks; run with -p records=10000 to pick one size.
+@State(Scope.Benchmark)
+public class LoadedExpenses {
+    static final int BASE_DAY = (int) LocalDate.of(2015, 1, 1).toEpochDay();
+    static final int DAYS = 3650;
+
+    @Param({"10000", "1000000", "10000000"})
+    public int records;
+
+    Path workDir;
+    String username;
+    ExpenseManager manager;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workDir = Files.createTempDirectory("expense-bench");
+        username = workDir.resolve("bench" + records).toString();
+        ExpenseFileFormat.write(new File(username + "_expenses.bin"), generate(records), 0, records + 1L);
+        manager = new ExpenseManager();
+        manager.loadUserExpenses(username);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        deleteRecursively(workDir.toFile());
+    }
+
+    static Expense randomExpense(Random random) {
+        return new Expense(BASE_DAY + random.nextInt(DAYS),
+                Expense.CATEGORIES[random.nextInt(Expense.CATEGORIES.length)],
+                "Benchmark", (long) random.nextInt(100_000));
+    }
+
+    private static ExpenseSnapshot generate(int records) {
+        Random random = new Random(42);
+        ExpenseSnapshot snapshot = new ExpenseSnapshot(records, Arrays.asList(Expense.CATEGORIES));
+        ByteArrayOutputStream descriptions = new ByteArrayOutputStream(records * 16);
+        for (int i = 0; i < records; i++) {
+            byte[] description = ("Expense #" + i).getBytes(StandardCharsets.UTF_8);
+            snapshot.ids[i] = i + 1;
+            snapshot.epochDays[i] = BASE_DAY + random.nextInt(DAYS);
+            snapshot.categories[i] = random.nextInt(Expense.CATEGORIES.length);
+            snapshot.amountCents[i] = random.nextInt(100_000);
+            snapshot.descriptionOffsets[i] = descriptions.size();
+            snapshot.descriptionLengths[i] = description.length;
+            descriptions.write(description, 0, description.length);
+        }
+        snapshot.descriptionBytes = descriptions.toByteArray();
+        snapshot.descriptionSize = snapshot.descriptionBytes.length;
+        return snapshot;
+    }
+
+    static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        if (!file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package expensetracker;
+
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Adding an expense and deleting it again, so the history keeps its size.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class MutationBenchmark {
+    // false drops persistence tasks, leaving index and aggregate maintenance only;
+    // true includes the journal, whose frames are queued here and written behind in bursts
+    @Param({"false", "true"})
+    public boolean journaled;
+
+    private final Random random = new Random(7);
+    private ScheduledExecutorService writeBehind;
+
+    @Setup(Level.Trial)
+    public void setUp(LoadedExpenses expenses) {
+        if (journaled) {
+            expenses.manager.clearExpenses();
+            expenses.manager.setPersistenceExecutor(Runnable::run);
+            writeBehind = Executors.newSingleThreadScheduledExecutor();
+            expenses.manager.setWriteBehindScheduler(writeBehind, Runnable::run);
+            expenses.manager.loadUserExpenses(expenses.username);
+        } else {
+            expenses.manager.setPersistenceExecutor(task -> { });
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (writeBehind != null) {
+            writeBehind.shutdown();
+        }
+    }
+
+    @Benchmark
+    public boolean addDelete(LoadedExpenses expenses) {
+        long id = expenses.manager.addExpense(expenses.username, LoadedExpenses.randomExpense(random));
+        return expenses.manager.deleteExpense(expenses.username, id);
+    }
+}
@@ -0,0 +1,97 @@
+package expensetracker;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The same history kept in pages behind a cache much smaller than the data.
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PagedStoreBenchmark {
+    private static final long CACHE_BYTES = 4 << 20;
+
+    // The loaded history imported into pages once
+    @State(Scope.Benchmark)
+    public static class Pages {
+        PagedExpenseStore store;
+        String username;
+        final Random random = new Random(7);
+        int round;
+
+        @Setup(Level.Trial)
+        public void setUp(LoadedExpenses expenses) throws IOException {
+            username = expenses.username + "-paged";
+            store = new PagedExpenseStore(CACHE_BYTES);
+            store.loadUserExpenses(username);
+            store.importExpenses(username, expenses.manager.getStore());
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            store.close();
+        }
+    }
+
+    // An empty paged account for every import
+    @State(Scope.Benchmark)
+    public static class EmptyPages {
+        PagedExpenseStore store;
+        String username;
+        private int imports;
+
+        @Setup(Level.Iteration)
+        public void setUp(LoadedExpenses expenses) {
+            username = expenses.username + "-import" + imports++;
+            store = new PagedExpenseStore(CACHE_BYTES);
+            store.loadUserExpenses(username);
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() throws IOException {
+            store.close();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public int pagedImport(LoadedExpenses expenses, EmptyPages pages) {
+        return pages.store.importExpenses(pages.username, expenses.manager.getStore());
+    }
+
+    // One screen of rows, as the paged Expenses table reads them while scrolling
+    @Benchmark
+    public int pagedListPage(LoadedExpenses expenses, Pages pages) {
+        int r = pages.round++;
+        return pages.store.listExpenses(QueryBenchmark.FILTERS[r % QueryBenchmark.FILTERS.length], r % 2 == 0,
+                (r * 7919) % Math.max(1, expenses.records / 100), QueryBenchmark.VISIBLE_ROWS).size();
+    }
+
+    @Benchmark
+    public long pagedMonthSum(Pages pages) {
+        int from = LoadedExpenses.BASE_DAY + pages.random.nextInt(LoadedExpenses.DAYS - 30);
+        return pages.store.sumCentsBetween(from, from + 30, null);
+    }
+
+    @Benchmark
+    public boolean pagedAddDelete(Pages pages) {
+        long id = pages.store.addExpense(pages.username, LoadedExpenses.randomExpense(pages.random));
+        return pages.store.deleteExpense(pages.username, id);
+    }
+}
@@ -0,0 +1,38 @@
+package expensetracker;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Snapshot load and save, timed per call.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PersistenceBenchmark {
+    @Benchmark
+    public int loadUserExpenses(LoadedExpenses expenses) {
+        expenses.manager.clearExpenses();
+        expenses.manager.loadUserExpenses(expenses.username);
+        return expenses.manager.getStore().size();
+    }
+
+    // Login in the GUI reads the newest months only
+    @Benchmark
+    public int loadUserExpensesWindowed(LoadedExpenses expenses) {
+        expenses.manager.clearExpenses();
+        expenses.manager.loadUserExpenses(expenses.username, 3, percent -> { });
+        return expenses.manager.getStore().size();
+    }
+
+    @Benchmark
+    public void saveUserExpenses(LoadedExpenses expenses) {
+        expenses.manager.saveUserExpenses(expenses.username);
+    }
+}
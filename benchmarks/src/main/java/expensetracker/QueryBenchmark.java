@@ -0,0 +1,79 @@
+package expensetracker;
+
+import java.util.concurrent.ForkJoinPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The reads behind the Expenses, Category Summary and Analytics tabs.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class QueryBenchmark {
+    static final int VISIBLE_ROWS = 40;
+
+    static final String[] FILTERS = {null, "Food", "Housing"};
+    private static final ExpenseSortOrder[] ORDERS = ExpenseSortOrder.values();
+    // The prefixes match one to a few thousand of the generated "Expense #n" descriptions
+    private static final String[] QUERIES = {"expense 4242", "expense 123", "77"};
+
+    private final ExpenseAggregator parallel = new ExpenseAggregator();
+    private final ForkJoinPool oneWorker = new ForkJoinPool(1);
+    private final ExpenseAggregator singleThreaded = new ExpenseAggregator(oneWorker);
+    private final GroupDimension[] allDimensions = GroupDimension.values();
+    private int round;
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        oneWorker.shutdown();
+    }
+
+    @Benchmark
+    public int calculateCategorySummary(LoadedExpenses expenses) {
+        return expenses.manager.calculateCategorySummary().size();
+    }
+
+    // What refreshExpenseTable does, cycling through category filters and every
+    // sort order: build the view, then read the rows the table paints
+    @Benchmark
+    public long filterSortVisibleRows(LoadedExpenses expenses) {
+        int r = round++;
+        ExpenseView view = expenses.manager.getView(FILTERS[r % FILTERS.length],
+                ORDERS[(r / FILTERS.length) % ORDERS.length]);
+        ColumnarExpenseStore store = expenses.manager.getStore();
+        int rows = Math.min(VISIBLE_ROWS, view.size());
+        long checksum = view.size();
+        for (int row = 0; row < rows; row++) {
+            checksum += store.getAmountCents(view.slotAt(row));
+        }
+        return checksum;
+    }
+
+    // Typing in the search box, combined with the category filters
+    @Benchmark
+    public int descriptionSearch(LoadedExpenses expenses) {
+        int r = round++;
+        return expenses.manager.getView(FILTERS[r % FILTERS.length], ExpenseSortOrder.DATE_NEWEST,
+                QUERIES[(r / FILTERS.length) % QUERIES.length]).size();
+    }
+
+    // Full group-by over every dimension, on all cores and on one worker for comparison
+    @Benchmark
+    public long aggregateAllDimensions(LoadedExpenses expenses) {
+        return parallel.aggregate(expenses.manager, allDimensions).getCount(0);
+    }
+
+    @Benchmark
+    public long aggregateAllDimensionsOneThread(LoadedExpenses expenses) {
+        return singleThreaded.aggregate(expenses.manager, allDimensions).getCount(0);
+    }
+}
@@ -0,0 +1,43 @@
+package expensetracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Spending Chart frames as while zooming: every day, then a year, then a month, over and over.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Djava.awt.headless=true"})
+public class SpendChartBenchmark {
+    private static final int[] SPANS = {0, 365, 30};
+
+    private SpendChart chart;
+    private int lastDay;
+    private int frame;
+
+    @Setup(Level.Trial)
+    public void setUp(LoadedExpenses expenses) {
+        chart = new SpendChart(expenses.manager);
+        lastDay = expenses.manager.getLastEpochDay();
+    }
+
+    @Benchmark
+    public int renderSpendChart() {
+        int span = SPANS[frame++ % SPANS.length];
+        if (span == 0) {
+            chart.showAll();
+        } else {
+            chart.setVisibleDays(lastDay + 1 - span, lastDay + 1);
+        }
+        return chart.render(1200, 400).getRGB(0, 0);
+    }
+}
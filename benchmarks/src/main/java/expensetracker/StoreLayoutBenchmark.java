@@ -0,0 +1,165 @@
+package expensetracker;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The same generated expenses held as a List<Expense> and in a
+// ColumnarExpenseStore, built from the same fields with the descriptions
+// UTF-8 encoded as in a snapshot. The build benchmarks time filling each
+// one (-prof gc adds what that allocates, which for the store includes the
+// copies made as its columns grow). The footprint benchmarks build each one
+// once between full collections and report how much the heap grew by as
+// retainedBytes; JMH adds such counters up over the measured iterations, so
+// they measure one. The scan benchmarks add up every category the way the
+// category summary used to.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class StoreLayoutBenchmark {
+    @Param({"10000", "1000000"})
+    public int records;
+
+    private int[] epochDays;
+    private int[] categoryIds;
+    private ByteBuffer descriptions;
+    private int[] descriptionOffsets;
+    private int[] descriptionLengths;
+    private long[] amountCents;
+
+    private List<Expense> list;
+    private ColumnarExpenseStore store;
+
+    // Heap kept reachable by the layout built in the iteration
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public long retainedBytes;
+        private long heapBefore;
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            retainedBytes = 0;
+            heapBefore = usedHeap();
+        }
+
+        <T> T measure(T built) {
+            retainedBytes = usedHeap() - heapBefore;
+            return built;
+        }
+
+        private static long usedHeap() {
+            Runtime runtime = Runtime.getRuntime();
+            for (int i = 0; i < 3; i++) {
+                System.gc();
+            }
+            return runtime.totalMemory() - runtime.freeMemory();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        epochDays = new int[records];
+        categoryIds = new int[records];
+        descriptionOffsets = new int[records];
+        descriptionLengths = new int[records];
+        amountCents = new long[records];
+        ByteArrayOutputStream text = new ByteArrayOutputStream(records * 16);
+        for (int i = 0; i < records; i++) {
+            byte[] description = ("Expense #" + i).getBytes(StandardCharsets.UTF_8);
+            epochDays[i] = LoadedExpenses.BASE_DAY + random.nextInt(LoadedExpenses.DAYS);
+            categoryIds[i] = random.nextInt(Expense.CATEGORIES.length);
+            amountCents[i] = random.nextInt(100_000);
+            descriptionOffsets[i] = text.size();
+            descriptionLengths[i] = description.length;
+            text.write(description, 0, description.length);
+        }
+        descriptions = ByteBuffer.wrap(text.toByteArray());
+        list = buildList();
+        store = buildColumnar();
+    }
+
+    @Benchmark
+    public List<Expense> buildList() {
+        List<Expense> expenses = new ArrayList<>(records);
+        for (int i = 0; i < records; i++) {
+            String description = new String(descriptions.array(), descriptionOffsets[i], descriptionLengths[i],
+                    StandardCharsets.UTF_8);
+            expenses.add(new Expense(i + 1, epochDays[i], Expense.CATEGORIES[categoryIds[i]], description,
+                    amountCents[i]));
+        }
+        return expenses;
+    }
+
+    @Benchmark
+    public ColumnarExpenseStore buildColumnar() {
+        ColumnarExpenseStore expenses = new ColumnarExpenseStore();
+        for (String category : Expense.CATEGORIES) {
+            expenses.internCategory(category);
+        }
+        for (int i = 0; i < records; i++) {
+            expenses.addEncoded(i + 1, epochDays[i], categoryIds[i], amountCents[i],
+                    descriptions, descriptionOffsets[i], descriptionLengths[i]);
+        }
+        return expenses;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Measurement(iterations = 1)
+    public List<Expense> footprintList(Footprint footprint) {
+        return footprint.measure(buildList());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Measurement(iterations = 1)
+    public ColumnarExpenseStore footprintColumnar(Footprint footprint) {
+        return footprint.measure(buildColumnar());
+    }
+
+    @Benchmark
+    public long scanList() {
+        Map<String, Long> totals = new HashMap<>();
+        for (Expense expense : list) {
+            totals.merge(expense.getCategory(), expense.getAmountCents(), Long::sum);
+        }
+        long total = 0;
+        for (long cents : totals.values()) {
+            total += cents;
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long scanColumnar() {
+        long[] totals = new long[store.getCategoryCount()];
+        for (int slot = store.nextLiveSlot(0); slot >= 0; slot = store.nextLiveSlot(slot + 1)) {
+            totals[store.getCategoryId(slot)] += store.getAmountCents(slot);
+        }
+        long total = 0;
+        for (long cents : totals) {
+            total += cents;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,41 @@
+package expensetracker;
+
+// Statistics an ExpenseAggregation can show for a group.
+enum AggregateMeasure {
+    SUM("Sum"),
+    COUNT("Count"),
+    AVERAGE("Average"),
+    MIN("Min"),
+    MAX("Max");
+
+    private final String label;
+
+    AggregateMeasure(String label) {
+        this.label = label;
+    }
+
+    // The measure of one cell, formatted for display; empty for an empty cell.
+    public String format(ExpenseAggregation aggregation, int cell) {
+        if (aggregation.getCount(cell) == 0) {
+            return "";
+        }
+        switch (this) {
+            case COUNT:
+                return String.valueOf(aggregation.getCount(cell));
+            case AVERAGE:
+                return ExpenseCodec.formatAmount(Math.round(aggregation.getAverageCents(cell)));
+            case MIN:
+                return ExpenseCodec.formatAmount(aggregation.getMinCents(cell));
+            case MAX:
+                return ExpenseCodec.formatAmount(aggregation.getMaxCents(cell));
+            case SUM:
+            default:
+                return ExpenseCodec.formatAmount(aggregation.getSumCents(cell));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
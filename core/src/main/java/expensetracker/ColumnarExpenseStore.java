@@ -0,0 +1,387 @@
+package expensetracker;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+
+// Column-oriented storage for one user's expenses. Every expense occupies a
+// slot across parallel primitive arrays (epoch day, interned category id,
+// amount in cents) and descriptions are packed as UTF-8 into one shared
+// buffer. Removing an expense only marks its slot dead; the columns are
+// compacted once dead slots outnumber live ones. Per-category totals and
+// counts are kept up to date on every add and remove.
+class ColumnarExpenseStore {
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int COMPACTION_MIN_DEAD = 1024;
+
+    private final List<String> categoryNames = new ArrayList<>();
+    private final Map<String, Integer> categoryIds = new HashMap<>();
+
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private int[] epochDays = new int[INITIAL_CAPACITY];
+    private int[] categories = new int[INITIAL_CAPACITY];
+    private long[] amountCents = new long[INITIAL_CAPACITY];
+    private int[] descriptionOffsets = new int[INITIAL_CAPACITY];
+    private int[] descriptionLengths = new int[INITIAL_CAPACITY];
+    private byte[] descriptionBytes = new byte[INITIAL_CAPACITY * 16];
+    private int descriptionSize;
+    private final BitSet dead = new BitSet();
+    private int slotCount;
+    private int liveCount;
+
+    private long[] categoryTotals = new long[8];
+    private int[] categoryCounts = new int[8];
+    private long totalCents;
+
+    public int add(Expense expense) {
+        return add(expense.getId(), expense.getEpochDay(), expense.getCategory(),
+                expense.getDescription(), expense.getAmountCents());
+    }
+
+    public int add(long id, int epochDay, String category, String description, long cents) {
+        byte[] encoded = description.getBytes(StandardCharsets.UTF_8);
+        ensureDescriptionCapacity(descriptionSize + encoded.length);
+        System.arraycopy(encoded, 0, descriptionBytes, descriptionSize, encoded.length);
+        return addSlot(id, epochDay, internCategory(category), cents, encoded.length);
+    }
+
+    // Adds a record whose description is already UTF-8 encoded in the source buffer,
+    // copying it straight into the packed description buffer.
+    public int addEncoded(long id, int epochDay, int categoryId, long cents,
+                          ByteBuffer source, int offset, int length) {
+        ensureDescriptionCapacity(descriptionSize + length);
+        source.position(offset);
+        source.get(descriptionBytes, descriptionSize, length);
+        return addSlot(id, epochDay, categoryId, cents, length);
+    }
+
+    // Copies a record from another store under a new id, without decoding its description.
+    public int addCopy(long id, ColumnarExpenseStore source, int sourceSlot) {
+        int length = source.descriptionLengths[sourceSlot];
+        ensureDescriptionCapacity(descriptionSize + length);
+        System.arraycopy(source.descriptionBytes, source.descriptionOffsets[sourceSlot], descriptionBytes, descriptionSize, length);
+        return addSlot(id, source.epochDays[sourceSlot], internCategory(source.getCategory(sourceSlot)),
+                source.amountCents[sourceSlot], length);
+    }
+
+    // Copies the live records, in the order of an index over all of them, into
+    // a compact, self-contained snapshot.
+    public ExpenseSnapshot snapshot(SortedSlotIndex order) {
+        ExpenseSnapshot snapshot = new ExpenseSnapshot(liveCount, new ArrayList<>(categoryNames));
+        byte[] packed = new byte[descriptionSize];
+        int packedSize = 0;
+        for (int row = 0; row < liveCount; row++) {
+            int slot = order.get(row);
+            int length = descriptionLengths[slot];
+            System.arraycopy(descriptionBytes, descriptionOffsets[slot], packed, packedSize, length);
+            snapshot.ids[row] = ids[slot];
+            snapshot.epochDays[row] = epochDays[slot];
+            snapshot.categories[row] = categories[slot];
+            snapshot.amountCents[row] = amountCents[slot];
+            snapshot.descriptionOffsets[row] = packedSize;
+            snapshot.descriptionLengths[row] = length;
+            packedSize += length;
+        }
+        snapshot.descriptionBytes = packed;
+        snapshot.descriptionSize = packedSize;
+        return snapshot;
+    }
+
+    private int addSlot(long id, int epochDay, int categoryId, long cents, int descriptionLength) {
+        ensureSlotCapacity(slotCount + 1);
+        int slot = slotCount++;
+        ids[slot] = id;
+        epochDays[slot] = epochDay;
+        categories[slot] = categoryId;
+        amountCents[slot] = cents;
+        descriptionOffsets[slot] = descriptionSize;
+        descriptionLengths[slot] = descriptionLength;
+        descriptionSize += descriptionLength;
+        liveCount++;
+
+        categoryTotals[categoryId] += cents;
+        categoryCounts[categoryId]++;
+        totalCents += cents;
+        return slot;
+    }
+
+    public void remove(int slot) {
+        if (!isLive(slot)) {
+            return;
+        }
+        dead.set(slot);
+        liveCount--;
+
+        int categoryId = categories[slot];
+        categoryTotals[categoryId] -= amountCents[slot];
+        categoryCounts[categoryId]--;
+        totalCents -= amountCents[slot];
+    }
+
+    // Returns the first live slot whose fields match the given expense, ignoring ids, or -1.
+    public int findSlot(Expense expense) {
+        int categoryId = categoryId(expense.getCategory());
+        if (categoryId < 0) {
+            return -1;
+        }
+        int epochDay = expense.getEpochDay();
+        long cents = expense.getAmountCents();
+        byte[] description = expense.getDescription().getBytes(StandardCharsets.UTF_8);
+
+        for (int slot = dead.nextClearBit(0); slot < slotCount; slot = dead.nextClearBit(slot + 1)) {
+            if (epochDays[slot] == epochDay && categories[slot] == categoryId
+                    && amountCents[slot] == cents && descriptionEquals(slot, description)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    public boolean isLive(int slot) {
+        return slot >= 0 && slot < slotCount && !dead.get(slot);
+    }
+
+    // Slots range over [0, getSlotCount()); dead ones must be skipped with isLive.
+    public int getSlotCount() {
+        return slotCount;
+    }
+
+    // Approximate heap used by the columns and the description buffer.
+    public long memoryBytes() {
+        return (long) epochDays.length * (8 + 4 + 4 + 8 + 4 + 4) + descriptionBytes.length + dead.size() / 8;
+    }
+
+    public int size() {
+        return liveCount;
+    }
+
+    public int nextLiveSlot(int fromSlot) {
+        int slot = dead.nextClearBit(fromSlot);
+        return slot < slotCount ? slot : -1;
+    }
+
+    public long getId(int slot) {
+        return ids[slot];
+    }
+
+    public int getEpochDay(int slot) {
+        return epochDays[slot];
+    }
+
+    public int getCategoryId(int slot) {
+        return categories[slot];
+    }
+
+    public String getCategory(int slot) {
+        return categoryNames.get(categories[slot]);
+    }
+
+    public long getAmountCents(int slot) {
+        return amountCents[slot];
+    }
+
+    public String getDescription(int slot) {
+        return new String(descriptionBytes, descriptionOffsets[slot], descriptionLengths[slot],
+                StandardCharsets.UTF_8);
+    }
+
+    public int getDescriptionLength(int slot) {
+        return descriptionLengths[slot];
+    }
+
+    // Copies the UTF-8 bytes of the description; the target must hold getDescriptionLength(slot) bytes.
+    public void copyDescription(int slot, byte[] target, int targetOffset) {
+        System.arraycopy(descriptionBytes, descriptionOffsets[slot], target, targetOffset, descriptionLengths[slot]);
+    }
+
+    public Expense getExpense(int slot) {
+        return new Expense(ids[slot], epochDays[slot], getCategory(slot), getDescription(slot),
+                amountCents[slot]);
+    }
+
+    public int getCategoryCount() {
+        return categoryNames.size();
+    }
+
+    // Position of each category id when categories are ordered by name.
+    public int[] getCategoryRanks() {
+        int categoryCount = categoryNames.size();
+        Integer[] byName = new Integer[categoryCount];
+        for (int id = 0; id < categoryCount; id++) {
+            byName[id] = id;
+        }
+        Arrays.sort(byName, Comparator.comparing(categoryNames::get));
+        int[] rank = new int[categoryCount];
+        for (int position = 0; position < categoryCount; position++) {
+            rank[byName[position]] = position;
+        }
+        return rank;
+    }
+
+    public String getCategoryName(int categoryId) {
+        return categoryNames.get(categoryId);
+    }
+
+    public int categoryId(String category) {
+        Integer id = categoryIds.get(category);
+        return id == null ? -1 : id;
+    }
+
+    public long getCategoryTotalCents(int categoryId) {
+        return categoryTotals[categoryId];
+    }
+
+    public int getCategoryExpenseCount(int categoryId) {
+        return categoryCounts[categoryId];
+    }
+
+    public long getTotalCents() {
+        return totalCents;
+    }
+
+    // Forgets the categories as well, so the next user's category ids start
+    // again from 0 and none of the previous user's names carry over.
+    public void clear() {
+        categoryNames.clear();
+        categoryIds.clear();
+        ids = new long[INITIAL_CAPACITY];
+        epochDays = new int[INITIAL_CAPACITY];
+        categories = new int[INITIAL_CAPACITY];
+        amountCents = new long[INITIAL_CAPACITY];
+        descriptionOffsets = new int[INITIAL_CAPACITY];
+        descriptionLengths = new int[INITIAL_CAPACITY];
+        descriptionBytes = new byte[INITIAL_CAPACITY * 16];
+        descriptionSize = 0;
+        dead.clear();
+        slotCount = 0;
+        liveCount = 0;
+        categoryTotals = new long[8];
+        categoryCounts = new int[8];
+        totalCents = 0;
+    }
+
+    // A copy with the same slots that shares no arrays with this store, so
+    // another thread can read it while this one goes on changing.
+    public ColumnarExpenseStore copy() {
+        ColumnarExpenseStore copy = new ColumnarExpenseStore();
+        for (String category : categoryNames) {
+            copy.internCategory(category);
+        }
+        copy.ids = ids.clone();
+        copy.epochDays = epochDays.clone();
+        copy.categories = categories.clone();
+        copy.amountCents = amountCents.clone();
+        copy.descriptionOffsets = descriptionOffsets.clone();
+        copy.descriptionLengths = descriptionLengths.clone();
+        copy.descriptionBytes = descriptionBytes.clone();
+        copy.descriptionSize = descriptionSize;
+        copy.dead.or(dead);
+        copy.slotCount = slotCount;
+        copy.liveCount = liveCount;
+        copy.categoryTotals = categoryTotals.clone();
+        copy.categoryCounts = categoryCounts.clone();
+        copy.totalCents = totalCents;
+        return copy;
+    }
+
+    // Squeezes out dead slots once they outnumber live ones. Returns null if
+    // nothing moved, otherwise the new slot of every old slot (-1 for dead
+    // ones). Live slots keep their relative order.
+    public int[] compactIfNeeded() {
+        int deadCount = slotCount - liveCount;
+        if (deadCount < COMPACTION_MIN_DEAD || deadCount < liveCount) {
+            return null;
+        }
+
+        int[] remap = new int[slotCount];
+        Arrays.fill(remap, -1);
+        byte[] packed = new byte[Math.max(INITIAL_CAPACITY, descriptionSize)];
+        int packedSize = 0;
+        int target = 0;
+        for (int slot = dead.nextClearBit(0); slot < slotCount; slot = dead.nextClearBit(slot + 1)) {
+            int length = descriptionLengths[slot];
+            System.arraycopy(descriptionBytes, descriptionOffsets[slot], packed, packedSize, length);
+            ids[target] = ids[slot];
+            epochDays[target] = epochDays[slot];
+            categories[target] = categories[slot];
+            amountCents[target] = amountCents[slot];
+            descriptionOffsets[target] = packedSize;
+            descriptionLengths[target] = length;
+            packedSize += length;
+            remap[slot] = target++;
+        }
+
+        descriptionBytes = packed;
+        descriptionSize = packedSize;
+        dead.clear();
+        slotCount = target;
+        return remap;
+    }
+
+    public int internCategory(String category) {
+        Integer id = categoryIds.get(category);
+        if (id == null) {
+            id = categoryNames.size();
+            categoryNames.add(category);
+            categoryIds.put(category, id);
+            if (id == categoryTotals.length) {
+                categoryTotals = Arrays.copyOf(categoryTotals, id * 2);
+                categoryCounts = Arrays.copyOf(categoryCounts, id * 2);
+            }
+        }
+        return id;
+    }
+
+    private boolean descriptionEquals(int slot, byte[] description) {
+        int length = descriptionLengths[slot];
+        if (length != description.length) {
+            return false;
+        }
+        int offset = descriptionOffsets[slot];
+        for (int i = 0; i < length; i++) {
+            if (descriptionBytes[offset + i] != description[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void ensureSlotCapacity(int required) {
+        if (required <= epochDays.length) {
+            return;
+        }
+        int capacity = Math.max(required, epochDays.length + (epochDays.length >> 1));
+        ids = Arrays.copyOf(ids, capacity);
+        epochDays = Arrays.copyOf(epochDays, capacity);
+        categories = Arrays.copyOf(categories, capacity);
+        amountCents = Arrays.copyOf(amountCents, capacity);
+        descriptionOffsets = Arrays.copyOf(descriptionOffsets, capacity);
+        descriptionLengths = Arrays.copyOf(descriptionLengths, capacity);
+    }
+
+    private void ensureDescriptionCapacity(int required) {
+        if (required <= descriptionBytes.length) {
+            return;
+        }
+        int capacity = Math.max(required, descriptionBytes.length + (descriptionBytes.length >> 1));
+        descriptionBytes = Arrays.copyOf(descriptionBytes, capacity);
+    }
+
+    static int toEpochDay(Date date) {
+        return (int) date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay();
+    }
+
+    static Date toDate(int epochDay) {
+        return Date.from(LocalDate.ofEpochDay(epochDay).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    static long toCents(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    static double toAmount(long cents) {
+        return cents / 100.0;
+    }
+}
@@ -0,0 +1,354 @@
+package expensetracker;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+// Streams a CSV file of expenses (date,category,description,amount) and parses
+// it in chunks on a fork-join pool while the reader moves on to the next chunk.
+// Parsed rows are staged in file order in a ColumnarExpenseStore so that
+// ExpenseManager.importExpenses can commit them in one step. Dates are
+// MM/dd/yyyy or yyyy-MM-dd; amounts are positive decimals with at most two
+// fraction digits, optionally with a leading $ and grouping commas. Fields
+// containing commas or quotes must be quoted; quoted fields cannot span lines.
+class CsvExpenseImporter {
+    static final int CHUNK_LINES = 8192;
+    static final int BATCH_ROWS = CHUNK_LINES * 32;
+    static final int MAX_KEPT_ERRORS = 10_000;
+    // Exit status of run for bad arguments or an unknown user
+    static final int EXIT_USAGE = 2;
+    private static final List<String> HEADER = List.of("date", "category", "description", "amount");
+
+    static class Result {
+        ColumnarExpenseStore rows = new ColumnarExpenseStore();
+        List<String> errors = new ArrayList<>();
+        int errorCount;
+        long lineCount;
+        long parseNanos;
+    }
+
+    // Rows of one chunk, in line order
+    private static class Chunk {
+        final ColumnarExpenseStore rows = new ColumnarExpenseStore();
+        final List<String> errors = new ArrayList<>();
+    }
+
+    private final ForkJoinPool pool;
+
+    public CsvExpenseImporter() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public CsvExpenseImporter(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    // Imports a CSV file into a user's expenses without the GUI. With --paged
+    // the expenses go to a PagedExpenseStore, created if the user has none yet.
+    // Returns the exit status for main: 0 once the file is imported, or
+    // EXIT_USAGE after printing why the arguments were not usable.
+    // Run with: java -jar expense-tracker.jar --import-csv [--paged] <username> <file.csv>
+    public static int run(String[] args) throws IOException {
+        boolean paged = args.length > 0 && "--paged".equals(args[0]);
+        if (paged) {
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+        if (args.length != 2) {
+            System.err.println("Usage: java -jar expense-tracker.jar --import-csv [--paged] <username> <file.csv>");
+            return EXIT_USAGE;
+        }
+        String username = args[0];
+        File file = new File(args[1]);
+        // A mistyped name would otherwise leave expense files nobody can log in to
+        UserManager userManager = new UserManager();
+        userManager.loadUsers();
+        if (!userManager.usernameExists(username)) {
+            System.err.println("No such user: " + username);
+            return EXIT_USAGE;
+        }
+        if (paged || PagedExpenseStore.exists(username)) {
+            return runPaged(username, file);
+        }
+
+        ExpenseManager expenseManager = new ExpenseManager();
+        expenseManager.loadUserExpenses(username);
+
+        Result result = new CsvExpenseImporter().parse(file, percent -> { });
+        long commitStart = System.nanoTime();
+        int imported = expenseManager.importExpenses(username, result.rows);
+        if (!expenseManager.syncUserExpenses(username).join()) {
+            throw new IOException("Could not write the expenses of " + username);
+        }
+        long commitNanos = System.nanoTime() - commitStart;
+
+        System.out.println(summary(result, imported, commitNanos));
+        if (result.errorCount > 0) {
+            File report = errorReportFile(file);
+            writeErrorReport(report, result);
+            System.out.println("Rejected lines are listed in " + report.getPath());
+        }
+        return 0;
+    }
+
+    // Commits the file batch by batch, so neither the parsed rows nor the
+    // store need more memory as the file grows. When the pages are created for
+    // a user whose expenses are in a snapshot or journal, those expenses go
+    // into the pages first and the old files are renamed with a .migrated
+    // suffix; otherwise the pages would hide them.
+    private static int runPaged(String username, File file) throws IOException {
+        ExpenseManager previous = null;
+        if (existingExpenseFiles(username).length > 0) {
+            if (PagedExpenseStore.exists(username)) {
+                System.err.println("Both expense pages and a snapshot or journal exist for " + username
+                        + "; remove one of them and run the import again.");
+                return EXIT_USAGE;
+            }
+            long errors = ExpenseMetrics.getErrorCount();
+            previous = new ExpenseManager();
+            previous.loadUserExpenses(username);
+            if (ExpenseMetrics.getErrorCount() != errors) {
+                previous.clearExpenses();
+                throw new IOException("Could not read every expense of " + username + "; no pages were created");
+            }
+        }
+
+        PagedExpenseStore store = new PagedExpenseStore();
+        int[] imported = new int[1];
+        long[] commitNanos = new long[1];
+        Result result;
+        try {
+            store.loadUserExpenses(username);
+            if (previous != null) {
+                int moved = store.importExpenses(username, previous.getStore());
+                previous.clearExpenses();
+                for (File old : existingExpenseFiles(username)) {
+                    Files.move(old.toPath(), new File(old.getPath() + ".migrated").toPath(),
+                            StandardCopyOption.REPLACE_EXISTING);
+                }
+                System.out.printf("Moved %,d earlier expenses into pages%n", moved);
+            }
+            result = new CsvExpenseImporter().parse(file, percent -> { }, rows -> {
+                long start = System.nanoTime();
+                imported[0] += store.importExpenses(username, rows);
+                commitNanos[0] += System.nanoTime() - start;
+            });
+            result.parseNanos -= commitNanos[0];
+            PageCache cache = store.getPageCache();
+            System.out.println(summary(result, imported[0], commitNanos[0]));
+            System.out.printf("%,d expenses in pages; page cache: %d hits, %d misses, %d evictions%n",
+                    store.getExpenseCount(), cache.getHits(), cache.getMisses(), cache.getEvictions());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            store.close();
+        }
+        if (result.errorCount > 0) {
+            File report = errorReportFile(file);
+            writeErrorReport(report, result);
+            System.out.println("Rejected lines are listed in " + report.getPath());
+        }
+        return 0;
+    }
+
+    private static File[] existingExpenseFiles(String username) {
+        return Arrays.stream(ExpenseManager.expenseFiles(username)).filter(File::exists).toArray(File[]::new);
+    }
+
+    public static String summary(Result result, int imported, long commitNanos) {
+        double seconds = (result.parseNanos + commitNanos) / 1e9;
+        return String.format("Imported %,d expenses in %.2f s (%,.0f rows/s; parse %.2f s, commit %.2f s), %,d lines rejected",
+                imported, seconds, imported / Math.max(seconds, 1e-9),
+                result.parseNanos / 1e9, commitNanos / 1e9, result.errorCount);
+    }
+
+    public static File errorReportFile(File file) {
+        return new File(file.getPath() + ".errors.txt");
+    }
+
+    public Result parse(File file, IntConsumer progress) throws IOException {
+        return parse(file, progress, null);
+    }
+
+    // Like parse(file, progress), but when batches is not null the staged rows
+    // are handed to it whenever there are BATCH_ROWS of them, and once more at
+    // the end, instead of piling up in the result.
+    public Result parse(File file, IntConsumer progress, Consumer<ColumnarExpenseStore> batches) throws IOException {
+        Result result = new Result();
+        long start = System.nanoTime();
+        Deque<ForkJoinTask<Chunk>> pending = new ArrayDeque<>();
+        int maxPending = pool.getParallelism() * 2;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new ProgressInputStream(new FileInputStream(file), file.length(), progress),
+                StandardCharsets.UTF_8), 1 << 16)) {
+            List<String> lines = new ArrayList<>(CHUNK_LINES);
+            long firstLine = 1;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (result.lineCount++ == 0 && isHeader(line)) {
+                    firstLine++;
+                    continue;
+                }
+                lines.add(line);
+                if (lines.size() == CHUNK_LINES) {
+                    pending.add(submit(lines, firstLine));
+                    firstLine += lines.size();
+                    lines = new ArrayList<>(CHUNK_LINES);
+                    // Bounds the memory held by parsed but uncommitted chunks
+                    if (pending.size() >= maxPending) {
+                        stage(pending.poll().join(), result, batches);
+                    }
+                }
+            }
+            if (!lines.isEmpty()) {
+                pending.add(submit(lines, firstLine));
+            }
+            while (!pending.isEmpty()) {
+                stage(pending.poll().join(), result, batches);
+            }
+        } finally {
+            for (ForkJoinTask<Chunk> task : pending) {
+                task.cancel(false);
+            }
+        }
+        if (batches != null && result.rows.size() > 0) {
+            batches.accept(result.rows);
+            result.rows = new ColumnarExpenseStore();
+        }
+        result.parseNanos = System.nanoTime() - start;
+        progress.accept(100);
+        return result;
+    }
+
+    // Writes one line per rejected input line, for the user to fix and re-import.
+    public static void writeErrorReport(File file, Result result) throws IOException {
+        try (PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(file), StandardCharsets.UTF_8)))) {
+            for (String error : result.errors) {
+                out.println(error);
+            }
+            if (result.errorCount > result.errors.size()) {
+                out.println("... and " + (result.errorCount - result.errors.size()) + " more");
+            }
+        }
+    }
+
+    private ForkJoinTask<Chunk> submit(List<String> lines, long firstLine) {
+        return pool.submit(() -> parseChunk(lines, firstLine));
+    }
+
+    private static void stage(Chunk chunk, Result result, Consumer<ColumnarExpenseStore> batches) {
+        ColumnarExpenseStore rows = chunk.rows;
+        for (int slot = 0; slot < rows.getSlotCount(); slot++) {
+            result.rows.addCopy(0, rows, slot);
+        }
+        if (batches != null && result.rows.size() >= BATCH_ROWS) {
+            batches.accept(result.rows);
+            result.rows = new ColumnarExpenseStore();
+        }
+        result.errorCount += chunk.errors.size();
+        for (String error : chunk.errors) {
+            if (result.errors.size() == MAX_KEPT_ERRORS) {
+                break;
+            }
+            result.errors.add(error);
+        }
+    }
+
+    // Only a first line naming the four columns, in order and in any case,
+    // is a header; anything else is parsed, and reported, as a row.
+    private static boolean isHeader(String line) {
+        List<String> fields = new ArrayList<>(4);
+        try {
+            splitFields(line, fields);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        if (fields.size() != HEADER.size()) {
+            return false;
+        }
+        for (int i = 0; i < fields.size(); i++) {
+            if (!fields.get(i).trim().toLowerCase(Locale.ROOT).equals(HEADER.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Chunk parseChunk(List<String> lines, long firstLine) {
+        Chunk chunk = new Chunk();
+        List<String> fields = new ArrayList<>(4);
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            try {
+                splitFields(line, fields);
+                if (fields.size() != 4) {
+                    throw new IllegalArgumentException("expected 4 fields but found " + fields.size());
+                }
+                int epochDay = ExpenseCodec.parseDate(fields.get(0).trim());
+                String category = parseCategory(fields.get(1).trim());
+                String description = parseDescription(fields.get(2).trim());
+                long cents = ExpenseCodec.parseCents(fields.get(3).trim());
+                chunk.rows.add(0, epochDay, category, description, cents);
+            } catch (IllegalArgumentException e) {
+                chunk.errors.add("line " + (firstLine + i) + ": " + e.getMessage());
+            }
+        }
+        return chunk;
+    }
+
+    private static void splitFields(String line, List<String> fields) {
+        fields.clear();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("unterminated quoted field");
+        }
+        fields.add(field.toString());
+    }
+
+    static String parseCategory(String text) {
+        for (String category : Expense.CATEGORIES) {
+            if (category.equalsIgnoreCase(text)) {
+                return category;
+            }
+        }
+        throw new IllegalArgumentException("unknown category '" + text + "'");
+    }
+
+    private static String parseDescription(String text) {
+        if (text.isEmpty()) {
+            throw new IllegalArgumentException("description is empty");
+        }
+        return text;
+    }
+}
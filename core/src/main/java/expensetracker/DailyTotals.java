@@ -0,0 +1,173 @@
+package expensetracker;
+
+import java.util.*;
+
+// Per-day spending totals, overall and per category, kept in Fenwick trees
+// over the range of days seen so far. A range sum costs O(log days) no
+// matter how many expenses fall inside the range. Row 0 holds the overall
+// totals and row 1 + id the totals of category id.
+class DailyTotals {
+    private static final int INITIAL_DAYS = 366;
+
+    private int firstDay;
+    private int dayCount;
+    private long[][] daily = new long[0][];
+    private long[][] trees = new long[0][];
+
+    public void add(int epochDay, int categoryId, long cents) {
+        ensureDay(epochDay);
+        ensureRow(categoryId + 1);
+        int index = epochDay - firstDay;
+        update(0, index, cents);
+        update(categoryId + 1, index, cents);
+    }
+
+    // Total of the inclusive day range, for one category or all of them (categoryId -1).
+    public long sum(int fromDay, int toDay, int categoryId) {
+        int row = categoryId + 1;
+        if (dayCount == 0 || row >= trees.length || fromDay > toDay) {
+            return 0;
+        }
+        int from = Math.max(fromDay - firstDay, 0);
+        int to = Math.min(toDay - firstDay, dayCount - 1);
+        if (from > to) {
+            return 0;
+        }
+        return prefix(row, to) - (from == 0 ? 0 : prefix(row, from - 1));
+    }
+
+    // Total of a single day, for one category or all of them (categoryId -1).
+    public long dayTotal(int epochDay, int categoryId) {
+        int row = categoryId + 1;
+        int index = epochDay - firstDay;
+        if (row >= daily.length || index < 0 || index >= dayCount) {
+            return 0;
+        }
+        return daily[row][index];
+    }
+
+    // Copies the totals of the days fromDay, fromDay + 1, ... into the array, for one
+    // category or all of them (categoryId -1). Days without expenses are 0.
+    public void copyDays(int fromDay, int categoryId, long[] totals) {
+        Arrays.fill(totals, 0);
+        int row = categoryId + 1;
+        if (row >= daily.length) {
+            return;
+        }
+        int start = Math.max(fromDay, firstDay);
+        int end = (int) Math.min((long) fromDay + totals.length, (long) firstDay + dayCount);
+        if (start < end) {
+            System.arraycopy(daily[row], start - firstDay, totals, start - fromDay, end - start);
+        }
+    }
+
+    public long memoryBytes() {
+        return (long) daily.length * (dayCount * 2L + 1) * 8;
+    }
+
+    public void clear() {
+        firstDay = 0;
+        dayCount = 0;
+        daily = new long[0][];
+        trees = new long[0][];
+    }
+
+    // Recomputes every total from the live expenses in one pass.
+    public void rebuild(ColumnarExpenseStore store, int minDay, int maxDay) {
+        clear();
+        if (store.size() == 0) {
+            return;
+        }
+        firstDay = minDay;
+        dayCount = maxDay - minDay + 1;
+        ensureRow(store.getCategoryCount());
+        for (int slot = store.nextLiveSlot(0); slot >= 0; slot = store.nextLiveSlot(slot + 1)) {
+            int index = store.getEpochDay(slot) - firstDay;
+            long cents = store.getAmountCents(slot);
+            daily[0][index] += cents;
+            daily[store.getCategoryId(slot) + 1][index] += cents;
+        }
+        for (int row = 0; row < daily.length; row++) {
+            trees[row] = buildTree(daily[row]);
+        }
+    }
+
+    private void update(int row, int index, long cents) {
+        daily[row][index] += cents;
+        long[] tree = trees[row];
+        for (int i = index + 1; i <= dayCount; i += i & -i) {
+            tree[i] += cents;
+        }
+    }
+
+    private long prefix(int row, int index) {
+        long[] tree = trees[row];
+        long sum = 0;
+        for (int i = index + 1; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    // Widens the covered range so it includes the day, with room to spare on that side.
+    private void ensureDay(int epochDay) {
+        if (dayCount == 0) {
+            firstDay = epochDay - INITIAL_DAYS / 2;
+            resize(firstDay, INITIAL_DAYS);
+            return;
+        }
+        if (epochDay >= firstDay && epochDay < firstDay + dayCount) {
+            return;
+        }
+        int newFirst = firstDay;
+        int newCount = dayCount;
+        while (epochDay < newFirst) {
+            newFirst -= newCount;
+            newCount *= 2;
+        }
+        while (epochDay >= newFirst + newCount) {
+            newCount *= 2;
+        }
+        resize(newFirst, newCount);
+    }
+
+    private void resize(int newFirst, int newCount) {
+        int shift = firstDay - newFirst;
+        for (int row = 0; row < daily.length; row++) {
+            long[] values = new long[newCount];
+            if (dayCount > 0) {
+                System.arraycopy(daily[row], 0, values, shift, dayCount);
+            }
+            daily[row] = values;
+            trees[row] = buildTree(values);
+        }
+        firstDay = newFirst;
+        dayCount = newCount;
+    }
+
+    private void ensureRow(int row) {
+        if (row < daily.length) {
+            return;
+        }
+        int oldRows = daily.length;
+        daily = Arrays.copyOf(daily, row + 1);
+        trees = Arrays.copyOf(trees, row + 1);
+        for (int r = oldRows; r <= row; r++) {
+            daily[r] = new long[dayCount];
+            trees[r] = new long[dayCount + 1];
+        }
+    }
+
+    // Builds a Fenwick tree from point values in linear time.
+    private static long[] buildTree(long[] values) {
+        long[] tree = new long[values.length + 1];
+        for (int i = 1; i <= values.length; i++) {
+            tree[i] += values[i - 1];
+            int parent = i + (i & -i);
+            if (parent <= values.length) {
+                tree[parent] += tree[i];
+            }
+        }
+        return tree;
+    }
+}
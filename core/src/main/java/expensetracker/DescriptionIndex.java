@@ -0,0 +1,240 @@
+package expensetracker;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+// Inverted index from description tokens to the slots whose description
+// contains them. A token is a run of letters, digits and other non-ASCII
+// characters, lower-cased and cut straight from the store's UTF-8 buffer. Each
+// posting list is an int[] holding its length in element 0. Lists only grow
+// at the end because new records take the highest slot, so they stay
+// sorted; deleted slots are left in place, skipped by the sorted indices at
+// query time and dropped when the store compacts. The index is built on the
+// first search, so accounts that are never searched do not pay for it. The
+// sorted term list is kept current as terms come and go, so a search over a
+// built index only reads it and may run while another thread builds a new one.
+class DescriptionIndex {
+    private final Map<String, int[]> postings = new HashMap<>();
+    private String[] sortedTerms = new String[0];
+    private boolean built;
+    private byte[] buffer = new byte[256];
+
+    // A built index of the store's live slots. Only reads the store.
+    public static DescriptionIndex build(ColumnarExpenseStore store) {
+        DescriptionIndex index = new DescriptionIndex();
+        index.fill(store);
+        return index;
+    }
+
+    public void add(ColumnarExpenseStore store, int slot) {
+        if (built) {
+            addTokens(store, slot);
+        }
+    }
+
+    private void addTokens(ColumnarExpenseStore store, int slot) {
+        int length = store.getDescriptionLength(slot);
+        if (length > buffer.length) {
+            buffer = new byte[Math.max(length, buffer.length * 2)];
+        }
+        store.copyDescription(slot, buffer, 0);
+        int i = 0;
+        while (i < length) {
+            if (!isTokenByte(buffer[i])) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < length && isTokenByte(buffer[i])) {
+                i++;
+            }
+            addPosting(term(buffer, start, i), slot);
+        }
+    }
+
+    // Slots whose description has, for every token of the query, a token
+    // starting with it; null when the query has no tokens and so matches all.
+    // The set may still contain deleted slots.
+    public BitSet search(ColumnarExpenseStore store, String query) {
+        List<String> prefixes = tokenize(query);
+        if (prefixes.isEmpty()) {
+            return null;
+        }
+        if (!built) {
+            fill(store);
+        }
+        String[] terms = sortedTerms;
+        BitSet matches = null;
+        for (String prefix : prefixes) {
+            BitSet tokenMatches = new BitSet();
+            for (int i = lowerBound(terms, prefix); i < terms.length && terms[i].startsWith(prefix); i++) {
+                int[] list = postings.get(terms[i]);
+                for (int j = 1; j <= list[0]; j++) {
+                    tokenMatches.set(list[j]);
+                }
+            }
+            if (matches == null) {
+                matches = tokenMatches;
+            } else {
+                matches.and(tokenMatches);
+            }
+            if (matches.isEmpty()) {
+                break;
+            }
+        }
+        return matches;
+    }
+
+    // Applies a store compaction, dropping the slots that no longer exist.
+    public void remap(int[] remap) {
+        boolean termsRemoved = false;
+        Iterator<int[]> iterator = postings.values().iterator();
+        while (iterator.hasNext()) {
+            int[] list = iterator.next();
+            int size = 0;
+            for (int j = 1; j <= list[0]; j++) {
+                int slot = remap[list[j]];
+                if (slot >= 0) {
+                    list[++size] = slot;
+                }
+            }
+            list[0] = size;
+            if (size == 0) {
+                iterator.remove();
+                termsRemoved = true;
+            }
+        }
+        if (termsRemoved) {
+            String[] terms = new String[postings.size()];
+            int count = 0;
+            for (String term : sortedTerms) {
+                if (postings.containsKey(term)) {
+                    terms[count++] = term;
+                }
+            }
+            sortedTerms = terms;
+        }
+    }
+
+    public boolean isBuilt() {
+        return built;
+    }
+
+    public int getTermCount() {
+        return postings.size();
+    }
+
+    public long memoryBytes() {
+        if (!built) {
+            return 0;
+        }
+        long bytes = (long) sortedTerms.length * 4 + buffer.length;
+        for (Map.Entry<String, int[]> entry : postings.entrySet()) {
+            bytes += 96 + entry.getKey().length() + (long) entry.getValue().length * 4;
+        }
+        return bytes;
+    }
+
+    // Drops the index; the next search builds it again from the store.
+    public void clear() {
+        postings.clear();
+        sortedTerms = new String[0];
+        built = false;
+    }
+
+    // Query tokens, cut the same way as descriptions so they compare as raw bytes.
+    static List<String> tokenize(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        List<String> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < bytes.length) {
+            if (!isTokenByte(bytes[i])) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < bytes.length && isTokenByte(bytes[i])) {
+                i++;
+            }
+            tokens.add(term(bytes, start, i));
+        }
+        return tokens;
+    }
+
+    private void addPosting(String term, int slot) {
+        int[] list = postings.get(term);
+        if (list == null) {
+            list = new int[2];
+            postings.put(term, list);
+            if (built) {
+                insertTerm(term);
+            }
+        } else if (list[list[0]] == slot) {
+            return;
+        } else if (list[0] + 1 == list.length) {
+            list = Arrays.copyOf(list, list.length + (list.length >> 1));
+            postings.put(term, list);
+        }
+        list[++list[0]] = slot;
+    }
+
+    // Indexes every live slot, sorting the terms once at the end.
+    private void fill(ColumnarExpenseStore store) {
+        for (int slot = store.nextLiveSlot(0); slot >= 0; slot = store.nextLiveSlot(slot + 1)) {
+            addTokens(store, slot);
+        }
+        sortedTerms = postings.keySet().toArray(new String[0]);
+        Arrays.sort(sortedTerms);
+        built = true;
+    }
+
+    // Replaces the term list rather than shifting it in place, so a search
+    // reading the old list still sees a sorted array.
+    private void insertTerm(String term) {
+        int position = lowerBound(sortedTerms, term);
+        String[] terms = new String[sortedTerms.length + 1];
+        System.arraycopy(sortedTerms, 0, terms, 0, position);
+        terms[position] = term;
+        System.arraycopy(sortedTerms, position, terms, position + 1, sortedTerms.length - position);
+        sortedTerms = terms;
+    }
+
+    private static int lowerBound(String[] terms, String key) {
+        int low = 0;
+        int high = terms.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (terms[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // The lower-cased UTF-8 bytes of a token, one char per byte so prefixes of
+    // the term are prefixes of the bytes. Only tokens with non-ASCII characters
+    // are decoded to be lower-cased.
+    private static String term(byte[] bytes, int start, int end) {
+        boolean ascii = true;
+        for (int i = start; i < end; i++) {
+            byte b = bytes[i];
+            if (b < 0) {
+                ascii = false;
+            } else if (b >= 'A' && b <= 'Z') {
+                bytes[i] = (byte) (b + ('a' - 'A'));
+            }
+        }
+        if (ascii) {
+            return new String(bytes, start, end - start, StandardCharsets.ISO_8859_1);
+        }
+        byte[] lowered = new String(bytes, start, end - start, StandardCharsets.UTF_8)
+                .toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8);
+        return new String(lowered, StandardCharsets.ISO_8859_1);
+    }
+
+    private static boolean isTokenByte(byte b) {
+        return b < 0 || (b >= '0' && b <= '9') || (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z');
+    }
+}
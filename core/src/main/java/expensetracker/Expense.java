@@ -0,0 +1,117 @@
+package expensetracker;
+
+import java.io.*;
+import java.util.*;
+
+class Expense implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    static final String[] CATEGORIES = {"Food", "Transportation", "Housing", "Utilities", "Entertainment", "Other"};
+
+    // Serialized under the names and types used before dates were epoch days
+    // and amounts were cents, so expense files from older versions still load
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("id", long.class),
+            new ObjectStreamField("date", Date.class),
+            new ObjectStreamField("category", String.class),
+            new ObjectStreamField("description", String.class),
+            new ObjectStreamField("amount", double.class)
+    };
+
+    private long id;
+    private int epochDay;
+    private String category;
+    private String description;
+    private long amountCents;
+
+    // Creates an expense without an id; ExpenseManager assigns one when it is added.
+    public Expense(Date date, String category, String description, double amount) {
+        this(0, date, category, description, amount);
+    }
+
+    public Expense(long id, Date date, String category, String description, double amount) {
+        this(id, ColumnarExpenseStore.toEpochDay(date), category, description, ColumnarExpenseStore.toCents(amount));
+    }
+
+    public Expense(int epochDay, String category, String description, long amountCents) {
+        this(0, epochDay, category, description, amountCents);
+    }
+
+    public Expense(long id, int epochDay, String category, String description, long amountCents) {
+        this.id = id;
+        this.epochDay = epochDay;
+        this.category = category;
+        this.description = description;
+        this.amountCents = amountCents;
+    }
+
+    // Zero until the expense has been stored; records saved before ids existed also read back as zero.
+    public long getId() {
+        return id;
+    }
+
+    public int getEpochDay() {
+        return epochDay;
+    }
+
+    public Date getDate() {
+        return ColumnarExpenseStore.toDate(epochDay);
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public long getAmountCents() {
+        return amountCents;
+    }
+
+    public double getAmount() {
+        return ColumnarExpenseStore.toAmount(amountCents);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (obj == null || getClass() != obj.getClass()) return false;
+
+        Expense other = (Expense) obj;
+        return id == other.id &&
+                epochDay == other.epochDay &&
+                category.equals(other.category) &&
+                description.equals(other.description) &&
+                amountCents == other.amountCents;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Long.hashCode(id);
+        result = 31 * result + epochDay;
+        result = 31 * result + category.hashCode();
+        result = 31 * result + description.hashCode();
+        return 31 * result + Long.hashCode(amountCents);
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("id", id);
+        fields.put("date", getDate());
+        fields.put("category", category);
+        fields.put("description", description);
+        fields.put("amount", getAmount());
+        out.writeFields();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        id = fields.get("id", 0L);
+        epochDay = ColumnarExpenseStore.toEpochDay((Date) fields.get("date", null));
+        category = (String) fields.get("category", null);
+        description = (String) fields.get("description", null);
+        amountCents = ColumnarExpenseStore.toCents(fields.get("amount", 0.0));
+    }
+}
@@ -0,0 +1,140 @@
+package expensetracker;
+
+import java.util.*;
+
+// Result of a group-by: a dense table with one cell per combination of
+// dimension values, laid out row-major in the order the dimensions were
+// given. Cells nobody spent anything in have a count of 0.
+class ExpenseAggregation {
+    private static final String[] MONTHS = {
+            "Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul", "Aug", "Sep", "Oct", "Nov", "Dec"
+    };
+    private static final String[] WEEKDAYS = {"Mon", "Tue", "Wed", "Thu", "Fri", "Sat", "Sun"};
+
+    final GroupDimension[] dimensions;
+    final String[][] labels;
+    final int[] strides;
+    final long[] sums;
+    final long[] counts;
+    final long[] mins;
+    final long[] maxs;
+
+    ExpenseAggregation(GroupDimension[] dimensions, String[][] labels) {
+        this.dimensions = dimensions;
+        this.labels = labels;
+        strides = new int[dimensions.length];
+        long cells = 1;
+        for (int d = dimensions.length - 1; d >= 0; d--) {
+            strides[d] = (int) cells;
+            cells *= labels[d].length;
+            if (cells > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Too many groups: " + Arrays.toString(dimensions));
+            }
+        }
+        sums = new long[(int) cells];
+        counts = new long[(int) cells];
+        mins = new long[(int) cells];
+        maxs = new long[(int) cells];
+        Arrays.fill(mins, Long.MAX_VALUE);
+        Arrays.fill(maxs, Long.MIN_VALUE);
+    }
+
+    static String[] monthLabels() {
+        return MONTHS.clone();
+    }
+
+    static String[] weekdayLabels() {
+        return WEEKDAYS.clone();
+    }
+
+    public GroupDimension[] getDimensions() {
+        return dimensions.clone();
+    }
+
+    public int getCellCount() {
+        return sums.length;
+    }
+
+    // Number of distinct values of the d-th dimension.
+    public int getValueCount(int d) {
+        return labels[d].length;
+    }
+
+    public String getLabel(int d, int valueIndex) {
+        return labels[d][valueIndex];
+    }
+
+    // Index of the cell's value along the d-th dimension.
+    public int valueIndex(int cell, int d) {
+        return cell / strides[d] % labels[d].length;
+    }
+
+    // The cell for one value index per dimension, in dimension order.
+    public int cellOf(int... valueIndices) {
+        int cell = 0;
+        for (int d = 0; d < valueIndices.length; d++) {
+            cell += valueIndices[d] * strides[d];
+        }
+        return cell;
+    }
+
+    public long getCount(int cell) {
+        return counts[cell];
+    }
+
+    public long getSumCents(int cell) {
+        return sums[cell];
+    }
+
+    public long getMinCents(int cell) {
+        return mins[cell];
+    }
+
+    public long getMaxCents(int cell) {
+        return maxs[cell];
+    }
+
+    public double getAverageCents(int cell) {
+        return counts[cell] == 0 ? 0 : (double) sums[cell] / counts[cell];
+    }
+
+    // Merges cells that only differ in dimensions not kept, e.g. row totals of a pivot.
+    public ExpenseAggregation rollUp(GroupDimension... kept) {
+        int[] keptIndices = new int[kept.length];
+        String[][] keptLabels = new String[kept.length][];
+        for (int k = 0; k < kept.length; k++) {
+            keptIndices[k] = Arrays.asList(dimensions).indexOf(kept[k]);
+            if (keptIndices[k] < 0) {
+                throw new IllegalArgumentException(kept[k] + " is not a dimension of this aggregation");
+            }
+            keptLabels[k] = labels[keptIndices[k]];
+        }
+        ExpenseAggregation rolled = new ExpenseAggregation(kept.clone(), keptLabels);
+        for (int cell = 0; cell < counts.length; cell++) {
+            if (counts[cell] == 0) {
+                continue;
+            }
+            int target = 0;
+            for (int k = 0; k < kept.length; k++) {
+                target += valueIndex(cell, keptIndices[k]) * rolled.strides[k];
+            }
+            rolled.add(target, this, cell);
+        }
+        return rolled;
+    }
+
+    void add(int cell, ExpenseAggregation other, int otherCell) {
+        sums[cell] += other.sums[otherCell];
+        counts[cell] += other.counts[otherCell];
+        mins[cell] = Math.min(mins[cell], other.mins[otherCell]);
+        maxs[cell] = Math.max(maxs[cell], other.maxs[otherCell]);
+    }
+
+    void mergeFrom(ExpenseAggregation other) {
+        for (int cell = 0; cell < counts.length; cell++) {
+            if (other.counts[cell] != 0) {
+                add(cell, other, cell);
+            }
+        }
+    }
+}
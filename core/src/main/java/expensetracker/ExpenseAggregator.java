@@ -0,0 +1,163 @@
+package expensetracker;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Group-by over category, year, month and weekday in any combination, with
+// sum, count, average, min and max of the amounts. Each record's cell is the
+// sum of a per-category and a per-day offset, both computed once up front,
+// so the scan does no date arithmetic. The slot range is split across a
+// fork-join pool; every leaf task fills its own partial table and partial
+// tables are merged pairwise as the tasks join, so no cell is shared
+// between threads. The store must not change while an aggregation runs.
+class ExpenseAggregator {
+    private static final int MIN_CHUNK_SLOTS = 1 << 16;
+    // Bounds the memory held by partial tables at once
+    private static final long MAX_PARTIAL_CELLS = 1 << 23;
+
+    private final ForkJoinPool pool;
+
+    public ExpenseAggregator() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public ExpenseAggregator(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public ExpenseAggregation aggregate(ExpenseManager manager, GroupDimension... dimensions) {
+        ColumnarExpenseStore store = manager.getStore();
+        boolean empty = store.size() == 0;
+        int firstDay = empty ? 0 : manager.getFirstEpochDay();
+        int lastDay = empty ? -1 : manager.getLastEpochDay();
+        int firstYear = empty ? 0 : ExpenseCodec.year(firstDay);
+        int lastYear = empty ? -1 : ExpenseCodec.year(lastDay);
+
+        String[][] labels = new String[dimensions.length][];
+        int[] categoryRank = store.getCategoryRanks();
+        for (int d = 0; d < dimensions.length; d++) {
+            labels[d] = labelsFor(dimensions[d], store, categoryRank, firstYear, lastYear);
+        }
+        ExpenseAggregation result = new ExpenseAggregation(dimensions.clone(), labels);
+        if (empty) {
+            return result;
+        }
+
+        int[] categoryOffsets = new int[store.getCategoryCount()];
+        int[] dayOffsets = new int[lastDay - firstDay + 1];
+        for (int d = 0; d < dimensions.length; d++) {
+            int stride = result.strides[d];
+            switch (dimensions[d]) {
+                case CATEGORY:
+                    for (int id = 0; id < categoryOffsets.length; id++) {
+                        categoryOffsets[id] += categoryRank[id] * stride;
+                    }
+                    break;
+                case YEAR:
+                    for (int day = firstDay; day <= lastDay; day++) {
+                        dayOffsets[day - firstDay] += (ExpenseCodec.year(day) - firstYear) * stride;
+                    }
+                    break;
+                case MONTH:
+                    for (int day = firstDay; day <= lastDay; day++) {
+                        dayOffsets[day - firstDay] += (ExpenseCodec.yearMonthDay(day) / 100 % 100 - 1) * stride;
+                    }
+                    break;
+                case WEEKDAY:
+                default:
+                    for (int day = firstDay; day <= lastDay; day++) {
+                        // Epoch day 0 was a Thursday; Monday is value 0
+                        dayOffsets[day - firstDay] += Math.floorMod(day + 3, 7) * stride;
+                    }
+                    break;
+            }
+        }
+
+        int slotCount = store.getSlotCount();
+        long chunk = Math.max(MIN_CHUNK_SLOTS, (long) slotCount / (pool.getParallelism() * 4L) + 1);
+        chunk = Math.max(chunk, (long) slotCount * result.getCellCount() / MAX_PARTIAL_CELLS + 1);
+        ExpenseAggregation merged = pool.invoke(new PartialTask(store, result, categoryOffsets, dayOffsets, firstDay,
+                0, slotCount, (int) Math.min(Integer.MAX_VALUE, chunk)));
+        result.mergeFrom(merged);
+        return result;
+    }
+
+    private static String[] labelsFor(GroupDimension dimension, ColumnarExpenseStore store, int[] categoryRank,
+                                      int firstYear, int lastYear) {
+        switch (dimension) {
+            case CATEGORY:
+                String[] names = new String[categoryRank.length];
+                for (int id = 0; id < categoryRank.length; id++) {
+                    names[categoryRank[id]] = store.getCategoryName(id);
+                }
+                return names;
+            case YEAR:
+                String[] years = new String[Math.max(0, lastYear - firstYear + 1)];
+                for (int i = 0; i < years.length; i++) {
+                    years[i] = String.valueOf(firstYear + i);
+                }
+                return years;
+            case MONTH:
+                return ExpenseAggregation.monthLabels();
+            case WEEKDAY:
+            default:
+                return ExpenseAggregation.weekdayLabels();
+        }
+    }
+
+    private static class PartialTask extends RecursiveTask<ExpenseAggregation> {
+        private static final long serialVersionUID = 1L;
+        private final ColumnarExpenseStore store;
+        private final ExpenseAggregation shape;
+        private final int[] categoryOffsets;
+        private final int[] dayOffsets;
+        private final int firstDay;
+        private final int from;
+        private final int to;
+        private final int chunk;
+
+        PartialTask(ColumnarExpenseStore store, ExpenseAggregation shape, int[] categoryOffsets, int[] dayOffsets,
+                    int firstDay, int from, int to, int chunk) {
+            this.store = store;
+            this.shape = shape;
+            this.categoryOffsets = categoryOffsets;
+            this.dayOffsets = dayOffsets;
+            this.firstDay = firstDay;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected ExpenseAggregation compute() {
+            if (to - from > chunk) {
+                int mid = (from + to) >>> 1;
+                PartialTask left = new PartialTask(store, shape, categoryOffsets, dayOffsets, firstDay, from, mid, chunk);
+                PartialTask right = new PartialTask(store, shape, categoryOffsets, dayOffsets, firstDay, mid, to, chunk);
+                left.fork();
+                ExpenseAggregation partial = right.compute();
+                partial.mergeFrom(left.join());
+                return partial;
+            }
+
+            ExpenseAggregation partial = new ExpenseAggregation(shape.dimensions, shape.labels);
+            long[] sums = partial.sums;
+            long[] counts = partial.counts;
+            long[] mins = partial.mins;
+            long[] maxs = partial.maxs;
+            for (int slot = store.nextLiveSlot(from); slot >= 0 && slot < to; slot = store.nextLiveSlot(slot + 1)) {
+                int cell = categoryOffsets[store.getCategoryId(slot)] + dayOffsets[store.getEpochDay(slot) - firstDay];
+                long cents = store.getAmountCents(slot);
+                sums[cell] += cents;
+                counts[cell]++;
+                if (cents < mins[cell]) {
+                    mins[cell] = cents;
+                }
+                if (cents > maxs[cell]) {
+                    maxs[cell] = cents;
+                }
+            }
+            return partial;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package expensetracker;
+
+import java.io.*;
+import java.util.*;
+
+// Monthly spending limits per category for one user, kept next to the
+// expenses in <username>_expenses.budgets: magic, version, the number of
+// budgets, then each category name and its limit in cents.
+class ExpenseBudgets {
+    static final int MAGIC = 0x45424447; // "EBDG"
+    static final int VERSION = 1;
+
+    private final Map<String, Long> limits = new HashMap<>();
+
+    // Limit of the category in cents, or -1 when it has no budget.
+    public long getLimitCents(String category) {
+        Long limit = limits.get(category);
+        return limit == null ? -1 : limit;
+    }
+
+    // Sets the category's limit; a negative limit removes its budget.
+    public void setLimitCents(String category, long cents) {
+        if (cents < 0) {
+            limits.remove(category);
+        } else {
+            limits.put(category, cents);
+        }
+    }
+
+    public Map<String, Long> getLimits() {
+        return new TreeMap<>(limits);
+    }
+
+    public void clear() {
+        limits.clear();
+    }
+
+    public void read(File file) throws IOException {
+        limits.clear();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a budget file: " + file);
+            }
+            int version = in.readInt();
+            if (version > VERSION) {
+                throw new IOException("Budget file version " + version + " is newer than " + VERSION);
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String category = in.readUTF();
+                long cents = in.readLong();
+                if (cents < 0) {
+                    throw new IOException("Negative budget for " + category);
+                }
+                limits.put(category, cents);
+            }
+        }
+    }
+
+    // Writes the limits to the file and syncs it before returning.
+    public static void write(File file, Map<String, Long> limits) throws IOException {
+        try (FileOutputStream fileOut = new FileOutputStream(file);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(limits.size());
+            for (Map.Entry<String, Long> entry : limits.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue());
+            }
+            out.flush();
+            fileOut.getFD().sync();
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package expensetracker;
+
+// Converts between the stored forms of dates (epoch days, as used by
+// LocalDate.toEpochDay) and money (long cents) and their text forms. The
+// calendar arithmetic is done on ints, and formatted dates and amounts are
+// kept in small direct-mapped caches, so formatting a value that was shown
+// recently allocates nothing.
+final class ExpenseCodec {
+    private static final int CACHE_SIZE = 4096;
+    // Years parseDate accepts. The per-day arrays cover every day from the
+    // oldest to the newest expense, so one mistyped year such as 9999 would
+    // stretch them across millions of days.
+    static final int MIN_YEAR = 1900;
+    static final int MAX_YEAR = 2200;
+
+    // Immutable, so a cache slot can be read and replaced without locking
+    private static final class CachedText {
+        final long key;
+        final String text;
+
+        CachedText(long key, String text) {
+            this.key = key;
+            this.text = text;
+        }
+    }
+
+    private static final CachedText[] DATE_CACHE = new CachedText[CACHE_SIZE];
+    private static final CachedText[] AMOUNT_CACHE = new CachedText[CACHE_SIZE];
+
+    private ExpenseCodec() {
+    }
+
+    // Epoch day of a proleptic Gregorian date; the month runs from 1 to 12.
+    static int epochDay(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    // The date of an epoch day packed as yyyymmdd, e.g. 20240131.
+    static int yearMonthDay(int epochDay) {
+        int z = epochDay + 719468;
+        int era = Math.floorDiv(z, 146097);
+        int dayOfEra = z - era * 146097;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return year * 10000 + month * 100 + day;
+    }
+
+    static int year(int epochDay) {
+        return yearMonthDay(epochDay) / 10000;
+    }
+
+    // Months counted as year * 12 + month - 1, so they order like the dates in them.
+    static int monthIndex(int epochDay) {
+        int date = yearMonthDay(epochDay);
+        return date / 10000 * 12 + date / 100 % 100 - 1;
+    }
+
+    // Epoch day of the first day of a month numbered as by monthIndex.
+    static int firstDayOfMonth(int monthIndex) {
+        return epochDay(Math.floorDiv(monthIndex, 12), Math.floorMod(monthIndex, 12) + 1, 1);
+    }
+
+    static boolean isFirstOfMonth(int epochDay) {
+        return yearMonthDay(epochDay) % 100 == 1;
+    }
+
+    static int daysInMonth(int year, int month) {
+        if (month == 2) {
+            return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0 ? 29 : 28;
+        }
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    // Parses M/d/yyyy (one or two digit month and day) or yyyy-MM-dd.
+    static int parseDate(CharSequence text) {
+        int length = text.length();
+        int year;
+        int month;
+        int day;
+        int firstSlash = indexOf(text, '/', 0);
+        if (firstSlash > 0) {
+            int secondSlash = indexOf(text, '/', firstSlash + 1);
+            if (secondSlash < 0 || secondSlash - firstSlash > 3 || firstSlash > 2 || length - secondSlash != 5) {
+                throw invalidDate(text);
+            }
+            month = digits(text, 0, firstSlash);
+            day = digits(text, firstSlash + 1, secondSlash);
+            year = digits(text, secondSlash + 1, length);
+        } else if (length == 10 && text.charAt(4) == '-' && text.charAt(7) == '-') {
+            year = digits(text, 0, 4);
+            month = digits(text, 5, 7);
+            day = digits(text, 8, 10);
+        } else {
+            throw invalidDate(text);
+        }
+        if (year < MIN_YEAR || year > MAX_YEAR) {
+            throw new IllegalArgumentException("year of '" + text + "' is not between " + MIN_YEAR + " and " + MAX_YEAR);
+        }
+        if (month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+            throw invalidDate(text);
+        }
+        return epochDay(year, month, day);
+    }
+
+    // MM/dd/yyyy, as shown in the GUI and written to CSV.
+    static String formatDate(int epochDay) {
+        int index = epochDay & (CACHE_SIZE - 1);
+        CachedText cached = DATE_CACHE[index];
+        if (cached != null && cached.key == epochDay) {
+            return cached.text;
+        }
+        int date = yearMonthDay(epochDay);
+        char[] chars = new char[10];
+        putDigits(chars, 0, date / 100 % 100, 2);
+        chars[2] = '/';
+        putDigits(chars, 3, date % 100, 2);
+        chars[5] = '/';
+        putDigits(chars, 6, date / 10000, 4);
+        String text = new String(chars);
+        DATE_CACHE[index] = new CachedText(epochDay, text);
+        return text;
+    }
+
+    // yyyy-MM-dd, as written to JSON.
+    static String formatIsoDate(int epochDay) {
+        int date = yearMonthDay(epochDay);
+        char[] chars = new char[10];
+        putDigits(chars, 0, date / 10000, 4);
+        chars[4] = '-';
+        putDigits(chars, 5, date / 100 % 100, 2);
+        chars[7] = '-';
+        putDigits(chars, 8, date % 100, 2);
+        return new String(chars);
+    }
+
+    // Parses a positive decimal amount straight to cents, so no precision is
+    // lost through double. Accepts a leading $ and commas between groups of
+    // three integer digits, as in $1,234.56; signs, zero and misplaced
+    // commas are rejected.
+    static long parseCents(CharSequence text) {
+        int i = 0;
+        if (i < text.length() && text.charAt(i) == '$') {
+            i++;
+        }
+
+        long cents = 0;
+        int integerDigits = 0;
+        int fractionDigits = -1;
+        // Digits since the last comma, or -1 before the first
+        int groupDigits = -1;
+        for (; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (fractionDigits >= 0) {
+                    if (++fractionDigits > 2) {
+                        throw new NumberFormatException("amount '" + text + "' has more than two decimals");
+                    }
+                } else {
+                    if (++integerDigits > 15) {
+                        throw new NumberFormatException("amount '" + text + "' is too large");
+                    }
+                    if (groupDigits >= 0) {
+                        groupDigits++;
+                    }
+                }
+                cents = cents * 10 + (c - '0');
+            } else if (c == '.' && fractionDigits < 0) {
+                checkLastGroup(text, groupDigits);
+                fractionDigits = 0;
+            } else if (c == ',' && fractionDigits < 0 && integerDigits > 0
+                    && (groupDigits < 0 ? integerDigits <= 3 : groupDigits == 3)) {
+                groupDigits = 0;
+            } else {
+                throw new NumberFormatException("invalid amount '" + text + "'");
+            }
+        }
+        if (fractionDigits < 0) {
+            checkLastGroup(text, groupDigits);
+        }
+        if (integerDigits == 0 && fractionDigits <= 0) {
+            throw new NumberFormatException("invalid amount '" + text + "'");
+        }
+        for (int scale = Math.max(fractionDigits, 0); scale < 2; scale++) {
+            cents *= 10;
+        }
+        if (cents == 0) {
+            throw new NumberFormatException("amount '" + text + "' is not positive");
+        }
+        return cents;
+    }
+
+    private static void checkLastGroup(CharSequence text, int groupDigits) {
+        if (groupDigits >= 0 && groupDigits != 3) {
+            throw new NumberFormatException("invalid amount '" + text + "'");
+        }
+    }
+
+    // $1234.56, as shown in the GUI.
+    static String formatAmount(long cents) {
+        int index = (int) (cents ^ (cents >>> 32)) & (CACHE_SIZE - 1);
+        CachedText cached = AMOUNT_CACHE[index];
+        if (cached != null && cached.key == cents) {
+            return cached.text;
+        }
+        String text = "$" + formatDecimal(cents);
+        AMOUNT_CACHE[index] = new CachedText(cents, text);
+        return text;
+    }
+
+    // 1234.56, as written to CSV and JSON.
+    static String formatDecimal(long cents) {
+        long abs = Math.abs(cents);
+        long whole = abs / 100;
+        int fraction = (int) (abs % 100);
+        return (cents < 0 ? "-" : "") + whole + (fraction < 10 ? ".0" : ".") + fraction;
+    }
+
+    private static int indexOf(CharSequence text, char c, int from) {
+        for (int i = from; i < text.length(); i++) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int digits(CharSequence text, int from, int to) {
+        if (from >= to) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static void putDigits(char[] chars, int offset, int value, int width) {
+        for (int i = offset + width - 1; i >= offset; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private static IllegalArgumentException invalidDate(CharSequence text) {
+        return new IllegalArgumentException("invalid date '" + text + "'");
+    }
+}
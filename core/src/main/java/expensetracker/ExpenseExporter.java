@@ -0,0 +1,220 @@
+package expensetracker;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntConsumer;
+
+// Streams the rows of an ExpenseView to a file as CSV or JSON Lines. Fields
+// are encoded straight from the store's columns into one reusable buffer and
+// written through a FileChannel, so memory use does not grow with the number
+// of rows. The store must not change while an export is running.
+class ExpenseExporter {
+    enum Format { CSV, JSON_LINES }
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final byte[] CSV_HEADER = "Date,Category,Description,Amount\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private byte[] description = new byte[256];
+    private byte[][] categoryNames;
+    private final byte[] digits = new byte[20];
+    private FileChannel channel;
+
+    // JSON Lines for .jsonl, .ndjson and .json files, CSV otherwise.
+    public static Format formatFor(File file) {
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        return name.endsWith(".jsonl") || name.endsWith(".ndjson") || name.endsWith(".json")
+                ? Format.JSON_LINES : Format.CSV;
+    }
+
+    // Writes every row of the view in view order. Returns the number of rows
+    // written, or -1 if cancelled, in which case the file is left untouched.
+    public long export(ExpenseView view, ColumnarExpenseStore store, File file, Format format,
+                       BooleanSupplier cancelled, IntConsumer progress) throws IOException {
+        File tempFile = new File(file.getPath() + ".tmp");
+        int rowCount = view.size();
+        int lastPercent = -1;
+        boolean completed = false;
+        buffer.clear();
+        categoryNames = new byte[store.getCategoryCount()][];
+        for (int categoryId = 0; categoryId < categoryNames.length; categoryId++) {
+            categoryNames[categoryId] = store.getCategoryName(categoryId).getBytes(StandardCharsets.UTF_8);
+        }
+
+        try (FileChannel fileChannel = FileChannel.open(tempFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel = fileChannel;
+            if (format == Format.CSV) {
+                put(CSV_HEADER);
+            }
+            for (int row = 0; row < rowCount; row++) {
+                int percent = (int) ((long) row * 100 / rowCount);
+                if (percent != lastPercent) {
+                    if (cancelled.getAsBoolean()) {
+                        return -1;
+                    }
+                    lastPercent = percent;
+                    progress.accept(percent);
+                }
+                int slot = view.slotAt(row);
+                if (format == Format.CSV) {
+                    writeCsvRow(store, slot);
+                } else {
+                    writeJsonRow(store, slot);
+                }
+            }
+            flush();
+            completed = true;
+        } finally {
+            channel = null;
+            if (!completed) {
+                Files.deleteIfExists(tempFile.toPath());
+            }
+        }
+
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        progress.accept(100);
+        return rowCount;
+    }
+
+    // Same layout CsvExpenseImporter reads: MM/dd/yyyy,category,description,amount
+    private void writeCsvRow(ColumnarExpenseStore store, int slot) throws IOException {
+        int date = ExpenseCodec.yearMonthDay(store.getEpochDay(slot));
+        putDigits(date / 100 % 100, 2);
+        put((byte) '/');
+        putDigits(date % 100, 2);
+        put((byte) '/');
+        putDigits(date / 10000, 4);
+        put((byte) ',');
+        put(categoryNames[store.getCategoryId(slot)]);
+        put((byte) ',');
+
+        int length = loadDescription(store, slot);
+        boolean quote = false;
+        for (int i = 0; i < length && !quote; i++) {
+            byte b = description[i];
+            quote = b == ',' || b == '"' || b == '\n' || b == '\r';
+        }
+        if (quote) {
+            put((byte) '"');
+        }
+        for (int i = 0; i < length; i++) {
+            if (description[i] == '"') {
+                put((byte) '"');
+            }
+            put(description[i]);
+        }
+        if (quote) {
+            put((byte) '"');
+        }
+        put((byte) ',');
+        putCents(store.getAmountCents(slot));
+        put((byte) '\n');
+    }
+
+    private void writeJsonRow(ColumnarExpenseStore store, int slot) throws IOException {
+        putAscii("{\"id\":");
+        putLong(store.getId(slot));
+        putAscii(",\"date\":\"");
+        int date = ExpenseCodec.yearMonthDay(store.getEpochDay(slot));
+        putDigits(date / 10000, 4);
+        put((byte) '-');
+        putDigits(date / 100 % 100, 2);
+        put((byte) '-');
+        putDigits(date % 100, 2);
+        putAscii("\",\"category\":\"");
+        put(categoryNames[store.getCategoryId(slot)]);
+        putAscii("\",\"description\":\"");
+
+        // UTF-8 continuation bytes never look like ASCII, so escaping byte by byte is safe
+        int length = loadDescription(store, slot);
+        for (int i = 0; i < length; i++) {
+            byte b = description[i];
+            if (b == '"' || b == '\\') {
+                put((byte) '\\');
+                put(b);
+            } else if (b >= 0 && b < 0x20) {
+                putAscii("\\u00");
+                put(HEX[b >> 4]);
+                put(HEX[b & 0xF]);
+            } else {
+                put(b);
+            }
+        }
+        putAscii("\",\"amount\":");
+        putCents(store.getAmountCents(slot));
+        putAscii("}\n");
+    }
+
+    private int loadDescription(ColumnarExpenseStore store, int slot) {
+        int length = store.getDescriptionLength(slot);
+        if (length > description.length) {
+            description = new byte[Math.max(length, description.length * 2)];
+        }
+        store.copyDescription(slot, description, 0);
+        return length;
+    }
+
+    private void putCents(long cents) throws IOException {
+        if (cents < 0) {
+            put((byte) '-');
+            cents = -cents;
+        }
+        putLong(cents / 100);
+        put((byte) '.');
+        putDigits((int) (cents % 100), 2);
+    }
+
+    // Writes a non-negative number without going through a String.
+    private void putLong(long value) throws IOException {
+        int start = digits.length;
+        do {
+            digits[--start] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        for (int i = start; i < digits.length; i++) {
+            put(digits[i]);
+        }
+    }
+
+    private void putDigits(int value, int width) throws IOException {
+        for (int divisor = width == 4 ? 1000 : 10; divisor > 0; divisor /= 10) {
+            put((byte) ('0' + value / divisor % 10));
+        }
+    }
+
+    private void putAscii(String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            put((byte) text.charAt(i));
+        }
+    }
+
+    private void put(byte[] bytes) throws IOException {
+        for (byte b : bytes) {
+            put(b);
+        }
+    }
+
+    private void put(byte b) throws IOException {
+        if (!buffer.hasRemaining()) {
+            flush();
+        }
+        buffer.put(b);
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,307 @@
+package expensetracker;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.IntConsumer;
+
+// Versioned binary snapshot file for one user's expenses:
+//
+//   header:  magic "EXPB", version, journal generation, next id,
+//            record count, category dictionary, description heap size,
+//            month count
+//   months:  for every calendar month that has expenses, oldest first: the
+//            month (see ExpenseCodec.monthIndex), its first record, and the
+//            count and total cents of each category in it
+//   records: fixed 32-byte rows of id, epoch day, category id, cents,
+//            description offset and length, in date order
+//   heap:    UTF-8 descriptions, referenced by offset from the records
+//
+// Files are read through memory-mapped channels, so loading costs little
+// more than paging the file in. The month table lets a file be opened as an
+// ExpenseHistory and read back from its newest month. One mapping can
+// address at most 2 GB, so the records are mapped in windows of
+// WINDOW_RECORDS and the description heap, which the store keeps in one
+// array and so is never larger, on its own; the file as a whole may be
+// larger than that.
+final class ExpenseFileFormat {
+    static final int MAGIC = 0x45585042; // "EXPB"
+    static final int VERSION = 2;
+    static final int RECORD_SIZE = 32;
+    // 1 GB of records per mapping
+    static final int WINDOW_RECORDS = 1 << 25;
+
+    static class Header {
+        int version;
+        long generation;
+        long nextId;
+        int recordCount;
+        List<String> categoryNames;
+        int heapSize;
+        int monthCount;
+        int monthsStart;
+        long recordsStart;
+        long heapStart;
+    }
+
+    // The parts of a mapped file: the header and month table, the records a
+    // window at a time, and the description heap. A record never straddles
+    // two windows. Mappings stay valid once the channel is closed, and reads
+    // use absolute gets or duplicates, so several threads may share one.
+    static final class Mapping {
+        final File file;
+        final Header header;
+        final ByteBuffer head;
+        final ByteBuffer heap;
+        private final ByteBuffer[] windows;
+        private final int windowRecords;
+
+        private Mapping(File file, Header header, ByteBuffer head, ByteBuffer heap, ByteBuffer[] windows,
+                        int windowRecords) {
+            this.file = file;
+            this.header = header;
+            this.head = head;
+            this.heap = heap;
+            this.windows = windows;
+            this.windowRecords = windowRecords;
+        }
+
+        long getId(int row) {
+            return windows[row / windowRecords].getLong(offsetOf(row));
+        }
+
+        int getEpochDay(int row) {
+            return windows[row / windowRecords].getInt(offsetOf(row) + 8);
+        }
+
+        private int offsetOf(int row) {
+            return (row % windowRecords) * RECORD_SIZE;
+        }
+    }
+
+    private ExpenseFileFormat() {
+    }
+
+    public static void write(File file, ExpenseSnapshot snapshot, long generation, long nextId) throws IOException {
+        int[] rows = dateOrder(snapshot);
+        int categoryCount = snapshot.categoryNames.size();
+        int monthCount = 0;
+        for (int i = 0; i < rows.length; i++) {
+            if (i == 0 || monthOf(snapshot, rows[i]) != monthOf(snapshot, rows[i - 1])) {
+                monthCount++;
+            }
+        }
+
+
+        try (FileOutputStream fos = new FileOutputStream(file);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(generation);
+            out.writeLong(nextId);
+            out.writeInt(snapshot.count);
+            out.writeInt(categoryCount);
+            for (String category : snapshot.categoryNames) {
+                byte[] name = category.getBytes(StandardCharsets.UTF_8);
+                out.writeShort(name.length);
+                out.write(name);
+            }
+            out.writeInt(snapshot.descriptionSize);
+            out.writeInt(monthCount);
+
+            int[] counts = new int[categoryCount];
+            long[] cents = new long[categoryCount];
+            for (int first = 0; first < rows.length; ) {
+                int month = monthOf(snapshot, rows[first]);
+                Arrays.fill(counts, 0);
+                Arrays.fill(cents, 0);
+                int end = first;
+                for (; end < rows.length && monthOf(snapshot, rows[end]) == month; end++) {
+                    counts[snapshot.categories[rows[end]]]++;
+                    cents[snapshot.categories[rows[end]]] += snapshot.amountCents[rows[end]];
+                }
+                out.writeInt(month);
+                out.writeInt(first);
+                for (int category = 0; category < categoryCount; category++) {
+                    out.writeInt(counts[category]);
+                    out.writeLong(cents[category]);
+                }
+                first = end;
+            }
+
+            for (int row : rows) {
+                out.writeLong(snapshot.ids[row]);
+                out.writeInt(snapshot.epochDays[row]);
+                out.writeInt(snapshot.categories[row]);
+                out.writeLong(snapshot.amountCents[row]);
+                out.writeInt(snapshot.descriptionOffsets[row]);
+                out.writeInt(snapshot.descriptionLengths[row]);
+            }
+            out.write(snapshot.descriptionBytes, 0, snapshot.descriptionSize);
+            out.flush();
+            fos.getFD().sync();
+        }
+    }
+
+    // Appends every record in the file to the store.
+    public static Header read(File file, ColumnarExpenseStore store, IntConsumer progress) throws IOException {
+        return read(map(file, WINDOW_RECORDS), store, progress);
+    }
+
+    static Header read(Mapping mapping, ColumnarExpenseStore store, IntConsumer progress) throws IOException {
+        readRecords(mapping, 0, mapping.header.recordCount, store, progress);
+        return mapping.header;
+    }
+
+    // Maps the file and reads its header and month table, interning its
+    // categories into the store, but none of its records.
+    public static ExpenseHistory openHistory(File file, ColumnarExpenseStore store) throws IOException {
+        return openHistory(map(file, WINDOW_RECORDS), store);
+    }
+
+    static ExpenseHistory openHistory(Mapping mapping, ColumnarExpenseStore store) throws IOException {
+        File file = mapping.file;
+        Header header = mapping.header;
+        ByteBuffer buffer = mapping.head.duplicate();
+        int categoryCount = header.categoryNames.size();
+        int[] categoryIds = new int[categoryCount];
+        for (int category = 0; category < categoryCount; category++) {
+            categoryIds[category] = store.internCategory(header.categoryNames.get(category));
+        }
+        int[] months = new int[header.monthCount];
+        int[] firstRows = new int[header.monthCount + 1];
+        int[] counts = new int[header.monthCount * categoryCount];
+        long[] cents = new long[header.monthCount * categoryCount];
+        buffer.position(header.monthsStart);
+        for (int month = 0; month < header.monthCount; month++) {
+            months[month] = buffer.getInt();
+            firstRows[month] = buffer.getInt();
+            if (firstRows[month] < (month == 0 ? 0 : firstRows[month - 1] + 1)
+                    || firstRows[month] >= header.recordCount || (month == 0 && firstRows[month] != 0)
+                    || (month > 0 && months[month] <= months[month - 1])) {
+                throw new IOException("Corrupt month table in " + file.getName());
+            }
+            for (int category = 0; category < categoryCount; category++) {
+                counts[month * categoryCount + category] = buffer.getInt();
+                cents[month * categoryCount + category] = buffer.getLong();
+            }
+        }
+        firstRows[header.monthCount] = header.recordCount;
+        if (header.monthCount == 0 && header.recordCount > 0) {
+            throw new IOException("Corrupt month table in " + file.getName());
+        }
+        return new ExpenseHistory(mapping, categoryIds, months, firstRows, counts, cents);
+    }
+
+    // Appends records [fromRow, toRow) of a mapped file to the store. Reads
+    // through duplicates of the mappings, so several threads may share them.
+    static void readRecords(Mapping mapping, int fromRow, int toRow, ColumnarExpenseStore store,
+                            IntConsumer progress) throws IOException {
+        Header header = mapping.header;
+        int categoryCount = header.categoryNames.size();
+        int[] categoryIds = new int[categoryCount];
+        for (int category = 0; category < categoryCount; category++) {
+            categoryIds[category] = store.internCategory(header.categoryNames.get(category));
+        }
+        ByteBuffer heap = mapping.heap.duplicate();
+        ByteBuffer records = null;
+
+        int reportEvery = Math.max(1, (toRow - fromRow) / 100);
+        for (int row = fromRow; row < toRow; row++) {
+            if (records == null || row % mapping.windowRecords == 0) {
+                records = mapping.windows[row / mapping.windowRecords].duplicate();
+                records.position(mapping.offsetOf(row));
+            }
+            long id = records.getLong();
+            int epochDay = records.getInt();
+            int category = records.getInt();
+            long cents = records.getLong();
+            int offset = records.getInt();
+            int length = records.getInt();
+            if (category < 0 || category >= categoryCount || offset < 0 || length < 0
+                    || (long) offset + length > header.heapSize) {
+                throw new IOException("Corrupt expense record " + row + " in " + mapping.file.getName());
+            }
+            store.addEncoded(id, epochDay, categoryIds[category], cents, heap, offset, length);
+            if ((row - fromRow) % reportEvery == 0) {
+                progress.accept((int) ((long) (row - fromRow) * 99 / (toRow - fromRow)));
+            }
+        }
+    }
+
+    // Maps the file windowRecords records at a time and reads its header.
+    static Mapping map(File file, int windowRecords) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            MappedByteBuffer head = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, Integer.MAX_VALUE));
+            Header header = readHeader(head, file, size);
+            if (header.recordsStart > Integer.MAX_VALUE) {
+                throw new IOException("Corrupt month table in " + file.getName());
+            }
+            ByteBuffer[] windows = new ByteBuffer[(int) (((long) header.recordCount + windowRecords - 1) / windowRecords)];
+            for (int window = 0; window < windows.length; window++) {
+                long firstRow = (long) window * windowRecords;
+                long rows = Math.min(windowRecords, header.recordCount - firstRow);
+                windows[window] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        header.recordsStart + firstRow * RECORD_SIZE, rows * RECORD_SIZE);
+            }
+            ByteBuffer heap = channel.map(FileChannel.MapMode.READ_ONLY, header.heapStart, header.heapSize);
+            return new Mapping(file, header, head, heap, windows, windowRecords);
+        }
+    }
+
+    private static Header readHeader(ByteBuffer buffer, File file, long fileSize) throws IOException {
+        if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+            throw new IOException("Not an expense file: " + file.getName());
+        }
+        Header header = new Header();
+        header.version = buffer.getInt();
+        if (header.version != VERSION) {
+            throw new IOException("Unsupported expense file version " + header.version + ": " + file.getName());
+        }
+        header.generation = buffer.getLong();
+        header.nextId = buffer.getLong();
+        header.recordCount = buffer.getInt();
+
+        int categoryCount = buffer.getInt();
+        header.categoryNames = new ArrayList<>(categoryCount);
+        for (int i = 0; i < categoryCount; i++) {
+            byte[] name = new byte[buffer.getShort() & 0xFFFF];
+            buffer.get(name);
+            header.categoryNames.add(new String(name, StandardCharsets.UTF_8));
+        }
+        header.heapSize = buffer.getInt();
+        header.monthCount = buffer.getInt();
+
+        header.monthsStart = buffer.position();
+        header.recordsStart = header.monthsStart + (long) header.monthCount * (8 + categoryCount * 12L);
+        header.heapStart = header.recordsStart + (long) header.recordCount * RECORD_SIZE;
+        if (header.recordCount < 0 || header.monthCount < 0 || header.heapSize < 0
+                || header.heapStart + header.heapSize > fileSize) {
+            throw new IOException("Truncated expense file: " + file.getName());
+        }
+        return header;
+    }
+
+    // Row numbers in date order; rows that already are in date order are not sorted again.
+    private static int[] dateOrder(ExpenseSnapshot snapshot) {
+        int[] rows = new int[snapshot.count];
+        boolean sorted = true;
+        for (int row = 0; row < rows.length; row++) {
+            rows[row] = row;
+            sorted &= row == 0 || snapshot.epochDays[row - 1] <= snapshot.epochDays[row];
+        }
+        if (!sorted) {
+            SlotSort.sortByIntKey(rows, rows.length, row -> snapshot.epochDays[row]);
+        }
+        return rows;
+    }
+
+    private static int monthOf(ExpenseSnapshot snapshot, int row) {
+        return ExpenseCodec.monthIndex(snapshot.epochDays[row]);
+    }
+}
@@ -0,0 +1,247 @@
+package expensetracker;
+
+import java.io.*;
+import java.util.BitSet;
+import java.util.function.IntConsumer;
+
+// The older part of an expense file that has not been read into the store
+// yet. Opening it reads only the month table, which gives the count and
+// total of every category per month; the records themselves are read when
+// the history is loaded back to their month, newest months first. Until
+// then the unloaded months' totals stand in for them. Months [0,
+// getUnloadedMonths()) are still on disk; the rest are in the store. Looking
+// up one expense by id reads only its month, so a few months below
+// getUnloadedMonths() may be in the store already; they count as loaded
+// everywhere but in getLoadedFromDay.
+//
+// Reading records touches nothing but the mapped file, so a Chunk may be
+// read on any thread. Everything else belongs to the manager's thread.
+class ExpenseHistory {
+    // Records of the months in [fromMonth, toMonth) not loaded yet, for ExpenseManager.addHistory
+    static final class Chunk {
+        final ExpenseHistory history;
+        final int fromMonth;
+        final int toMonth;
+        final ColumnarExpenseStore rows = new ColumnarExpenseStore();
+        // The history's loaded months and version when the chunk was planned
+        private final BitSet loaded;
+        final int version;
+
+        Chunk(ExpenseHistory history, int fromMonth, int toMonth) {
+            this.history = history;
+            this.fromMonth = fromMonth;
+            this.toMonth = toMonth;
+            this.loaded = (BitSet) history.loadedMonths.clone();
+            this.version = history.version;
+        }
+
+        public void read() throws IOException {
+            int month = loaded.nextClearBit(fromMonth);
+            while (month < toMonth) {
+                int next = loaded.nextSetBit(month);
+                int end = next < 0 ? toMonth : Math.min(toMonth, next);
+                history.readMonths(month, end, rows, percent -> { });
+                month = loaded.nextClearBit(end);
+            }
+        }
+
+        public int size() {
+            int size = 0;
+            for (int month = loaded.nextClearBit(fromMonth); month < toMonth; month = loaded.nextClearBit(month + 1)) {
+                size += history.firstRows[month + 1] - history.firstRows[month];
+            }
+            return size;
+        }
+    }
+
+    private final ExpenseFileFormat.Mapping mapping;
+    private final int[] categoryIds;
+    private final int[] months;
+    private final int[] firstRows;
+    private final int[] monthCounts;
+    private final long[] monthCents;
+
+    // Totals of the months still on disk, per store category id
+    private int unloadedMonths;
+    private int[] unloadedCounts;
+    private long[] unloadedCents;
+    private long unloadedTotalCents;
+    // Months below unloadedMonths that are in the store, and the rows they hold
+    private final BitSet loadedMonths = new BitSet();
+    private int loadedMonthRows;
+    // Changes whenever months are loaded, so chunks planned before are not added
+    private int version;
+
+    ExpenseHistory(ExpenseFileFormat.Mapping mapping, int[] categoryIds, int[] months, int[] firstRows,
+                   int[] monthCounts, long[] monthCents) {
+        this.mapping = mapping;
+        this.categoryIds = categoryIds;
+        this.months = months;
+        this.firstRows = firstRows;
+        this.monthCounts = monthCounts;
+        this.monthCents = monthCents;
+
+        int storeCategories = 0;
+        for (int categoryId : categoryIds) {
+            storeCategories = Math.max(storeCategories, categoryId + 1);
+        }
+        unloadedCounts = new int[storeCategories];
+        unloadedCents = new long[storeCategories];
+        unloadedMonths = months.length;
+        for (int month = 0; month < months.length; month++) {
+            for (int category = 0; category < categoryIds.length; category++) {
+                unloadedCounts[categoryIds[category]] += monthCounts[month * categoryIds.length + category];
+                unloadedCents[categoryIds[category]] += monthCents[month * categoryIds.length + category];
+                unloadedTotalCents += monthCents[month * categoryIds.length + category];
+            }
+        }
+    }
+
+    public ExpenseFileFormat.Header getHeader() {
+        return mapping.header;
+    }
+
+    public int getUnloadedMonths() {
+        return unloadedMonths;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public boolean isComplete() {
+        return unloadedMonths == 0;
+    }
+
+    // Every expense dated on or after this day is loaded; Integer.MIN_VALUE once all are.
+    public int getLoadedFromDay() {
+        return unloadedMonths == 0 ? Integer.MIN_VALUE : ExpenseCodec.firstDayOfMonth(months[unloadedMonths - 1] + 1);
+    }
+
+    public int getUnloadedCount() {
+        return firstRows[unloadedMonths] - loadedMonthRows;
+    }
+
+    public int getUnloadedCount(int categoryId) {
+        return categoryId < unloadedCounts.length ? unloadedCounts[categoryId] : 0;
+    }
+
+    // Total of the months still on disk, for one category or all of them (categoryId -1).
+    public long getUnloadedCents(int categoryId) {
+        if (categoryId < 0) {
+            return unloadedTotalCents;
+        }
+        return categoryId < unloadedCents.length ? unloadedCents[categoryId] : 0;
+    }
+
+    // Oldest and newest day of the months still on disk; only meaningful while there are any.
+    public int getFirstEpochDay() {
+        return epochDayOf(firstRows[loadedMonths.nextClearBit(0)]);
+    }
+
+    public int getLastEpochDay() {
+        return epochDayOf(firstRows[unloadedMonths] - 1);
+    }
+
+    // True if the inclusive range starts or ends inside a month still on disk,
+    // whose total cannot be split by day without reading its records.
+    public boolean splitsUnloadedMonth(int fromDay, int toDay) {
+        int loadedFrom = getLoadedFromDay();
+        return (fromDay < loadedFrom && !ExpenseCodec.isFirstOfMonth(fromDay))
+                || (toDay < loadedFrom - 1 && !ExpenseCodec.isFirstOfMonth(toDay + 1));
+    }
+
+    // Total of the months still on disk that lie wholly within the inclusive
+    // range, for one category or all of them (categoryId -1).
+    public long sumCents(int fromDay, int toDay, int categoryId) {
+        long sum = 0;
+        for (int month = loadedMonths.nextClearBit(0); month < unloadedMonths; month = loadedMonths.nextClearBit(month + 1)) {
+            if (ExpenseCodec.firstDayOfMonth(months[month]) < fromDay
+                    || ExpenseCodec.firstDayOfMonth(months[month] + 1) - 1 > toDay) {
+                continue;
+            }
+            for (int category = 0; category < categoryIds.length; category++) {
+                if (categoryId < 0 || categoryIds[category] == categoryId) {
+                    sum += monthCents[month * categoryIds.length + category];
+                }
+            }
+        }
+        return sum;
+    }
+
+    // First month the store needs for the newest windowMonths calendar months,
+    // counted back from the month of the newest expense.
+    public int windowStart(int windowMonths) {
+        int month = months.length;
+        while (month > 0 && months[month - 1] > months[months.length - 1] - windowMonths) {
+            month--;
+        }
+        return month;
+    }
+
+    // First month to read so that everything dated fromDay or later is loaded
+    // (all of it for Integer.MIN_VALUE), along with at least minRows more
+    // records unless the history runs out first.
+    public int loadStart(int fromDay, int minRows) {
+        int target = fromDay == Integer.MIN_VALUE ? Integer.MIN_VALUE : ExpenseCodec.monthIndex(fromDay);
+        int month = unloadedMonths;
+        while (month > 0 && (months[month - 1] >= target
+                || firstRows[unloadedMonths] - firstRows[month] < minRows)) {
+            month--;
+        }
+        return month;
+    }
+
+    public Chunk chunk(int fromMonth) {
+        return new Chunk(this, fromMonth, unloadedMonths);
+    }
+
+    // The one month to read for the expense with the given id, or null if it
+    // is not on disk. Looks through the ids of the months not loaded, without
+    // reading the rest of their records.
+    public Chunk chunkOf(long id) {
+        for (int month = loadedMonths.nextClearBit(0); month < unloadedMonths; month = loadedMonths.nextClearBit(month + 1)) {
+            for (int row = firstRows[month]; row < firstRows[month + 1]; row++) {
+                if (mapping.getId(row) == id) {
+                    return new Chunk(this, month, month + 1);
+                }
+            }
+        }
+        return null;
+    }
+
+    // Appends the records of months [fromMonth, toMonth) to the store.
+    public void readMonths(int fromMonth, int toMonth, ColumnarExpenseStore store, IntConsumer progress)
+            throws IOException {
+        ExpenseFileFormat.readRecords(mapping, firstRows[fromMonth], firstRows[toMonth], store, progress);
+    }
+
+    // Records that months [fromMonth, toMonth) are now in the store.
+    public void markLoaded(int fromMonth, int toMonth) {
+        for (int month = loadedMonths.nextClearBit(fromMonth); month < Math.min(toMonth, unloadedMonths);
+                month = loadedMonths.nextClearBit(month + 1)) {
+            for (int category = 0; category < categoryIds.length; category++) {
+                unloadedCounts[categoryIds[category]] -= monthCounts[month * categoryIds.length + category];
+                unloadedCents[categoryIds[category]] -= monthCents[month * categoryIds.length + category];
+                unloadedTotalCents -= monthCents[month * categoryIds.length + category];
+            }
+            loadedMonths.set(month);
+            loadedMonthRows += firstRows[month + 1] - firstRows[month];
+        }
+        while (unloadedMonths > 0 && loadedMonths.get(unloadedMonths - 1)) {
+            unloadedMonths--;
+            loadedMonths.clear(unloadedMonths);
+            loadedMonthRows -= firstRows[unloadedMonths + 1] - firstRows[unloadedMonths];
+        }
+        version++;
+    }
+
+    // The month table; the records are mapped, not held on the heap.
+    public long memoryBytes() {
+        return (long) months.length * (8 + categoryIds.length * 12L);
+    }
+
+    private int epochDayOf(int row) {
+        return mapping.getEpochDay(row);
+    }
+}
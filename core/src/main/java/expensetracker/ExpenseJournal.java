@@ -0,0 +1,220 @@
+package expensetracker;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+// Append-only log of expense mutations for one user. Each frame is
+// [payload length][CRC32 of payload][payload], so a write that is cut short
+// by a crash only ever loses the last frame. The header carries the
+// generation of the snapshot the frames apply to; once the snapshot is
+// rewritten with a newer generation, older frames are ignored.
+//
+// Frames are keyed by expense id: adds and updates carry the whole expense,
+// deletes only the id. A journal in any other format is discarded.
+class ExpenseJournal implements Closeable {
+    static final byte OP_ADD = 1;
+    static final byte OP_DELETE = 2;
+    static final byte OP_UPDATE = 3;
+
+    private static final int MAGIC = 0x454A5233; // "EJR3"
+    private static final int HEADER_SIZE = 12;
+    private static final int FRAME_HEADER_SIZE = 8;
+    private static final int MAX_FRAME_SIZE = 1 << 20;
+
+    interface Replayer {
+        // For deletes the expense is null.
+        void apply(byte op, long id, Expense expense);
+    }
+
+    private final File file;
+    private FileChannel channel;
+    private long generation;
+    private int frameCount;
+
+    public ExpenseJournal(File file) {
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    public boolean isOpen() {
+        return channel != null;
+    }
+
+    // Opens the journal and replays every intact frame written against the
+    // given snapshot generation. A torn or corrupt tail is truncated away.
+    public void open(long snapshotGeneration, Replayer replayer) throws IOException {
+        close();
+        channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        generation = snapshotGeneration;
+        frameCount = 0;
+
+        long size = channel.size();
+        if (readMagic(size, snapshotGeneration) != MAGIC) {
+            reset(snapshotGeneration);
+            return;
+        }
+
+        long position = HEADER_SIZE;
+        ByteBuffer frameHeader = ByteBuffer.allocate(FRAME_HEADER_SIZE);
+        CRC32 crc = new CRC32();
+        while (position + FRAME_HEADER_SIZE <= size) {
+            frameHeader.clear();
+            readFully(frameHeader, position);
+            frameHeader.flip();
+            int length = frameHeader.getInt();
+            int checksum = frameHeader.getInt();
+            if (length <= 0 || length > MAX_FRAME_SIZE || position + FRAME_HEADER_SIZE + length > size) {
+                break;
+            }
+
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(payload, position + FRAME_HEADER_SIZE);
+            crc.reset();
+            crc.update(payload.array(), 0, length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload.array()));
+            byte op = in.readByte();
+            long id = in.readLong();
+            replayer.apply(op, id, op == OP_DELETE ? null : readExpense(in, id));
+
+            position += FRAME_HEADER_SIZE + length;
+            frameCount++;
+        }
+
+        if (position < size) {
+            ExpenseMetrics.error("Discarding incomplete journal tail in " + file.getName());
+            channel.truncate(position);
+        }
+        channel.position(position);
+    }
+
+    // Appends a frame; the expense is ignored for deletes.
+    public void append(byte op, long id, Expense expense) throws IOException {
+        appendFrame(encodeFrame(op, id, expense));
+    }
+
+    // Builds a complete frame so it can be encoded on one thread and written on another.
+    public static byte[] encodeFrame(byte op, long id, Expense expense) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0); // length, patched below
+        out.writeInt(0); // checksum, patched below
+        out.writeByte(op);
+        out.writeLong(id);
+        if (op != OP_DELETE) {
+            writeExpense(out, expense);
+        }
+        out.flush();
+
+        byte[] frame = bytes.toByteArray();
+        int length = frame.length - FRAME_HEADER_SIZE;
+        CRC32 crc = new CRC32();
+        crc.update(frame, FRAME_HEADER_SIZE, length);
+
+        ByteBuffer buffer = ByteBuffer.wrap(frame);
+        buffer.putInt(0, length);
+        buffer.putInt(4, (int) crc.getValue());
+        return frame;
+    }
+
+    public void appendFrame(byte[] frame) throws IOException {
+        appendFrames(frame, 1);
+    }
+
+    // Appends frameCount encoded frames laid out back to back, in a single write.
+    public void appendFrames(byte[] frames, int frameCount) throws IOException {
+        if (channel == null) {
+            throw new IOException("Journal is not open for appending: " + file.getName());
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(frames);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        this.frameCount += frameCount;
+    }
+
+    // Drops all frames and starts a fresh journal for the given snapshot generation.
+    public void reset(long snapshotGeneration) throws IOException {
+        channel.truncate(0);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putLong(snapshotGeneration).flip();
+        channel.position(0);
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        channel.force(true);
+        generation = snapshotGeneration;
+        frameCount = 0;
+    }
+
+    public void sync() throws IOException {
+        if (channel != null) {
+            channel.force(false);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            try {
+                channel.close();
+            } finally {
+                channel = null;
+            }
+        }
+    }
+
+    // Returns the header magic, or 0 if the header is missing or belongs to another generation.
+    private int readMagic(long size, long snapshotGeneration) throws IOException {
+        if (size < HEADER_SIZE) {
+            return 0;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(header, 0);
+        header.flip();
+        int magic = header.getInt();
+        return header.getLong() == snapshotGeneration ? magic : 0;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    private static void writeExpense(DataOutputStream out, Expense expense) throws IOException {
+        out.writeInt(expense.getEpochDay());
+        out.writeUTF(expense.getCategory());
+        out.writeUTF(expense.getDescription());
+        out.writeLong(expense.getAmountCents());
+    }
+
+    private static Expense readExpense(DataInputStream in, long id) throws IOException {
+        int epochDay = in.readInt();
+        String category = in.readUTF();
+        String description = in.readUTF();
+        long amountCents = in.readLong();
+        return new Expense(id, epochDay, category, description, amountCents);
+    }
+}
@@ -0,0 +1,152 @@
+package expensetracker;
+
+import java.io.*;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+// Drives a running ExpenseServer with concurrent clients and reports latency
+// percentiles and throughput. Each client registers its own user, so the
+// run measures the server with many active users.
+// Run with: java -jar expense-tracker.jar --load-test [--url http://localhost:8080]
+//           [--clients 16] [--seconds 10]
+class ExpenseLoadTest {
+    private static final String[] SORTS = {"date_newest", "date_oldest", "amount_highest", "category"};
+
+    public static void run(String[] args) throws IOException, InterruptedException {
+        String url = "http://localhost:8080";
+        int clients = 16;
+        int seconds = 10;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--url":
+                    url = args[i + 1];
+                    break;
+                case "--clients":
+                    clients = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--seconds":
+                    seconds = Integer.parseInt(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        String baseUrl = url + "/api";
+        String runId = Long.toString(System.currentTimeMillis(), 36);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        long[][] latencies = new long[clients][];
+        int[] counts = new int[clients];
+        int[] failures = new int[clients];
+
+        Thread[] threads = new Thread[clients];
+        for (int c = 0; c < clients; c++) {
+            int clientIndex = c;
+            String username = "loadtest-" + runId + "-" + c;
+            threads[c] = new Thread(() -> {
+                long[] samples = new long[1 << 16];
+                int count = 0;
+                int failed = 0;
+                try {
+                    post(client, baseUrl + "/register", null, "username=" + username + "&password=secret");
+                    String token = tokenOf(post(client, baseUrl + "/login", null, "username=" + username + "&password=secret").body());
+                    Random random = new Random(clientIndex);
+                    Deque<Long> ids = new ArrayDeque<>();
+
+                    while (System.nanoTime() < deadline) {
+                        long start = System.nanoTime();
+                        HttpResponse<String> response = nextRequest(client, baseUrl, token, random, ids);
+                        long elapsed = System.nanoTime() - start;
+                        if (response.statusCode() >= 400) {
+                            failed++;
+                        }
+                        if (count == samples.length) {
+                            samples = Arrays.copyOf(samples, count * 2);
+                        }
+                        samples[count++] = elapsed;
+                    }
+                } catch (IOException | InterruptedException e) {
+                    System.err.println("Load test client " + clientIndex + " stopped: " + e.getMessage());
+                }
+                latencies[clientIndex] = Arrays.copyOf(samples, count);
+                counts[clientIndex] = count;
+                failures[clientIndex] = failed;
+            }, "load-test-" + c);
+            threads[c].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        int total = Arrays.stream(counts).sum();
+        long[] all = new long[total];
+        int position = 0;
+        for (long[] samples : latencies) {
+            System.arraycopy(samples, 0, all, position, samples.length);
+            position += samples.length;
+        }
+        Arrays.sort(all);
+        System.out.printf("%d clients, %d s: %,d requests (%,d failed), %,.0f req/s, p50 %.2f ms, p99 %.2f ms%n",
+                clients, seconds, total, Arrays.stream(failures).sum(), total / (double) seconds,
+                percentile(all, 0.50) / 1e6, percentile(all, 0.99) / 1e6);
+    }
+
+    // A mix of reads and writes: mostly page reads, some adds, deletes and summaries.
+    private static HttpResponse<String> nextRequest(HttpClient client, String baseUrl, String token,
+                                                    Random random, Deque<Long> ids) throws IOException, InterruptedException {
+        int pick = random.nextInt(100);
+        if (pick < 25 || ids.isEmpty()) {
+            String form = String.format("date=%04d-%02d-%02d&category=%s&description=load+test&amount=%d.%02d",
+                    2020 + random.nextInt(5), 1 + random.nextInt(12), 1 + random.nextInt(28),
+                    Expense.CATEGORIES[random.nextInt(Expense.CATEGORIES.length)],
+                    random.nextInt(500), random.nextInt(100));
+            HttpResponse<String> response = post(client, baseUrl + "/expenses", token, form);
+            if (response.statusCode() == 201) {
+                ids.add(Long.parseLong(response.body().replaceAll("\\D", "")));
+            }
+            return response;
+        }
+        if (pick < 35) {
+            return send(client, HttpRequest.newBuilder(URI.create(baseUrl + "/expenses/" + ids.poll())).DELETE(), token);
+        }
+        if (pick < 45) {
+            return send(client, HttpRequest.newBuilder(URI.create(baseUrl + "/summary")).GET(), token);
+        }
+        String query = "?sort=" + SORTS[random.nextInt(SORTS.length)] + "&offset=0&limit=50"
+                + (random.nextBoolean() ? "" : "&category=" + Expense.CATEGORIES[random.nextInt(Expense.CATEGORIES.length)]);
+        return send(client, HttpRequest.newBuilder(URI.create(baseUrl + "/expenses" + query)).GET(), token);
+    }
+
+    private static HttpResponse<String> post(HttpClient client, String url, String token, String form)
+            throws IOException, InterruptedException {
+        return send(client, HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form)), token);
+    }
+
+    private static HttpResponse<String> send(HttpClient client, HttpRequest.Builder request, String token)
+            throws IOException, InterruptedException {
+        if (token != null) {
+            request.header("Authorization", "Bearer " + token);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static String tokenOf(String loginResponse) throws IOException {
+        int start = loginResponse.indexOf("\"token\":\"");
+        if (start < 0) {
+            throw new IOException("login failed: " + loginResponse);
+        }
+        start += "\"token\":\"".length();
+        return loginResponse.substring(start, loginResponse.indexOf('"', start));
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        return sorted.length == 0 ? 0 : sorted[(int) Math.min(sorted.length - 1, Math.floor(sorted.length * fraction))];
+    }
+}
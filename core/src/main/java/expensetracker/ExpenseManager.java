@@ -0,0 +1,1174 @@
+package expensetracker;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+// Persistence runs on the executor set with setPersistenceExecutor (the
+// calling thread by default). In-memory state is read and changed on the
+// caller's thread, and only pre-encoded frames and captured snapshots are
+// handed to the executor, so it must run tasks one at a time and in order.
+// loadUserExpenses does its I/O on the calling thread and must run on that
+// executor too.
+//
+// Journal frames are written behind: a change only queues its frame, and
+// the frames queued during a burst of changes are written and synced
+// together once the write-behind delay (-Dexpense.writebehind.ms, 500 ms by
+// default) has passed, or earlier when the journal is synced or closed. The
+// delay is timed by the scheduler given to setWriteBehindScheduler, which
+// hands due flushes to another executor, so many managers can share it.
+// Frames queued before a snapshot stay queued until that snapshot is in
+// place; if writing it fails they go to the old journal instead, which
+// still applies to the old snapshot, so nothing is lost.
+//
+// A load may stop at a window of recent months, leaving older months of the
+// snapshot in an ExpenseHistory. Totals, counts and month-aligned sums add
+// in the history's month totals; the ExpenseStore methods that need older
+// records read them first, on the calling thread. A snapshot copies the
+// months not loaded from the old file on the persistence executor instead,
+// without adding them to the store. Views and getStore()
+// cover the loaded expenses only, and callers that page through them load
+// older months with planHistory, Chunk.read and addHistory instead.
+class ExpenseManager implements ExpenseStore {
+    // Once the journal holds at least this many frames (or as many frames as
+    // there are expenses, whichever is larger) it is folded into the snapshot.
+    private static final int COMPACTION_MIN_FRAMES = 1024;
+
+    static final long DEFAULT_WRITE_BEHIND_MILLIS = Long.getLong("expense.writebehind.ms", 500);
+
+    private ColumnarExpenseStore store;
+    private Executor persistenceExecutor = Runnable::run;
+    // Times the write-behind flushes and runs them; see setWriteBehindScheduler
+    private ScheduledExecutorService writeBehindScheduler;
+    private Executor flushExecutor;
+
+    // Caller-side view of the persisted state
+    private String journalOwner;
+    private long generation;
+    private int framesSinceSnapshot;
+    private volatile boolean journalFailed;
+    private int syncedModCount;
+    private CompletableFuture<Boolean> lastSync = CompletableFuture.completedFuture(true);
+    private long writeBehindMillis = DEFAULT_WRITE_BEHIND_MILLIS;
+
+    // Frames queued for the journal, oldest first, in one batch per snapshot
+    // generation they were queued under; handed from the caller to the
+    // persistence side under pendingLock
+    private final Object pendingLock = new Object();
+    private final ArrayDeque<PendingFrames> pendingFrames = new ArrayDeque<>();
+    private boolean flushScheduled;
+
+    // Only touched by persistence tasks, which hold journalLock since a
+    // write-behind flush may run on the scheduler thread
+    private final Object journalLock = new Object();
+    private ExpenseJournal journal;
+    // Newest generation whose snapshot has been written or has failed, so
+    // frames queued under it or before can go to the journal
+    private long settledGeneration;
+    private int modCount;
+
+    // Expense id -> slot, and the next id to hand out
+    private final LongIntHashMap idIndex = new LongIntHashMap();
+    private long nextId = 1;
+
+    // Sorted secondary indices over the live slots, kept current on every add and delete
+    private final SortedSlotIndex dateIndex;
+    private final SortedSlotIndex amountIndex;
+    private final SortedSlotIndex categoryDateIndex;
+    private final SortedSlotIndex categoryAmountIndex;
+
+    // Per-day totals for date-range sums
+    private final DailyTotals dailyTotals = new DailyTotals();
+
+    // Per-month totals and the limits they are checked against
+    private final MonthlyTotals monthlyTotals = new MonthlyTotals();
+    private final ExpenseBudgets budgets = new ExpenseBudgets();
+
+    // Description tokens -> slots, for the search box; with searchBuildsIndex
+    // off, a search finds nothing until an index is installed
+    private DescriptionIndex descriptionIndex = new DescriptionIndex();
+    private boolean searchBuildsIndex = true;
+
+    // Months of the snapshot not loaded yet, or null once everything is
+    private ExpenseHistory history;
+
+    // Encoded frames queued under one snapshot generation
+    private static final class PendingFrames {
+        final long generation;
+        final ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        int count;
+
+        PendingFrames(long generation) {
+            this.generation = generation;
+        }
+    }
+
+    public ExpenseManager() {
+        store = new ColumnarExpenseStore();
+        dateIndex = new SortedSlotIndex((a, b) -> Integer.compare(store.getEpochDay(a), store.getEpochDay(b)));
+        amountIndex = new SortedSlotIndex((a, b) -> Long.compare(store.getAmountCents(a), store.getAmountCents(b)));
+        categoryDateIndex = new SortedSlotIndex((a, b) -> {
+            int c = compareCategories(a, b);
+            return c != 0 ? c : Integer.compare(store.getEpochDay(a), store.getEpochDay(b));
+        });
+        categoryAmountIndex = new SortedSlotIndex((a, b) -> {
+            int c = compareCategories(a, b);
+            return c != 0 ? c : Long.compare(store.getAmountCents(a), store.getAmountCents(b));
+        });
+    }
+
+    // Stores the expense under a newly assigned id and returns that id.
+    @Override
+    public long addExpense(String username, Expense expense) {
+        Expense stored = new Expense(nextId++, expense.getEpochDay(), expense.getCategory(),
+                expense.getDescription(), expense.getAmountCents());
+        insertSlot(store.add(stored));
+        modCount++;
+        appendToJournal(username, ExpenseJournal.OP_ADD, stored.getId(), stored);
+        return stored.getId();
+    }
+
+    // Deletes by id when the expense has one, otherwise the first expense with the same fields.
+    public void deleteExpense(String username, Expense expense) {
+        if (expense.getId() != 0) {
+            deleteExpense(username, expense.getId());
+            return;
+        }
+        int slot = store.findSlot(expense);
+        if (slot < 0 && history != null) {
+            loadHistory(Integer.MIN_VALUE);
+            slot = store.findSlot(expense);
+        }
+        if (slot >= 0) {
+            deleteExpense(username, store.getId(slot));
+        }
+    }
+
+    @Override
+    public boolean deleteExpense(String username, long id) {
+        int slot = slotInHistory(id);
+        if (slot < 0) {
+            return false;
+        }
+        removeSlot(slot);
+        modCount++;
+        appendToJournal(username, ExpenseJournal.OP_DELETE, id, null);
+        return true;
+    }
+
+    // Replaces the stored expense that has the same id.
+    @Override
+    public boolean updateExpense(String username, Expense expense) {
+        int slot = slotInHistory(expense.getId());
+        if (slot < 0) {
+            return false;
+        }
+        removeSlot(slot);
+        insertSlot(store.add(expense));
+        modCount++;
+        appendToJournal(username, ExpenseJournal.OP_UPDATE, expense.getId(), expense);
+        return true;
+    }
+
+    // Returns the expense with the given id, or null.
+    @Override
+    public Expense getExpense(long id) {
+        int slot = slotInHistory(id);
+        return slot < 0 ? null : store.getExpense(slot);
+    }
+
+    // Current slot of the expense with the given id, or -1. Slots change when the store compacts.
+    public int slotOf(long id) {
+        return idIndex.get(id);
+    }
+
+    @Override
+    public int getExpenseCount() {
+        return store.size() + (history == null ? 0 : history.getUnloadedCount());
+    }
+
+    public List<Expense> getAllExpenses() {
+        loadHistory(Integer.MIN_VALUE);
+        List<Expense> allExpenses = new ArrayList<>(store.size());
+        for (int slot = store.nextLiveSlot(0); slot >= 0; slot = store.nextLiveSlot(slot + 1)) {
+            allExpenses.add(store.getExpense(slot));
+        }
+        return allExpenses;
+    }
+
+    public List<Expense> getExpensesByCategory(String category) {
+        loadHistory(Integer.MIN_VALUE);
+        List<Expense> filteredExpenses = new ArrayList<>();
+        int categoryId = store.categoryId(category);
+        if (categoryId < 0) {
+            return filteredExpenses;
+        }
+        for (int slot = store.nextLiveSlot(0); slot >= 0; slot = store.nextLiveSlot(slot + 1)) {
+            if (store.getCategoryId(slot) == categoryId) {
+                filteredExpenses.add(store.getExpense(slot));
+            }
+        }
+        return filteredExpenses;
+    }
+
+    // Reads the running per-category totals; cost depends only on the number of categories.
+    public Map<String, Double> calculateCategorySummary() {
+        Map<String, Double> summary = new HashMap<>();
+        for (Map.Entry<String, Long> entry : calculateCategoryTotalsCents().entrySet()) {
+            summary.put(entry.getKey(), ColumnarExpenseStore.toAmount(entry.getValue()));
+        }
+        return summary;
+    }
+
+    @Override
+    public Map<String, Long> calculateCategoryTotalsCents() {
+        Map<String, Long> totals = new HashMap<>();
+        for (int categoryId = 0; categoryId < store.getCategoryCount(); categoryId++) {
+            if (categoryExpenseCount(categoryId) > 0) {
+                totals.put(store.getCategoryName(categoryId), categoryTotalCents(categoryId));
+            }
+        }
+        return totals;
+    }
+
+    @Override
+    public int getCategoryExpenseCount(String category) {
+        int categoryId = store.categoryId(category);
+        return categoryId < 0 ? 0 : categoryExpenseCount(categoryId);
+    }
+
+    // Total in cents of the category, or of everything when category is null.
+    @Override
+    public long getTotalCents(String category) {
+        if (category == null) {
+            return store.getTotalCents() + (history == null ? 0 : history.getUnloadedCents(-1));
+        }
+        int categoryId = store.categoryId(category);
+        return categoryId < 0 ? 0 : categoryTotalCents(categoryId);
+    }
+
+    private int categoryExpenseCount(int categoryId) {
+        return store.getCategoryExpenseCount(categoryId) + (history == null ? 0 : history.getUnloadedCount(categoryId));
+    }
+
+    private long categoryTotalCents(int categoryId) {
+        return store.getCategoryTotalCents(categoryId) + (history == null ? 0 : history.getUnloadedCents(categoryId));
+    }
+
+    // Expenses dated within the inclusive range, oldest first.
+    @Override
+    public List<Expense> getExpensesBetween(Date from, Date to) {
+        int fromDay = ColumnarExpenseStore.toEpochDay(from);
+        int toDay = ColumnarExpenseStore.toEpochDay(to);
+        loadHistory(fromDay);
+        int start = dateIndex.lowerBound(slot -> Integer.compare(store.getEpochDay(slot), fromDay));
+        int end = dateIndex.lowerBound(slot -> store.getEpochDay(slot) <= toDay ? -1 : 1);
+
+        List<Expense> expenses = new ArrayList<>(Math.max(0, end - start));
+        for (int position = start; position < end; position++) {
+            expenses.add(store.getExpense(dateIndex.get(position)));
+        }
+        return expenses;
+    }
+
+    // Total spent within the inclusive date range, for one category or all (null).
+    public double sumBetween(Date from, Date to, String category) {
+        return ColumnarExpenseStore.toAmount(sumCentsBetween(
+                ColumnarExpenseStore.toEpochDay(from), ColumnarExpenseStore.toEpochDay(to), category));
+    }
+
+    // Months not loaded yet count with their month totals, so a range that
+    // starts or ends inside one of them has to load it first.
+    @Override
+    public long sumCentsBetween(int fromDay, int toDay, String category) {
+        if (history != null && history.splitsUnloadedMonth(fromDay, toDay)) {
+            loadHistory(fromDay);
+        }
+        int categoryId = category == null ? -1 : store.categoryId(category);
+        if (category != null && categoryId < 0) {
+            return 0;
+        }
+        long sum = dailyTotals.sum(fromDay, toDay, categoryId);
+        return history == null ? sum : sum + history.sumCents(fromDay, toDay, categoryId);
+    }
+
+    // Spending in the month (see ExpenseCodec.monthIndex) for the category, or
+    // for all of them when category is null. Loaded months are a single read.
+    @Override
+    public long getMonthTotalCents(int month, String category) {
+        int categoryId = category == null ? -1 : store.categoryId(category);
+        if (category != null && categoryId < 0) {
+            return 0;
+        }
+        long total = monthlyTotals.get(month, categoryId);
+        int firstDay = ExpenseCodec.firstDayOfMonth(month);
+        if (history != null && firstDay < history.getLoadedFromDay()) {
+            total += history.sumCents(firstDay, ExpenseCodec.firstDayOfMonth(month + 1) - 1, categoryId);
+        }
+        return total;
+    }
+
+    // Monthly limit of the category in cents, or -1 when it has no budget.
+    @Override
+    public long getBudgetCents(String category) {
+        return budgets.getLimitCents(category);
+    }
+
+    // Every budget by category, in category order.
+    public Map<String, Long> getBudgets() {
+        return budgets.getLimits();
+    }
+
+    // Sets the category's monthly limit, or removes it for a negative limit,
+    // and writes the budgets file on the persistence executor.
+    @Override
+    public void setBudget(String username, String category, long cents) {
+        budgets.setLimitCents(category, cents);
+        Map<String, Long> limits = budgets.getLimits();
+        persistenceExecutor.execute(() -> writeBudgets(username, limits));
+    }
+
+    // True if the category spent more than its budget in the month.
+    @Override
+    public boolean isOverBudget(String category, int month) {
+        long limit = budgets.getLimitCents(category);
+        return limit >= 0 && getMonthTotalCents(month, category) > limit;
+    }
+
+    // True if the expense just added took its category over budget for its
+    // month, i.e. the month is over now but was not without the expense.
+    @Override
+    public boolean crossedBudget(Expense expense) {
+        long limit = budgets.getLimitCents(expense.getCategory());
+        if (limit < 0) {
+            return false;
+        }
+        long total = getMonthTotalCents(ExpenseCodec.monthIndex(expense.getEpochDay()), expense.getCategory());
+        return total > limit && total - expense.getAmountCents() <= limit;
+    }
+
+    // Daily totals of the loaded expenses from fromDay on; see DailyTotals.copyDays.
+    public void copyDayTotals(int fromDay, int categoryId, long[] totals) {
+        dailyTotals.copyDays(fromDay, categoryId, totals);
+    }
+
+    // Epoch day of the oldest expense, or NO_DAY when there are none.
+    @Override
+    public int getFirstEpochDay() {
+        int first = dateIndex.size() == 0 ? NO_DAY : store.getEpochDay(dateIndex.get(0));
+        if (history != null && !history.isComplete()) {
+            int older = history.getFirstEpochDay();
+            first = first == NO_DAY ? older : Math.min(first, older);
+        }
+        return first;
+    }
+
+    // Epoch day of the newest expense, or NO_DAY when there are none.
+    @Override
+    public int getLastEpochDay() {
+        if (dateIndex.size() > 0) {
+            return store.getEpochDay(dateIndex.get(dateIndex.size() - 1));
+        }
+        return history == null || history.isComplete() ? NO_DAY : history.getLastEpochDay();
+    }
+
+    // Adds every staged row under a new id, then rebuilds the indices and writes
+    // one snapshot instead of journaling row by row. Returns the number added.
+    @Override
+    public int importExpenses(String username, ColumnarExpenseStore staged) {
+        loadHistory(Integer.MIN_VALUE);
+        int count = 0;
+        for (int slot = staged.nextLiveSlot(0); slot >= 0; slot = staged.nextLiveSlot(slot + 1)) {
+            long id = nextId++;
+            idIndex.put(id, store.addCopy(id, staged, slot));
+            count++;
+        }
+        if (count > 0) {
+            rebuildIndexes();
+            saveUserExpenses(username);
+        }
+        return count;
+    }
+
+    // Returns the live slots matching the category (null for all), in the requested order.
+    public int[] queryExpenseSlots(String category, ExpenseSortOrder order) {
+        loadHistory(Integer.MIN_VALUE);
+        ExpenseView view = getView(category, order);
+        int[] slots = new int[view.size()];
+        for (int row = 0; row < slots.length; row++) {
+            slots[row] = view.slotAt(row);
+        }
+        return slots;
+    }
+
+    @Override
+    public List<Expense> listExpenses(String category, boolean newestFirst, int offset, int limit) {
+        ExpenseView view = getView(category, newestFirst ? ExpenseSortOrder.DATE_NEWEST : ExpenseSortOrder.DATE_OLDEST);
+        long last = (long) offset + limit - 1;
+        if (history != null && (!newestFirst || last >= view.size()
+                || store.getEpochDay(view.slotAt((int) last)) < history.getLoadedFromDay())) {
+            loadHistory(Integer.MIN_VALUE);
+        }
+        int end = (int) Math.min(view.size(), (long) offset + limit);
+        List<Expense> expenses = new ArrayList<>(Math.max(0, end - offset));
+        for (int row = offset; row < end; row++) {
+            expenses.add(store.getExpense(view.slotAt(row)));
+        }
+        return expenses;
+    }
+
+    // A live view over one of the sorted indices; picking it costs no sorting.
+    public ExpenseView getView(String category, ExpenseSortOrder order) {
+        return getView(category, order, null);
+    }
+
+    // Like getView(category, order), keeping only expenses whose description has a
+    // word starting with each word of the query. A null or blank query keeps all.
+    public ExpenseView getView(String category, ExpenseSortOrder order, String query) {
+        return getView(category, order, query, Integer.MIN_VALUE);
+    }
+
+    // Like getView(category, order, query), keeping only expenses dated fromDay or later.
+    public ExpenseView getView(String category, ExpenseSortOrder order, String query, int fromDay) {
+        int categoryId = category == null ? -1 : store.categoryId(category);
+        if (category != null && categoryId < 0) {
+            return ExpenseView.empty(this);
+        }
+        if (query != null && query.trim().isEmpty()) {
+            query = null;
+        }
+
+        switch (order) {
+            case DATE_NEWEST:
+                return new ExpenseView(this, categoryId < 0 ? dateIndex : categoryDateIndex, category, query,
+                        fromDay, true, true);
+            case DATE_OLDEST:
+                return new ExpenseView(this, categoryId < 0 ? dateIndex : categoryDateIndex, category, query,
+                        fromDay, true, false);
+            case AMOUNT_HIGHEST:
+                return new ExpenseView(this, categoryId < 0 ? amountIndex : categoryAmountIndex, category, query,
+                        fromDay, false, true);
+            case CATEGORY:
+            default:
+                return new ExpenseView(this, categoryDateIndex, category, query, fromDay, categoryId >= 0, false);
+        }
+    }
+
+    // Slots (possibly including deleted ones) whose description matches every word
+    // of the query as a prefix, or null if the query has no words.
+    public BitSet searchDescriptions(String query) {
+        if (!searchBuildsIndex && !descriptionIndex.isBuilt()) {
+            return DescriptionIndex.tokenize(query).isEmpty() ? null : new BitSet();
+        }
+        return descriptionIndex.search(store, query);
+    }
+
+    // Whether a search may build the description index on the calling thread.
+    // The GUI turns this off and builds the index in the background from a
+    // copy of the store instead, see installDescriptionIndex.
+    public void setSearchBuildsIndex(boolean searchBuildsIndex) {
+        this.searchBuildsIndex = searchBuildsIndex;
+    }
+
+    public boolean isDescriptionIndexBuilt() {
+        return descriptionIndex.isBuilt();
+    }
+
+    // Puts an index built with DescriptionIndex.build from getStore().copy()
+    // in place, unless one is built already. The caller drops the index
+    // instead when getModCount() has moved on since the copy was taken.
+    public void installDescriptionIndex(DescriptionIndex index) {
+        if (!descriptionIndex.isBuilt()) {
+            descriptionIndex = index;
+        }
+    }
+
+    public ColumnarExpenseStore getStore() {
+        return store;
+    }
+
+    public boolean isHistoryLoaded() {
+        return history == null;
+    }
+
+    // Every expense dated on or after this day is loaded; Integer.MIN_VALUE once all are.
+    public int getLoadedFromDay() {
+        return history == null ? Integer.MIN_VALUE : history.getLoadedFromDay();
+    }
+
+    // The older months to read so that everything dated fromDay or later is
+    // loaded (all of it for Integer.MIN_VALUE), along with at least minRows
+    // more expenses. Returns null if there is nothing left to read.
+    public ExpenseHistory.Chunk planHistory(int fromDay, int minRows) {
+        if (history == null || fromDay >= history.getLoadedFromDay() && minRows <= 0) {
+            return null;
+        }
+        return history.chunk(history.loadStart(fromDay, minRows));
+    }
+
+    // Adds the expenses of a chunk that has been read. Returns false, adding
+    // nothing, if the history has been loaded some other way since it was planned.
+    public boolean addHistory(ExpenseHistory.Chunk chunk) {
+        if (history == null || chunk.history != history || chunk.version != history.getVersion()) {
+            return false;
+        }
+        ColumnarExpenseStore rows = chunk.rows;
+        for (int slot = rows.nextLiveSlot(0); slot >= 0; slot = rows.nextLiveSlot(slot + 1)) {
+            long id = rows.getId(slot);
+            idIndex.put(id, store.addCopy(id, rows, slot));
+        }
+        history.markLoaded(chunk.fromMonth, chunk.toMonth);
+        if (history.isComplete()) {
+            history = null;
+        }
+        rebuildIndexes();
+        return true;
+    }
+
+    // Reads the history back to fromDay (all of it for Integer.MIN_VALUE) on
+    // the calling thread. Returns false if it could not be read.
+    public boolean loadHistory(int fromDay) {
+        ExpenseHistory.Chunk chunk = planHistory(fromDay, 0);
+        return chunk == null || readHistory(chunk);
+    }
+
+    private boolean readHistory(ExpenseHistory.Chunk chunk) {
+        try {
+            chunk.read();
+        } catch (IOException | RuntimeException e) {
+            ExpenseMetrics.error("Error loading older expenses: " + e.getMessage());
+            return false;
+        }
+        return addHistory(chunk);
+    }
+
+    // Approximate heap held by the store and its indices.
+    @Override
+    public long estimateMemoryBytes() {
+        return store.memoryBytes() + idIndex.memoryBytes() + dailyTotals.memoryBytes() + monthlyTotals.memoryBytes()
+                + descriptionIndex.memoryBytes() + dateIndex.memoryBytes() + amountIndex.memoryBytes()
+                + categoryDateIndex.memoryBytes() + categoryAmountIndex.memoryBytes()
+                + (history == null ? 0 : history.memoryBytes());
+    }
+
+    // Changes on every mutation, so views can tell when cached positions are stale.
+    public int getModCount() {
+        return modCount;
+    }
+
+    @Override
+    public void clearExpenses() {
+        store.clear();
+        idIndex.clear();
+        history = null;
+        clearIndexes();
+        budgets.clear();
+        journalOwner = null;
+        persistenceExecutor.execute(this::closeJournal);
+    }
+
+    public void setPersistenceExecutor(Executor persistenceExecutor) {
+        this.persistenceExecutor = persistenceExecutor;
+    }
+
+    // The scheduler times the write-behind flushes and hands each to
+    // flushExecutor, so a slow flush holds up neither the scheduler nor
+    // other managers sharing it. flushExecutor must be the persistence
+    // executor unless that runs tasks inline; flushes take the journal lock,
+    // so with inline persistence any thread may run them. Without a
+    // scheduler each change is written at once.
+    public void setWriteBehindScheduler(ScheduledExecutorService scheduler, Executor flushExecutor) {
+        this.writeBehindScheduler = scheduler;
+        this.flushExecutor = flushExecutor;
+    }
+
+    // How long journal frames may wait to be written together; 0 writes each change at once.
+    public void setWriteBehindDelay(long millis) {
+        this.writeBehindMillis = millis;
+    }
+
+    @Override
+    public void loadUserExpenses(String username) {
+        loadUserExpenses(username, percent -> { });
+    }
+
+    public void loadUserExpenses(String username, IntConsumer progress) {
+        loadUserExpenses(username, 0, progress);
+    }
+
+    // Loads the snapshot and replays the journal, reporting progress from 0 to 100.
+    // With windowMonths above 0 only that many calendar months, counted back
+    // from the newest expense, are read; older ones stay in the history. A
+    // serialized snapshot from before the binary format is migrated on first load.
+    public void loadUserExpenses(String username, int windowMonths, IntConsumer progress) {
+        long start = System.nanoTime();
+        File file = new File(snapshotFileName(username));
+        File legacyFile = new File(legacySnapshotFileName(username));
+        store.clear();
+        idIndex.clear();
+        nextId = 1;
+        history = null;
+        clearIndexes();
+        generation = 0;
+        framesSinceSnapshot = 0;
+        journalFailed = false;
+        loadBudgets(username, budgets);
+        boolean idsAssigned = false;
+        boolean migrating = false;
+        progress.accept(0);
+
+        if (file.exists()) {
+            try {
+                ExpenseFileFormat.Header header;
+                ExpenseHistory opened = windowMonths > 0 ? ExpenseFileFormat.openHistory(file, store) : null;
+                if (opened != null) {
+                    header = opened.getHeader();
+                    int firstMonth = opened.windowStart(windowMonths);
+                    opened.readMonths(firstMonth, opened.getUnloadedMonths(), store, progress);
+                    opened.markLoaded(firstMonth, opened.getUnloadedMonths());
+                    history = opened.isComplete() ? null : opened;
+                } else {
+                    header = ExpenseFileFormat.read(file, store, progress);
+                }
+                generation = header.generation;
+                nextId = Math.max(1, header.nextId);
+                for (int slot = store.nextLiveSlot(0); slot >= 0; slot = store.nextLiveSlot(slot + 1)) {
+                    idIndex.put(store.getId(slot), slot);
+                    nextId = Math.max(nextId, store.getId(slot) + 1);
+                }
+            } catch (IOException | RuntimeException e) {
+                ExpenseMetrics.error("Error loading expense data: " + e.getMessage());
+                store.clear();
+                idIndex.clear();
+                history = null;
+            }
+        } else if (legacyFile.exists()) {
+            idsAssigned = loadLegacySnapshot(legacyFile, progress);
+            migrating = true;
+        }
+
+        journalOwner = username;
+        boolean[] assignedDuringReplay = new boolean[1];
+        boolean[] changesHistory = new boolean[1];
+        ExpenseJournal opened = openJournal(username, (op, id, expense) -> {
+            if (op == ExpenseJournal.OP_DELETE) {
+                int slot = idIndex.get(id);
+                if (slot >= 0) {
+                    idIndex.remove(store.getId(slot));
+                    store.remove(slot);
+                }
+                changesHistory[0] |= slot < 0 && history != null;
+            } else {
+                int slot = idIndex.get(id);
+                if (op == ExpenseJournal.OP_UPDATE && slot >= 0) {
+                    idIndex.remove(id);
+                    store.remove(slot);
+                }
+                changesHistory[0] |= op == ExpenseJournal.OP_UPDATE && slot < 0 && history != null;
+                assignedDuringReplay[0] |= loadExpense(expense);
+            }
+        });
+        if (changesHistory[0]) {
+            // The journal changes expenses older than the window: load them all,
+            // and fold the journal in so the next load can stop at the window again
+            loadUserExpenses(username, 0, progress);
+            saveUserExpenses(username);
+            return;
+        }
+        int[] remap = store.compactIfNeeded();
+        if (remap != null) {
+            idIndex.remapValues(remap);
+        }
+        rebuildIndexes();
+        syncedModCount = modCount;
+        ExpenseMetrics.expensesLoaded(start, getExpenseCount(), file, opened.getFile());
+        progress.accept(100);
+
+        // Ids handed out during load mean the binary snapshot must be rewritten
+        if (idsAssigned || assignedDuringReplay[0] || migrating) {
+            saveUserExpenses(username);
+        }
+        if (migrating) {
+            persistenceExecutor.execute(() -> retireLegacySnapshot(file, legacyFile));
+        }
+    }
+
+    // Closes the previous journal, flushing what was queued for it, then opens
+    // the user's journal and replays it, all under journalLock so a
+    // write-behind flush never sees a journal that is half open. Frames still
+    // queued afterwards belonged to the previous journal's generation.
+    private ExpenseJournal openJournal(String username, ExpenseJournal.Replayer replayer) {
+        synchronized (journalLock) {
+            closeJournal();
+            synchronized (pendingLock) {
+                pendingFrames.clear();
+            }
+            settledGeneration = generation;
+            journal = new ExpenseJournal(new File(journalFileName(username)));
+            try {
+                journal.open(generation, replayer);
+                framesSinceSnapshot = journal.getFrameCount();
+            } catch (IOException e) {
+                ExpenseMetrics.error("Error replaying expense journal: " + e.getMessage());
+                journalFailed = true;
+            }
+            return journal;
+        }
+    }
+
+    // Reads a snapshot written with Java serialization. Returns true if ids were assigned.
+    @SuppressWarnings("unchecked")
+    private boolean loadLegacySnapshot(File legacyFile, IntConsumer progress) {
+        boolean idsAssigned = false;
+        try (ObjectInputStream ois = new LegacyObjectInputStream(new BufferedInputStream(
+                new ProgressInputStream(new FileInputStream(legacyFile), legacyFile.length(), progress)))) {
+            for (Expense expense : (List<Expense>) ois.readObject()) {
+                idsAssigned |= loadExpense(expense);
+            }
+            generation = readGeneration(ois);
+        } catch (IOException | ClassNotFoundException e) {
+            ExpenseMetrics.error("Error loading expense data: " + e.getMessage());
+            store.clear();
+            idIndex.clear();
+        }
+        return idsAssigned;
+    }
+
+    // Keeps the old serialized file as a backup once the binary snapshot exists.
+    private void retireLegacySnapshot(File file, File legacyFile) {
+        if (!file.exists()) {
+            return;
+        }
+        try {
+            Files.move(legacyFile.toPath(), new File(legacyFile.getPath() + ".bak").toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            ExpenseMetrics.error("Error retiring old expense file: " + e.getMessage());
+        }
+    }
+
+    // Rewrites the full snapshot and starts a new, empty journal generation.
+    // The loaded expenses are captured now. The persistence executor reads
+    // the months not loaded yet from the old file, which stays mapped, and
+    // writes them into the new one along with the captured expenses. Frames
+    // queued so far stay queued until then: the snapshot holds their
+    // changes once it is in place, and if it cannot be written they go to
+    // the old journal.
+    @Override
+    public void saveUserExpenses(String username) {
+        ExpenseSnapshot snapshot = store.snapshot(dateIndex);
+        ExpenseHistory.Chunk older = history == null ? null : history.chunk(0);
+        long snapshotNextId = nextId;
+        long nextGeneration = ++generation;
+        // Without a working journal for the user the snapshot is the only copy of the changes
+        boolean replacesJournal = journalFailed || !username.equals(journalOwner);
+        framesSinceSnapshot = 0;
+        journalOwner = username;
+        journalFailed = false;
+        syncedModCount = modCount;
+        CompletableFuture<Boolean> saved = new CompletableFuture<>();
+        lastSync = saved;
+        persistenceExecutor.execute(() ->
+                saved.complete(writeSnapshot(username, snapshot, older, nextGeneration, snapshotNextId,
+                        replacesJournal)));
+    }
+
+    // Makes sure every journaled mutation reaches the disk. The future
+    // completes on the persistence executor: true once the changes are
+    // written, false if a write failed. Without a change since the last
+    // load, save or sync it is the future of that save or sync. Once a
+    // journal write has failed, the changes it lost are only in memory, so
+    // syncing again writes a full snapshot instead.
+    @Override
+    public CompletableFuture<Boolean> syncUserExpenses(String username) {
+        if (!username.equals(journalOwner)) {
+            return CompletableFuture.completedFuture(true);
+        }
+        if (journalFailed) {
+            saveUserExpenses(username);
+            return lastSync;
+        }
+        if (modCount == syncedModCount) {
+            return lastSync;
+        }
+        syncedModCount = modCount;
+        CompletableFuture<Boolean> flushed = new CompletableFuture<>();
+        lastSync = flushed;
+        persistenceExecutor.execute(() -> flushed.complete(flushPendingFrames()));
+        return flushed;
+    }
+
+    // True after a journal write failed, until the next snapshot is written.
+    public boolean isJournalFailed() {
+        return journalFailed;
+    }
+
+    // Writes the snapshot, after the months of older if there are any, to a
+    // temporary file, syncs it and renames it over the old one, so a crash
+    // leaves either the old or the new file whole. Then the frames queued
+    // before the snapshot was taken are dropped, or written to the old
+    // journal if it could not be written, and those queued since go to the
+    // new journal. A snapshot that fails is tried again at the next
+    // compaction, or at the next change or sync if the journal failed too
+    // or there was none. Returns whether every change so far is on disk.
+    private boolean writeSnapshot(String username, ExpenseSnapshot snapshot, ExpenseHistory.Chunk older,
+                                  long snapshotGeneration, long snapshotNextId, boolean replacesJournal) {
+        synchronized (journalLock) {
+            boolean written = false;
+            try {
+                if (older != null) {
+                    older.read();
+                    snapshot = snapshot.withOlder(older.rows);
+                }
+                writeSnapshotFile(username, snapshot, snapshotGeneration, snapshotNextId);
+                written = true;
+            } catch (IOException | RuntimeException e) {
+                ExpenseMetrics.error("Error saving expense data: " + e.getMessage());
+            }
+            if (!written && replacesJournal) {
+                journalFailed = true;
+            }
+            settledGeneration = snapshotGeneration;
+            return flushPendingFrames();
+        }
+    }
+
+    private void writeSnapshotFile(String username, ExpenseSnapshot snapshot, long snapshotGeneration,
+                                   long snapshotNextId) throws IOException {
+        File file = new File(snapshotFileName(username));
+        File tempFile = new File(file.getPath() + ".tmp");
+        long start = System.nanoTime();
+        ExpenseFileFormat.write(tempFile, snapshot, snapshotGeneration, snapshotNextId);
+        replaceFile(tempFile, file);
+        syncDirectory(file);
+        ExpenseMetrics.snapshotSaved(start, file);
+
+        try {
+            File journalFile = new File(journalFileName(username));
+            if (journal == null || !journal.isOpen() || !journal.getFile().equals(journalFile)) {
+                closeJournal();
+                journal = new ExpenseJournal(journalFile);
+                journal.open(snapshotGeneration, (op, id, expense) -> { });
+            }
+            journal.reset(snapshotGeneration);
+        } catch (IOException e) {
+            ExpenseMetrics.error("Error starting expense journal: " + e.getMessage());
+            journalFailed = true;
+        }
+    }
+
+    private void appendToJournal(String username, byte op, long id, Expense expense) {
+        if (!username.equals(journalOwner)) {
+            // No journal for this user: a full snapshot captures the change.
+            saveUserExpenses(username);
+            return;
+        }
+
+        byte[] frame;
+        try {
+            frame = ExpenseJournal.encodeFrame(op, id, expense);
+        } catch (IOException e) {
+            ExpenseMetrics.error("Error writing expense journal: " + e.getMessage());
+            saveUserExpenses(username);
+            return;
+        }
+
+        // Queued even when a snapshot follows, which drops the frame only once it is written
+        boolean schedule;
+        synchronized (pendingLock) {
+            PendingFrames batch = pendingFrames.peekLast();
+            if (batch == null || batch.generation != generation) {
+                batch = new PendingFrames(generation);
+                pendingFrames.addLast(batch);
+            }
+            batch.frames.write(frame, 0, frame.length);
+            batch.count++;
+            schedule = !flushScheduled;
+            flushScheduled = true;
+        }
+        if (journalFailed || ++framesSinceSnapshot >= Math.max(COMPACTION_MIN_FRAMES, getExpenseCount())) {
+            // Writing the snapshot flushes what is queued afterwards
+            saveUserExpenses(username);
+            return;
+        }
+        if (!schedule) {
+            return;
+        }
+        if (writeBehindMillis <= 0 || writeBehindScheduler == null) {
+            persistenceExecutor.execute(this::flushPendingFrames);
+            return;
+        }
+        try {
+            writeBehindScheduler.schedule(() -> {
+                try {
+                    flushExecutor.execute(this::flushPendingFrames);
+                } catch (RejectedExecutionException e) {
+                    // The executor has shut down, after syncing what was queued
+                }
+            }, writeBehindMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // The scheduler has shut down; write the frames now instead
+            persistenceExecutor.execute(this::flushPendingFrames);
+        }
+    }
+
+    // Writes the queued frames in one go and syncs the journal. Frames queued
+    // before the journal's snapshot was taken are in that snapshot and are
+    // dropped; frames queued for a snapshot that has not been written yet
+    // stay queued, and writing that snapshot flushes them afterwards.
+    // Returns false if a journal write has failed since the last snapshot.
+    private boolean flushPendingFrames() {
+        synchronized (journalLock) {
+            ByteArrayOutputStream frames = new ByteArrayOutputStream();
+            int frameCount = 0;
+            synchronized (pendingLock) {
+                flushScheduled = false;
+                if (journal == null) {
+                    return pendingFrames.isEmpty() && !journalFailed;
+                }
+                while (!pendingFrames.isEmpty() && pendingFrames.peekFirst().generation <= settledGeneration) {
+                    PendingFrames batch = pendingFrames.pollFirst();
+                    if (batch.generation >= journal.getGeneration()) {
+                        frames.writeBytes(batch.frames.toByteArray());
+                        frameCount += batch.count;
+                    }
+                }
+                if (frameCount == 0) {
+                    return !journalFailed;
+                }
+            }
+            try {
+                journal.appendFrames(frames.toByteArray(), frameCount);
+                journal.sync();
+                ExpenseMetrics.journalFlushed(frameCount, frames.size());
+            } catch (IOException | RuntimeException e) {
+                ExpenseMetrics.error("Error writing expense journal: " + e.getMessage());
+                journalFailed = true;
+            }
+            return !journalFailed;
+        }
+    }
+
+    // The slot of the expense, reading the month it is in first if it is not loaded.
+    private int slotInHistory(long id) {
+        int slot = idIndex.get(id);
+        if (slot < 0 && history != null) {
+            ExpenseHistory.Chunk chunk = history.chunkOf(id);
+            if (chunk != null && readHistory(chunk)) {
+                slot = idIndex.get(id);
+            }
+        }
+        return slot;
+    }
+
+    private void closeJournal() {
+        synchronized (journalLock) {
+            flushPendingFrames();
+            if (journal != null) {
+                try {
+                    journal.close();
+                } catch (IOException e) {
+                    ExpenseMetrics.error("Error closing expense journal: " + e.getMessage());
+                }
+            }
+            journal = null;
+        }
+    }
+
+    private int compareCategories(int a, int b) {
+        int categoryA = store.getCategoryId(a);
+        int categoryB = store.getCategoryId(b);
+        if (categoryA == categoryB) {
+            return 0;
+        }
+        return store.getCategoryName(categoryA).compareTo(store.getCategoryName(categoryB));
+    }
+
+    // Adds a loaded expense, giving it a fresh id if it has none or a duplicate one.
+    // Returns true if an id was assigned.
+    private boolean loadExpense(Expense expense) {
+        boolean assigned = false;
+        if (expense.getId() <= 0 || idIndex.get(expense.getId()) >= 0) {
+            expense = new Expense(nextId, expense.getEpochDay(), expense.getCategory(),
+                    expense.getDescription(), expense.getAmountCents());
+            assigned = true;
+        }
+        idIndex.put(expense.getId(), store.add(expense));
+        nextId = Math.max(nextId, expense.getId() + 1);
+        return assigned;
+    }
+
+    private void insertSlot(int slot) {
+        idIndex.put(store.getId(slot), slot);
+        dailyTotals.add(store.getEpochDay(slot), store.getCategoryId(slot), store.getAmountCents(slot));
+        monthlyTotals.add(store.getEpochDay(slot), store.getCategoryId(slot), store.getAmountCents(slot));
+        descriptionIndex.add(store, slot);
+        dateIndex.insert(slot);
+        amountIndex.insert(slot);
+        categoryDateIndex.insert(slot);
+        categoryAmountIndex.insert(slot);
+    }
+
+    private void removeSlot(int slot) {
+        idIndex.remove(store.getId(slot));
+        dailyTotals.add(store.getEpochDay(slot), store.getCategoryId(slot), -store.getAmountCents(slot));
+        monthlyTotals.add(store.getEpochDay(slot), store.getCategoryId(slot), -store.getAmountCents(slot));
+        dateIndex.remove(slot);
+        amountIndex.remove(slot);
+        categoryDateIndex.remove(slot);
+        categoryAmountIndex.remove(slot);
+        store.remove(slot);
+        remapIndexes(store.compactIfNeeded());
+    }
+
+    // Bulk-builds the indices with primitive sorts; the category indices are the
+    // date and amount orders partitioned by category name, which keeps their ties intact.
+    private void rebuildIndexes() {
+        int count = store.size();
+        int[] byDate = new int[count];
+        int i = 0;
+        for (int slot = store.nextLiveSlot(0); slot >= 0; slot = store.nextLiveSlot(slot + 1)) {
+            byDate[i++] = slot;
+        }
+        int[] byAmount = byDate.clone();
+        SlotSort.sortByIntKey(byDate, count, store::getEpochDay);
+        SlotSort.sortByLongKey(byAmount, count, store::getAmountCents);
+
+        int[] rank = store.getCategoryRanks();
+        SlotSort.IntKey categoryRank = slot -> rank[store.getCategoryId(slot)];
+        categoryDateIndex.setSorted(SlotSort.partition(byDate, count, rank.length, categoryRank), count);
+        categoryAmountIndex.setSorted(SlotSort.partition(byAmount, count, rank.length, categoryRank), count);
+        dateIndex.setSorted(byDate, count);
+        amountIndex.setSorted(byAmount, count);
+        if (count > 0) {
+            int minDay = store.getEpochDay(byDate[0]);
+            int maxDay = store.getEpochDay(byDate[count - 1]);
+            dailyTotals.rebuild(store, minDay, maxDay);
+            monthlyTotals.rebuild(store, minDay, maxDay);
+        } else {
+            dailyTotals.clear();
+            monthlyTotals.clear();
+        }
+        descriptionIndex.clear();
+        modCount++;
+    }
+
+    private void remapIndexes(int[] remap) {
+        if (remap == null) {
+            return;
+        }
+        idIndex.remapValues(remap);
+        descriptionIndex.remap(remap);
+        dateIndex.remap(remap);
+        amountIndex.remap(remap);
+        categoryDateIndex.remap(remap);
+        categoryAmountIndex.remap(remap);
+    }
+
+    private void clearIndexes() {
+        dailyTotals.clear();
+        monthlyTotals.clear();
+        descriptionIndex.clear();
+        dateIndex.clear();
+        amountIndex.clear();
+        categoryDateIndex.clear();
+        categoryAmountIndex.clear();
+        modCount++;
+    }
+
+    // Snapshots written before journaling existed carry no generation.
+    private static long readGeneration(ObjectInputStream ois) {
+        try {
+            return ois.readLong();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    // A file that was memory-mapped by an earlier load can stay locked on
+    // some platforms until its mapping is garbage collected.
+    private static void replaceFile(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.gc();
+            Files.move(source.toPath(), target.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    // Makes a rename in the file's directory durable. Not every platform can
+    // open a directory, in which case the rename is left to the OS.
+    private static void syncDirectory(File file) {
+        File directory = file.getAbsoluteFile().getParentFile();
+        try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Directories cannot be synced here
+        }
+    }
+
+    private static String snapshotFileName(String username) {
+        return username + "_expenses.bin";
+    }
+
+    private static String legacySnapshotFileName(String username) {
+        return username + "_expenses.dat";
+    }
+
+    private static String journalFileName(String username) {
+        return username + "_expenses.journal";
+    }
+
+    private static String budgetFileName(String username) {
+        return username + "_expenses.budgets";
+    }
+
+    // The files the user's expenses are kept in, whether they exist or not.
+    // The budgets file is not one of them; PagedExpenseStore reads it too.
+    static File[] expenseFiles(String username) {
+        return new File[] {
+                new File(snapshotFileName(username)),
+                new File(legacySnapshotFileName(username)),
+                new File(journalFileName(username))
+        };
+    }
+
+    // Also used by PagedExpenseStore, whose accounts keep their budgets in the same file.
+    static void loadBudgets(String username, ExpenseBudgets budgets) {
+        budgets.clear();
+        File file = new File(budgetFileName(username));
+        if (!file.exists()) {
+            return;
+        }
+        try {
+            budgets.read(file);
+        } catch (IOException e) {
+            ExpenseMetrics.error("Error loading budgets: " + e.getMessage());
+            budgets.clear();
+        }
+    }
+
+    // Written to a temporary file and renamed into place, like snapshots.
+    static void writeBudgets(String username, Map<String, Long> limits) {
+        File file = new File(budgetFileName(username));
+        File tempFile = new File(file.getPath() + ".tmp");
+        try {
+            ExpenseBudgets.write(tempFile, limits);
+            replaceFile(tempFile, file);
+            syncDirectory(file);
+        } catch (IOException e) {
+            ExpenseMetrics.error("Error saving budgets: " + e.getMessage());
+        }
+    }
+}
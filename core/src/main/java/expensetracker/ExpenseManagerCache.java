@@ -0,0 +1,257 @@
+package expensetracker;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntConsumer;
+
+// Keeps the expenses of recently active users loaded, so switching back to
+// a user costs no file I/O. Entries are evicted least recently used first
+// once their estimated heap use exceeds the budget; an evicted user's
+// journal is synced before the entry is dropped. The budget defaults to a
+// quarter of the maximum heap and can be set with -Dexpense.cache.bytes=N.
+// Accounts kept in pages are cached the same way, their page cache counted
+// against the budget, and are checkpointed and closed on eviction.
+//
+// Each user's manager is guarded by its entry's lock: acquire() returns the
+// entry locked and loaded, and release() must follow once the caller is done.
+class ExpenseManagerCache {
+    static class Entry {
+        final String username;
+        // Exactly one is set: the expenses loaded into the heap, or the pages
+        // of an account too large to load
+        final ExpenseManager expenseManager;
+        final PagedExpenseStore pagedStore;
+        final ReentrantLock lock = new ReentrantLock();
+
+        // Counted down once an evicted entry has been flushed and closed
+        private final CountDownLatch closed = new CountDownLatch(1);
+        // The evicted entry of the same user that must close before this one loads
+        private Entry predecessor;
+        private boolean loaded;
+        private boolean evicted;
+        private int flushedModCount;
+        private long bytes;
+
+        Entry(String username, boolean paged) {
+            this.username = username;
+            expenseManager = paged ? null : new ExpenseManager();
+            pagedStore = paged ? new PagedExpenseStore() : null;
+        }
+
+        // The user's expenses, wherever they are kept.
+        ExpenseStore store() {
+            return pagedStore != null ? pagedStore : expenseManager;
+        }
+    }
+
+    private final long budgetBytes;
+    private final Executor persistenceExecutor;
+    private ScheduledExecutorService writeBehindScheduler;
+    private Executor flushExecutor;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Entry> closing = new HashMap<>();
+    private long cachedBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public ExpenseManagerCache(Executor persistenceExecutor) {
+        this(Long.getLong("expense.cache.bytes", Runtime.getRuntime().maxMemory() / 4), persistenceExecutor);
+    }
+
+    public ExpenseManagerCache(long budgetBytes, Executor persistenceExecutor) {
+        this.budgetBytes = budgetBytes;
+        this.persistenceExecutor = persistenceExecutor;
+    }
+
+    // Times the write-behind flushes of the managers loaded from now on; see
+    // ExpenseManager.setWriteBehindScheduler.
+    public synchronized void setWriteBehindScheduler(ScheduledExecutorService scheduler, Executor flushExecutor) {
+        this.writeBehindScheduler = scheduler;
+        this.flushExecutor = flushExecutor;
+    }
+
+    public Entry acquire(String username) {
+        return acquire(username, percent -> { });
+    }
+
+    public Entry acquire(String username, IntConsumer progress) {
+        return acquire(username, 0, progress);
+    }
+
+    // Returns the user's entry with its lock held, loading the expenses on a miss
+    // and reporting the load's progress. A miss with windowMonths above 0 loads
+    // only that many recent months; see ExpenseManager.loadUserExpenses. The
+    // load runs with only the entry locked, so other users are not held up.
+    public Entry acquire(String username, int windowMonths, IntConsumer progress) {
+        while (true) {
+            Entry entry;
+            synchronized (this) {
+                entry = entries.get(username);
+                if (entry != null) {
+                    hits++;
+                } else {
+                    misses++;
+                    entry = new Entry(username, PagedExpenseStore.exists(username));
+                    entry.predecessor = closing.get(username);
+                    if (entry.expenseManager != null) {
+                        entry.expenseManager.setPersistenceExecutor(persistenceExecutor);
+                        entry.expenseManager.setWriteBehindScheduler(writeBehindScheduler, flushExecutor);
+                    }
+                    entries.put(username, entry);
+                }
+            }
+
+            entry.lock.lock();
+            if (entry.evicted) {
+                // Evicted between lookup and locking; look it up again
+                entry.lock.unlock();
+                continue;
+            }
+            if (!entry.loaded) {
+                awaitClosed(entry.predecessor);
+                entry.predecessor = null;
+                try {
+                    if (entry.pagedStore != null) {
+                        entry.pagedStore.loadUserExpenses(username);
+                    } else {
+                        entry.expenseManager.loadUserExpenses(username, windowMonths, progress);
+                        entry.flushedModCount = entry.expenseManager.getModCount();
+                    }
+                } catch (RuntimeException e) {
+                    discard(entry);
+                    throw e;
+                }
+                entry.loaded = true;
+            }
+            return entry;
+        }
+    }
+
+    // Unlocks the entry, updates its size and evicts other users while over budget.
+    public void release(Entry entry) {
+        long bytes = entry.store().estimateMemoryBytes();
+        entry.lock.unlock();
+
+        List<Entry> victims = new ArrayList<>();
+        synchronized (this) {
+            if (entries.get(entry.username) == entry) {
+                cachedBytes += bytes - entry.bytes;
+                entry.bytes = bytes;
+            }
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (cachedBytes > budgetBytes && eldest.hasNext()) {
+                Entry victim = eldest.next();
+                if (victim == entry) {
+                    continue;
+                }
+                eldest.remove();
+                cachedBytes -= victim.bytes;
+                closing.put(victim.username, victim);
+                victims.add(victim);
+                evictions++;
+            }
+        }
+        for (Entry victim : victims) {
+            close(victim);
+        }
+    }
+
+    // Syncs every loaded user's journal, e.g. before the process exits.
+    public void flushAll() {
+        List<Entry> loaded;
+        synchronized (this) {
+            loaded = new ArrayList<>(entries.values());
+        }
+        for (Entry entry : loaded) {
+            entry.lock.lock();
+            try {
+                flush(entry);
+            } finally {
+                entry.lock.unlock();
+            }
+        }
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getCachedBytes() {
+        return cachedBytes;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    private void close(Entry victim) {
+        victim.lock.lock();
+        try {
+            flush(victim);
+            victim.evicted = true;
+            victim.store().clearExpenses();
+        } finally {
+            victim.lock.unlock();
+            synchronized (this) {
+                closing.remove(victim.username, victim);
+            }
+            victim.closed.countDown();
+        }
+    }
+
+    private static void flush(Entry entry) {
+        if (entry.loaded && entry.pagedStore != null) {
+            entry.pagedStore.syncUserExpenses(entry.username);
+        } else if (entry.loaded && (entry.expenseManager.getModCount() != entry.flushedModCount
+                || entry.expenseManager.isJournalFailed())) {
+            if (!entry.expenseManager.syncUserExpenses(entry.username).getNow(true)) {
+                // The journal write failed on this thread; a snapshot takes its place
+                entry.expenseManager.syncUserExpenses(entry.username);
+            }
+            entry.flushedModCount = entry.expenseManager.getModCount();
+        }
+    }
+
+    // Drops an entry whose load failed, so the next acquire tries again.
+    private void discard(Entry entry) {
+        entry.evicted = true;
+        entry.lock.unlock();
+        synchronized (this) {
+            entries.remove(entry.username, entry);
+        }
+    }
+
+    private static void awaitClosed(Entry predecessor) {
+        if (predecessor == null) {
+            return;
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                predecessor.closed.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
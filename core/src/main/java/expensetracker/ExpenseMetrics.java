@@ -0,0 +1,231 @@
+package expensetracker;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Process-wide timings and counters for persistence, table refreshes and
+// logins, registered as MBeans under the "ExpenseTracker" domain so they can
+// be watched in JConsole or VisualVM. Latencies are kept in LatencyHistograms
+// and shown in milliseconds. Run with -Dexpense.metrics.file=<path> to have
+// every value written to that file when the process exits.
+final class ExpenseMetrics {
+    static final String DOMAIN = "ExpenseTracker";
+
+    // Registered beans by name, for the dump; filled in while the fields below initialize
+    private static final Map<String, MetricsBean> beans = new LinkedHashMap<>();
+
+    // Starting the platform MBean server takes longer than showing the login
+    // window, so beans are registered with it on this thread instead
+    private static final ExecutorService jmxRegistrar = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "expense-metrics-jmx");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // An EDT event that takes at least this long counts as blocking the UI
+    static final long EDT_BLOCK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    static final LatencyHistogram LOAD_USER_EXPENSES = latency("loadUserExpenses");
+    static final LatencyHistogram SAVE_USER_EXPENSES = latency("saveUserExpenses");
+    static final LatencyHistogram LOAD_USERS = latency("loadUsers");
+    static final LatencyHistogram LOGIN = latency("login");
+    static final LatencyHistogram REFRESH_EXPENSE_TABLE = latency("refreshExpenseTable");
+    static final LatencyHistogram REFRESH_CATEGORY_SUMMARY = latency("refreshCategorySummary");
+    static final LatencyHistogram EDT_EVENT = latency("edtEvent");
+
+    // File sizes are those of the most recent load and save, whichever user they were for
+    private static final AtomicLong lastLoadRecords = new AtomicLong();
+    private static final AtomicLong lastLoadSnapshotBytes = new AtomicLong();
+    private static final AtomicLong lastLoadJournalBytes = new AtomicLong();
+    private static final AtomicLong lastSaveBytes = new AtomicLong();
+    private static final LongAdder snapshotBytesWritten = new LongAdder();
+    private static final LongAdder journalBytesWritten = new LongAdder();
+    private static final LongAdder saves = new LongAdder();
+    private static final LongAdder journalFrames = new LongAdder();
+    private static final LongAdder journalFlushes = new LongAdder();
+    private static final LongAdder errors = new LongAdder();
+    private static volatile String lastError = "";
+
+    private static final LongAdder edtBlocks = new LongAdder();
+    private static final LongAdder edtBlockedNanos = new LongAdder();
+
+    // Milliseconds from process start until the first login window and main panel were shown, or -1
+    private static final long LOADED_NANOS = System.nanoTime();
+    private static final AtomicLong loginWindowMillis = new AtomicLong(-1);
+    private static final AtomicLong mainPanelMillis = new AtomicLong(-1);
+
+    static {
+        register("type=Persistence", new MetricsBean("Expense files and write volume")
+                .add("LastLoadRecords", Long.class, lastLoadRecords::get)
+                .add("LastLoadSnapshotBytes", Long.class, lastLoadSnapshotBytes::get)
+                .add("LastLoadJournalBytes", Long.class, lastLoadJournalBytes::get)
+                .add("LastSaveBytes", Long.class, lastSaveBytes::get)
+                .add("Saves", Long.class, saves::sum)
+                .add("MeanSaveBytes", Double.class, () -> saves.sum() == 0 ? 0.0
+                        : (double) snapshotBytesWritten.sum() / saves.sum())
+                .add("SnapshotBytesWritten", Long.class, snapshotBytesWritten::sum)
+                .add("JournalBytesWritten", Long.class, journalBytesWritten::sum)
+                .add("JournalFrames", Long.class, journalFrames::sum)
+                .add("JournalFlushes", Long.class, journalFlushes::sum)
+                .add("Errors", Long.class, errors::sum)
+                .add("LastError", String.class, () -> lastError));
+        register("type=EventDispatchThread", new MetricsBean("Time the Swing event thread spent on events")
+                .add("Events", Long.class, EDT_EVENT::getCount)
+                .add("BusyMillis", Double.class, () -> EDT_EVENT.getTotalNanos() / 1e6)
+                .add("Blocks", Long.class, edtBlocks::sum)
+                .add("BlockedMillis", Double.class, () -> edtBlockedNanos.sum() / 1e6)
+                .add("MaxEventMillis", Double.class, () -> EDT_EVENT.getMaxNanos() / 1e6));
+        register("type=Startup", new MetricsBean("Time from process start until the GUI could be used")
+                .add("TimeToLoginWindowMillis", Long.class, loginWindowMillis::get)
+                .add("TimeToMainPanelMillis", Long.class, mainPanelMillis::get));
+
+        String dumpFile = System.getProperty("expense.metrics.file");
+        if (dumpFile != null) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> dump(new File(dumpFile)), "expense-metrics-dump"));
+        }
+    }
+
+    private ExpenseMetrics() {
+    }
+
+    // Counts the error and prints it, as the callers used to do directly.
+    static void error(String message) {
+        errors.increment();
+        lastError = message;
+        System.err.println(message);
+    }
+
+    // Errors reported so far, so a caller can tell whether an operation that logs rather than throws failed.
+    static long getErrorCount() {
+        return errors.sum();
+    }
+
+    static void expensesLoaded(long startNanos, int records, File snapshot, File journal) {
+        LOAD_USER_EXPENSES.recordSince(startNanos);
+        lastLoadRecords.set(records);
+        lastLoadSnapshotBytes.set(snapshot.length());
+        lastLoadJournalBytes.set(journal.length());
+    }
+
+    static void snapshotSaved(long startNanos, File snapshot) {
+        snapshotSaved(startNanos, snapshot.length());
+    }
+
+    static void snapshotSaved(long startNanos, long bytes) {
+        SAVE_USER_EXPENSES.recordSince(startNanos);
+        lastSaveBytes.set(bytes);
+        snapshotBytesWritten.add(bytes);
+        saves.increment();
+    }
+
+    static void journalFlushed(int frames, int bytes) {
+        journalBytesWritten.add(bytes);
+        journalFrames.add(frames);
+        journalFlushes.increment();
+    }
+
+    static void edtEventDispatched(long nanos) {
+        EDT_EVENT.record(nanos);
+        if (nanos >= EDT_BLOCK_NANOS) {
+            edtBlocks.increment();
+            edtBlockedNanos.add(nanos);
+        }
+    }
+
+    // Records the first time each is shown; with -Dexpense.startup.report=true it is also printed.
+    static void loginWindowShown() {
+        if (loginWindowMillis.compareAndSet(-1, millisSinceProcessStart()) && Boolean.getBoolean("expense.startup.report")) {
+            System.out.println(startupReport());
+        }
+    }
+
+    static void mainPanelShown() {
+        if (mainPanelMillis.compareAndSet(-1, millisSinceProcessStart()) && Boolean.getBoolean("expense.startup.report")) {
+            System.out.println(startupReport());
+        }
+    }
+
+    static String startupReport() {
+        return String.format("Startup: login window after %d ms, main panel after %d ms",
+                loginWindowMillis.get(), mainPanelMillis.get());
+    }
+
+    // Measured from the start of the process, or from when metrics were first used if the OS does not say.
+    private static long millisSinceProcessStart() {
+        return ProcessHandle.current().info().startInstant()
+                .map(start -> System.currentTimeMillis() - start.toEpochMilli())
+                .orElseGet(() -> TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - LOADED_NANOS));
+    }
+
+    // Exposes a cache's hit, miss and eviction counts next to the other metrics.
+    static void registerCache(ExpenseManagerCache cache) {
+        register("type=ExpenseManagerCache", new MetricsBean("Per-user expense cache")
+                .add("Hits", Long.class, cache::getHits)
+                .add("Misses", Long.class, cache::getMisses)
+                .add("Evictions", Long.class, cache::getEvictions)
+                .add("CachedUsers", Integer.class, cache::size)
+                .add("CachedBytes", Long.class, cache::getCachedBytes)
+                .add("BudgetBytes", Long.class, cache::getBudgetBytes));
+    }
+
+    // Writes every attribute as "name.attribute=value", one per line.
+    static void dump(File file) {
+        List<String> lines = new ArrayList<>();
+        synchronized (beans) {
+            for (Map.Entry<String, MetricsBean> bean : beans.entrySet()) {
+                for (Map.Entry<String, Object> value : bean.getValue().values().entrySet()) {
+                    lines.add(bean.getKey() + "." + value.getKey() + "=" + value.getValue());
+                }
+            }
+        }
+        try {
+            Files.write(file.toPath(), lines, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            System.err.println("Error writing metrics: " + e.getMessage());
+        }
+    }
+
+    private static LatencyHistogram latency(String operation) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        register("type=Latency,name=" + operation, new MetricsBean("Latency of " + operation + " in milliseconds")
+                .add("Count", Long.class, histogram::getCount)
+                .add("MeanMillis", Double.class, () -> histogram.getMeanNanos() / 1e6)
+                .add("P50Millis", Double.class, () -> histogram.getPercentileNanos(50) / 1e6)
+                .add("P90Millis", Double.class, () -> histogram.getPercentileNanos(90) / 1e6)
+                .add("P99Millis", Double.class, () -> histogram.getPercentileNanos(99) / 1e6)
+                .add("P999Millis", Double.class, () -> histogram.getPercentileNanos(99.9) / 1e6)
+                .add("MaxMillis", Double.class, () -> histogram.getMaxNanos() / 1e6)
+                .onReset(histogram::reset));
+        return histogram;
+    }
+
+    private static void register(String keys, MetricsBean bean) {
+        String name = DOMAIN + ":" + keys;
+        synchronized (beans) {
+            beans.put(keys.substring(keys.lastIndexOf('=') + 1), bean);
+        }
+        jmxRegistrar.execute(() -> {
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                ObjectName objectName = new ObjectName(name);
+                if (server.isRegistered(objectName)) {
+                    server.unregisterMBean(objectName);
+                }
+                server.registerMBean(bean, objectName);
+            } catch (JMException e) {
+                System.err.println("Error registering metrics " + name + ": " + e.getMessage());
+            }
+        });
+    }
+}
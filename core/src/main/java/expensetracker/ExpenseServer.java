@@ -0,0 +1,457 @@
+package expensetracker;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+// Serves the tracker over HTTP for many users at once, using the JDK's
+// built-in server. Each logged-in user's expenses, in the heap or in pages,
+// are held in an ExpenseManagerCache and guarded by their own lock, so
+// requests for different users never wait on each other. Requests run on
+// virtual threads when the JDK has them (21+) and on a cached thread pool
+// otherwise.
+// Run with: java -jar expense-tracker.jar --server [port]
+//
+//   POST   /api/register   username, password
+//   POST   /api/login      username, password -> {"token": ...}
+//   POST   /api/logout
+//   POST   /api/expenses   date, category, description, amount -> {"id": ...}
+//   DELETE /api/expenses/{id}
+//   GET    /api/expenses   category, q, sort, offset, limit -> one page of expenses
+//   GET    /api/summary    -> totals per category
+//
+// Parameters are form-encoded in the body or the query string; every call
+// but register and login needs an "Authorization: Bearer <token>" header.
+// A token expires once unused for -Dexpense.session.minutes (30 by default).
+class ExpenseServer {
+    private static final int DEFAULT_PORT = 8080;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final long SESSION_TIMEOUT_NANOS =
+            TimeUnit.MINUTES.toNanos(Long.getLong("expense.session.minutes", 30));
+
+    private final UserManager userManager;
+    private final ExpenseManagerCache managers = new ExpenseManagerCache(Runnable::run);
+    // Login token -> session
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong lastSessionSweep = new AtomicLong(System.nanoTime());
+    private final SecureRandom random = new SecureRandom();
+    private HttpServer server;
+    private ExecutorService executor;
+    private ScheduledExecutorService writeBehind;
+
+    public ExpenseServer(UserManager userManager) {
+        this.userManager = userManager;
+    }
+
+    public static void run(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        UserManager userManager = new UserManager();
+        userManager.loadUsers();
+        ExpenseServer expenseServer = new ExpenseServer(userManager);
+        expenseServer.start(port);
+        Runtime.getRuntime().addShutdownHook(new Thread(expenseServer::stop));
+        System.out.println("Expense server listening on http://localhost:" + port + "/api ("
+                + (expenseServer.usesVirtualThreads() ? "virtual threads" : "thread pool") + ")");
+    }
+
+    public void start(int port) throws IOException {
+        // Without TCP_NODELAY small responses on kept-alive connections wait
+        // for the client's delayed ACK, about 40 ms per request
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        ExpenseMetrics.registerCache(managers);
+        executor = newRequestExecutor();
+        server.setExecutor(executor);
+        // Persistence runs inline on the request threads; write-behind flushes
+        // get a request thread each, so one user's slow sync delays no other
+        writeBehind = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "expense-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        managers.setWriteBehindScheduler(writeBehind, executor);
+        server.createContext("/api/register", exchange -> handle(exchange, this::register));
+        server.createContext("/api/login", exchange -> handle(exchange, this::login));
+        server.createContext("/api/logout", exchange -> handle(exchange, this::logout));
+        server.createContext("/api/expenses", exchange -> handle(exchange, this::expenses));
+        server.createContext("/api/summary", exchange -> handle(exchange, this::summary));
+        server.start();
+    }
+
+    // Stops accepting requests and makes sure every user's journal is on disk.
+    public void stop() {
+        if (server == null) {
+            return;
+        }
+        server.stop(1);
+        writeBehind.shutdownNow();
+        executor.shutdown();
+        managers.flushAll();
+        userManager.saveUsers();
+        server = null;
+        System.out.printf("Expense cache: %d hits, %d misses, %d evictions%n",
+                managers.getHits(), managers.getMisses(), managers.getEvictions());
+    }
+
+    // The port the server listens on, once started; useful when started on port 0.
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public boolean usesVirtualThreads() {
+        return !(executor instanceof ThreadPoolExecutor);
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() is looked up reflectively so
+    // the tracker still compiles and runs on JDKs without virtual threads.
+    private static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    private static class Session {
+        final String username;
+        volatile long lastUsed = System.nanoTime();
+
+        Session(String username) {
+            this.username = username;
+        }
+
+        boolean isExpired(long now) {
+            return now - lastUsed > SESSION_TIMEOUT_NANOS;
+        }
+    }
+
+    private interface Endpoint {
+        void serve(HttpExchange exchange, Map<String, String> params) throws IOException;
+    }
+
+    // Signals an error response with its HTTP status
+    private static class ApiException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        final int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private void handle(HttpExchange exchange, Endpoint endpoint) throws IOException {
+        try {
+            endpoint.serve(exchange, readParams(exchange));
+        } catch (ApiException e) {
+            send(exchange, e.status, "{\"error\":" + jsonString(e.getMessage()) + "}");
+        } catch (IllegalArgumentException e) {
+            send(exchange, 400, "{\"error\":" + jsonString(e.getMessage()) + "}");
+        } catch (RuntimeException e) {
+            ExpenseMetrics.error("Error handling " + exchange.getRequestURI() + ": " + e);
+            send(exchange, 500, "{\"error\":\"internal error\"}");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void register(HttpExchange exchange, Map<String, String> params) throws IOException {
+        requireMethod(exchange, "POST");
+        String username = required(params, "username");
+        String password = required(params, "password");
+        UserManager.checkUsername(username);
+        synchronized (userManager) {
+            if (userManager.usernameExists(username)) {
+                throw new ApiException(409, "username already exists");
+            }
+            try {
+                userManager.addUser(new User(username, password));
+            } catch (IOException e) {
+                ExpenseMetrics.error("Error saving user data: " + e.getMessage());
+                throw new ApiException(500, "could not save the user");
+            }
+        }
+        send(exchange, 201, "{\"username\":" + jsonString(username) + "}");
+    }
+
+    private void login(HttpExchange exchange, Map<String, String> params) throws IOException {
+        requireMethod(exchange, "POST");
+        long start = System.nanoTime();
+        String username = required(params, "username");
+        User user;
+        synchronized (userManager) {
+            user = userManager.authenticateUser(username, required(params, "password"));
+        }
+        if (user == null) {
+            throw new ApiException(401, "invalid username or password");
+        }
+
+        // Loads the user's expenses unless they are still cached
+        managers.release(managers.acquire(username));
+
+        byte[] tokenBytes = new byte[16];
+        random.nextBytes(tokenBytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(tokenBytes);
+        sweepSessions();
+        sessions.put(token, new Session(username));
+        ExpenseMetrics.LOGIN.recordSince(start);
+        send(exchange, 200, "{\"token\":\"" + token + "\"}");
+    }
+
+    private void logout(HttpExchange exchange, Map<String, String> params) throws IOException {
+        requireMethod(exchange, "POST");
+        authenticate(exchange);
+        sessions.remove(token(exchange));
+        send(exchange, 204, null);
+    }
+
+    // Drops expired sessions, at most once a minute.
+    private void sweepSessions() {
+        long now = System.nanoTime();
+        long last = lastSessionSweep.get();
+        if (now - last > TimeUnit.MINUTES.toNanos(1) && lastSessionSweep.compareAndSet(last, now)) {
+            sessions.values().removeIf(session -> session.isExpired(now));
+        }
+    }
+
+    private void expenses(HttpExchange exchange, Map<String, String> params) throws IOException {
+        String username = authenticate(exchange);
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath();
+        String idPart = path.length() > "/api/expenses/".length() ? path.substring("/api/expenses/".length()) : null;
+
+        if (idPart != null) {
+            requireMethod(exchange, "DELETE");
+            long id = parseLong(idPart, "id");
+            if (!withStore(username, store -> store.deleteExpense(username, id))) {
+                throw new ApiException(404, "no expense with id " + id);
+            }
+            send(exchange, 204, null);
+        } else if ("POST".equals(method)) {
+            int epochDay = ExpenseCodec.parseDate(required(params, "date"));
+            String category = CsvExpenseImporter.parseCategory(required(params, "category"));
+            String description = required(params, "description");
+            long cents = ExpenseCodec.parseCents(required(params, "amount"));
+            Expense expense = new Expense(epochDay, category, description, cents);
+            long id = withStore(username, store -> store.addExpense(username, expense));
+            send(exchange, 201, "{\"id\":" + id + "}");
+        } else if ("GET".equals(method)) {
+            listExpenses(exchange, username, params);
+        } else {
+            throw new ApiException(405, "method not allowed");
+        }
+    }
+
+    // One page of the user's expenses, filtered and sorted like the Expenses tab.
+    private void listExpenses(HttpExchange exchange, String username, Map<String, String> params) throws IOException {
+        String category = params.get("category");
+        String query = params.get("q");
+        ExpenseSortOrder order = parseSortOrder(params.getOrDefault("sort", "date_newest"));
+        int offset = (int) Math.max(0, parseLong(params.getOrDefault("offset", "0"), "offset"));
+        int limit = (int) Math.min(MAX_PAGE_SIZE, Math.max(0, parseLong(params.getOrDefault("limit", "50"), "limit")));
+
+        StringBuilder json = new StringBuilder(128 + limit * 96);
+        ExpenseManagerCache.Entry entry = managers.acquire(username);
+        try {
+            if (entry.pagedStore != null) {
+                listPagedExpenses(json, entry.pagedStore, category, query, order, offset, limit);
+            } else {
+                ExpenseView view = entry.expenseManager.getView(category, order, query);
+                ColumnarExpenseStore store = entry.expenseManager.getStore();
+                int total = view.size();
+                int end = (int) Math.min(total, (long) offset + limit);
+                json.append("{\"total\":").append(total).append(",\"offset\":").append(offset)
+                        .append(",\"expenses\":[");
+                for (int row = offset; row < end; row++) {
+                    int slot = view.slotAt(row);
+                    if (row > offset) {
+                        json.append(',');
+                    }
+                    appendExpense(json, store.getId(slot), store.getEpochDay(slot), store.getCategory(slot),
+                            store.getDescription(slot), store.getAmountCents(slot));
+                }
+            }
+        } finally {
+            managers.release(entry);
+        }
+        json.append("]}");
+        send(exchange, 200, json.toString());
+    }
+
+    // Accounts kept in pages are only ordered by date and cannot be searched.
+    private static void listPagedExpenses(StringBuilder json, PagedExpenseStore store, String category, String query,
+                                          ExpenseSortOrder order, int offset, int limit) {
+        if ((query != null && !query.trim().isEmpty())
+                || (order != ExpenseSortOrder.DATE_NEWEST && order != ExpenseSortOrder.DATE_OLDEST)) {
+            throw new IllegalArgumentException("this account can only be listed by date, without q");
+        }
+        int total = category == null ? store.getExpenseCount() : store.getCategoryExpenseCount(category);
+        List<Expense> expenses = store.listExpenses(category, order == ExpenseSortOrder.DATE_NEWEST, offset, limit);
+        json.append("{\"total\":").append(total).append(",\"offset\":").append(offset).append(",\"expenses\":[");
+        for (int i = 0; i < expenses.size(); i++) {
+            Expense expense = expenses.get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            appendExpense(json, expense.getId(), expense.getEpochDay(), expense.getCategory(),
+                    expense.getDescription(), expense.getAmountCents());
+        }
+    }
+
+    private static void appendExpense(StringBuilder json, long id, int epochDay, String category,
+                                      String description, long cents) {
+        json.append("{\"id\":").append(id)
+                .append(",\"date\":\"").append(ExpenseCodec.formatIsoDate(epochDay))
+                .append("\",\"category\":").append(jsonString(category))
+                .append(",\"description\":").append(jsonString(description))
+                .append(",\"amount\":").append(ExpenseCodec.formatDecimal(cents))
+                .append('}');
+    }
+
+    private void summary(HttpExchange exchange, Map<String, String> params) throws IOException {
+        requireMethod(exchange, "GET");
+        String username = authenticate(exchange);
+        String json = withStore(username, store -> {
+            StringBuilder body = new StringBuilder("{\"categories\":{");
+            boolean first = true;
+            for (Map.Entry<String, Long> total : new TreeMap<>(store.calculateCategoryTotalsCents()).entrySet()) {
+                if (!first) {
+                    body.append(',');
+                }
+                first = false;
+                body.append(jsonString(total.getKey())).append(':').append(ExpenseCodec.formatDecimal(total.getValue()));
+            }
+            return body.append("},\"total\":").append(ExpenseCodec.formatDecimal(store.getTotalCents(null)))
+                    .append('}').toString();
+        });
+        send(exchange, 200, json);
+    }
+
+    // Runs the action on the user's cached expenses, in the heap or in pages.
+    private <T> T withStore(String username, Function<ExpenseStore, T> action) {
+        ExpenseManagerCache.Entry entry = managers.acquire(username);
+        try {
+            return action.apply(entry.store());
+        } finally {
+            managers.release(entry);
+        }
+    }
+
+    // The user the request's token belongs to.
+    private String authenticate(HttpExchange exchange) {
+        String token = token(exchange);
+        Session session = token != null ? sessions.get(token) : null;
+        long now = System.nanoTime();
+        if (session != null && session.isExpired(now)) {
+            sessions.remove(token, session);
+            session = null;
+        }
+        if (session == null) {
+            throw new ApiException(401, "missing, unknown or expired token");
+        }
+        session.lastUsed = now;
+        return session.username;
+    }
+
+    private static String token(HttpExchange exchange) {
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        return authorization != null && authorization.startsWith("Bearer ")
+                ? authorization.substring("Bearer ".length()).trim() : null;
+    }
+
+    private static ExpenseSortOrder parseSortOrder(String text) {
+        try {
+            return ExpenseSortOrder.valueOf(text.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("unknown sort order '" + text + "'");
+        }
+    }
+
+    private static long parseLong(String text, String name) {
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid " + name + " '" + text + "'");
+        }
+    }
+
+    private static void requireMethod(HttpExchange exchange, String method) {
+        if (!method.equals(exchange.getRequestMethod())) {
+            throw new ApiException(405, "method not allowed");
+        }
+    }
+
+    private static String required(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null || value.trim().isEmpty()) {
+            throw new IllegalArgumentException("missing parameter '" + name + "'");
+        }
+        return value.trim();
+    }
+
+    // Query string and form-encoded body, the body taking precedence.
+    private static Map<String, String> readParams(HttpExchange exchange) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        parseForm(exchange.getRequestURI().getRawQuery(), params);
+        try (InputStream in = exchange.getRequestBody()) {
+            parseForm(new String(in.readAllBytes(), StandardCharsets.UTF_8), params);
+        }
+        return params;
+    }
+
+    private static void parseForm(String form, Map<String, String> params) {
+        if (form == null || form.isEmpty()) {
+            return;
+        }
+        for (String pair : form.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        if (json == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    static String jsonString(String text) {
+        StringBuilder json = new StringBuilder(text.length() + 2).append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        return json.append('"').toString();
+    }
+}
@@ -0,0 +1,83 @@
+package expensetracker;
+
+import java.util.*;
+
+// Live records of a store copied out at one point in time, so they can be
+// written by another thread while the store keeps changing.
+class ExpenseSnapshot {
+    final int count;
+    final List<String> categoryNames;
+    final long[] ids;
+    final int[] epochDays;
+    final int[] categories;
+    final long[] amountCents;
+    final int[] descriptionOffsets;
+    final int[] descriptionLengths;
+    byte[] descriptionBytes;
+    int descriptionSize;
+
+    ExpenseSnapshot(int count, List<String> categoryNames) {
+        this.count = count;
+        this.categoryNames = categoryNames;
+        ids = new long[count];
+        epochDays = new int[count];
+        categories = new int[count];
+        amountCents = new long[count];
+        descriptionOffsets = new int[count];
+        descriptionLengths = new int[count];
+    }
+
+    // A snapshot of the live records of older followed by these records, for
+    // a snapshot of the loaded expenses that leaves out months not loaded yet.
+    // Categories of older that are not among these are added after them.
+    ExpenseSnapshot withOlder(ColumnarExpenseStore older) {
+        List<String> names = new ArrayList<>(categoryNames);
+        int[] olderCategories = new int[older.getCategoryCount()];
+        for (int category = 0; category < olderCategories.length; category++) {
+            String name = older.getCategoryName(category);
+            int index = names.indexOf(name);
+            if (index < 0) {
+                index = names.size();
+                names.add(name);
+            }
+            olderCategories[category] = index;
+        }
+
+        int olderCount = older.size();
+        ExpenseSnapshot merged = new ExpenseSnapshot(olderCount + count, names);
+        long olderSize = 0;
+        for (int slot = older.nextLiveSlot(0); slot >= 0; slot = older.nextLiveSlot(slot + 1)) {
+            olderSize += older.getDescriptionLength(slot);
+        }
+        if (olderSize + descriptionSize > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Descriptions take " + (olderSize + descriptionSize)
+                    + " bytes, more than one array holds");
+        }
+        int olderBytes = (int) olderSize;
+        merged.descriptionBytes = new byte[olderBytes + descriptionSize];
+        int row = 0;
+        int offset = 0;
+        for (int slot = older.nextLiveSlot(0); slot >= 0; slot = older.nextLiveSlot(slot + 1), row++) {
+            int length = older.getDescriptionLength(slot);
+            older.copyDescription(slot, merged.descriptionBytes, offset);
+            merged.ids[row] = older.getId(slot);
+            merged.epochDays[row] = older.getEpochDay(slot);
+            merged.categories[row] = olderCategories[older.getCategoryId(slot)];
+            merged.amountCents[row] = older.getAmountCents(slot);
+            merged.descriptionOffsets[row] = offset;
+            merged.descriptionLengths[row] = length;
+            offset += length;
+        }
+        System.arraycopy(ids, 0, merged.ids, olderCount, count);
+        System.arraycopy(epochDays, 0, merged.epochDays, olderCount, count);
+        System.arraycopy(categories, 0, merged.categories, olderCount, count);
+        System.arraycopy(amountCents, 0, merged.amountCents, olderCount, count);
+        System.arraycopy(descriptionLengths, 0, merged.descriptionLengths, olderCount, count);
+        for (int i = 0; i < count; i++) {
+            merged.descriptionOffsets[olderCount + i] = olderBytes + descriptionOffsets[i];
+        }
+        System.arraycopy(descriptionBytes, 0, merged.descriptionBytes, olderBytes, descriptionSize);
+        merged.descriptionSize = olderBytes + descriptionSize;
+        return merged;
+    }
+}
@@ -0,0 +1,8 @@
+package expensetracker;
+
+enum ExpenseSortOrder {
+    DATE_NEWEST,
+    DATE_OLDEST,
+    AMOUNT_HIGHEST,
+    CATEGORY
+}
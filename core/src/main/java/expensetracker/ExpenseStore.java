@@ -0,0 +1,80 @@
+package expensetracker;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+// One user's expenses, wherever they are kept. ExpenseManager loads an account
+// into the heap and indexes it every way the GUI can sort; PagedExpenseStore
+// leaves it on disk for accounts too large to load, reading pages on demand.
+// Amounts are in cents and dates in epoch days, as in ColumnarExpenseStore.
+interface ExpenseStore {
+    // Stores the expense under a newly assigned id and returns that id.
+    long addExpense(String username, Expense expense);
+
+    boolean deleteExpense(String username, long id);
+
+    // Replaces the stored expense that has the same id.
+    boolean updateExpense(String username, Expense expense);
+
+    // Returns the expense with the given id, or null.
+    Expense getExpense(long id);
+
+    int getExpenseCount();
+
+    // Up to limit expenses of the category (null for all) in date order,
+    // after skipping the first offset of them.
+    List<Expense> listExpenses(String category, boolean newestFirst, int offset, int limit);
+
+    // Expenses dated within the inclusive range, oldest first.
+    List<Expense> getExpensesBetween(Date from, Date to);
+
+    Map<String, Long> calculateCategoryTotalsCents();
+
+    int getCategoryExpenseCount(String category);
+
+    // Total in cents of the category, or of everything when category is null.
+    long getTotalCents(String category);
+
+    // Total in cents within the inclusive range of epoch days, for one category or all (null).
+    long sumCentsBetween(int fromDay, int toDay, String category);
+
+    // Total in cents of the month (see ExpenseCodec.monthIndex), for one category or all (null).
+    long getMonthTotalCents(int month, String category);
+
+    // Returned by getFirstEpochDay and getLastEpochDay when there are no expenses
+    int NO_DAY = Integer.MIN_VALUE;
+
+    // Epoch days of the oldest and newest expense, or NO_DAY when there are none.
+    int getFirstEpochDay();
+
+    int getLastEpochDay();
+
+    // Monthly limit of the category in cents, or -1 when it has no budget.
+    long getBudgetCents(String category);
+
+    // Sets the category's monthly limit, or removes it for a negative limit.
+    void setBudget(String username, String category, long cents);
+
+    // True if the category spent more than its budget in the month.
+    boolean isOverBudget(String category, int month);
+
+    // True if the expense just added took its category over budget for its month.
+    boolean crossedBudget(Expense expense);
+
+    // Adds every staged row under a new id and returns the number added.
+    int importExpenses(String username, ColumnarExpenseStore staged);
+
+    void loadUserExpenses(String username);
+
+    void saveUserExpenses(String username);
+
+    // Makes sure the user's changes so far reach the disk. The future
+    // completes with true once they have, or false if writing them failed.
+    CompletableFuture<Boolean> syncUserExpenses(String username);
+
+    // Forgets the loaded user, e.g. on logout.
+    void clearExpenses();
+
+    // Approximate heap held for the loaded user.
+    long estimateMemoryBytes();
+}
@@ -0,0 +1,153 @@
+package expensetracker;
+
+import java.util.*;
+
+// Rows of one sort order and optional category filter, read straight from
+// an ExpenseManager index. The category's range within the index is looked
+// up again only after the manager has changed. With a description search,
+// the view keeps the index positions of the matching rows, recomputed the
+// same way after a change. Rows can also be limited to those dated fromDay
+// or later: in date order that narrows the range, in other orders the rows
+// are picked out like search matches.
+class ExpenseView {
+    private final ExpenseManager expenseManager;
+    private final SortedSlotIndex index;
+    private final String category;
+    private final String query;
+    private final int fromDay;
+    private final boolean dateOrdered;
+    private final boolean descending;
+    private int from;
+    private int to;
+    private int[] positions;
+    private int positionCount;
+    private int checkedModCount = -1;
+
+    public ExpenseView(ExpenseManager expenseManager, SortedSlotIndex index, String category, boolean descending) {
+        this(expenseManager, index, category, null, descending);
+    }
+
+    public ExpenseView(ExpenseManager expenseManager, SortedSlotIndex index, String category, String query,
+                       boolean descending) {
+        this(expenseManager, index, category, query, Integer.MIN_VALUE, false, descending);
+    }
+
+    // dateOrdered tells whether the index orders the category's rows (or all of them) by date.
+    public ExpenseView(ExpenseManager expenseManager, SortedSlotIndex index, String category, String query,
+                       int fromDay, boolean dateOrdered, boolean descending) {
+        this.expenseManager = expenseManager;
+        this.index = index;
+        this.category = category;
+        this.query = query;
+        this.fromDay = fromDay;
+        this.dateOrdered = dateOrdered;
+        this.descending = descending;
+    }
+
+    public static ExpenseView empty(ExpenseManager expenseManager) {
+        return new ExpenseView(expenseManager, null, null, false);
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    // Oldest day shown, or Integer.MIN_VALUE without a date limit.
+    public int getFromDay() {
+        return fromDay;
+    }
+
+    public int size() {
+        updateRange();
+        return positions != null ? positionCount : to - from;
+    }
+
+    public int slotAt(int row) {
+        updateRange();
+        if (positions != null) {
+            return index.get(positions[descending ? positionCount - 1 - row : row]);
+        }
+        return index.get(descending ? to - 1 - row : from + row);
+    }
+
+    // Row currently showing the slot, or -1 if the slot is not part of this view.
+    public int rowOf(int slot) {
+        updateRange();
+        int position = index == null || slot < 0 ? -1 : index.positionOf(slot);
+        if (position < from || position >= to) {
+            return -1;
+        }
+        if (positions != null) {
+            int row = Arrays.binarySearch(positions, 0, positionCount, position);
+            if (row < 0) {
+                return -1;
+            }
+            return descending ? positionCount - 1 - row : row;
+        }
+        return descending ? to - 1 - position : position - from;
+    }
+
+    private void updateRange() {
+        if (index == null) {
+            return;
+        }
+        int modCount = expenseManager.getModCount();
+        if (modCount == checkedModCount) {
+            return;
+        }
+        ColumnarExpenseStore store = expenseManager.getStore();
+        if (category == null) {
+            from = 0;
+            to = index.size();
+        } else {
+            from = index.lowerBound(slot -> store.getCategory(slot).compareTo(category));
+            to = index.lowerBound(slot -> store.getCategory(slot).compareTo(category) <= 0 ? -1 : 1);
+        }
+        boolean limitDays = fromDay != Integer.MIN_VALUE;
+        if (limitDays && dateOrdered) {
+            from = index.lowerBound(slot -> {
+                int c = category == null ? 0 : store.getCategory(slot).compareTo(category);
+                return c != 0 ? c : Integer.compare(store.getEpochDay(slot), fromDay);
+            });
+            limitDays = false;
+        }
+        BitSet matches = query == null ? null : expenseManager.searchDescriptions(query);
+        if (matches != null || limitDays) {
+            findPositions(matches, limitDays);
+        }
+        checkedModCount = modCount;
+    }
+
+    // Few matches are looked up in the index one by one and sorted; many, or
+    // all rows of a date limit, are picked out by walking the index range once.
+    private void findPositions(BitSet matches, boolean limitDays) {
+        ColumnarExpenseStore store = expenseManager.getStore();
+        int matchCount = matches == null ? Integer.MAX_VALUE : matches.cardinality();
+        int rangeSize = to - from;
+        int[] found = new int[Math.min(matchCount, rangeSize)];
+        int count = 0;
+        int lookupCost = 32 - Integer.numberOfLeadingZeros(Math.max(1, index.size()));
+        if ((long) matchCount * lookupCost < rangeSize) {
+            for (int slot = matches.nextSetBit(0); slot >= 0; slot = matches.nextSetBit(slot + 1)) {
+                int position = index.positionOf(slot);
+                if (position >= from && position < to && (!limitDays || store.getEpochDay(slot) >= fromDay)) {
+                    found[count++] = position;
+                }
+            }
+            Arrays.sort(found, 0, count);
+        } else {
+            for (int position = from; position < to && count < found.length; position++) {
+                int slot = index.get(position);
+                if ((matches == null || matches.get(slot)) && (!limitDays || store.getEpochDay(slot) >= fromDay)) {
+                    found[count++] = position;
+                }
+            }
+        }
+        positions = found;
+        positionCount = count;
+    }
+}
@@ -0,0 +1,20 @@
+package expensetracker;
+
+// Dimensions an ExpenseAggregator can group expenses by.
+enum GroupDimension {
+    CATEGORY("Category"),
+    YEAR("Year"),
+    MONTH("Month"),
+    WEEKDAY("Weekday");
+
+    private final String label;
+
+    GroupDimension(String label) {
+        this.label = label;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
@@ -0,0 +1,23 @@
+package expensetracker;
+
+import java.io.*;
+
+// Reads files written with Java serialization before the classes moved into
+// this package, where users.dat and username_expenses.dat name them without one.
+class LegacyObjectInputStream extends ObjectInputStream {
+    public LegacyObjectInputStream(InputStream in) throws IOException {
+        super(in);
+    }
+
+    @Override
+    protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+        switch (desc.getName()) {
+            case "User":
+                return User.class;
+            case "Expense":
+                return Expense.class;
+            default:
+                return super.resolveClass(desc);
+        }
+    }
+}
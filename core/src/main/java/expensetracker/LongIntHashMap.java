@@ -0,0 +1,121 @@
+package expensetracker;
+
+// Open-addressing hash map from long keys to int values, so looking up an
+// expense id never boxes. Key 0 marks a free bucket, which is why expense
+// ids start at 1.
+class LongIntHashMap {
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private int mask;
+
+    public LongIntHashMap() {
+        clear();
+    }
+
+    // Returns the value for the key, or -1 if it is absent.
+    public int get(long key) {
+        for (int i = bucket(key); keys[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+        }
+        return -1;
+    }
+
+    public void put(long key, int value) {
+        if (key == 0) {
+            throw new IllegalArgumentException("Key 0 is reserved");
+        }
+        int i = bucket(key);
+        while (keys[i] != 0) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > (keys.length >> 1) + (keys.length >> 2)) {
+            resize(keys.length << 1);
+        }
+    }
+
+    // Removes the key and returns its value, or -1 if it was absent.
+    public int remove(long key) {
+        int i = bucket(key);
+        while (keys[i] != key) {
+            if (keys[i] == 0) {
+                return -1;
+            }
+            i = (i + 1) & mask;
+        }
+        int removed = values[i];
+
+        // Shift later entries of the probe run back so lookups never stop early
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (keys[j] == 0) {
+                break;
+            }
+            int home = bucket(keys[j]);
+            boolean movable = i <= j ? (home <= i || home > j) : (home <= i && home > j);
+            if (movable) {
+                keys[i] = keys[j];
+                values[i] = values[j];
+                i = j;
+            }
+        }
+        keys[i] = 0;
+        size--;
+        return removed;
+    }
+
+    public void remapValues(int[] remap) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                values[i] = remap[values[i]];
+            }
+        }
+    }
+
+    public long memoryBytes() {
+        return (long) keys.length * (8 + 4);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        keys = new long[16];
+        values = new int[16];
+        mask = 15;
+        size = 0;
+    }
+
+    private int bucket(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int j = bucket(oldKeys[i]);
+                while (keys[j] != 0) {
+                    j = (j + 1) & mask;
+                }
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+}
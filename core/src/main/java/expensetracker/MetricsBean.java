@@ -0,0 +1,101 @@
+package expensetracker;
+
+import java.util.*;
+import java.util.function.Supplier;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanParameterInfo;
+import javax.management.ReflectionException;
+
+// Read-only MBean whose attributes are read from suppliers when JConsole or
+// VisualVM asks for them, with an optional no-argument "reset" operation.
+class MetricsBean implements DynamicMBean {
+    private final String description;
+    private final Map<String, Supplier<Object>> attributes = new LinkedHashMap<>();
+    private final Map<String, String> types = new LinkedHashMap<>();
+    private Runnable reset;
+
+    MetricsBean(String description) {
+        this.description = description;
+    }
+
+    MetricsBean add(String name, Class<?> type, Supplier<Object> value) {
+        attributes.put(name, value);
+        types.put(name, type.getName());
+        return this;
+    }
+
+    MetricsBean onReset(Runnable reset) {
+        this.reset = reset;
+        return this;
+    }
+
+    // Attribute values by name, as they are right now.
+    Map<String, Object> values() {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (Map.Entry<String, Supplier<Object>> entry : attributes.entrySet()) {
+            values.put(entry.getKey(), entry.getValue().get());
+        }
+        return values;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Supplier<Object> value = attributes.get(attribute);
+        if (value == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        return value.get();
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] names) {
+        AttributeList list = new AttributeList();
+        for (String name : names) {
+            Supplier<Object> value = attributes.get(name);
+            if (value != null) {
+                list.add(new Attribute(name, value.get()));
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList list) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        if ("reset".equals(actionName) && reset != null) {
+            reset.run();
+            return null;
+        }
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        MBeanAttributeInfo[] attributeInfo = new MBeanAttributeInfo[types.size()];
+        int i = 0;
+        for (Map.Entry<String, String> entry : types.entrySet()) {
+            attributeInfo[i++] = new MBeanAttributeInfo(entry.getKey(), entry.getValue(), entry.getKey(),
+                    true, false, false);
+        }
+        MBeanOperationInfo[] operations = reset == null ? new MBeanOperationInfo[0] : new MBeanOperationInfo[] {
+                new MBeanOperationInfo("reset", "Clears the recorded values", new MBeanParameterInfo[0],
+                        "void", MBeanOperationInfo.ACTION)
+        };
+        return new MBeanInfo(getClass().getName(), description, attributeInfo, null, operations, null);
+    }
+}
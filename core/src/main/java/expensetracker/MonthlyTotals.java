@@ -0,0 +1,106 @@
+package expensetracker;
+
+import java.util.*;
+
+// Per-month spending totals, overall and per category, as plain arrays over
+// the range of months seen so far (months as in ExpenseCodec.monthIndex). A
+// month's total is one array read, cheap enough to check a budget on every
+// add. Rows are laid out as in DailyTotals.
+class MonthlyTotals {
+    private static final int INITIAL_MONTHS = 24;
+
+    private int firstMonth;
+    private int monthCount;
+    private long[][] totals = new long[0][];
+
+    public void add(int epochDay, int categoryId, long cents) {
+        int month = ExpenseCodec.monthIndex(epochDay);
+        ensureMonth(month);
+        ensureRow(categoryId + 1);
+        totals[0][month - firstMonth] += cents;
+        totals[categoryId + 1][month - firstMonth] += cents;
+    }
+
+    // Total of the month, for one category or all of them (categoryId -1).
+    public long get(int month, int categoryId) {
+        int row = categoryId + 1;
+        int index = month - firstMonth;
+        if (row >= totals.length || index < 0 || index >= monthCount) {
+            return 0;
+        }
+        return totals[row][index];
+    }
+
+    public long memoryBytes() {
+        return (long) totals.length * (monthCount + 2) * 8;
+    }
+
+    public void clear() {
+        firstMonth = 0;
+        monthCount = 0;
+        totals = new long[0][];
+    }
+
+    // Recomputes every total from the live expenses in one pass.
+    public void rebuild(ColumnarExpenseStore store, int minDay, int maxDay) {
+        clear();
+        if (store.size() == 0) {
+            return;
+        }
+        firstMonth = ExpenseCodec.monthIndex(minDay);
+        monthCount = ExpenseCodec.monthIndex(maxDay) - firstMonth + 1;
+        ensureRow(store.getCategoryCount());
+        for (int slot = store.nextLiveSlot(0); slot >= 0; slot = store.nextLiveSlot(slot + 1)) {
+            int index = ExpenseCodec.monthIndex(store.getEpochDay(slot)) - firstMonth;
+            long cents = store.getAmountCents(slot);
+            totals[0][index] += cents;
+            totals[store.getCategoryId(slot) + 1][index] += cents;
+        }
+    }
+
+    // Widens the covered range so it includes the month, with room to spare on that side.
+    private void ensureMonth(int month) {
+        if (monthCount == 0) {
+            firstMonth = month - INITIAL_MONTHS / 2;
+            resize(firstMonth, INITIAL_MONTHS);
+            return;
+        }
+        if (month >= firstMonth && month < firstMonth + monthCount) {
+            return;
+        }
+        int newFirst = firstMonth;
+        int newCount = monthCount;
+        while (month < newFirst) {
+            newFirst -= newCount;
+            newCount *= 2;
+        }
+        while (month >= newFirst + newCount) {
+            newCount *= 2;
+        }
+        resize(newFirst, newCount);
+    }
+
+    private void resize(int newFirst, int newCount) {
+        int shift = firstMonth - newFirst;
+        for (int row = 0; row < totals.length; row++) {
+            long[] values = new long[newCount];
+            if (monthCount > 0) {
+                System.arraycopy(totals[row], 0, values, shift, monthCount);
+            }
+            totals[row] = values;
+        }
+        firstMonth = newFirst;
+        monthCount = newCount;
+    }
+
+    private void ensureRow(int row) {
+        if (row < totals.length) {
+            return;
+        }
+        int oldRows = totals.length;
+        totals = Arrays.copyOf(totals, row + 1);
+        for (int r = oldRows; r <= row; r++) {
+            totals[r] = new long[monthCount];
+        }
+    }
+}
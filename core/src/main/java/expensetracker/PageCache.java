@@ -0,0 +1,180 @@
+package expensetracker;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+// Bounded cache over the pages of a file. At most frameCount pages are held,
+// each in its own heap buffer, so the cache never takes more than
+// frameCount * pageSize bytes. Once every frame is in use they are reused in
+// clock order: the hand clears the referenced bit of each frame it passes and
+// takes the first frame that was neither used since its last pass nor pinned.
+// Recently used pages get a second chance for the price of a bit per frame
+// instead of an LRU list. Dirty pages are written back when their frame is
+// reused or the cache is flushed. Page 0 is never cached.
+class PageCache {
+    private final FileChannel channel;
+    private final int pageSize;
+    private final ByteBuffer[] frames;
+    private final int[] pageIds;
+    private final int[] pinCounts;
+    private final boolean[] referenced;
+    private final boolean[] dirty;
+    // Page id -> frame
+    private final LongIntHashMap frameOf = new LongIntHashMap();
+    private int usedFrames;
+    private int hand;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    PageCache(FileChannel channel, int pageSize, int frameCount) {
+        this.channel = channel;
+        this.pageSize = pageSize;
+        frames = new ByteBuffer[frameCount];
+        pageIds = new int[frameCount];
+        pinCounts = new int[frameCount];
+        referenced = new boolean[frameCount];
+        dirty = new boolean[frameCount];
+    }
+
+    // Returns the page's buffer, reading the page if it is not cached. The
+    // buffer stays valid until unpinned; use only absolute gets and puts.
+    ByteBuffer pin(int pageId) throws IOException {
+        int frame = frameOf.get(pageId);
+        if (frame >= 0) {
+            hits++;
+        } else {
+            misses++;
+            frame = claimFrame(pageId);
+            ByteBuffer buffer = frames[frame];
+            buffer.clear();
+            long position = (long) pageId * pageSize;
+            try {
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, position + buffer.position()) < 0) {
+                        throw new EOFException("Page " + pageId + " is past the end of the file");
+                    }
+                }
+            } catch (IOException e) {
+                discard(pageId);
+                throw e;
+            }
+        }
+        pinCounts[frame]++;
+        referenced[frame] = true;
+        return frames[frame];
+    }
+
+    // Like pin, for a page that has just been allocated: the buffer is zeroed
+    // instead of read, and the page is dirty.
+    ByteBuffer pinNew(int pageId) throws IOException {
+        int frame = frameOf.get(pageId);
+        if (frame < 0) {
+            frame = claimFrame(pageId);
+        }
+        Arrays.fill(frames[frame].array(), (byte) 0);
+        dirty[frame] = true;
+        pinCounts[frame]++;
+        referenced[frame] = true;
+        return frames[frame];
+    }
+
+    void unpin(int pageId, boolean modified) {
+        int frame = frameOf.get(pageId);
+        pinCounts[frame]--;
+        dirty[frame] |= modified;
+    }
+
+    // Forgets a page that is no longer used, without writing it.
+    void discard(int pageId) {
+        int frame = frameOf.remove(pageId);
+        if (frame >= 0) {
+            pageIds[frame] = 0;
+            pinCounts[frame] = 0;
+            referenced[frame] = false;
+            dirty[frame] = false;
+        }
+    }
+
+    // Writes every dirty page, in file order, and returns the number of bytes written.
+    long flush() throws IOException {
+        long[] pending = new long[usedFrames];
+        int count = 0;
+        for (int frame = 0; frame < usedFrames; frame++) {
+            if (dirty[frame]) {
+                pending[count++] = (long) pageIds[frame] << 32 | frame;
+            }
+        }
+        Arrays.sort(pending, 0, count);
+        for (int i = 0; i < count; i++) {
+            write((int) pending[i]);
+        }
+        return (long) count * pageSize;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public long memoryBytes() {
+        return (long) usedFrames * pageSize + (long) frames.length * 14 + frameOf.memoryBytes();
+    }
+
+    private int claimFrame(int pageId) throws IOException {
+        int frame;
+        if (usedFrames < frames.length) {
+            frame = usedFrames++;
+            frames[frame] = ByteBuffer.allocate(pageSize);
+        } else {
+            frame = nextVictim();
+            if (pageIds[frame] != 0) {
+                if (dirty[frame]) {
+                    write(frame);
+                }
+                frameOf.remove(pageIds[frame]);
+                evictions++;
+            }
+        }
+        pageIds[frame] = pageId;
+        dirty[frame] = false;
+        frameOf.put(pageId, frame);
+        return frame;
+    }
+
+    private int nextVictim() {
+        // Two sweeps clear every referenced bit, so only pins can make this fail
+        for (int step = 0; step < 2 * frames.length; step++) {
+            int frame = hand;
+            hand = hand + 1 == frames.length ? 0 : hand + 1;
+            if (pinCounts[frame] > 0) {
+                continue;
+            }
+            if (referenced[frame]) {
+                referenced[frame] = false;
+                continue;
+            }
+            return frame;
+        }
+        throw new IllegalStateException("Every page in the cache is pinned");
+    }
+
+    private void write(int frame) throws IOException {
+        ByteBuffer buffer = frames[frame];
+        buffer.clear();
+        long position = (long) pageIds[frame] * pageSize;
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+        dirty[frame] = false;
+    }
+}
@@ -0,0 +1,220 @@
+package expensetracker;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+// A file of fixed-size pages, read and written through a PageCache and
+// changed copy-on-write between checkpoints. Pages 0 and 1 hold alternate
+// copies of the header: the generation, the page count and the owner's own
+// state, such as where its trees start. A checkpoint writes every dirty page
+// and syncs, then overwrites the older header copy and syncs again.
+//
+// A page the last checkpoint refers to is never written in place. The first
+// change to it after a checkpoint moves it to a free page (see writable), and
+// the page it leaves is only reused once the next checkpoint is on disk. A
+// crash at any point therefore leaves the last checkpoint whole, and the
+// owner's journal takes it from there.
+class PageFile implements Closeable {
+    static final int PAGE_SIZE = 4096;
+
+    private static final int MAGIC = 0x45585050; // "EXPP"
+    private static final int VERSION = 1;
+    private static final int HEADER_PAGES = 2;
+    // Magic, version, generation, page count and payload length, then the
+    // payload, with a CRC32 of the rest of the page in its last four bytes
+    private static final int HEADER_SIZE = 24;
+    private static final int MAX_PAYLOAD = PAGE_SIZE - HEADER_SIZE - 4;
+
+    private final File file;
+    private final FileChannel channel;
+    private final PageCache cache;
+    private long generation;
+    private int pageCount = HEADER_PAGES;
+
+    // Pages allocated since the last checkpoint, which may change in place
+    private final BitSet fresh = new BitSet();
+    // Pages free for reuse, and pages left by copy-on-write since the last
+    // checkpoint, which become free once the next checkpoint is written
+    private int[] freePages = new int[16];
+    private int freeCount;
+    private int[] retiredPages = new int[16];
+    private int retiredCount;
+
+    PageFile(File file, int cacheFrames) throws IOException {
+        this.file = file;
+        channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        cache = new PageCache(channel, PAGE_SIZE, cacheFrames);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public PageCache getCache() {
+        return cache;
+    }
+
+    // Reads the newest intact header copy and returns its payload, or null for
+    // a new, empty file. Pages written after that checkpoint are dropped.
+    ByteBuffer readHeader() throws IOException {
+        ByteBuffer newest = null;
+        for (int copy = 0; copy < HEADER_PAGES; copy++) {
+            ByteBuffer header = readHeaderCopy(copy);
+            if (header != null && (newest == null || header.getLong(8) > newest.getLong(8))) {
+                newest = header;
+            }
+        }
+        if (newest == null) {
+            if (channel.size() > 0) {
+                throw new IOException("Not an expense page file: " + file.getName());
+            }
+            return null;
+        }
+
+        generation = newest.getLong(8);
+        pageCount = newest.getInt(16);
+        if (channel.size() > (long) pageCount * PAGE_SIZE) {
+            channel.truncate((long) pageCount * PAGE_SIZE);
+        }
+        newest.limit(HEADER_SIZE + newest.getInt(20)).position(HEADER_SIZE);
+        return newest.slice();
+    }
+
+    // Marks every page below the page count that is not in use as free. Called
+    // once after readHeader, with the pages reachable from the payload.
+    void setUsedPages(BitSet used) {
+        for (int pageId = pageCount - 1; pageId >= HEADER_PAGES; pageId--) {
+            if (!used.get(pageId)) {
+                freePages = append(freePages, freeCount++, pageId);
+            }
+        }
+    }
+
+    int allocate() {
+        int pageId = freeCount > 0 ? freePages[--freeCount] : pageCount++;
+        fresh.set(pageId);
+        return pageId;
+    }
+
+    // Returns the id under which the page may be changed: the page itself if it
+    // was allocated since the last checkpoint, otherwise a copy of it. The
+    // caller must point the page's parent at the returned id.
+    int writable(int pageId) throws IOException {
+        if (fresh.get(pageId)) {
+            return pageId;
+        }
+        int copy = allocate();
+        ByteBuffer source = cache.pin(pageId);
+        try {
+            ByteBuffer target = cache.pinNew(copy);
+            System.arraycopy(source.array(), 0, target.array(), 0, PAGE_SIZE);
+            cache.unpin(copy, true);
+        } finally {
+            cache.unpin(pageId, false);
+        }
+        release(pageId);
+        return copy;
+    }
+
+    // Gives up a page nothing refers to any more.
+    void release(int pageId) {
+        cache.discard(pageId);
+        if (fresh.get(pageId)) {
+            fresh.clear(pageId);
+            freePages = append(freePages, freeCount++, pageId);
+        } else {
+            retiredPages = append(retiredPages, retiredCount++, pageId);
+        }
+    }
+
+    ByteBuffer pin(int pageId) throws IOException {
+        return cache.pin(pageId);
+    }
+
+    ByteBuffer pinNew(int pageId) throws IOException {
+        return cache.pinNew(pageId);
+    }
+
+    void unpin(int pageId, boolean modified) {
+        cache.unpin(pageId, modified);
+    }
+
+    // Makes every change so far durable under a new generation, with the given
+    // header payload. Returns the number of bytes written.
+    long checkpoint(byte[] payload) throws IOException {
+        if (payload.length > MAX_PAYLOAD) {
+            throw new IOException("Header does not fit in a page: " + file.getName());
+        }
+        long bytes = cache.flush();
+        // The pages, and the file length, must be on disk before a header refers to them
+        channel.force(true);
+
+        long nextGeneration = generation + 1;
+        ByteBuffer header = ByteBuffer.allocate(PAGE_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putLong(nextGeneration).putInt(pageCount)
+                .putInt(payload.length).put(payload);
+        CRC32 crc = new CRC32();
+        crc.update(header.array(), 0, PAGE_SIZE - 4);
+        header.putInt(PAGE_SIZE - 4, (int) crc.getValue());
+        header.clear();
+        long position = nextGeneration % HEADER_PAGES * PAGE_SIZE;
+        while (header.hasRemaining()) {
+            channel.write(header, position + header.position());
+        }
+        channel.force(true);
+
+        generation = nextGeneration;
+        for (int i = 0; i < retiredCount; i++) {
+            freePages = append(freePages, freeCount++, retiredPages[i]);
+        }
+        retiredCount = 0;
+        fresh.clear();
+        return bytes + PAGE_SIZE;
+    }
+
+    public long memoryBytes() {
+        return cache.memoryBytes() + fresh.size() / 8 + 4L * (freePages.length + retiredPages.length);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private ByteBuffer readHeaderCopy(int copy) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(PAGE_SIZE);
+        long position = (long) copy * PAGE_SIZE;
+        while (header.hasRemaining()) {
+            if (channel.read(header, position + header.position()) < 0) {
+                return null;
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(header.array(), 0, PAGE_SIZE - 4);
+        if (header.getInt(0) != MAGIC || header.getInt(PAGE_SIZE - 4) != (int) crc.getValue()) {
+            return null;
+        }
+        if (header.getInt(4) > VERSION) {
+            throw new IOException("Unsupported page file version " + header.getInt(4) + ": " + file.getName());
+        }
+        int payloadLength = header.getInt(20);
+        return payloadLength >= 0 && payloadLength <= MAX_PAYLOAD ? header : null;
+    }
+
+    private static int[] append(int[] array, int length, int value) {
+        if (length == array.length) {
+            array = Arrays.copyOf(array, length * 2);
+        }
+        array[length] = value;
+        return array;
+    }
+}
@@ -0,0 +1,661 @@
+package expensetracker;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+// B+tree in a PageFile mapping long keys to fixed-size values. Leaves hold the
+// sorted (key, value) entries. Inner pages hold each child's page id and
+// number of entries, with separator keys between the children, so the entry at
+// a given position is found in one descent just like the entry for a key.
+// Every change copies the pages on its path once per checkpoint (see
+// PageFile.writable), which leaves the checkpointed tree intact.
+//
+// Deletes do not rebalance: an emptied page is unlinked, and the root is
+// replaced by its child when it has only one left. A history mostly grows, so
+// the tree stays about as shallow as if it were balanced. Not thread-safe.
+class PagedBTree {
+    private static final int LEAF = 1;
+    private static final int INNER = 2;
+    private static final int TYPE_OFFSET = 0;
+    private static final int COUNT_OFFSET = 4;
+    private static final int ENTRIES_OFFSET = 8;
+    // Inner pages: child page ids, entries under each child, then one separator
+    // fewer than there are children. Separator i is at most the smallest key of
+    // child i + 1 and greater than every key of child i.
+    private static final int MAX_CHILDREN = (PageFile.PAGE_SIZE - ENTRIES_OFFSET + 8) / (4 + 8 + 8);
+    private static final int CHILDREN_OFFSET = ENTRIES_OFFSET;
+    private static final int SIZES_OFFSET = CHILDREN_OFFSET + MAX_CHILDREN * 4;
+    private static final int KEYS_OFFSET = SIZES_OFFSET + MAX_CHILDREN * 8;
+    private static final int MAX_DEPTH = 16;
+
+    private final PageFile file;
+    private final int valueSize;
+    private final int entrySize;
+    private final int leafCapacity;
+    private int root;
+
+    // Page ids and child indexes from the root to a leaf, filled by findPath
+    private final int[] pathPages = new int[MAX_DEPTH];
+    private final int[] pathIndexes = new int[MAX_DEPTH];
+
+    PagedBTree(PageFile file, int valueSize, int root) {
+        this.file = file;
+        this.valueSize = valueSize;
+        this.entrySize = 8 + valueSize;
+        this.leafCapacity = (PageFile.PAGE_SIZE - ENTRIES_OFFSET) / entrySize;
+        this.root = root;
+    }
+
+    // Allocates the root page of an empty tree and returns its id.
+    static int create(PageFile file) throws IOException {
+        int pageId = file.allocate();
+        ByteBuffer page = file.pinNew(pageId);
+        page.putInt(TYPE_OFFSET, LEAF);
+        file.unpin(pageId, true);
+        return pageId;
+    }
+
+    public int getRoot() {
+        return root;
+    }
+
+    public long size() throws IOException {
+        ByteBuffer page = file.pin(root);
+        try {
+            if (isLeaf(page, root)) {
+                return count(page);
+            }
+            long size = 0;
+            for (int i = 0; i < count(page); i++) {
+                size += childSize(page, i);
+            }
+            return size;
+        } finally {
+            file.unpin(root, false);
+        }
+    }
+
+    // Copies the value stored under the key into value and returns true, or returns false.
+    public boolean get(long key, byte[] value) throws IOException {
+        int leafId = pathPages[findPath(key)];
+        ByteBuffer leaf = file.pin(leafId);
+        try {
+            int index = lowerBound(leaf, key);
+            if (index == count(leaf) || leaf.getLong(entryOffset(index)) != key) {
+                return false;
+            }
+            System.arraycopy(leaf.array(), entryOffset(index) + 8, value, 0, valueSize);
+            return true;
+        } finally {
+            file.unpin(leafId, false);
+        }
+    }
+
+    // Number of keys smaller than the given one, from the entry counts met on one descent.
+    public long rank(long key) throws IOException {
+        long rank = 0;
+        int pageId = root;
+        while (true) {
+            int current = pageId;
+            ByteBuffer page = file.pin(current);
+            try {
+                if (isLeaf(page, current)) {
+                    return rank + lowerBound(page, key);
+                }
+                int child = childIndex(page, key);
+                for (int i = 0; i < child; i++) {
+                    rank += childSize(page, i);
+                }
+                pageId = child(page, child);
+            } finally {
+                file.unpin(current, false);
+            }
+        }
+    }
+
+    // Stores the value under the key unless the key is present. Returns true if it was added.
+    public boolean insert(long key, byte[] value) throws IOException {
+        int depth = findPath(key);
+        int count;
+        int index;
+        ByteBuffer leaf = file.pin(pathPages[depth]);
+        try {
+            count = count(leaf);
+            index = lowerBound(leaf, key);
+            if (index < count && leaf.getLong(entryOffset(index)) == key) {
+                return false;
+            }
+        } finally {
+            file.unpin(pathPages[depth], false);
+        }
+        makeWritable(depth);
+
+        // A split hands the new right sibling, the separator before it and the
+        // sizes of both halves up to the parent
+        int right = 0;
+        long separator = 0;
+        long leftSize = 0;
+        long rightSize = 0;
+
+        int leafId = pathPages[depth];
+        leaf = file.pin(leafId);
+        try {
+            byte[] entries = leaf.array();
+            if (count < leafCapacity) {
+                int offset = entryOffset(index);
+                System.arraycopy(entries, offset, entries, offset + entrySize, (count - index) * entrySize);
+                leaf.putLong(offset, key);
+                System.arraycopy(value, 0, entries, offset + 8, valueSize);
+                leaf.putInt(COUNT_OFFSET, count + 1);
+            } else {
+                int total = count + 1;
+                byte[] merged = new byte[total * entrySize];
+                System.arraycopy(entries, ENTRIES_OFFSET, merged, 0, index * entrySize);
+                ByteBuffer.wrap(merged).putLong(index * entrySize, key);
+                System.arraycopy(value, 0, merged, index * entrySize + 8, valueSize);
+                System.arraycopy(entries, entryOffset(index), merged, (index + 1) * entrySize, (count - index) * entrySize);
+
+                // Appending leaves the left page full instead of half empty
+                int leftCount = index == count ? count : total / 2;
+                right = file.allocate();
+                ByteBuffer rightPage = file.pinNew(right);
+                try {
+                    rightPage.putInt(TYPE_OFFSET, LEAF);
+                    rightPage.putInt(COUNT_OFFSET, total - leftCount);
+                    System.arraycopy(merged, leftCount * entrySize, rightPage.array(), ENTRIES_OFFSET,
+                            (total - leftCount) * entrySize);
+                } finally {
+                    file.unpin(right, true);
+                }
+                System.arraycopy(merged, 0, entries, ENTRIES_OFFSET, leftCount * entrySize);
+                leaf.putInt(COUNT_OFFSET, leftCount);
+                separator = ByteBuffer.wrap(merged).getLong(leftCount * entrySize);
+                leftSize = leftCount;
+                rightSize = total - leftCount;
+            }
+        } finally {
+            file.unpin(leafId, true);
+        }
+
+        for (int level = depth - 1; level >= 0; level--) {
+            int pageId = pathPages[level];
+            int child = pathIndexes[level];
+            ByteBuffer page = file.pin(pageId);
+            try {
+                if (right == 0) {
+                    setChildSize(page, child, childSize(page, child) + 1);
+                    continue;
+                }
+                setChildSize(page, child, leftSize);
+                int children = count(page);
+                if (children < MAX_CHILDREN) {
+                    insertChild(page, children, child + 1, separator, right, rightSize);
+                    right = 0;
+                    continue;
+                }
+
+                int total = children + 1;
+                int[] ids = new int[total];
+                long[] sizes = new long[total];
+                long[] keys = new long[total - 1];
+                for (int from = 0, to = 0; from < children; from++, to++) {
+                    if (to == child + 1) {
+                        to++;
+                    }
+                    ids[to] = child(page, from);
+                    sizes[to] = childSize(page, from);
+                }
+                ids[child + 1] = right;
+                sizes[child + 1] = rightSize;
+                for (int from = 0, to = 0; from < children - 1; from++, to++) {
+                    if (to == child) {
+                        to++;
+                    }
+                    keys[to] = page.getLong(KEYS_OFFSET + from * 8);
+                }
+                keys[child] = separator;
+
+                int leftChildren = child + 1 == children ? children : total / 2;
+                right = file.allocate();
+                ByteBuffer rightPage = file.pinNew(right);
+                try {
+                    writeInner(rightPage, ids, sizes, keys, leftChildren, total);
+                } finally {
+                    file.unpin(right, true);
+                }
+                writeInner(page, ids, sizes, keys, 0, leftChildren);
+                separator = keys[leftChildren - 1];
+                leftSize = 0;
+                for (int i = 0; i < leftChildren; i++) {
+                    leftSize += sizes[i];
+                }
+                rightSize = 0;
+                for (int i = leftChildren; i < total; i++) {
+                    rightSize += sizes[i];
+                }
+            } finally {
+                file.unpin(pageId, true);
+            }
+        }
+
+        if (right != 0) {
+            int left = root;
+            root = file.allocate();
+            ByteBuffer page = file.pinNew(root);
+            try {
+                writeInner(page, new int[] {left, right}, new long[] {leftSize, rightSize}, new long[] {separator}, 0, 2);
+            } finally {
+                file.unpin(root, true);
+            }
+        }
+        return true;
+    }
+
+    // Removes the key. Returns true if it was present.
+    public boolean delete(long key) throws IOException {
+        int depth = findPath(key);
+        int index;
+        ByteBuffer leaf = file.pin(pathPages[depth]);
+        try {
+            index = lowerBound(leaf, key);
+            if (index == count(leaf) || leaf.getLong(entryOffset(index)) != key) {
+                return false;
+            }
+        } finally {
+            file.unpin(pathPages[depth], false);
+        }
+        makeWritable(depth);
+
+        boolean emptied;
+        int leafId = pathPages[depth];
+        leaf = file.pin(leafId);
+        try {
+            int count = count(leaf);
+            int offset = entryOffset(index);
+            System.arraycopy(leaf.array(), offset + entrySize, leaf.array(), offset, (count - index - 1) * entrySize);
+            leaf.putInt(COUNT_OFFSET, count - 1);
+            emptied = count == 1;
+        } finally {
+            file.unpin(leafId, true);
+        }
+
+        // Unlinks emptied pages up to the first ancestor with other children
+        boolean unlink = emptied && depth > 0;
+        for (int level = depth - 1; level >= 0; level--) {
+            int pageId = pathPages[level];
+            int child = pathIndexes[level];
+            ByteBuffer page = file.pin(pageId);
+            try {
+                if (unlink) {
+                    file.release(pathPages[level + 1]);
+                    int children = count(page);
+                    removeChild(page, children, child);
+                    unlink = children == 1 && level > 0;
+                } else {
+                    setChildSize(page, child, childSize(page, child) - 1);
+                }
+            } finally {
+                file.unpin(pageId, true);
+            }
+        }
+        shrinkRoot();
+        return true;
+    }
+
+    // Marks every page of the tree in used. Only inner pages are read.
+    public void collectPages(BitSet used) throws IOException {
+        int height = 0;
+        for (int pageId = root; ; height++) {
+            int current = pageId;
+            ByteBuffer page = file.pin(current);
+            try {
+                if (isLeaf(page, current)) {
+                    break;
+                }
+                pageId = child(page, 0);
+            } finally {
+                file.unpin(current, false);
+            }
+        }
+        collectPages(root, height, used);
+    }
+
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    // Walks the entries in key order from wherever it was placed. The tree
+    // must not change while a cursor is in use.
+    final class Cursor {
+        private final int[] pages = new int[MAX_DEPTH];
+        private final int[] indexes = new int[MAX_DEPTH];
+        // Copy of the current leaf, so stepping through it needs no page lookups
+        private final ByteBuffer leaf = ByteBuffer.allocate(PageFile.PAGE_SIZE);
+        private int depth;
+        private int count;
+        private int index;
+
+        // Moves to the first entry whose key is at least the given one. Returns false if there is none.
+        public boolean seek(long key) throws IOException {
+            int pageId = root;
+            for (int level = 0; ; level++) {
+                int current = pageId;
+                pages[level] = current;
+                ByteBuffer page = file.pin(current);
+                try {
+                    if (isLeaf(page, current)) {
+                        load(page, level);
+                        index = lowerBound(leaf, key);
+                        break;
+                    }
+                    indexes[level] = childIndex(page, key);
+                    pageId = child(page, indexes[level]);
+                } finally {
+                    file.unpin(current, false);
+                }
+            }
+            if (index < count) {
+                return true;
+            }
+            index = count - 1;
+            return next();
+        }
+
+        // Moves to the entry at the given position in key order. Returns false if there is none.
+        public boolean seekPosition(long position) throws IOException {
+            if (position < 0) {
+                return false;
+            }
+            int pageId = root;
+            for (int level = 0; ; level++) {
+                int current = pageId;
+                pages[level] = current;
+                ByteBuffer page = file.pin(current);
+                try {
+                    if (isLeaf(page, current)) {
+                        load(page, level);
+                        break;
+                    }
+                    int child = 0;
+                    while (child < count(page) - 1 && position >= childSize(page, child)) {
+                        position -= childSize(page, child);
+                        child++;
+                    }
+                    indexes[level] = child;
+                    pageId = child(page, child);
+                } finally {
+                    file.unpin(current, false);
+                }
+            }
+            index = (int) Math.min(position, count);
+            return index < count;
+        }
+
+        public boolean next() throws IOException {
+            if (++index < count) {
+                return true;
+            }
+            for (int level = depth - 1; level >= 0; level--) {
+                int child;
+                ByteBuffer page = file.pin(pages[level]);
+                try {
+                    if (indexes[level] + 1 >= count(page)) {
+                        continue;
+                    }
+                    child = child(page, ++indexes[level]);
+                } finally {
+                    file.unpin(pages[level], false);
+                }
+                descend(level + 1, child, true);
+                return true;
+            }
+            index = count;
+            return false;
+        }
+
+        public boolean previous() throws IOException {
+            if (--index >= 0 && index < count) {
+                return true;
+            }
+            for (int level = depth - 1; level >= 0; level--) {
+                int child;
+                ByteBuffer page = file.pin(pages[level]);
+                try {
+                    if (indexes[level] == 0) {
+                        continue;
+                    }
+                    child = child(page, --indexes[level]);
+                } finally {
+                    file.unpin(pages[level], false);
+                }
+                descend(level + 1, child, false);
+                return true;
+            }
+            index = -1;
+            return false;
+        }
+
+        public long key() {
+            return leaf.getLong(entryOffset(index));
+        }
+
+        public void readValue(byte[] value) {
+            System.arraycopy(leaf.array(), entryOffset(index) + 8, value, 0, valueSize);
+        }
+
+        // Goes down to the first or last leaf under the page, which sits at the given level.
+        private void descend(int level, int pageId, boolean first) throws IOException {
+            for (; ; level++) {
+                int current = pageId;
+                pages[level] = current;
+                ByteBuffer page = file.pin(current);
+                try {
+                    if (isLeaf(page, current)) {
+                        load(page, level);
+                        index = first ? 0 : count - 1;
+                        return;
+                    }
+                    indexes[level] = first ? 0 : count(page) - 1;
+                    pageId = child(page, indexes[level]);
+                } finally {
+                    file.unpin(current, false);
+                }
+            }
+        }
+
+        private void load(ByteBuffer page, int level) {
+            System.arraycopy(page.array(), 0, leaf.array(), 0, PageFile.PAGE_SIZE);
+            count = count(page);
+            depth = level;
+        }
+    }
+
+    // Fills pathPages and pathIndexes from the root down to the leaf where the
+    // key belongs and returns the leaf's depth.
+    private int findPath(long key) throws IOException {
+        int pageId = root;
+        for (int depth = 0; ; depth++) {
+            if (depth == MAX_DEPTH) {
+                throw new IOException("Page tree is deeper than " + MAX_DEPTH + " levels");
+            }
+            int current = pageId;
+            pathPages[depth] = current;
+            ByteBuffer page = file.pin(current);
+            try {
+                if (isLeaf(page, current)) {
+                    return depth;
+                }
+                pathIndexes[depth] = childIndex(page, key);
+                pageId = child(page, pathIndexes[depth]);
+            } finally {
+                file.unpin(current, false);
+            }
+        }
+    }
+
+    // Makes every page on the path writable, top down, pointing each parent at
+    // its child's new id when the child had to be copied.
+    private void makeWritable(int depth) throws IOException {
+        for (int level = 0; level <= depth; level++) {
+            int pageId = file.writable(pathPages[level]);
+            if (pageId == pathPages[level]) {
+                continue;
+            }
+            pathPages[level] = pageId;
+            if (level == 0) {
+                root = pageId;
+                continue;
+            }
+            int parentId = pathPages[level - 1];
+            ByteBuffer parent = file.pin(parentId);
+            try {
+                parent.putInt(CHILDREN_OFFSET + pathIndexes[level - 1] * 4, pageId);
+            } finally {
+                file.unpin(parentId, true);
+            }
+        }
+    }
+
+    // Replaces an inner root that has one child by that child, and one that
+    // has none by an empty leaf.
+    private void shrinkRoot() throws IOException {
+        while (true) {
+            int children;
+            int onlyChild = 0;
+            ByteBuffer page = file.pin(root);
+            try {
+                if (isLeaf(page, root)) {
+                    return;
+                }
+                children = count(page);
+                if (children == 1) {
+                    onlyChild = child(page, 0);
+                }
+            } finally {
+                file.unpin(root, false);
+            }
+            if (children > 1) {
+                return;
+            }
+            int oldRoot = root;
+            root = children == 1 ? onlyChild : create(file);
+            file.release(oldRoot);
+        }
+    }
+
+    private void collectPages(int pageId, int levelsBelow, BitSet used) throws IOException {
+        used.set(pageId);
+        if (levelsBelow == 0) {
+            return;
+        }
+        int[] children;
+        ByteBuffer page = file.pin(pageId);
+        try {
+            children = new int[count(page)];
+            for (int i = 0; i < children.length; i++) {
+                children[i] = child(page, i);
+            }
+        } finally {
+            file.unpin(pageId, false);
+        }
+        for (int child : children) {
+            collectPages(child, levelsBelow - 1, used);
+        }
+    }
+
+    private boolean isLeaf(ByteBuffer page, int pageId) throws IOException {
+        int type = page.getInt(TYPE_OFFSET);
+        if (type != LEAF && type != INNER) {
+            throw new IOException("Corrupt page " + pageId + " in " + file.getFile().getName());
+        }
+        return type == LEAF;
+    }
+
+    private int entryOffset(int index) {
+        return ENTRIES_OFFSET + index * entrySize;
+    }
+
+    // Index of the first leaf entry whose key is at least the given one.
+    private int lowerBound(ByteBuffer leaf, long key) {
+        int low = 0;
+        int high = count(leaf);
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (leaf.getLong(entryOffset(mid)) < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Index of the child whose range holds the key: the number of separators not above it.
+    private static int childIndex(ByteBuffer page, long key) {
+        int low = 0;
+        int high = count(page) - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (page.getLong(KEYS_OFFSET + mid * 8) <= key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int count(ByteBuffer page) {
+        return page.getInt(COUNT_OFFSET);
+    }
+
+    private static int child(ByteBuffer page, int index) {
+        return page.getInt(CHILDREN_OFFSET + index * 4);
+    }
+
+    private static long childSize(ByteBuffer page, int index) {
+        return page.getLong(SIZES_OFFSET + index * 8);
+    }
+
+    private static void setChildSize(ByteBuffer page, int index, long size) {
+        page.putLong(SIZES_OFFSET + index * 8, size);
+    }
+
+    // Inserts a child at the index, with the separator that goes before it.
+    private static void insertChild(ByteBuffer page, int children, int index, long separator, int pageId, long size) {
+        byte[] bytes = page.array();
+        System.arraycopy(bytes, CHILDREN_OFFSET + index * 4, bytes, CHILDREN_OFFSET + (index + 1) * 4, (children - index) * 4);
+        System.arraycopy(bytes, SIZES_OFFSET + index * 8, bytes, SIZES_OFFSET + (index + 1) * 8, (children - index) * 8);
+        System.arraycopy(bytes, KEYS_OFFSET + (index - 1) * 8, bytes, KEYS_OFFSET + index * 8, (children - index) * 8);
+        page.putInt(CHILDREN_OFFSET + index * 4, pageId);
+        setChildSize(page, index, size);
+        page.putLong(KEYS_OFFSET + (index - 1) * 8, separator);
+        page.putInt(COUNT_OFFSET, children + 1);
+    }
+
+    // Removes a child with the separator before it, or after it for the first child.
+    private static void removeChild(ByteBuffer page, int children, int index) {
+        byte[] bytes = page.array();
+        System.arraycopy(bytes, CHILDREN_OFFSET + (index + 1) * 4, bytes, CHILDREN_OFFSET + index * 4, (children - index - 1) * 4);
+        System.arraycopy(bytes, SIZES_OFFSET + (index + 1) * 8, bytes, SIZES_OFFSET + index * 8, (children - index - 1) * 8);
+        int key = Math.max(0, index - 1);
+        if (children > 1) {
+            System.arraycopy(bytes, KEYS_OFFSET + (key + 1) * 8, bytes, KEYS_OFFSET + key * 8, (children - 2 - key) * 8);
+        }
+        page.putInt(COUNT_OFFSET, children - 1);
+    }
+
+    // Writes children from (inclusive) to to (exclusive) and the separators between them as an inner page.
+    private static void writeInner(ByteBuffer page, int[] ids, long[] sizes, long[] keys, int from, int to) {
+        page.putInt(TYPE_OFFSET, INNER);
+        page.putInt(COUNT_OFFSET, to - from);
+        for (int i = from; i < to; i++) {
+            page.putInt(CHILDREN_OFFSET + (i - from) * 4, ids[i]);
+            setChildSize(page, i - from, sizes[i]);
+            if (i + 1 < to) {
+                page.putLong(KEYS_OFFSET + (i - from) * 8, keys[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,731 @@
+package expensetracker;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+// Keeps one user's expenses on disk, for accounts too large to load into the
+// heap. Only the page cache (-Dexpense.pagecache.bytes, 16 MB by default), the
+// category totals and a small text buffer are held in memory, however long
+// the history. Expenses sit in a PagedBTree keyed by (epoch day, id) whose
+// values hold the category, the amount and where the description is, so a
+// page of the date-ordered list or a date-range sum reads only the leaves it
+// covers. Each category has a tree of just those keys, for pages of one
+// category, and another tree maps ids to epoch days for lookups and deletes.
+// Descriptions are appended to a text file; those of deleted expenses are not
+// reclaimed.
+//
+// Changes go to the pages and are journaled like ExpenseManager's, against
+// the generation of the last checkpoint, and replayed on load. A checkpoint
+// every CHECKPOINT_FRAMES changes, on save and on close writes the dirty
+// pages and starts a new journal generation. The public methods are
+// synchronized, so the GUI can read totals on the EDT while its I/O thread
+// changes and reads pages. I/O errors are thrown as UncheckedIOException.
+class PagedExpenseStore implements ExpenseStore, Closeable {
+    static final long DEFAULT_CACHE_BYTES = Long.getLong("expense.pagecache.bytes", 16 << 20);
+
+    private static final int CHECKPOINT_FRAMES = 4096;
+    private static final int MIN_CACHE_FRAMES = 32;
+    private static final int TEXT_BUFFER_SIZE = 1 << 16;
+
+    // Date tree keys are the epoch day above a 40-bit id
+    private static final int ID_BITS = 40;
+    private static final long MAX_ID = (1L << ID_BITS) - 1;
+
+    // Date tree values: category id, amount in cents, description offset and length
+    private static final int CATEGORY = 0;
+    private static final int AMOUNT = 4;
+    private static final int TEXT_OFFSET = 12;
+    private static final int TEXT_LENGTH = 20;
+    private static final int RECORD_SIZE = 24;
+    // Category trees hold keys only
+    private static final byte[] NO_VALUE = new byte[0];
+
+    private final int cacheFrames;
+    private String owner;
+    private PageFile pages;
+    private PagedBTree byDate;
+    private PagedBTree byId;
+    private final List<PagedBTree> byCategory = new ArrayList<>();
+    private ExpenseJournal journal;
+    private int framesSinceCheckpoint;
+    private int unsyncedFrames;
+    private int unsyncedBytes;
+    private long nextId = 1;
+
+    // Descriptions: the first textFlushed bytes are in the file, the rest in textBuffer
+    private FileChannel text;
+    private long textFlushed;
+    private final byte[] textBuffer = new byte[TEXT_BUFFER_SIZE];
+    private int textBuffered;
+
+    // Categories by id, with their running counts and totals
+    private final List<String> categoryNames = new ArrayList<>();
+    private final Map<String, Integer> categoryIds = new HashMap<>();
+    private long[] categoryCounts = new long[16];
+    private long[] categoryTotals = new long[16];
+    private long totalCents;
+
+    // Totals of each day once loadDailyTotals has read them, kept current from then on
+    private DailyTotals dailyTotals;
+    private final ExpenseBudgets budgets = new ExpenseBudgets();
+
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+    private final ByteBuffer day = ByteBuffer.allocate(4);
+
+    public PagedExpenseStore() {
+        this(DEFAULT_CACHE_BYTES);
+    }
+
+    public PagedExpenseStore(long cacheBytes) {
+        cacheFrames = (int) Math.max(MIN_CACHE_FRAMES, Math.min(Integer.MAX_VALUE, cacheBytes / PageFile.PAGE_SIZE));
+    }
+
+    // True if the user's expenses are kept in pages rather than in a snapshot.
+    public static boolean exists(String username) {
+        return new File(pageFileName(username)).exists();
+    }
+
+    @Override
+    public synchronized long addExpense(String username, Expense expense) {
+        requireOwner(username);
+        Expense stored = new Expense(nextId, expense.getEpochDay(), expense.getCategory(),
+                expense.getDescription(), expense.getAmountCents());
+        try {
+            insert(stored);
+            journal(ExpenseJournal.OP_ADD, stored.getId(), stored);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return stored.getId();
+    }
+
+    @Override
+    public synchronized boolean deleteExpense(String username, long id) {
+        requireOwner(username);
+        try {
+            if (!remove(id)) {
+                return false;
+            }
+            journal(ExpenseJournal.OP_DELETE, id, null);
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized boolean updateExpense(String username, Expense expense) {
+        requireOwner(username);
+        try {
+            if (!remove(expense.getId())) {
+                return false;
+            }
+            insert(expense);
+            journal(ExpenseJournal.OP_UPDATE, expense.getId(), expense);
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized Expense getExpense(long id) {
+        try {
+            if (byDate == null || !byId.get(id, day.array())) {
+                return null;
+            }
+            long key = dateKey(day.getInt(0), id);
+            return byDate.get(key, record.array()) ? toExpense(key) : null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized int getExpenseCount() {
+        try {
+            return byDate == null ? 0 : (int) byDate.size();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // The first expense is found by its position in one descent of the date
+    // tree, or of the category's tree, whose keys are then looked up by date.
+    @Override
+    public synchronized List<Expense> listExpenses(String category, boolean newestFirst, int offset, int limit) {
+        List<Expense> expenses = new ArrayList<>();
+        int categoryId = category == null ? -1 : categoryId(category);
+        if (byDate == null || (category != null && categoryId < 0)) {
+            return expenses;
+        }
+        PagedBTree tree = category == null ? byDate : byCategory.get(categoryId);
+        try {
+            PagedBTree.Cursor cursor = tree.cursor();
+            boolean found = cursor.seekPosition(newestFirst ? tree.size() - 1 - offset : offset);
+            for (; found && expenses.size() < limit; found = newestFirst ? cursor.previous() : cursor.next()) {
+                if (category == null) {
+                    cursor.readValue(record.array());
+                } else {
+                    byDate.get(cursor.key(), record.array());
+                }
+                expenses.add(toExpense(cursor.key()));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return expenses;
+    }
+
+    @Override
+    public synchronized List<Expense> getExpensesBetween(Date from, Date to) {
+        List<Expense> expenses = new ArrayList<>();
+        if (byDate == null) {
+            return expenses;
+        }
+        long end = dateKey(ColumnarExpenseStore.toEpochDay(to), MAX_ID);
+        try {
+            PagedBTree.Cursor cursor = byDate.cursor();
+            for (boolean found = cursor.seek(dateKey(ColumnarExpenseStore.toEpochDay(from), 0));
+                    found && cursor.key() <= end; found = cursor.next()) {
+                cursor.readValue(record.array());
+                expenses.add(toExpense(cursor.key()));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return expenses;
+    }
+
+    @Override
+    public synchronized Map<String, Long> calculateCategoryTotalsCents() {
+        Map<String, Long> totals = new HashMap<>();
+        for (int categoryId = 0; categoryId < categoryNames.size(); categoryId++) {
+            if (categoryCounts[categoryId] > 0) {
+                totals.put(categoryNames.get(categoryId), categoryTotals[categoryId]);
+            }
+        }
+        return totals;
+    }
+
+    @Override
+    public synchronized int getCategoryExpenseCount(String category) {
+        int categoryId = categoryId(category);
+        return categoryId < 0 ? 0 : (int) categoryCounts[categoryId];
+    }
+
+    @Override
+    public synchronized long getTotalCents(String category) {
+        if (category == null) {
+            return totalCents;
+        }
+        int categoryId = categoryId(category);
+        return categoryId < 0 ? 0 : categoryTotals[categoryId];
+    }
+
+    // Reads the leaves holding the range, so the cost grows with the number of
+    // expenses in it rather than with the whole history. Once the daily totals
+    // are loaded the sum comes from them instead.
+    @Override
+    public synchronized long sumCentsBetween(int fromDay, int toDay, String category) {
+        int categoryId = category == null ? -1 : categoryId(category);
+        if (byDate == null || (category != null && categoryId < 0)) {
+            return 0;
+        }
+        if (dailyTotals != null) {
+            return dailyTotals.sum(fromDay, toDay, categoryId);
+        }
+        long sum = 0;
+        long end = dateKey(toDay, MAX_ID);
+        try {
+            PagedBTree.Cursor cursor = byDate.cursor();
+            for (boolean found = cursor.seek(dateKey(fromDay, 0)); found && cursor.key() <= end; found = cursor.next()) {
+                cursor.readValue(record.array());
+                if (categoryId < 0 || record.getInt(CATEGORY) == categoryId) {
+                    sum += record.getLong(AMOUNT);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return sum;
+    }
+
+    @Override
+    public synchronized long getMonthTotalCents(int month, String category) {
+        return sumCentsBetween(ExpenseCodec.firstDayOfMonth(month), ExpenseCodec.firstDayOfMonth(month + 1) - 1, category);
+    }
+
+    @Override
+    public synchronized int getFirstEpochDay() {
+        return getExpenseCount() == 0 ? NO_DAY : dayAt(0);
+    }
+
+    @Override
+    public synchronized int getLastEpochDay() {
+        int count = getExpenseCount();
+        return count == 0 ? NO_DAY : dayAt(count - 1);
+    }
+
+    // Number of expenses of the category (null for all) dated fromDay or later,
+    // from one descent of the date tree or of the category's tree.
+    public synchronized int getExpenseCountFrom(int fromDay, String category) {
+        int categoryId = category == null ? -1 : categoryId(category);
+        if (byDate == null || (category != null && categoryId < 0)) {
+            return 0;
+        }
+        PagedBTree tree = category == null ? byDate : byCategory.get(categoryId);
+        try {
+            return (int) (tree.size() - (fromDay == Integer.MIN_VALUE ? 0 : tree.rank(dateKey(fromDay, 0))));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Reads the totals of every day in one pass over the date tree. From then
+    // on sums and month totals are answered from them without reading pages,
+    // and changes keep them current, for 16 bytes per day and category.
+    public synchronized void loadDailyTotals() {
+        if (byDate == null || dailyTotals != null) {
+            return;
+        }
+        DailyTotals totals = new DailyTotals();
+        try {
+            PagedBTree.Cursor cursor = byDate.cursor();
+            for (boolean found = cursor.seekPosition(0); found; found = cursor.next()) {
+                cursor.readValue(record.array());
+                totals.add((int) (cursor.key() >> ID_BITS), record.getInt(CATEGORY), record.getLong(AMOUNT));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        dailyTotals = totals;
+    }
+
+    @Override
+    public synchronized long getBudgetCents(String category) {
+        return budgets.getLimitCents(category);
+    }
+
+    // Sets the category's monthly limit, or removes it for a negative limit,
+    // and writes the budgets file before returning.
+    @Override
+    public synchronized void setBudget(String username, String category, long cents) {
+        requireOwner(username);
+        budgets.setLimitCents(category, cents);
+        ExpenseManager.writeBudgets(username, budgets.getLimits());
+    }
+
+    @Override
+    public synchronized boolean isOverBudget(String category, int month) {
+        long limit = budgets.getLimitCents(category);
+        return limit >= 0 && getMonthTotalCents(month, category) > limit;
+    }
+
+    @Override
+    public synchronized boolean crossedBudget(Expense expense) {
+        long limit = budgets.getLimitCents(expense.getCategory());
+        if (limit < 0) {
+            return false;
+        }
+        long total = getMonthTotalCents(ExpenseCodec.monthIndex(expense.getEpochDay()), expense.getCategory());
+        return total > limit && total - expense.getAmountCents() <= limit;
+    }
+
+    // Inserts the staged rows in date order, which mostly appends to the tree,
+    // and writes one checkpoint instead of journaling row by row.
+    @Override
+    public synchronized int importExpenses(String username, ColumnarExpenseStore staged) {
+        requireOwner(username);
+        int[] slots = new int[staged.size()];
+        int count = 0;
+        for (int slot = staged.nextLiveSlot(0); slot >= 0; slot = staged.nextLiveSlot(slot + 1)) {
+            slots[count++] = slot;
+        }
+        SlotSort.sortByIntKey(slots, count, staged::getEpochDay);
+        try {
+            for (int i = 0; i < count; i++) {
+                int slot = slots[i];
+                insert(new Expense(nextId, staged.getEpochDay(slot), staged.getCategory(slot),
+                        staged.getDescription(slot), staged.getAmountCents(slot)));
+            }
+            if (count > 0) {
+                checkpoint();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return count;
+    }
+
+    // Opens the user's pages, creating them if needed, and replays the journal.
+    @Override
+    public synchronized void loadUserExpenses(String username) {
+        long start = System.nanoTime();
+        clearExpenses();
+        try {
+            open(username);
+        } catch (IOException e) {
+            closeFiles();
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            closeFiles();
+            throw e;
+        }
+        ExpenseMetrics.expensesLoaded(start, getExpenseCount(), pages.getFile(), journal.getFile());
+    }
+
+    // Writes a checkpoint.
+    @Override
+    public synchronized void saveUserExpenses(String username) {
+        requireOwner(username);
+        try {
+            checkpoint();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Syncs on the calling thread, so the future is already complete.
+    @Override
+    public synchronized CompletableFuture<Boolean> syncUserExpenses(String username) {
+        if (!username.equals(owner) || unsyncedFrames == 0) {
+            return CompletableFuture.completedFuture(true);
+        }
+        try {
+            journal.sync();
+        } catch (IOException e) {
+            ExpenseMetrics.error("Error syncing expense journal: " + e.getMessage());
+            return CompletableFuture.completedFuture(false);
+        }
+        ExpenseMetrics.journalFlushed(unsyncedFrames, unsyncedBytes);
+        unsyncedFrames = 0;
+        unsyncedBytes = 0;
+        return CompletableFuture.completedFuture(true);
+    }
+
+    // Checkpoints unless nothing changed, then closes the user's files.
+    @Override
+    public synchronized void clearExpenses() {
+        if (owner != null && framesSinceCheckpoint > 0) {
+            try {
+                checkpoint();
+            } catch (IOException e) {
+                ExpenseMetrics.error("Error saving expense pages: " + e.getMessage());
+            }
+        }
+        closeFiles();
+        owner = null;
+        byDate = null;
+        byId = null;
+        byCategory.clear();
+        nextId = 1;
+        framesSinceCheckpoint = 0;
+        unsyncedFrames = 0;
+        unsyncedBytes = 0;
+        textFlushed = 0;
+        textBuffered = 0;
+        categoryNames.clear();
+        categoryIds.clear();
+        Arrays.fill(categoryCounts, 0);
+        Arrays.fill(categoryTotals, 0);
+        totalCents = 0;
+        dailyTotals = null;
+        budgets.clear();
+    }
+
+    @Override
+    public synchronized void close() {
+        clearExpenses();
+    }
+
+    @Override
+    public synchronized long estimateMemoryBytes() {
+        long bytes = TEXT_BUFFER_SIZE + 16L * categoryCounts.length
+                + (dailyTotals == null ? 0 : dailyTotals.memoryBytes());
+        return pages == null ? bytes : bytes + pages.memoryBytes();
+    }
+
+    // The page cache of the loaded user, or null.
+    public synchronized PageCache getPageCache() {
+        return pages == null ? null : pages.getCache();
+    }
+
+    private void open(String username) throws IOException {
+        pages = new PageFile(new File(pageFileName(username)), cacheFrames);
+        text = FileChannel.open(new File(textFileName(username)).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        journal = new ExpenseJournal(new File(journalFileName(username)));
+
+        ByteBuffer header = pages.readHeader();
+        if (header == null) {
+            byDate = new PagedBTree(pages, RECORD_SIZE, PagedBTree.create(pages));
+            byId = new PagedBTree(pages, 4, PagedBTree.create(pages));
+            text.truncate(0);
+            pages.checkpoint(encodeHeader());
+        } else {
+            byDate = new PagedBTree(pages, RECORD_SIZE, header.getInt());
+            byId = new PagedBTree(pages, 4, header.getInt());
+            nextId = header.getLong();
+            long textSize = header.getLong();
+            int categoryCount = header.getInt();
+            for (int i = 0; i < categoryCount; i++) {
+                byte[] name = new byte[header.getShort() & 0xFFFF];
+                header.get(name);
+                int categoryId = addCategory(new String(name, StandardCharsets.UTF_8), header.getInt());
+                categoryCounts[categoryId] = header.getLong();
+                categoryTotals[categoryId] = header.getLong();
+                totalCents += categoryTotals[categoryId];
+            }
+
+            BitSet used = new BitSet();
+            byDate.collectPages(used);
+            byId.collectPages(used);
+            for (PagedBTree tree : byCategory) {
+                tree.collectPages(used);
+            }
+            pages.setUsedPages(used);
+
+            // Descriptions appended after the checkpoint come back with the journal
+            if (text.size() < textSize) {
+                throw new IOException("Truncated description file: " + textFileName(username));
+            }
+            text.truncate(textSize);
+            textFlushed = textSize;
+        }
+
+        owner = username;
+        ExpenseManager.loadBudgets(username, budgets);
+        journal.open(pages.getGeneration(), this::replay);
+        framesSinceCheckpoint = journal.getFrameCount();
+    }
+
+    private void replay(byte op, long id, Expense expense) {
+        try {
+            if (op == ExpenseJournal.OP_DELETE || op == ExpenseJournal.OP_UPDATE) {
+                remove(id);
+            }
+            if (op != ExpenseJournal.OP_DELETE && id > 0 && !byId.get(id, day.array())) {
+                insert(expense);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void insert(Expense expense) throws IOException {
+        long id = expense.getId();
+        if (id <= 0 || id > MAX_ID) {
+            throw new IllegalArgumentException("Expense id out of range: " + id);
+        }
+        if (dateKey(expense.getEpochDay(), 0) >> ID_BITS != expense.getEpochDay()) {
+            throw new IllegalArgumentException("Expense date out of range: " + ExpenseCodec.formatIsoDate(expense.getEpochDay()));
+        }
+        int categoryId = internCategory(expense.getCategory());
+        byte[] description = expense.getDescription().getBytes(StandardCharsets.UTF_8);
+        record.putInt(CATEGORY, categoryId);
+        record.putLong(AMOUNT, expense.getAmountCents());
+        record.putLong(TEXT_OFFSET, appendText(description));
+        record.putInt(TEXT_LENGTH, description.length);
+        long key = dateKey(expense.getEpochDay(), id);
+        byDate.insert(key, record.array());
+        byCategory.get(categoryId).insert(key, NO_VALUE);
+        day.putInt(0, expense.getEpochDay());
+        byId.insert(id, day.array());
+
+        categoryCounts[categoryId]++;
+        categoryTotals[categoryId] += expense.getAmountCents();
+        totalCents += expense.getAmountCents();
+        if (dailyTotals != null) {
+            dailyTotals.add(expense.getEpochDay(), categoryId, expense.getAmountCents());
+        }
+        nextId = Math.max(nextId, id + 1);
+    }
+
+    private boolean remove(long id) throws IOException {
+        if (!byId.get(id, day.array())) {
+            return false;
+        }
+        long key = dateKey(day.getInt(0), id);
+        if (!byDate.get(key, record.array())) {
+            throw new IOException("Expense " + id + " is missing from " + pages.getFile().getName());
+        }
+        int categoryId = record.getInt(CATEGORY);
+        byDate.delete(key);
+        byCategory.get(categoryId).delete(key);
+        byId.delete(id);
+
+        categoryCounts[categoryId]--;
+        categoryTotals[categoryId] -= record.getLong(AMOUNT);
+        totalCents -= record.getLong(AMOUNT);
+        if (dailyTotals != null) {
+            dailyTotals.add(day.getInt(0), categoryId, -record.getLong(AMOUNT));
+        }
+        return true;
+    }
+
+    private void journal(byte op, long id, Expense expense) throws IOException {
+        byte[] frame = ExpenseJournal.encodeFrame(op, id, expense);
+        journal.appendFrame(frame);
+        unsyncedFrames++;
+        unsyncedBytes += frame.length;
+        if (++framesSinceCheckpoint >= CHECKPOINT_FRAMES) {
+            checkpoint();
+        }
+    }
+
+    // Descriptions first, then the pages and header, then a new journal generation.
+    private void checkpoint() throws IOException {
+        long start = System.nanoTime();
+        flushText();
+        text.force(true);
+        long bytes = pages.checkpoint(encodeHeader());
+        journal.reset(pages.getGeneration());
+        framesSinceCheckpoint = 0;
+        unsyncedFrames = 0;
+        unsyncedBytes = 0;
+        ExpenseMetrics.snapshotSaved(start, bytes);
+    }
+
+    private byte[] encodeHeader() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(byDate.getRoot());
+        out.writeInt(byId.getRoot());
+        out.writeLong(nextId);
+        out.writeLong(textFlushed + textBuffered);
+        out.writeInt(categoryNames.size());
+        for (int categoryId = 0; categoryId < categoryNames.size(); categoryId++) {
+            byte[] name = categoryNames.get(categoryId).getBytes(StandardCharsets.UTF_8);
+            out.writeShort(name.length);
+            out.write(name);
+            out.writeInt(byCategory.get(categoryId).getRoot());
+            out.writeLong(categoryCounts[categoryId]);
+            out.writeLong(categoryTotals[categoryId]);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private Expense toExpense(long key) throws IOException {
+        return new Expense(key & MAX_ID, (int) (key >> ID_BITS), categoryNames.get(record.getInt(CATEGORY)),
+                readText(record.getLong(TEXT_OFFSET), record.getInt(TEXT_LENGTH)), record.getLong(AMOUNT));
+    }
+
+    // Returns the offset the bytes were appended at.
+    private long appendText(byte[] bytes) throws IOException {
+        if (textBuffered + bytes.length > textBuffer.length) {
+            flushText();
+        }
+        long offset = textFlushed + textBuffered;
+        if (bytes.length > textBuffer.length) {
+            writeText(ByteBuffer.wrap(bytes));
+        } else {
+            System.arraycopy(bytes, 0, textBuffer, textBuffered, bytes.length);
+            textBuffered += bytes.length;
+        }
+        return offset;
+    }
+
+    private void flushText() throws IOException {
+        writeText(ByteBuffer.wrap(textBuffer, 0, textBuffered));
+        textBuffered = 0;
+    }
+
+    private void writeText(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            textFlushed += text.write(bytes, textFlushed);
+        }
+    }
+
+    private String readText(long offset, int length) throws IOException {
+        if (offset >= textFlushed) {
+            return new String(textBuffer, (int) (offset - textFlushed), length, StandardCharsets.UTF_8);
+        }
+        ByteBuffer bytes = ByteBuffer.allocate(length);
+        while (bytes.hasRemaining()) {
+            if (text.read(bytes, offset + bytes.position()) < 0) {
+                throw new EOFException("Description past the end of " + textFileName(owner));
+            }
+        }
+        return new String(bytes.array(), 0, length, StandardCharsets.UTF_8);
+    }
+
+    private int categoryId(String category) {
+        Integer categoryId = categoryIds.get(category);
+        return categoryId == null ? -1 : categoryId;
+    }
+
+    private int internCategory(String category) throws IOException {
+        Integer categoryId = categoryIds.get(category);
+        return categoryId != null ? categoryId : addCategory(category, PagedBTree.create(pages));
+    }
+
+    private int addCategory(String category, int root) {
+        int id = categoryNames.size();
+        categoryNames.add(category);
+        categoryIds.put(category, id);
+        byCategory.add(new PagedBTree(pages, 0, root));
+        if (id == categoryCounts.length) {
+            categoryCounts = Arrays.copyOf(categoryCounts, id * 2);
+            categoryTotals = Arrays.copyOf(categoryTotals, id * 2);
+        }
+        return id;
+    }
+
+    private void requireOwner(String username) {
+        if (owner == null || !owner.equals(username)) {
+            throw new IllegalStateException("Expenses of " + username + " are not loaded");
+        }
+    }
+
+    private void closeFiles() {
+        for (Closeable file : new Closeable[] {journal, text, pages}) {
+            if (file == null) {
+                continue;
+            }
+            try {
+                file.close();
+            } catch (IOException e) {
+                ExpenseMetrics.error("Error closing expense pages: " + e.getMessage());
+            }
+        }
+        journal = null;
+        text = null;
+        pages = null;
+    }
+
+    // Epoch day of the expense at the position in date order, or 0 if there is none.
+    private int dayAt(long position) {
+        if (byDate == null) {
+            return 0;
+        }
+        try {
+            PagedBTree.Cursor cursor = byDate.cursor();
+            return cursor.seekPosition(position) ? (int) (cursor.key() >> ID_BITS) : 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long dateKey(int epochDay, long id) {
+        return (long) epochDay << ID_BITS | id;
+    }
+
+    private static String pageFileName(String username) {
+        return username + "_expenses.pages";
+    }
+
+    private static String textFileName(String username) {
+        return username + "_expenses.pages.text";
+    }
+
+    private static String journalFileName(String username) {
+        return username + "_expenses.pages.journal";
+    }
+}
@@ -0,0 +1,45 @@
+package expensetracker;
+
+import java.io.*;
+import java.util.function.IntConsumer;
+
+// Reports how far through a file a stream has read, as a percentage.
+class ProgressInputStream extends FilterInputStream {
+    private final long length;
+    private final IntConsumer progress;
+    private long read;
+    private int lastPercent = -1;
+
+    public ProgressInputStream(InputStream in, long length, IntConsumer progress) {
+        super(in);
+        this.length = Math.max(1, length);
+        this.progress = progress;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) {
+            advance(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n > 0) {
+            advance(n);
+        }
+        return n;
+    }
+
+    private void advance(int n) {
+        read += n;
+        int percent = (int) Math.min(99, read * 100 / length);
+        if (percent != lastPercent) {
+            lastPercent = percent;
+            progress.accept(percent);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package expensetracker;
+
+import java.util.*;
+
+// Stable merge sort over slot numbers, so ordering a column never boxes.
+final class SlotSort {
+    interface SlotComparator {
+        int compare(int a, int b);
+    }
+
+    private SlotSort() {
+    }
+
+    interface IntKey {
+        int key(int slot);
+    }
+
+    interface LongKey {
+        long key(int slot);
+    }
+
+    // Orders slots by key, then by slot number, using a primitive sort of packed (key, slot) pairs.
+    public static void sortByIntKey(int[] slots, int length, IntKey key) {
+        long[] packed = new long[length];
+        for (int i = 0; i < length; i++) {
+            packed[i] = ((long) (key.key(slots[i]) ^ Integer.MIN_VALUE) << 32) | slots[i];
+        }
+        Arrays.sort(packed);
+        for (int i = 0; i < length; i++) {
+            slots[i] = (int) packed[i];
+        }
+    }
+
+    // Same as sortByIntKey for long keys; keys outside the int range fall back to a merge sort.
+    public static void sortByLongKey(int[] slots, int length, LongKey key) {
+        for (int i = 0; i < length; i++) {
+            long k = key.key(slots[i]);
+            if (k < Integer.MIN_VALUE || k > Integer.MAX_VALUE) {
+                sort(slots, length, (a, b) -> {
+                    int c = Long.compare(key.key(a), key.key(b));
+                    return c != 0 ? c : Integer.compare(a, b);
+                });
+                return;
+            }
+        }
+        sortByIntKey(slots, length, slot -> (int) key.key(slot));
+    }
+
+    // Stable counting sort by a small group number, keeping the existing order within each group.
+    public static int[] partition(int[] slots, int length, int groupCount, IntKey group) {
+        int[] starts = new int[groupCount + 1];
+        for (int i = 0; i < length; i++) {
+            starts[group.key(slots[i]) + 1]++;
+        }
+        for (int g = 0; g < groupCount; g++) {
+            starts[g + 1] += starts[g];
+        }
+        int[] result = new int[length];
+        for (int i = 0; i < length; i++) {
+            result[starts[group.key(slots[i])]++] = slots[i];
+        }
+        return result;
+    }
+
+    public static void sort(int[] slots, int length, SlotComparator comparator) {
+        if (length < 2) {
+            return;
+        }
+        int[] buffer = new int[length];
+        mergeSort(slots, buffer, 0, length, comparator);
+    }
+
+    private static void mergeSort(int[] slots, int[] buffer, int from, int to, SlotComparator comparator) {
+        if (to - from <= 16) {
+            for (int i = from + 1; i < to; i++) {
+                int slot = slots[i];
+                int j = i - 1;
+                while (j >= from && comparator.compare(slots[j], slot) > 0) {
+                    slots[j + 1] = slots[j];
+                    j--;
+                }
+                slots[j + 1] = slot;
+            }
+            return;
+        }
+
+        int mid = (from + to) >>> 1;
+        mergeSort(slots, buffer, from, mid, comparator);
+        mergeSort(slots, buffer, mid, to, comparator);
+        if (comparator.compare(slots[mid - 1], slots[mid]) <= 0) {
+            return;
+        }
+
+        System.arraycopy(slots, from, buffer, from, to - from);
+        int left = from;
+        int right = mid;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < mid && comparator.compare(buffer[left], buffer[right]) <= 0)) {
+                slots[i] = buffer[left++];
+            } else {
+                slots[i] = buffer[right++];
+            }
+        }
+    }
+}
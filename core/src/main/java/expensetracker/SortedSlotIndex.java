@@ -0,0 +1,121 @@
+package expensetracker;
+
+import java.util.*;
+
+// Slot numbers kept sorted by a key comparator, with ties broken by slot
+// number so every slot has exactly one position. Inserts and removals
+// binary-search their position and shift the tail in place.
+class SortedSlotIndex {
+    interface SlotProbe {
+        // Sign of the slot's key compared to the key being searched for.
+        int compareTo(int slot);
+    }
+
+    private final SlotSort.SlotComparator comparator;
+    private int[] slots = new int[16];
+    private int size;
+
+    public SortedSlotIndex(SlotSort.SlotComparator keyComparator) {
+        this.comparator = (a, b) -> {
+            int c = keyComparator.compare(a, b);
+            return c != 0 ? c : Integer.compare(a, b);
+        };
+    }
+
+    public void rebuild(int[] liveSlots, int count) {
+        slots = Arrays.copyOf(liveSlots, Math.max(16, count));
+        size = count;
+        SlotSort.sort(slots, size, comparator);
+    }
+
+    // Takes over slots that the caller has already put in this index's order.
+    public void setSorted(int[] sortedSlots, int count) {
+        slots = sortedSlots.length >= 16 ? sortedSlots : Arrays.copyOf(sortedSlots, 16);
+        size = count;
+    }
+
+    public void insert(int slot) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (comparator.compare(slots[mid], slot) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        if (size == slots.length) {
+            slots = Arrays.copyOf(slots, size + (size >> 1));
+        }
+        System.arraycopy(slots, low, slots, low + 1, size - low);
+        slots[low] = slot;
+        size++;
+    }
+
+    public boolean remove(int slot) {
+        int position = positionOf(slot);
+        if (position < 0) {
+            return false;
+        }
+        System.arraycopy(slots, position + 1, slots, position, size - position - 1);
+        size--;
+        return true;
+    }
+
+    public int positionOf(int slot) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int c = comparator.compare(slots[mid], slot);
+            if (c < 0) {
+                low = mid + 1;
+            } else if (c > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    // First position whose slot does not compare below the probe.
+    public int lowerBound(SlotProbe probe) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (probe.compareTo(slots[mid]) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Applies a store compaction. Compaction keeps live slots in order, so the sort order is unchanged.
+    public void remap(int[] remap) {
+        for (int i = 0; i < size; i++) {
+            slots[i] = remap[slots[i]];
+        }
+    }
+
+    public int get(int position) {
+        return slots[position];
+    }
+
+    public long memoryBytes() {
+        return (long) slots.length * 4;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        slots = new int[16];
+        size = 0;
+    }
+}
@@ -0,0 +1,276 @@
+package expensetracker;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+// Hash index of user records in a single file:
+//
+//   header:  magic "USRX", version, bucket count, record count
+//   buckets: one file offset per bucket, pointing at the newest record in its chain
+//   records: appended as [next record offset][username][password]
+//
+// A lookup reads one bucket slot and walks that bucket's chain. Registering
+// appends the record and forces it to disk before linking it into its
+// bucket, so a crash partway through never leaves a bucket pointing at a
+// half-written record. Opening checks the header and the newest linked
+// record, and cuts off a record that was appended but never linked. The
+// bucket table is doubled (by rewriting the file) once chains average more
+// than two records. Names and passwords are at most 65535 bytes in UTF-8.
+class UserIndexFile implements Closeable {
+    private static final int MAGIC = 0x55535258; // "USRX"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int INITIAL_BUCKETS = 1024;
+    private static final int MAX_AVERAGE_CHAIN = 2;
+    private static final int MAX_FIELD_BYTES = 0xFFFF;
+
+    private final File file;
+    private FileChannel channel;
+    private int bucketCount;
+    private int recordCount;
+
+    private UserIndexFile(File file) {
+        this.file = file;
+    }
+
+    public static UserIndexFile open(File file) throws IOException {
+        UserIndexFile index = new UserIndexFile(file);
+        index.channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (index.channel.size() == 0) {
+                index.initialize(INITIAL_BUCKETS);
+            } else {
+                index.readHeader();
+                index.truncateUnlinkedTail();
+            }
+        } catch (IOException e) {
+            index.channel.close();
+            throw e;
+        }
+        return index;
+    }
+
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    public User find(String username) throws IOException {
+        byte[] wanted = username.getBytes(StandardCharsets.UTF_8);
+        long offset = readLong(bucketPosition(bucket(username)));
+        while (offset != 0) {
+            ByteBuffer head = read(offset, Long.BYTES + Short.BYTES);
+            long next = head.getLong();
+            int nameLength = head.getShort() & 0xFFFF;
+            if (nameLength == wanted.length) {
+                ByteBuffer rest = read(offset + head.capacity(), nameLength + Short.BYTES);
+                byte[] name = new byte[nameLength];
+                rest.get(name);
+                if (Arrays.equals(name, wanted)) {
+                    byte[] password = new byte[rest.getShort() & 0xFFFF];
+                    read(offset + head.capacity() + rest.capacity(), password.length).get(password);
+                    return new User(username, new String(password, StandardCharsets.UTF_8));
+                }
+            }
+            offset = next;
+        }
+        return null;
+    }
+
+    // Rejects a name or password too long for the record format with an
+    // IllegalArgumentException, before anything is written.
+    public void append(User user) throws IOException {
+        checkLength("Username", user.getUsername());
+        checkLength("Password", user.getPassword());
+        if (recordCount + 1 > bucketCount * MAX_AVERAGE_CHAIN) {
+            grow();
+        }
+        long bucketPosition = bucketPosition(bucket(user.getUsername()));
+        long head = readLong(bucketPosition);
+        long offset = writeRecord(channel, channel.size(), head, user);
+        channel.force(false);
+
+        ByteBuffer pointer = ByteBuffer.allocate(Long.BYTES);
+        pointer.putLong(offset).flip();
+        writeFully(channel, pointer, bucketPosition);
+        recordCount++;
+        writeHeader(channel, bucketCount, recordCount);
+    }
+
+    public void sync() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void initialize(int buckets) throws IOException {
+        channel.truncate(0);
+        bucketCount = buckets;
+        recordCount = 0;
+        writeHeader(channel, bucketCount, recordCount);
+        writeFully(channel, ByteBuffer.allocate(buckets * Long.BYTES), HEADER_SIZE);
+        channel.force(true);
+    }
+
+    private void readHeader() throws IOException {
+        ByteBuffer header = read(0, HEADER_SIZE);
+        if (header.getInt() != MAGIC) {
+            throw new IOException("Not a user index: " + file.getName());
+        }
+        int version = header.getInt();
+        if (version > VERSION) {
+            throw new IOException("Unsupported user index version " + version);
+        }
+        bucketCount = header.getInt();
+        recordCount = header.getInt();
+        if (bucketCount <= 0 || Integer.bitCount(bucketCount) != 1 || recordCount < 0
+                || channel.size() < bucketPosition(bucketCount)) {
+            throw new IOException("Corrupt user index header: " + file.getName());
+        }
+    }
+
+    // The newest record is the head of its bucket and ends the linked part
+    // of the file. Anything after it was appended by a registration that
+    // crashed before linking it, and is cut off; a newest record that does
+    // not fit in the file means the index is damaged.
+    private void truncateUnlinkedTail() throws IOException {
+        ByteBuffer table = read(HEADER_SIZE, bucketCount * Long.BYTES);
+        long tableEnd = bucketPosition(bucketCount);
+        long newest = 0;
+        while (table.hasRemaining()) {
+            long head = table.getLong();
+            if (head != 0 && head < tableEnd) {
+                throw new IOException("Corrupt user index bucket: " + file.getName());
+            }
+            newest = Math.max(newest, head);
+        }
+        long end = tableEnd;
+        if (newest != 0) {
+            ByteBuffer head = read(newest, Long.BYTES + Short.BYTES);
+            head.getLong();
+            int nameLength = head.getShort() & 0xFFFF;
+            long passwordLengthPosition = newest + head.capacity() + nameLength;
+            int passwordLength = read(passwordLengthPosition, Short.BYTES).getShort() & 0xFFFF;
+            end = passwordLengthPosition + Short.BYTES + passwordLength;
+            if (end > channel.size()) {
+                throw new EOFException("Truncated user index: " + file.getName());
+            }
+        }
+        if (channel.size() > end) {
+            channel.truncate(end);
+            channel.force(true);
+        }
+    }
+
+    // Rewrites every record into a file with twice as many buckets and swaps it in.
+    private void grow() throws IOException {
+        int newBucketCount = bucketCount * 2;
+        File tempFile = new File(file.getPath() + ".tmp");
+        try (FileChannel target = FileChannel.open(tempFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long[] heads = new long[newBucketCount];
+            long end = HEADER_SIZE + (long) newBucketCount * Long.BYTES;
+            for (int b = 0; b < bucketCount; b++) {
+                long offset = readLong(bucketPosition(b));
+                while (offset != 0) {
+                    ByteBuffer head = read(offset, Long.BYTES + Short.BYTES);
+                    long next = head.getLong();
+                    byte[] name = new byte[head.getShort() & 0xFFFF];
+                    ByteBuffer rest = read(offset + head.capacity(), name.length + Short.BYTES);
+                    rest.get(name);
+                    byte[] password = new byte[rest.getShort() & 0xFFFF];
+                    read(offset + head.capacity() + rest.capacity(), password.length).get(password);
+
+                    String username = new String(name, StandardCharsets.UTF_8);
+                    User user = new User(username, new String(password, StandardCharsets.UTF_8));
+                    int newBucket = spread(username.hashCode()) & (newBucketCount - 1);
+                    long written = writeRecord(target, end, heads[newBucket], user);
+                    heads[newBucket] = written;
+                    end = target.size();
+                    offset = next;
+                }
+            }
+
+            ByteBuffer table = ByteBuffer.allocate(newBucketCount * Long.BYTES);
+            for (long head : heads) {
+                table.putLong(head);
+            }
+            table.flip();
+            writeFully(target, table, HEADER_SIZE);
+            writeHeader(target, newBucketCount, recordCount);
+            target.force(true);
+        }
+
+        channel.close();
+        Files.move(tempFile.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        bucketCount = newBucketCount;
+    }
+
+    private int bucket(String username) {
+        return spread(username.hashCode()) & (bucketCount - 1);
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static void checkLength(String field, String value) {
+        if (value.getBytes(StandardCharsets.UTF_8).length > MAX_FIELD_BYTES) {
+            throw new IllegalArgumentException(field + " is longer than " + MAX_FIELD_BYTES + " bytes");
+        }
+    }
+
+    private static long bucketPosition(int bucket) {
+        return HEADER_SIZE + (long) bucket * Long.BYTES;
+    }
+
+    private static long writeRecord(FileChannel target, long offset, long next, User user) throws IOException {
+        byte[] name = user.getUsername().getBytes(StandardCharsets.UTF_8);
+        byte[] password = user.getPassword().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(Long.BYTES + Short.BYTES * 2 + name.length + password.length);
+        record.putLong(next);
+        record.putShort((short) name.length).put(name);
+        record.putShort((short) password.length).put(password);
+        record.flip();
+        writeFully(target, record, offset);
+        return offset;
+    }
+
+    private static void writeHeader(FileChannel target, int buckets, int records) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(buckets).putInt(records).flip();
+        writeFully(target, header, 0);
+    }
+
+    private static void writeFully(FileChannel target, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += target.write(buffer, position);
+        }
+    }
+
+    private long readLong(long position) throws IOException {
+        return read(position, Long.BYTES).getLong();
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Truncated user index: " + file.getName());
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
@@ -0,0 +1,134 @@
+package expensetracker;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.regex.Pattern;
+
+// Users are looked up through an on-disk hash index (users.idx), so logging
+// in reads only the matching record instead of every account. Users that
+// have been looked up or registered are cached in memory.
+class UserManager {
+    private static final String USER_INDEX_FILE = "users.idx";
+    private static final String LEGACY_USER_DATA_FILE = "users.dat";
+    // A username is the prefix of its expense file names, so it must not
+    // reach outside the working directory
+    private static final Pattern USERNAME = Pattern.compile("[A-Za-z0-9_.-]{1,64}");
+
+    private final File indexFile;
+    private final File legacyFile;
+    private final Map<String, User> users = new HashMap<>();
+    private UserIndexFile index;
+    // Set by registrations that have not been synced yet
+    private boolean unsynced;
+
+    public UserManager() {
+        this(new File(USER_INDEX_FILE), new File(LEGACY_USER_DATA_FILE));
+    }
+
+    public UserManager(File indexFile, File legacyFile) {
+        this.indexFile = indexFile;
+        this.legacyFile = legacyFile;
+    }
+
+    // Registers the user and appends it to the index right away. Fails, and
+    // registers no one, when the index is not open, the name is not a valid
+    // username or the password is too long for the index.
+    public void addUser(User user) throws IOException {
+        checkUsername(user.getUsername());
+        if (index == null) {
+            throw new IOException("User data is not open");
+        }
+        index.append(user);
+        users.put(user.getUsername(), user);
+        unsynced = true;
+    }
+
+    static void checkUsername(String username) {
+        if (!USERNAME.matcher(username).matches() || ".".equals(username) || "..".equals(username)) {
+            throw new IllegalArgumentException(
+                    "Usernames are 1 to 64 letters, digits, '.', '_' or '-', and cannot be '.' or '..'");
+        }
+    }
+
+    public boolean usernameExists(String username) {
+        return findUser(username) != null;
+    }
+
+    public User authenticateUser(String username, String password) {
+        User user = findUser(username);
+        if (user != null && user.getPassword().equals(password)) {
+            return user;
+        }
+        return null;
+    }
+
+    // Opens the index without reading any user records. A users.dat from an
+    // older version is converted into the index the first time. If the index
+    // cannot be opened the error goes to the caller, and registering fails.
+    public void loadUsers() throws IOException {
+        long start = System.nanoTime();
+        try {
+            if (!indexFile.exists() && legacyFile.exists()) {
+                migrateLegacyUsers();
+            }
+            index = UserIndexFile.open(indexFile);
+        } finally {
+            ExpenseMetrics.LOAD_USERS.recordSince(start);
+        }
+    }
+
+    // Copies users.dat into a temporary index that is renamed into place only
+    // once it holds every user and is synced, so an interrupted conversion is
+    // redone from the start on the next load.
+    @SuppressWarnings("unchecked")
+    private void migrateLegacyUsers() throws IOException {
+        File tempFile = new File(indexFile.getPath() + ".tmp");
+        Files.deleteIfExists(tempFile.toPath());
+        try (UserIndexFile migrated = UserIndexFile.open(tempFile);
+             ObjectInputStream ois = new LegacyObjectInputStream(new BufferedInputStream(new FileInputStream(legacyFile)))) {
+            for (User user : (List<User>) ois.readObject()) {
+                if (migrated.find(user.getUsername()) == null) {
+                    migrated.append(user);
+                }
+            }
+            migrated.sync();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unreadable user data in " + legacyFile + ": " + e.getMessage(), e);
+        }
+        Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        Files.move(legacyFile.toPath(), new File(legacyFile.getPath() + ".bak").toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // Registrations are written as they happen; this only forces them to disk, if there are any.
+    public void saveUsers() {
+        if (index == null || !unsynced) {
+            return;
+        }
+        try {
+            index.sync();
+            unsynced = false;
+        } catch (IOException e) {
+            ExpenseMetrics.error("Error saving user data: " + e.getMessage());
+        }
+    }
+
+    private User findUser(String username) {
+        User user = users.get(username);
+        if (user != null || index == null) {
+            return user;
+        }
+        try {
+            user = index.find(username);
+        } catch (IOException e) {
+            ExpenseMetrics.error("Error loading user data: " + e.getMessage());
+            return null;
+        }
+        if (user != null) {
+            users.put(username, user);
+        }
+        return user;
+    }
+}
@@ -0,0 +1,65 @@
+package expensetracker;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import org.junit.jupiter.api.Test;
+
+class ColumnarExpenseStoreTest {
+    @Test
+    void clearForgetsTheCategories() {
+        ColumnarExpenseStore store = new ColumnarExpenseStore();
+        store.add(1, 100, "Food", "Lunch", 1250);
+        store.add(2, 101, "Housing", "Rent", 90000);
+        for (int i = 0; i < 20; i++) {
+            store.add(3 + i, 102, "Category " + i, "Other", 1);
+        }
+
+        store.clear();
+        assertEquals(0, store.size());
+        assertEquals(0, store.getCategoryCount());
+        assertEquals(-1, store.categoryId("Food"));
+        assertEquals(0, store.getTotalCents());
+
+        // The next user's categories are numbered from 0 with nothing left over
+        int slot = store.add(1, 200, "Utilities", "Power", 4000);
+        assertEquals(0, store.getCategoryId(slot));
+        assertEquals(1, store.getCategoryCount());
+        assertEquals(4000, store.getCategoryTotalCents(0));
+        assertEquals(1, store.getCategoryExpenseCount(0));
+        assertEquals("Utilities", store.getCategoryName(0));
+    }
+
+    @Test
+    void compactionKeepsLiveSlotsInOrder() {
+        ColumnarExpenseStore store = new ColumnarExpenseStore();
+        int count = 3000;
+        for (int i = 0; i < count; i++) {
+            store.add(i, i, i % 2 == 0 ? "Food" : "Housing", "Item " + i, i + 1);
+        }
+        assertNull(store.compactIfNeeded());
+        for (int slot = 0; slot < count; slot++) {
+            if (slot % 3 != 0) {
+                store.remove(slot);
+            }
+        }
+        store.remove(1);
+        assertEquals(count / 3, store.size());
+
+        int[] remap = store.compactIfNeeded();
+        assertNotNull(remap);
+        assertEquals(count / 3, store.getSlotCount());
+        for (int oldSlot = 0; oldSlot < count; oldSlot++) {
+            assertEquals(oldSlot % 3 == 0 ? oldSlot / 3 : -1, remap[oldSlot]);
+        }
+        long total = 0;
+        for (int slot = 0; slot < store.getSlotCount(); slot++) {
+            long id = 3L * slot;
+            assertEquals(id, store.getId(slot));
+            assertEquals("Item " + id, store.getDescription(slot));
+            assertEquals(id % 2 == 0 ? "Food" : "Housing", store.getCategory(slot));
+            total += id + 1;
+        }
+        assertEquals(total, store.getTotalCents());
+    }
+}
@@ -0,0 +1,165 @@
+package expensetracker;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CsvExpenseImporterTest {
+    @TempDir
+    Path dir;
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+    private final CsvExpenseImporter importer = new CsvExpenseImporter(pool);
+
+    @AfterEach
+    void shutdownPool() {
+        pool.shutdown();
+    }
+
+    @Test
+    void quotedFieldsKeepCommasAndEscapedQuotes() throws IOException {
+        CsvExpenseImporter.Result result = parse(
+                "Date,Category,Description,Amount",
+                "2024-01-05,Food,\"Lunch, with friends\",12.50",
+                "01/06/2024,\"Housing\",\"The \"\"big\"\" rent\",\"$1,250.00\"",
+                "2024-01-07,Food,Say \"\"hi\"\",1");
+
+        assertEquals(List.of(), result.errors);
+        assertEquals(List.of("2024-01-05 Food Lunch, with friends 1250",
+                "2024-01-06 Housing The \"big\" rent 125000",
+                "2024-01-07 Food Say hi 100"), rows(result.rows));
+    }
+
+    @Test
+    void unterminatedQuoteRejectsTheLine() throws IOException {
+        CsvExpenseImporter.Result result = parse(
+                "2024-01-05,Food,\"Lunch,12.50",
+                "2024-01-06,Food,Dinner,30");
+
+        assertEquals(List.of("line 1: unterminated quoted field"), result.errors);
+        assertEquals(List.of("2024-01-06 Food Dinner 3000"), rows(result.rows));
+    }
+
+    @Test
+    void onlyTheFullHeaderRowIsSkipped() throws IOException {
+        CsvExpenseImporter.Result header = parse(
+                " DATE , category,\"Description\",Amount ",
+                "2024-01-05,Food,Lunch,12.50");
+        assertEquals(List.of(), header.errors);
+        assertEquals(1, header.rows.size());
+
+        // Starts with "date" but is a row, and a bad one
+        CsvExpenseImporter.Result notHeader = parse(
+                "date,Food,Lunch,12.50",
+                "2024-01-05,Food,Lunch,12.50");
+        assertEquals(1, notHeader.errorCount);
+        assertTrue(notHeader.errors.get(0).startsWith("line 1: "), notHeader.errors.get(0));
+        assertEquals(1, notHeader.rows.size());
+    }
+
+    @Test
+    void errorLineNumbersCountAcrossChunks() throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("Date,Category,Description,Amount");
+        Set<Integer> bad = Set.of(2, CsvExpenseImporter.CHUNK_LINES, CsvExpenseImporter.CHUNK_LINES + 1,
+                CsvExpenseImporter.CHUNK_LINES + 2, 2 * CsvExpenseImporter.CHUNK_LINES + 7);
+        int lineCount = 3 * CsvExpenseImporter.CHUNK_LINES;
+        for (int line = 2; line <= lineCount; line++) {
+            lines.add(bad.contains(line) ? "2024-01-05,Food,Line " + line + ",oops"
+                    : "2024-01-05,Food,Line " + line + ",1");
+        }
+        CsvExpenseImporter.Result result = parse(lines.toArray(new String[0]));
+
+        List<String> expected = new ArrayList<>();
+        for (int line : new TreeSet<>(bad)) {
+            expected.add("line " + line + ": ");
+        }
+        List<String> prefixes = new ArrayList<>();
+        for (String error : result.errors) {
+            prefixes.add(error.substring(0, error.indexOf(": ") + 2));
+        }
+        assertEquals(expected, prefixes);
+        assertEquals(lineCount, result.lineCount);
+        assertEquals(lineCount - 1 - bad.size(), result.rows.size());
+    }
+
+    @Test
+    void keptErrorsAreCappedButAllCounted() throws IOException {
+        int badLines = CsvExpenseImporter.MAX_KEPT_ERRORS + 50;
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < badLines; i++) {
+            lines.add("2024-01-05,Nonsense,Line " + i + ",1");
+        }
+        lines.add("2024-01-05,Food,Lunch,1");
+        CsvExpenseImporter.Result result = parse(lines.toArray(new String[0]));
+
+        assertEquals(badLines, result.errorCount);
+        assertEquals(CsvExpenseImporter.MAX_KEPT_ERRORS, result.errors.size());
+        assertEquals(1, result.rows.size());
+
+        File report = dir.resolve("report.txt").toFile();
+        CsvExpenseImporter.writeErrorReport(report, result);
+        List<String> reported = Files.readAllLines(report.toPath());
+        assertEquals(CsvExpenseImporter.MAX_KEPT_ERRORS + 1, reported.size());
+        assertEquals("... and 50 more", reported.get(reported.size() - 1));
+    }
+
+    @Test
+    void batchesAreHandedOverInFileOrder() throws IOException {
+        int rowCount = CsvExpenseImporter.BATCH_ROWS + 10;
+        File file = dir.resolve("expenses.csv").toFile();
+        try (PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(file), StandardCharsets.UTF_8)))) {
+            for (int i = 0; i < rowCount; i++) {
+                out.println("2024-01-05,Food,Row " + i + "," + (i + 1));
+            }
+        }
+
+        List<Integer> sizes = new ArrayList<>();
+        List<String> firstAndLast = new ArrayList<>();
+        CsvExpenseImporter.Result result = importer.parse(file, percent -> { }, rows -> {
+            sizes.add(rows.size());
+            List<String> batch = descriptions(rows);
+            firstAndLast.add(batch.get(0));
+            firstAndLast.add(batch.get(batch.size() - 1));
+        });
+
+        assertEquals(List.of(CsvExpenseImporter.BATCH_ROWS, 10), sizes);
+        assertEquals(List.of("Row 0", "Row " + (CsvExpenseImporter.BATCH_ROWS - 1),
+                "Row " + CsvExpenseImporter.BATCH_ROWS, "Row " + (rowCount - 1)), firstAndLast);
+        assertEquals(0, result.rows.size());
+        assertEquals(rowCount, result.lineCount);
+    }
+
+    private CsvExpenseImporter.Result parse(String... lines) throws IOException {
+        File file = dir.resolve("expenses.csv").toFile();
+        Files.write(file.toPath(), Arrays.asList(lines), StandardCharsets.UTF_8);
+        return importer.parse(file, percent -> { });
+    }
+
+    private static List<String> rows(ColumnarExpenseStore rows) {
+        List<String> result = new ArrayList<>();
+        for (int slot = rows.nextLiveSlot(0); slot >= 0; slot = rows.nextLiveSlot(slot + 1)) {
+            result.add(LocalDate.ofEpochDay(rows.getEpochDay(slot)) + " " + rows.getCategory(slot)
+                    + " " + rows.getDescription(slot) + " " + rows.getAmountCents(slot));
+        }
+        return result;
+    }
+
+    private static List<String> descriptions(ColumnarExpenseStore rows) {
+        List<String> result = new ArrayList<>();
+        for (int slot = rows.nextLiveSlot(0); slot >= 0; slot = rows.nextLiveSlot(slot + 1)) {
+            result.add(rows.getDescription(slot));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,136 @@
+package expensetracker;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import org.junit.jupiter.api.Test;
+
+class DailyTotalsTest {
+    private static final int CATEGORIES = 3;
+
+    @Test
+    void rangeSumsMatchAddsAndRemovals() {
+        DailyTotals totals = new DailyTotals();
+        Map<Integer, long[]> expected = new HashMap<>();
+        List<int[]> added = new ArrayList<>();
+        Random random = new Random(3);
+        int firstDay = ExpenseCodec.epochDay(2024, 1, 1);
+        for (int i = 0; i < 2000; i++) {
+            int day = firstDay + random.nextInt(300);
+            int category = random.nextInt(CATEGORIES);
+            int cents = 1 + random.nextInt(10_000);
+            totals.add(day, category, cents);
+            expected.computeIfAbsent(day, d -> new long[CATEGORIES])[category] += cents;
+            added.add(new int[] {day, category, cents});
+        }
+        // A removal is an add of the negated amount
+        for (int i = 0; i < added.size(); i += 3) {
+            int[] expense = added.get(i);
+            totals.add(expense[0], expense[1], -expense[2]);
+            expected.get(expense[0])[expense[1]] -= expense[2];
+        }
+
+        checkSums(totals, expected, firstDay - 10, firstDay + 310, random);
+    }
+
+    @Test
+    void growsToEarlierAndLaterDays() {
+        DailyTotals totals = new DailyTotals();
+        Map<Integer, long[]> expected = new HashMap<>();
+        int middle = ExpenseCodec.epochDay(2024, 6, 1);
+        int[] days = {middle, middle + 1, middle - 5000, middle + 9000, middle - 1, middle - 20_000, middle + 40_000};
+        for (int i = 0; i < days.length; i++) {
+            totals.add(days[i], i % CATEGORIES, 100 * (i + 1));
+            expected.computeIfAbsent(days[i], d -> new long[CATEGORIES])[i % CATEGORIES] += 100 * (i + 1);
+        }
+        // A category seen for the first time after the range has grown
+        totals.add(middle + 2, CATEGORIES - 1, 7);
+        expected.computeIfAbsent(middle + 2, d -> new long[CATEGORIES])[CATEGORIES - 1] += 7;
+
+        assertEquals(100 * 3, totals.dayTotal(middle - 5000, -1));
+        assertEquals(0, totals.dayTotal(middle - 5000, 0));
+        assertEquals(0, totals.dayTotal(middle - 100_000, -1));
+        assertEquals(0, totals.sum(middle + 1, middle, -1));
+        assertEquals(0, totals.sum(middle, middle, 5));
+        long all = 7;
+        for (int i = 0; i < days.length; i++) {
+            all += 100 * (i + 1);
+        }
+        assertEquals(all, totals.sum(Integer.MIN_VALUE / 2, Integer.MAX_VALUE / 2, -1));
+        checkSums(totals, expected, middle - 20_010, middle + 40_010, new Random(7));
+    }
+
+    @Test
+    void rebuildMatchesTheStore() {
+        ColumnarExpenseStore store = new ColumnarExpenseStore();
+        Map<Integer, long[]> expected = new HashMap<>();
+        int firstDay = ExpenseCodec.epochDay(2023, 1, 1);
+        Random random = new Random(9);
+        String[] names = {"Food", "Housing", "Utilities"};
+        for (int i = 0; i < 500; i++) {
+            int day = firstDay + random.nextInt(400);
+            int category = random.nextInt(CATEGORIES);
+            store.add(i, day, names[category], "Item", i + 1);
+        }
+        store.remove(0);
+        for (int slot = store.nextLiveSlot(0); slot >= 0; slot = store.nextLiveSlot(slot + 1)) {
+            expected.computeIfAbsent(store.getEpochDay(slot), d -> new long[CATEGORIES])
+                    [store.getCategoryId(slot)] += store.getAmountCents(slot);
+        }
+
+        DailyTotals totals = new DailyTotals();
+        totals.add(firstDay - 1000, 0, 55);
+        totals.rebuild(store, firstDay, firstDay + 399);
+        checkSums(totals, expected, firstDay - 5, firstDay + 405, random);
+
+        // Adds after a rebuild update the trees it built
+        totals.add(firstDay + 10, 1, 25);
+        expected.computeIfAbsent(firstDay + 10, d -> new long[CATEGORIES])[1] += 25;
+        checkSums(totals, expected, firstDay - 5, firstDay + 405, random);
+
+        totals.clear();
+        assertEquals(0, totals.sum(firstDay, firstDay + 399, -1));
+    }
+
+    // Checks random ranges, single days and copyDays against the expected
+    // totals per day and category.
+    private static void checkSums(DailyTotals totals, Map<Integer, long[]> expected, int fromDay, int toDay,
+                                  Random random) {
+        for (int i = 0; i < 500; i++) {
+            int a = fromDay + random.nextInt(toDay - fromDay + 1);
+            int b = fromDay + random.nextInt(toDay - fromDay + 1);
+            int from = Math.min(a, b);
+            int to = Math.max(a, b);
+            for (int category = -1; category < CATEGORIES; category++) {
+                assertEquals(expectedSum(expected, from, to, category), totals.sum(from, to, category),
+                        from + ".." + to + " in " + category);
+            }
+        }
+        for (int day : expected.keySet()) {
+            assertEquals(expectedSum(expected, day, day, -1), totals.dayTotal(day, -1));
+        }
+
+        long[] copied = new long[toDay - fromDay + 1];
+        for (int category = -1; category < CATEGORIES; category++) {
+            totals.copyDays(fromDay, category, copied);
+            for (int day = fromDay; day <= toDay; day++) {
+                assertEquals(expectedSum(expected, day, day, category), copied[day - fromDay]);
+            }
+        }
+    }
+
+    private static long expectedSum(Map<Integer, long[]> expected, int fromDay, int toDay, int categoryId) {
+        long sum = 0;
+        for (Map.Entry<Integer, long[]> entry : expected.entrySet()) {
+            if (entry.getKey() < fromDay || entry.getKey() > toDay) {
+                continue;
+            }
+            if (categoryId < 0) {
+                sum += Arrays.stream(entry.getValue()).sum();
+            } else {
+                sum += entry.getValue()[categoryId];
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,117 @@
+package expensetracker;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.util.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DescriptionIndexTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void tokensAreLowerCasedRunsOfLettersAndDigits() {
+        assertEquals(List.of("lunch", "with", "friends"), DescriptionIndex.tokenize("Lunch, with FRIENDS!"));
+        assertEquals(List.of("a4", "paper", "x2"), DescriptionIndex.tokenize("  A4-paper (x2)"));
+        assertEquals(List.of(), DescriptionIndex.tokenize(""));
+        assertEquals(List.of(), DescriptionIndex.tokenize(" -- ,. "));
+        // Non-ASCII characters belong to tokens and are lower-cased too
+        assertEquals(DescriptionIndex.tokenize("café ümlaut"), DescriptionIndex.tokenize("CAFÉ Ümlaut"));
+        assertEquals(2, DescriptionIndex.tokenize("Café Ümlaut").size());
+    }
+
+    @Test
+    void everyQueryTokenMustPrefixADescriptionToken() {
+        ColumnarExpenseStore store = new ColumnarExpenseStore();
+        store.add(1, 100, "Food", "Lunch with friends", 1);
+        store.add(2, 100, "Food", "Late lunch", 1);
+        store.add(3, 100, "Food", "Café au lait", 1);
+        store.add(4, 100, "Housing", "Rent", 1);
+
+        DescriptionIndex index = new DescriptionIndex();
+        assertNull(index.search(store, " , "));
+        assertFalse(index.isBuilt());
+        assertEquals(descriptions(store, "Lunch with friends", "Late lunch"),
+                index.search(store, "LUN"));
+        assertTrue(index.isBuilt());
+        assertEquals(descriptions(store, "Lunch with friends"), index.search(store, "fri lun"));
+        assertEquals(descriptions(store, "Late lunch", "Café au lait"), index.search(store, "la"));
+        assertEquals(descriptions(store, "Café au lait"), index.search(store, "CAFÉ"));
+        assertEquals(new BitSet(), index.search(store, "lunch rent"));
+        assertEquals(new BitSet(), index.search(store, "lunches"));
+
+        // Once built, new slots are indexed as they are added
+        int slot = store.add(5, 101, "Food", "Brunch", 1);
+        index.add(store, slot);
+        assertEquals(descriptions(store, "Brunch"), index.search(store, "br"));
+        assertEquals(descriptions(store, "Lunch with friends", "Late lunch"), index.search(store, "lunch"));
+    }
+
+    @Test
+    void removedSlotsAreDroppedWhenTheStoreCompacts() {
+        ColumnarExpenseStore store = new ColumnarExpenseStore();
+        int count = 3000;
+        for (int i = 0; i < count; i++) {
+            store.add(i, 100, "Food", i % 3 == 0 ? "Kept " + i : "Gone " + i, 1);
+        }
+        DescriptionIndex index = DescriptionIndex.build(store);
+        assertEquals(count + 2, index.getTermCount());
+        for (int slot = 0; slot < count; slot++) {
+            if (slot % 3 != 0) {
+                store.remove(slot);
+            }
+        }
+        // Removed slots stay in the index until the store compacts
+        assertEquals(count - count / 3, index.search(store, "gone").cardinality());
+
+        index.remap(store.compactIfNeeded());
+        assertEquals(new BitSet(), index.search(store, "gone"));
+        assertEquals(count / 3 + 1, index.getTermCount());
+        BitSet kept = index.search(store, "kept");
+        assertEquals(count / 3, kept.cardinality());
+        assertEquals(count / 3, kept.length());
+        assertEquals(descriptions(store, "Kept 2997"), index.search(store, "kept 2997"));
+    }
+
+    @Test
+    void indexBuiltFromACopyIsInstalledWithoutSearchingOnTheCaller() {
+        String username = dir.resolve("alice").toString();
+        ExpenseManager manager = new ExpenseManager();
+        manager.setSearchBuildsIndex(false);
+        int day = ExpenseCodec.epochDay(2024, 1, 5);
+        manager.addExpense(username, new Expense(day, "Food", "Lunch", 1250));
+        manager.addExpense(username, new Expense(day, "Food", "Dinner", 3000));
+
+        // Without an index a search matches nothing rather than building one
+        assertEquals(new BitSet(), manager.searchDescriptions("lunch"));
+        assertNull(manager.searchDescriptions(""));
+        assertFalse(manager.isDescriptionIndexBuilt());
+
+        ColumnarExpenseStore copy = manager.getStore().copy();
+        int modCount = manager.getModCount();
+        DescriptionIndex index = DescriptionIndex.build(copy);
+        assertEquals(modCount, manager.getModCount());
+        manager.installDescriptionIndex(index);
+        assertTrue(manager.isDescriptionIndexBuilt());
+        assertEquals(descriptions(manager.getStore(), "Lunch"), manager.searchDescriptions("lun"));
+
+        // The installed index follows later changes, and is not replaced
+        manager.addExpense(username, new Expense(day, "Food", "Lunch again", 500));
+        manager.installDescriptionIndex(DescriptionIndex.build(copy));
+        assertEquals(descriptions(manager.getStore(), "Lunch", "Lunch again"), manager.searchDescriptions("lunch"));
+    }
+
+    private static BitSet descriptions(ColumnarExpenseStore store, String... descriptions) {
+        Set<String> wanted = new HashSet<>(Arrays.asList(descriptions));
+        BitSet slots = new BitSet();
+        for (int slot = store.nextLiveSlot(0); slot >= 0; slot = store.nextLiveSlot(slot + 1)) {
+            if (wanted.contains(store.getDescription(slot))) {
+                slots.set(slot);
+            }
+        }
+        assertEquals(descriptions.length, slots.cardinality());
+        return slots;
+    }
+}
@@ -0,0 +1,145 @@
+package expensetracker;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ExpenseAggregatorTest {
+    private static final String[] CATEGORIES = {"Utilities", "Food", "Housing"};
+
+    @TempDir
+    Path dir;
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @AfterEach
+    void shutdownPool() {
+        pool.shutdown();
+    }
+
+    @Test
+    void matchesAGroupingOfEveryExpense() {
+        String username = dir.resolve("alice").toString();
+        ExpenseManager manager = new ExpenseManager();
+        // More slots than one leaf task scans, so partial tables are merged
+        ColumnarExpenseStore staged = new ColumnarExpenseStore();
+        Random random = new Random(17);
+        int firstDay = ExpenseCodec.epochDay(2022, 11, 20);
+        for (int i = 0; i < 150_000; i++) {
+            staged.add(0, firstDay + random.nextInt(500), CATEGORIES[random.nextInt(CATEGORIES.length)], "Item",
+                    1 + random.nextInt(100_000));
+        }
+        manager.importExpenses(username, staged);
+        List<Expense> deleted = manager.listExpenses(null, false, 1000, 20);
+        for (Expense expense : deleted) {
+            assertTrue(manager.deleteExpense(username, expense.getId()));
+        }
+
+        ExpenseAggregation aggregation = new ExpenseAggregator(pool).aggregate(manager,
+                GroupDimension.CATEGORY, GroupDimension.YEAR, GroupDimension.MONTH, GroupDimension.WEEKDAY);
+        assertEquals(List.of("Food", "Housing", "Utilities"), labels(aggregation, 0));
+        assertEquals(List.of("2022", "2023", "2024"), labels(aggregation, 1));
+        assertEquals("Jan", aggregation.getLabel(2, 0));
+        assertEquals("Mon", aggregation.getLabel(3, 0));
+        assertEquals(3 * 3 * 12 * 7, aggregation.getCellCount());
+
+        Map<List<String>, long[]> expected = new HashMap<>();
+        ColumnarExpenseStore store = manager.getStore();
+        for (int slot = store.nextLiveSlot(0); slot >= 0; slot = store.nextLiveSlot(slot + 1)) {
+            LocalDate date = LocalDate.ofEpochDay(store.getEpochDay(slot));
+            List<String> key = List.of(store.getCategory(slot), String.valueOf(date.getYear()),
+                    aggregation.getLabel(2, date.getMonthValue() - 1),
+                    aggregation.getLabel(3, date.getDayOfWeek().getValue() - 1));
+            long cents = store.getAmountCents(slot);
+            long[] cell = expected.computeIfAbsent(key, k -> new long[] {0, 0, Long.MAX_VALUE, Long.MIN_VALUE});
+            cell[0] += cents;
+            cell[1]++;
+            cell[2] = Math.min(cell[2], cents);
+            cell[3] = Math.max(cell[3], cents);
+        }
+
+        long count = 0;
+        for (int cell = 0; cell < aggregation.getCellCount(); cell++) {
+            List<String> key = new ArrayList<>();
+            for (int d = 0; d < 4; d++) {
+                key.add(aggregation.getLabel(d, aggregation.valueIndex(cell, d)));
+            }
+            long[] values = expected.get(key);
+            if (values == null) {
+                assertEquals(0, aggregation.getCount(cell), key.toString());
+                continue;
+            }
+            assertEquals(values[0], aggregation.getSumCents(cell), key.toString());
+            assertEquals(values[1], aggregation.getCount(cell), key.toString());
+            assertEquals(values[2], aggregation.getMinCents(cell), key.toString());
+            assertEquals(values[3], aggregation.getMaxCents(cell), key.toString());
+            assertEquals((double) values[0] / values[1], aggregation.getAverageCents(cell), 1e-9);
+            count += aggregation.getCount(cell);
+        }
+        assertEquals(150_000 - deleted.size(), count);
+
+        // Rolling up to the categories gives the store's own totals
+        ExpenseAggregation byCategory = aggregation.rollUp(GroupDimension.CATEGORY);
+        for (int value = 0; value < byCategory.getValueCount(0); value++) {
+            int categoryId = store.categoryId(byCategory.getLabel(0, value));
+            int cell = byCategory.cellOf(value);
+            assertEquals(store.getCategoryTotalCents(categoryId), byCategory.getSumCents(cell));
+            assertEquals(store.getCategoryExpenseCount(categoryId), byCategory.getCount(cell));
+        }
+        assertThrows(IllegalArgumentException.class, () -> byCategory.rollUp(GroupDimension.YEAR));
+    }
+
+    @Test
+    void dimensionOrderSetsTheLayout() {
+        String username = dir.resolve("alice").toString();
+        ExpenseManager manager = new ExpenseManager();
+        // 2024-01-01 was a Monday
+        manager.addExpense(username, new Expense(ExpenseCodec.epochDay(2024, 1, 1), "Food", "Lunch", 1250));
+        manager.addExpense(username, new Expense(ExpenseCodec.epochDay(2024, 1, 7), "Food", "Dinner", 3000));
+        manager.addExpense(username, new Expense(ExpenseCodec.epochDay(2024, 3, 4), "Housing", "Rent", 90000));
+
+        ExpenseAggregation aggregation = new ExpenseAggregator(pool).aggregate(manager,
+                GroupDimension.WEEKDAY, GroupDimension.CATEGORY);
+        assertEquals(7 * 2, aggregation.getCellCount());
+        assertEquals(1250, aggregation.getSumCents(aggregation.cellOf(0, 0)));
+        assertEquals(90000, aggregation.getSumCents(aggregation.cellOf(0, 1)));
+        assertEquals(3000, aggregation.getSumCents(aggregation.cellOf(6, 0)));
+        assertEquals(0, aggregation.getCount(aggregation.cellOf(6, 1)));
+        assertEquals(GroupDimension.WEEKDAY, aggregation.getDimensions()[0]);
+
+        ExpenseAggregation byMonth = new ExpenseAggregator(pool).aggregate(manager, GroupDimension.MONTH);
+        assertEquals(2, byMonth.getCount(byMonth.cellOf(0)));
+        assertEquals(1250, byMonth.getMinCents(byMonth.cellOf(0)));
+        assertEquals(3000, byMonth.getMaxCents(byMonth.cellOf(0)));
+        assertEquals(0, byMonth.getCount(byMonth.cellOf(1)));
+        assertEquals(0, byMonth.getAverageCents(byMonth.cellOf(1)));
+    }
+
+    @Test
+    void emptyManagerHasNoCounts() {
+        ExpenseManager manager = new ExpenseManager();
+        ExpenseAggregation byYear = new ExpenseAggregator(pool).aggregate(manager,
+                GroupDimension.CATEGORY, GroupDimension.YEAR);
+        assertEquals(0, byYear.getCellCount());
+
+        ExpenseAggregation byMonth = new ExpenseAggregator(pool).aggregate(manager, GroupDimension.MONTH);
+        assertEquals(12, byMonth.getCellCount());
+        for (int cell = 0; cell < byMonth.getCellCount(); cell++) {
+            assertEquals(0, byMonth.getCount(cell));
+        }
+    }
+
+    private static List<String> labels(ExpenseAggregation aggregation, int d) {
+        List<String> labels = new ArrayList<>();
+        for (int value = 0; value < aggregation.getValueCount(d); value++) {
+            labels.add(aggregation.getLabel(d, value));
+        }
+        return labels;
+    }
+}
@@ -0,0 +1,100 @@
+package expensetracker;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ExpenseBudgetsTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void onlyTheExpenseThatGoesOverTheLimitCrossesIt() {
+        String username = dir.resolve("alice").toString();
+        ExpenseManager manager = new ExpenseManager();
+        manager.setBudget(username, "Food", 5000);
+        int january = ExpenseCodec.epochDay(2024, 1, 10);
+
+        assertFalse(add(manager, username, january, "Food", 3000));
+        // Reaching the limit exactly is not over it
+        assertFalse(add(manager, username, january, "Food", 2000));
+        assertFalse(manager.isOverBudget("Food", ExpenseCodec.monthIndex(january)));
+        assertTrue(add(manager, username, january + 1, "Food", 1));
+        assertTrue(manager.isOverBudget("Food", ExpenseCodec.monthIndex(january)));
+        // Already over, so later expenses do not cross it again
+        assertFalse(add(manager, username, january + 2, "Food", 100));
+
+        // Each month starts again, and other categories have no budget
+        int february = ExpenseCodec.epochDay(2024, 2, 1);
+        assertFalse(manager.isOverBudget("Food", ExpenseCodec.monthIndex(february)));
+        assertTrue(add(manager, username, february, "Food", 6000));
+        assertFalse(add(manager, username, january, "Housing", 1_000_000));
+        assertFalse(manager.isOverBudget("Housing", ExpenseCodec.monthIndex(january)));
+
+        manager.setBudget(username, "Food", -1);
+        assertEquals(-1, manager.getBudgetCents("Food"));
+        assertFalse(manager.isOverBudget("Food", ExpenseCodec.monthIndex(january)));
+        assertFalse(add(manager, username, february, "Food", 6000));
+    }
+
+    @Test
+    void budgetsAreWrittenAndReadBack() throws IOException {
+        String username = dir.resolve("alice").toString();
+        ExpenseManager manager = new ExpenseManager();
+        manager.loadUserExpenses(username);
+        manager.setBudget(username, "Food", 5000);
+        manager.setBudget(username, "Housing", 0);
+        manager.setBudget(username, "Utilities", 12000);
+        manager.setBudget(username, "Utilities", -1);
+        assertFalse(new File(username + "_expenses.budgets.tmp").exists());
+
+        ExpenseManager reloaded = new ExpenseManager();
+        reloaded.loadUserExpenses(username);
+        Map<String, Long> expected = new TreeMap<>(Map.of("Food", 5000L, "Housing", 0L));
+        assertEquals(expected, reloaded.getBudgets());
+
+        // The paged store keeps its budgets in the same file
+        PagedExpenseStore paged = new PagedExpenseStore(0);
+        paged.loadUserExpenses(username);
+        assertEquals(5000, paged.getBudgetCents("Food"));
+        assertEquals(-1, paged.getBudgetCents("Utilities"));
+        paged.setBudget(username, "Utilities", 700);
+        paged.close();
+        reloaded.loadUserExpenses(username);
+        assertEquals(700, reloaded.getBudgetCents("Utilities"));
+
+        // Loading another user drops the first user's budgets
+        reloaded.loadUserExpenses(dir.resolve("bob").toString());
+        assertEquals(Map.of(), reloaded.getBudgets());
+    }
+
+    @Test
+    void unreadableBudgetsFileLeavesNoBudgets() throws IOException {
+        String username = dir.resolve("alice").toString();
+        File file = new File(username + "_expenses.budgets");
+        Files.write(file.toPath(), new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+        ExpenseManager manager = new ExpenseManager();
+        manager.loadUserExpenses(username);
+        assertEquals(Map.of(), manager.getBudgets());
+
+        ExpenseBudgets.write(file, Map.of("Food", 5000L, "Housing", 90000L));
+        // Cut off in the middle of the second budget
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        Files.write(file.toPath(), Arrays.copyOf(bytes, bytes.length - 3));
+        ExpenseBudgets budgets = new ExpenseBudgets();
+        assertThrows(EOFException.class, () -> budgets.read(file));
+        manager.loadUserExpenses(username);
+        assertEquals(Map.of(), manager.getBudgets());
+    }
+
+    private static boolean add(ExpenseManager manager, String username, int epochDay, String category, long cents) {
+        Expense expense = new Expense(epochDay, category, "Item", cents);
+        manager.addExpense(username, expense);
+        return manager.crossedBudget(expense);
+    }
+}
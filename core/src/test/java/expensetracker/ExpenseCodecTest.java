@@ -0,0 +1,66 @@
+package expensetracker;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import org.junit.jupiter.api.Test;
+
+class ExpenseCodecTest {
+    @Test
+    void parsesAmountsToCents() {
+        assertEquals(1250, ExpenseCodec.parseCents("12.50"));
+        assertEquals(1250, ExpenseCodec.parseCents("12.5"));
+        assertEquals(1200, ExpenseCodec.parseCents("12"));
+        assertEquals(1200, ExpenseCodec.parseCents("12."));
+        assertEquals(50, ExpenseCodec.parseCents(".50"));
+        assertEquals(1, ExpenseCodec.parseCents("0.01"));
+        assertEquals(1250, ExpenseCodec.parseCents("$12.50"));
+        assertEquals(123456, ExpenseCodec.parseCents("1,234.56"));
+        assertEquals(123456789_00L, ExpenseCodec.parseCents("$123,456,789"));
+        assertEquals(123456789_00L, ExpenseCodec.parseCents("123456789"));
+    }
+
+    @Test
+    void rejectsSignsAndAmountsThatAreNotPositive() {
+        for (String text : new String[] {"-5", "+5", "$-5", "-$5", "0", "0.00", "$0", ".0"}) {
+            assertThrows(NumberFormatException.class, () -> ExpenseCodec.parseCents(text), text);
+        }
+    }
+
+    @Test
+    void rejectsMisplacedGroupingCommas() {
+        for (String text : new String[] {"1,2", "12,34", "1,2345", "1234,567", ",123", "1,,234", "1,234,", "1,234,56",
+                "1,23.45", "1.234,56", "1.2,3"}) {
+            assertThrows(NumberFormatException.class, () -> ExpenseCodec.parseCents(text), text);
+        }
+    }
+
+    @Test
+    void rejectsMalformedAmounts() {
+        for (String text : new String[] {"", "$", ".", "1.234", "1.2.3", "12a", "1 000", "1234567890123456"}) {
+            assertThrows(NumberFormatException.class, () -> ExpenseCodec.parseCents(text), text);
+        }
+        assertEquals(999_999_999_999_999_00L, ExpenseCodec.parseCents("999999999999999"));
+    }
+
+    @Test
+    void formatsWhatItParses() {
+        for (String text : new String[] {"0.01", "12.50", "1234.56", "90000.00"}) {
+            assertEquals(text, ExpenseCodec.formatDecimal(ExpenseCodec.parseCents(text)));
+            assertEquals("$" + text, ExpenseCodec.formatAmount(ExpenseCodec.parseCents(text)));
+        }
+    }
+
+    @Test
+    void parsesBothDateFormats() {
+        int day = (int) LocalDate.of(2024, 2, 29).toEpochDay();
+        assertEquals(day, ExpenseCodec.parseDate("02/29/2024"));
+        assertEquals(day, ExpenseCodec.parseDate("2/29/2024"));
+        assertEquals(day, ExpenseCodec.parseDate("2024-02-29"));
+        assertEquals("02/29/2024", ExpenseCodec.formatDate(day));
+        assertEquals("2024-02-29", ExpenseCodec.formatIsoDate(day));
+        for (String text : new String[] {"02/29/2023", "13/01/2024", "2024-2-29", "1899-12-31", "02/29/24"}) {
+            assertThrows(IllegalArgumentException.class, () -> ExpenseCodec.parseDate(text), text);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package expensetracker;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ExpenseFileFormatTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void snapshotRoundTripsEveryColumn() throws IOException {
+        ExpenseSnapshot snapshot = snapshot(
+                new Object[] {12L, 18990, 0, 5L, ""},
+                new Object[] {7L, 19000, 0, 1250L, "Lunch"},
+                new Object[] {9L, 19001, 1, 90000L, "Rent ünd Nebenkosten"});
+        File file = dir.resolve("alice_expenses.bin").toFile();
+        ExpenseFileFormat.write(file, snapshot, 3, 13);
+
+        ColumnarExpenseStore store = new ColumnarExpenseStore();
+        ExpenseFileFormat.Header header = ExpenseFileFormat.read(file, store, percent -> { });
+        assertEquals(3, header.generation);
+        assertEquals(13, header.nextId);
+        assertEquals(3, store.size());
+        Map<Long, Integer> slots = new HashMap<>();
+        for (int slot = store.nextLiveSlot(0); slot >= 0; slot = store.nextLiveSlot(slot + 1)) {
+            slots.put(store.getId(slot), slot);
+        }
+        int lunch = slots.get(7L);
+        assertEquals(19000, store.getEpochDay(lunch));
+        assertEquals("Food", store.getCategory(lunch));
+        assertEquals("Lunch", store.getDescription(lunch));
+        assertEquals(1250, store.getAmountCents(lunch));
+        assertEquals("", store.getDescription(slots.get(12L)));
+        assertEquals("Rent ünd Nebenkosten", store.getDescription(slots.get(9L)));
+        assertEquals(1255, store.getCategoryTotalCents(store.categoryId("Food")));
+    }
+
+    @Test
+    void readsRecordsAcrossMappedWindows() throws IOException {
+        Object[][] rows = new Object[10][];
+        for (int i = 0; i < rows.length; i++) {
+            // Three rows a month, so months straddle windows of four records
+            rows[i] = new Object[] {100L + i, 19000 + i * 10, i % 2, 100L * i, "Row " + i};
+        }
+        File file = dir.resolve("alice_expenses.bin").toFile();
+        ExpenseFileFormat.write(file, snapshot(rows), 1, 110);
+
+        ColumnarExpenseStore whole = new ColumnarExpenseStore();
+        ExpenseFileFormat.read(file, whole, percent -> { });
+        ColumnarExpenseStore windowed = new ColumnarExpenseStore();
+        ExpenseFileFormat.read(ExpenseFileFormat.map(file, 4), windowed, percent -> { });
+        assertEquals(descriptions(whole), descriptions(windowed));
+        assertEquals(10, windowed.size());
+
+        ExpenseHistory history = ExpenseFileFormat.openHistory(ExpenseFileFormat.map(file, 4), new ColumnarExpenseStore());
+        assertEquals(19000, history.getFirstEpochDay());
+        assertEquals(19090, history.getLastEpochDay());
+        ExpenseHistory.Chunk chunk = history.chunkOf(105L);
+        chunk.read();
+        List<String> read = descriptions(chunk.rows);
+        assertTrue(read.contains("105 19050 Row 5"), read.toString());
+    }
+
+    @Test
+    void rejectsFilesThatAreNotSnapshots() throws IOException {
+        File file = dir.resolve("alice_expenses.bin").toFile();
+        Files.write(file.toPath(), new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9});
+        assertThrows(IOException.class, () -> ExpenseFileFormat.read(file, new ColumnarExpenseStore(), percent -> { }));
+    }
+
+    @Test
+    void rejectsVersionOneFiles() throws IOException {
+        File file = dir.resolve("alice_expenses.bin").toFile();
+        ExpenseFileFormat.write(file, snapshot(new Object[] {7L, 19000, 0, 1250L, "Lunch"}), 1, 8);
+        try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+            raw.seek(4);
+            raw.writeInt(1);
+        }
+        IOException e = assertThrows(IOException.class,
+                () -> ExpenseFileFormat.read(file, new ColumnarExpenseStore(), percent -> { }));
+        assertTrue(e.getMessage().contains("version 1"), e.getMessage());
+    }
+
+    private static List<String> descriptions(ColumnarExpenseStore store) {
+        List<String> descriptions = new ArrayList<>();
+        for (int slot = store.nextLiveSlot(0); slot >= 0; slot = store.nextLiveSlot(slot + 1)) {
+            descriptions.add(store.getId(slot) + " " + store.getEpochDay(slot) + " " + store.getDescription(slot));
+        }
+        return descriptions;
+    }
+
+    // Rows of id, epoch day, category id (Food, Housing), cents and description, in date order
+    private static ExpenseSnapshot snapshot(Object[]... rows) {
+        ExpenseSnapshot snapshot = new ExpenseSnapshot(rows.length, Arrays.asList("Food", "Housing"));
+        ByteArrayOutputStream descriptions = new ByteArrayOutputStream();
+        for (int i = 0; i < rows.length; i++) {
+            byte[] description = ((String) rows[i][4]).getBytes(StandardCharsets.UTF_8);
+            snapshot.ids[i] = (Long) rows[i][0];
+            snapshot.epochDays[i] = (Integer) rows[i][1];
+            snapshot.categories[i] = (Integer) rows[i][2];
+            snapshot.amountCents[i] = (Long) rows[i][3];
+            snapshot.descriptionOffsets[i] = descriptions.size();
+            snapshot.descriptionLengths[i] = description.length;
+            descriptions.write(description, 0, description.length);
+        }
+        snapshot.descriptionBytes = descriptions.toByteArray();
+        snapshot.descriptionSize = snapshot.descriptionBytes.length;
+        return snapshot;
+    }
+}
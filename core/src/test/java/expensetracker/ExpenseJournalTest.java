@@ -0,0 +1,95 @@
+package expensetracker;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ExpenseJournalTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void tornLastFrameIsTruncated() throws IOException {
+        File file = dir.resolve("alice_expenses.journal").toFile();
+        try (ExpenseJournal journal = new ExpenseJournal(file)) {
+            journal.open(1, (op, id, expense) -> fail("empty journal replayed a frame"));
+            journal.append(ExpenseJournal.OP_ADD, 1, new Expense(1, 19000, "Food", "Lunch", 1250));
+            journal.append(ExpenseJournal.OP_ADD, 2, new Expense(2, 19001, "Food", "Dinner", 3000));
+            journal.append(ExpenseJournal.OP_DELETE, 1, null);
+        }
+        long intact = file.length();
+        try (ExpenseJournal journal = new ExpenseJournal(file)) {
+            journal.open(1, (op, id, expense) -> { });
+            journal.append(ExpenseJournal.OP_ADD, 3, new Expense(3, 19002, "Housing", "Rent", 90000));
+        }
+        // A crash in the middle of writing the last frame
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(file.length() - 5);
+        }
+
+        List<String> replayed = new ArrayList<>();
+        try (ExpenseJournal journal = new ExpenseJournal(file)) {
+            journal.open(1, (op, id, expense) -> replayed.add(op + " " + id
+                    + (expense == null ? "" : " " + expense.getDescription())));
+            assertEquals(3, journal.getFrameCount());
+            assertEquals(intact, file.length());
+            journal.append(ExpenseJournal.OP_ADD, 4, new Expense(4, 19003, "Food", "Snack", 300));
+        }
+        assertEquals(List.of("1 1 Lunch", "1 2 Dinner", "2 1"), replayed);
+
+        replayed.clear();
+        try (ExpenseJournal journal = new ExpenseJournal(file)) {
+            journal.open(1, (op, id, expense) -> replayed.add(op + " " + id));
+        }
+        assertEquals(List.of("1 1", "1 2", "2 1", "1 4"), replayed);
+    }
+
+    @Test
+    void corruptFrameEndsTheReplay() throws IOException {
+        File file = dir.resolve("alice_expenses.journal").toFile();
+        try (ExpenseJournal journal = new ExpenseJournal(file)) {
+            journal.open(1, (op, id, expense) -> { });
+            journal.append(ExpenseJournal.OP_ADD, 1, new Expense(1, 19000, "Food", "Lunch", 1250));
+            journal.append(ExpenseJournal.OP_ADD, 2, new Expense(2, 19001, "Food", "Dinner", 3000));
+        }
+        try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+            raw.seek(raw.length() - 1);
+            int last = raw.read();
+            raw.seek(raw.length() - 1);
+            raw.write(last ^ 0xFF);
+        }
+
+        List<Long> ids = new ArrayList<>();
+        try (ExpenseJournal journal = new ExpenseJournal(file)) {
+            journal.open(1, (op, id, expense) -> ids.add(id));
+        }
+        assertEquals(List.of(1L), ids);
+    }
+
+    @Test
+    void journalOfAnotherGenerationIsIgnored() throws IOException {
+        File file = dir.resolve("alice_expenses.journal").toFile();
+        try (ExpenseJournal journal = new ExpenseJournal(file)) {
+            journal.open(1, (op, id, expense) -> { });
+            journal.append(ExpenseJournal.OP_ADD, 1, new Expense(1, 19000, "Food", "Lunch", 1250));
+        }
+        long emptySize;
+        try (ExpenseJournal journal = new ExpenseJournal(file)) {
+            journal.open(2, (op, id, expense) -> fail("replayed a frame of generation 1"));
+            assertEquals(0, journal.getFrameCount());
+            assertEquals(2, journal.getGeneration());
+            emptySize = file.length();
+        }
+        // Reset to an empty journal of the new generation
+        try (ExpenseJournal journal = new ExpenseJournal(file)) {
+            journal.open(2, (op, id, expense) -> fail("replayed a frame after the reset"));
+        }
+        assertEquals(emptySize, file.length());
+    }
+}
@@ -0,0 +1,42 @@
+package expensetracker;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ExpenseManagerCacheTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void pagedAccountsAreEvictedAndClosedLikeTheOthers() {
+        String paged = dir.resolve("bob").toString();
+        try (PagedExpenseStore store = new PagedExpenseStore()) {
+            store.loadUserExpenses(paged);
+            store.addExpense(paged, new Expense(19000, "Food", "Lunch", 1250));
+        }
+        String inMemory = dir.resolve("alice").toString();
+        ExpenseManagerCache cache = new ExpenseManagerCache(1, Runnable::run);
+
+        ExpenseManagerCache.Entry entry = cache.acquire(paged);
+        assertNull(entry.expenseManager);
+        entry.pagedStore.addExpense(paged, new Expense(19001, "Food", "Dinner", 3000));
+        cache.release(entry);
+
+        entry = cache.acquire(inMemory);
+        assertNotNull(entry.expenseManager);
+        cache.release(entry);
+        assertEquals(1, cache.getEvictions());
+        assertEquals(1, cache.size());
+
+        entry = cache.acquire(paged);
+        try {
+            assertEquals(2, entry.store().getExpenseCount());
+            assertEquals(4250, entry.store().getTotalCents("Food"));
+        } finally {
+            cache.release(entry);
+        }
+    }
+}
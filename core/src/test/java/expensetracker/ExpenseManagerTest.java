@@ -0,0 +1,367 @@
+package expensetracker;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ExpenseManagerTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void addAndDeleteKeepCategoryTotals() {
+        ExpenseManager manager = new ExpenseManager();
+        String username = dir.resolve("alice").toString();
+        long lunch = manager.addExpense(username, expense("2024-01-05", "Food", "Lunch", 1250));
+        manager.addExpense(username, expense("2024-01-06", "Food", "Dinner", 3000));
+        manager.addExpense(username, expense("2024-01-07", "Housing", "Rent", 90000));
+
+        assertEquals(94250, manager.getTotalCents(null));
+        assertEquals(4250, manager.getTotalCents("Food"));
+        assertTrue(manager.deleteExpense(username, lunch));
+        assertFalse(manager.deleteExpense(username, lunch));
+        assertEquals(3000, manager.getTotalCents("Food"));
+        assertEquals(1, manager.getCategoryExpenseCount("Food"));
+        assertEquals(30.0, manager.calculateCategorySummary().get("Food"), 1e-9);
+        assertNull(manager.getExpense(lunch));
+    }
+
+    @Test
+    void firstAndLastDaysAreNoDayWithoutExpenses() {
+        ExpenseManager manager = new ExpenseManager();
+        String username = dir.resolve("alice").toString();
+        assertEquals(ExpenseStore.NO_DAY, manager.getFirstEpochDay());
+        assertEquals(ExpenseStore.NO_DAY, manager.getLastEpochDay());
+
+        long lunch = manager.addExpense(username, expense("2024-01-05", "Food", "Lunch", 1250));
+        assertEquals(ExpenseCodec.epochDay(2024, 1, 5), manager.getFirstEpochDay());
+        assertEquals(ExpenseCodec.epochDay(2024, 1, 5), manager.getLastEpochDay());
+        manager.deleteExpense(username, lunch);
+        assertEquals(ExpenseStore.NO_DAY, manager.getFirstEpochDay());
+        assertEquals(ExpenseStore.NO_DAY, manager.getLastEpochDay());
+    }
+
+    @Test
+    void viewsFollowCategoryAndSortOrder() {
+        ExpenseManager manager = new ExpenseManager();
+        String username = dir.resolve("alice").toString();
+        manager.addExpense(username, expense("2024-03-01", "Food", "Groceries", 4500));
+        manager.addExpense(username, expense("2024-01-01", "Housing", "Rent", 90000));
+        manager.addExpense(username, expense("2024-02-01", "Food", "Lunch", 1200));
+
+        assertEquals(List.of("Groceries", "Lunch", "Rent"), descriptions(manager, null, ExpenseSortOrder.DATE_NEWEST));
+        assertEquals(List.of("Rent", "Lunch", "Groceries"), descriptions(manager, null, ExpenseSortOrder.DATE_OLDEST));
+        assertEquals(List.of("Rent", "Groceries", "Lunch"), descriptions(manager, null, ExpenseSortOrder.AMOUNT_HIGHEST));
+        assertEquals(List.of("Groceries", "Lunch"), descriptions(manager, "Food", ExpenseSortOrder.DATE_NEWEST));
+        assertEquals(List.of(), descriptions(manager, "Utilities", ExpenseSortOrder.DATE_NEWEST));
+    }
+
+    @Test
+    void reloadReadsSnapshotAndJournal() {
+        String username = dir.resolve("alice").toString();
+        ExpenseManager manager = new ExpenseManager();
+        manager.loadUserExpenses(username);
+        long lunch = manager.addExpense(username, expense("2024-01-05", "Food", "Lunch", 1250));
+        manager.addExpense(username, expense("2024-01-06", "Transportation", "Bus", 275));
+        manager.saveUserExpenses(username);
+        // Journaled after the snapshot
+        manager.deleteExpense(username, lunch);
+        long rent = manager.addExpense(username, expense("2024-02-01", "Housing", "Rent", 90000));
+        manager.syncUserExpenses(username);
+
+        ExpenseManager reloaded = new ExpenseManager();
+        reloaded.loadUserExpenses(username);
+        assertEquals(sorted(manager.getAllExpenses()), sorted(reloaded.getAllExpenses()));
+        assertEquals(manager.getTotalCents(null), reloaded.getTotalCents(null));
+        assertNull(reloaded.getExpense(lunch));
+        assertEquals("Rent", reloaded.getExpense(rent).getDescription());
+        assertTrue(reloaded.addExpense(username, expense("2024-02-02", "Food", "Snack", 300)) > rent);
+    }
+
+    @Test
+    void saveKeepsMonthsThatAreNotLoaded() {
+        String username = dir.resolve("alice").toString();
+        ExpenseManager manager = new ExpenseManager();
+        for (int month = 1; month <= 12; month++) {
+            manager.addExpense(username, expense(String.format("2023-%02d-10", month), "Food", "Month " + month, month * 100));
+        }
+        manager.saveUserExpenses(username);
+
+        ExpenseManager windowed = new ExpenseManager();
+        windowed.loadUserExpenses(username, 2, percent -> { });
+        assertFalse(windowed.isHistoryLoaded());
+        int loaded = windowed.getStore().size();
+        // Dated in a month that is not loaded, so the new snapshot has to sort it in
+        long added = windowed.addExpense(username, expense("2023-03-20", "Housing", "Repair", 5000));
+        windowed.saveUserExpenses(username);
+        assertFalse(windowed.isHistoryLoaded());
+        assertEquals(loaded + 1, windowed.getStore().size());
+
+        ExpenseManager reloaded = new ExpenseManager();
+        reloaded.loadUserExpenses(username);
+        assertEquals(13, reloaded.getExpenseCount());
+        assertEquals("Repair", reloaded.getExpense(added).getDescription());
+        assertEquals(sorted(windowed.getAllExpenses()), sorted(reloaded.getAllExpenses()));
+    }
+
+    @Test
+    void lookupByIdReadsOnlyItsMonth() {
+        String username = dir.resolve("alice").toString();
+        ExpenseManager manager = new ExpenseManager();
+        long[] ids = new long[12];
+        for (int month = 1; month <= 12; month++) {
+            ids[month - 1] = manager.addExpense(username,
+                    expense(String.format("2023-%02d-10", month), "Food", "Month " + month, month * 100));
+        }
+        manager.saveUserExpenses(username);
+
+        ExpenseManager windowed = new ExpenseManager();
+        windowed.loadUserExpenses(username, 2, percent -> { });
+        int loaded = windowed.getStore().size();
+        int loadedFromDay = windowed.getLoadedFromDay();
+        assertEquals("Month 3", windowed.getExpense(ids[2]).getDescription());
+        assertEquals(loaded + 1, windowed.getStore().size());
+        assertEquals(loadedFromDay, windowed.getLoadedFromDay());
+        assertEquals(12, windowed.getExpenseCount());
+        assertEquals(7800, windowed.getTotalCents(null));
+        assertEquals(300, windowed.getMonthTotalCents(ExpenseCodec.monthIndex(ExpenseCodec.epochDay(2023, 3, 10)), null));
+
+        assertTrue(windowed.deleteExpense(username, ids[3]));
+        assertEquals(11, windowed.getExpenseCount());
+        assertEquals(7400, windowed.getTotalCents(null));
+        windowed.saveUserExpenses(username);
+        // Reading back the rest skips the months read already
+        assertEquals(11, windowed.getAllExpenses().size());
+
+        ExpenseManager reloaded = new ExpenseManager();
+        reloaded.loadUserExpenses(username);
+        assertEquals(sorted(windowed.getAllExpenses()), sorted(reloaded.getAllExpenses()));
+        assertNull(reloaded.getExpense(ids[3]));
+    }
+
+    @Test
+    void failedSnapshotKeepsQueuedChanges() throws IOException {
+        String username = dir.resolve("alice").toString();
+        ExpenseManager manager = new ExpenseManager();
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        manager.setWriteBehindScheduler(scheduler, Runnable::run);
+        manager.setWriteBehindDelay(TimeUnit.HOURS.toMillis(1));
+        manager.loadUserExpenses(username);
+        long lunch = manager.addExpense(username, expense("2024-01-05", "Food", "Lunch", 1250));
+        manager.addExpense(username, expense("2024-01-06", "Transportation", "Bus", 275));
+        manager.saveUserExpenses(username);
+        // Queued, not yet written, when the snapshot below is taken
+        manager.addExpense(username, expense("2024-02-01", "Housing", "Rent", 90000));
+
+        // A directory where the temporary snapshot goes makes writing it fail
+        File tempFile = new File(username + "_expenses.bin.tmp");
+        assertTrue(tempFile.mkdir());
+        manager.saveUserExpenses(username);
+        manager.addExpense(username, expense("2024-02-02", "Food", "Snack", 300));
+        manager.deleteExpense(username, lunch);
+        // The old journal still holds every change
+        assertTrue(manager.syncUserExpenses(username).join());
+        assertFalse(manager.isJournalFailed());
+
+        ExpenseManager reloaded = new ExpenseManager();
+        reloaded.loadUserExpenses(username);
+        assertEquals(sorted(manager.getAllExpenses()), sorted(reloaded.getAllExpenses()));
+        assertEquals(3, reloaded.getExpenseCount());
+
+        // Once the snapshot can be written again it replaces the old one and its journal
+        assertTrue(tempFile.delete());
+        manager.saveUserExpenses(username);
+        ExpenseManager resaved = new ExpenseManager();
+        resaved.loadUserExpenses(username);
+        assertEquals(sorted(manager.getAllExpenses()), sorted(resaved.getAllExpenses()));
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void syncReportsSnapshotThatCouldNotBeWritten() throws Exception {
+        String username = dir.resolve("alice").toString();
+        ExecutorService ioThread = Executors.newSingleThreadExecutor();
+        ExpenseManager manager = new ExpenseManager();
+        manager.setPersistenceExecutor(ioThread);
+        File tempFile = new File(username + "_expenses.bin.tmp");
+        assertTrue(tempFile.mkdir());
+        // Not loaded, so there is no journal and the change needs a snapshot
+        manager.addExpense(username, expense("2024-01-05", "Food", "Lunch", 1250));
+        assertFalse(manager.syncUserExpenses(username).get(10, TimeUnit.SECONDS));
+        assertTrue(manager.isJournalFailed());
+
+        // Syncing again writes the snapshot
+        assertTrue(tempFile.delete());
+        assertTrue(manager.syncUserExpenses(username).get(10, TimeUnit.SECONDS));
+        ioThread.shutdown();
+        ExpenseManager reloaded = new ExpenseManager();
+        reloaded.loadUserExpenses(username);
+        assertEquals(sorted(manager.getAllExpenses()), sorted(reloaded.getAllExpenses()));
+        assertEquals(1, reloaded.getExpenseCount());
+    }
+
+    @Test
+    void burstOfAddsIsFlushedOnce() throws IOException {
+        String username = dir.resolve("alice").toString();
+        AtomicInteger persistenceTasks = new AtomicInteger();
+        Executor persistence = task -> {
+            persistenceTasks.incrementAndGet();
+            task.run();
+        };
+        ExpenseManager manager = new ExpenseManager();
+        manager.setPersistenceExecutor(persistence);
+        // Long enough that the timer never fires during the test; the sync below flushes instead
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        manager.setWriteBehindScheduler(scheduler, persistence);
+        manager.setWriteBehindDelay(TimeUnit.HOURS.toMillis(1));
+        manager.loadUserExpenses(username);
+        persistenceTasks.set(0);
+        File journalFile = new File(username + "_expenses.journal");
+        long journalSize = journalFile.length();
+
+        for (int i = 0; i < 200; i++) {
+            manager.addExpense(username, expense("2024-01-01", "Food", "Lunch " + i, 100 + i));
+        }
+        assertEquals(journalSize, journalFile.length());
+        assertEquals(0, persistenceTasks.get());
+
+        manager.syncUserExpenses(username);
+        assertEquals(1, persistenceTasks.get());
+        AtomicInteger frames = new AtomicInteger();
+        // A user without a snapshot journals against generation 0
+        try (ExpenseJournal journal = new ExpenseJournal(journalFile)) {
+            journal.open(0, (op, id, expense) -> frames.incrementAndGet());
+        }
+        assertEquals(200, frames.get());
+
+        ExpenseManager reloaded = new ExpenseManager();
+        reloaded.loadUserExpenses(username);
+        assertEquals(sorted(manager.getAllExpenses()), sorted(reloaded.getAllExpenses()));
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void slowFlushDoesNotHoldUpOtherUsers() throws Exception {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        ExecutorService flushThreads = Executors.newCachedThreadPool();
+        CountDownLatch release = new CountDownLatch(1);
+        // Both share the scheduler; alice's flushes stall until released
+        ExpenseManager alice = writeBehindManager(dir.resolve("alice").toString(), scheduler,
+                task -> flushThreads.execute(() -> {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    task.run();
+                }));
+        ExpenseManager bob = writeBehindManager(dir.resolve("bob").toString(), scheduler, flushThreads);
+        File aliceJournal = new File(dir.resolve("alice") + "_expenses.journal");
+        File bobJournal = new File(dir.resolve("bob") + "_expenses.journal");
+        long aliceSize = aliceJournal.length();
+        long bobSize = bobJournal.length();
+
+        alice.addExpense(dir.resolve("alice").toString(), expense("2024-01-05", "Food", "Lunch", 1250));
+        bob.addExpense(dir.resolve("bob").toString(), expense("2024-01-05", "Food", "Dinner", 3000));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (bobJournal.length() == bobSize && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(bobJournal.length() > bobSize);
+        assertEquals(aliceSize, aliceJournal.length());
+
+        release.countDown();
+        flushThreads.shutdown();
+        assertTrue(flushThreads.awaitTermination(10, TimeUnit.SECONDS));
+        assertTrue(aliceJournal.length() > aliceSize);
+        scheduler.shutdownNow();
+    }
+
+    private static ExpenseManager writeBehindManager(String username, ScheduledExecutorService scheduler,
+                                                     Executor flushExecutor) {
+        ExpenseManager manager = new ExpenseManager();
+        manager.setWriteBehindScheduler(scheduler, flushExecutor);
+        manager.setWriteBehindDelay(10);
+        manager.loadUserExpenses(username);
+        return manager;
+    }
+
+    @Test
+    void reloadIsTheSameWithTheIoThreadAsInline() throws Exception {
+        ExecutorService ioThread = Executors.newSingleThreadExecutor();
+        List<String> inline = runAndReload(dir.resolve("inline").toString(), Runnable::run);
+        List<String> onIoThread = runAndReload(dir.resolve("io").toString(), ioThread);
+        ioThread.shutdown();
+        assertTrue(ioThread.awaitTermination(10, TimeUnit.SECONDS));
+        assertFalse(inline.isEmpty());
+        assertEquals(inline, onIoThread);
+    }
+
+    // Adds, deletes, updates and snapshots through the executor, then loads the files again.
+    private static List<String> runAndReload(String username, Executor executor) throws Exception {
+        ExpenseManager manager = new ExpenseManager();
+        manager.setPersistenceExecutor(executor);
+        manager.setWriteBehindDelay(0);
+        manager.loadUserExpenses(username);
+        Random random = new Random(42);
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            int action = random.nextInt(10);
+            if (action < 6 || ids.isEmpty()) {
+                ids.add(manager.addExpense(username, expense(LocalDate.of(2024, 1, 1).plusDays(random.nextInt(365))
+                        .toString(), random.nextBoolean() ? "Food" : "Housing", "Item " + i, 1 + random.nextInt(10000))));
+            } else if (action < 8) {
+                assertTrue(manager.deleteExpense(username, ids.remove(random.nextInt(ids.size()))));
+            } else if (action < 9) {
+                Expense old = manager.getExpense(ids.get(random.nextInt(ids.size())));
+                assertTrue(manager.updateExpense(username, new Expense(old.getId(), old.getEpochDay(),
+                        old.getCategory(), old.getDescription() + " (edited)", old.getAmountCents() + 1)));
+            } else if (i % 10 == 0) {
+                manager.saveUserExpenses(username);
+            }
+        }
+        // Everything queued so far must reach the disk before the files are read back
+        assertTrue(manager.syncUserExpenses(username).get(10, TimeUnit.SECONDS));
+
+        ExpenseManager reloaded = new ExpenseManager();
+        reloaded.loadUserExpenses(username);
+        assertEquals(sorted(manager.getAllExpenses()), sorted(reloaded.getAllExpenses()));
+        return sorted(reloaded.getAllExpenses());
+    }
+
+    static Expense expense(String date, String category, String description, long cents) {
+        return new Expense((int) LocalDate.parse(date).toEpochDay(), category, description, cents);
+    }
+
+    private static List<String> descriptions(ExpenseManager manager, String category, ExpenseSortOrder order) {
+        ExpenseView view = manager.getView(category, order);
+        List<String> descriptions = new ArrayList<>();
+        for (int row = 0; row < view.size(); row++) {
+            descriptions.add(manager.getStore().getDescription(view.slotAt(row)));
+        }
+        return descriptions;
+    }
+
+    private static List<String> sorted(List<Expense> expenses) {
+        List<String> rows = new ArrayList<>();
+        for (Expense expense : expenses) {
+            rows.add(expense.getId() + " " + expense.getCategory() + " " + expense.getDescription() + " "
+                    + expense.getAmountCents() + " " + expense.getEpochDay());
+        }
+        Collections.sort(rows);
+        return rows;
+    }
+}
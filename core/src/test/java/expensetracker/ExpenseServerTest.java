@@ -0,0 +1,58 @@
+package expensetracker;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ExpenseServerTest {
+    @TempDir
+    Path dir;
+
+    private UserManager userManager;
+    private ExpenseServer server;
+
+    @BeforeEach
+    void start() throws IOException {
+        userManager = new UserManager(dir.resolve("users.idx").toFile(), dir.resolve("users.dat").toFile());
+        userManager.loadUsers();
+        server = new ExpenseServer(userManager);
+        server.start(0);
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop();
+    }
+
+    @Test
+    void registerRejectsUsernamesOutsideTheDataDirectory() throws IOException {
+        for (String username : new String[] {"../evil", "..", ".", "a/b", "a\\b", "x".repeat(65)}) {
+            assertEquals(400, post("/api/register", "username=" + username.replace("/", "%2F")
+                    .replace("\\", "%5C") + "&password=secret"), username);
+            assertFalse(userManager.usernameExists(username), username);
+        }
+        assertEquals(201, post("/api/register", "username=alice.b-c_1&password=secret"));
+        assertTrue(userManager.usernameExists("alice.b-c_1"));
+    }
+
+    private int post(String path, String form) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + server.getPort() + path)
+                .openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(form.getBytes(StandardCharsets.UTF_8));
+        }
+        int status = connection.getResponseCode();
+        connection.disconnect();
+        return status;
+    }
+}
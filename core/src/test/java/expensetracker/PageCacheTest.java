@@ -0,0 +1,111 @@
+package expensetracker;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PageCacheTest {
+    private static final int PAGE_SIZE = 64;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void evictsInClockOrderAndWritesDirtyPagesBack() throws IOException {
+        try (FileChannel channel = open()) {
+            PageCache cache = new PageCache(channel, PAGE_SIZE, 4);
+            for (int pageId = 1; pageId <= 4; pageId++) {
+                write(cache, pageId);
+            }
+            assertEquals(0, cache.getEvictions());
+
+            // Every frame is referenced, so the hand clears them all and takes the first
+            write(cache, 5);
+            assertEquals(1, cache.getEvictions());
+            // Page 2 is used again and gets a second chance; page 3 goes instead
+            read(cache, 2);
+            write(cache, 6);
+            assertEquals(2, cache.getEvictions());
+
+            long misses = cache.getMisses();
+            assertEquals(2, read(cache, 2));
+            assertEquals(misses, cache.getMisses());
+            // Evicted pages were written back and are read again
+            assertEquals(1, read(cache, 1));
+            assertEquals(3, read(cache, 3));
+            assertEquals(misses + 2, cache.getMisses());
+        }
+    }
+
+    @Test
+    void pinnedPagesAreNotEvicted() throws IOException {
+        try (FileChannel channel = open()) {
+            PageCache cache = new PageCache(channel, PAGE_SIZE, 2);
+            write(cache, 1);
+            cache.pin(1);
+            write(cache, 2);
+            write(cache, 3);
+            write(cache, 4);
+            // Page 1 stayed in its frame throughout
+            long misses = cache.getMisses();
+            assertEquals(1, read(cache, 1));
+            assertEquals(misses, cache.getMisses());
+
+            cache.pin(4);
+            assertThrows(IllegalStateException.class, () -> cache.pin(2));
+            cache.unpin(4, false);
+            cache.unpin(1, false);
+            assertEquals(2, read(cache, 2));
+        }
+    }
+
+    @Test
+    void flushWritesDirtyPagesWithoutEvictingThem() throws IOException {
+        File file = dir.resolve("pages").toFile();
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            PageCache cache = new PageCache(channel, PAGE_SIZE, 4);
+            write(cache, 1);
+            write(cache, 3);
+            assertEquals(2L * PAGE_SIZE, cache.flush());
+            assertEquals(0, cache.flush());
+            assertEquals(0, cache.getEvictions());
+
+            // A fresh cache reads what was flushed
+            PageCache reader = new PageCache(channel, PAGE_SIZE, 4);
+            assertEquals(1, read(reader, 1));
+            assertEquals(3, read(reader, 3));
+            assertEquals(0, read(reader, 2));
+
+            cache.discard(3);
+            assertEquals(3, read(cache, 3));
+        }
+    }
+
+    private FileChannel open() throws IOException {
+        return FileChannel.open(dir.resolve("pages"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    // Fills a new page with its own id.
+    private static void write(PageCache cache, int pageId) throws IOException {
+        ByteBuffer page = cache.pinNew(pageId);
+        page.putInt(0, pageId);
+        cache.unpin(pageId, true);
+    }
+
+    private static int read(PageCache cache, int pageId) throws IOException {
+        ByteBuffer page = cache.pin(pageId);
+        try {
+            return page.getInt(0);
+        } finally {
+            cache.unpin(pageId, false);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package expensetracker;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PagedBTreeTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void splitsAndFindsEveryKeyAfterReopening() throws IOException {
+        File path = dir.resolve("tree.pages").toFile();
+        int count = 40_000;
+        List<Long> keys = new ArrayList<>();
+        for (long i = 0; i < count; i++) {
+            keys.add(i * 3);
+        }
+        Collections.shuffle(keys, new Random(11));
+
+        try (PageFile file = new PageFile(path, 64)) {
+            assertNull(file.readHeader());
+            PagedBTree tree = new PagedBTree(file, 8, PagedBTree.create(file));
+            for (long key : keys) {
+                assertTrue(tree.insert(key, value(key)));
+            }
+            assertFalse(tree.insert(keys.get(0), value(0)));
+            // Far more entries than one leaf holds, so leaves and inner pages split
+            BitSet used = new BitSet();
+            tree.collectPages(used);
+            assertTrue(used.cardinality() > count / 255, "pages: " + used.cardinality());
+            checkKeys(tree, count);
+            file.checkpoint(ByteBuffer.allocate(4).putInt(tree.getRoot()).array());
+        }
+
+        try (PageFile file = new PageFile(path, 64)) {
+            PagedBTree tree = reopen(file);
+            checkKeys(tree, count);
+        }
+    }
+
+    @Test
+    void deletesUnlinkEmptiedPagesAndShrinkTheRoot() throws IOException {
+        File path = dir.resolve("tree.pages").toFile();
+        int count = 2000;
+        try (PageFile file = new PageFile(path, 64)) {
+            file.readHeader();
+            PagedBTree tree = new PagedBTree(file, 8, PagedBTree.create(file));
+            for (long key = 0; key < count; key++) {
+                tree.insert(key, value(key));
+            }
+            // Deleting after a checkpoint copies the pages on each path first
+            file.checkpoint(ByteBuffer.allocate(4).putInt(tree.getRoot()).array());
+            for (long key = 1; key < count - 1; key++) {
+                assertTrue(tree.delete(key));
+            }
+            assertFalse(tree.delete(1));
+
+            // Only the first and last leaves are left, under the root
+            assertEquals(2, tree.size());
+            assertEquals(3, pages(tree));
+            assertEquals(List.of(0L, count - 1L), keys(tree));
+            assertEquals(1, tree.rank(count - 1));
+
+            assertTrue(tree.delete(0));
+            assertEquals(1, pages(tree));
+            byte[] value = new byte[8];
+            assertTrue(tree.get(count - 1, value));
+            assertArrayEquals(value(count - 1), value);
+            file.checkpoint(ByteBuffer.allocate(4).putInt(tree.getRoot()).array());
+        }
+
+        try (PageFile file = new PageFile(path, 64)) {
+            PagedBTree tree = reopen(file);
+            assertEquals(List.of(count - 1L), keys(tree));
+            assertTrue(tree.delete(count - 1));
+            assertEquals(0, tree.size());
+            assertFalse(tree.cursor().seek(Long.MIN_VALUE));
+            assertTrue(tree.insert(5, value(5)));
+            assertEquals(List.of(5L), keys(tree));
+        }
+    }
+
+    private static PagedBTree reopen(PageFile file) throws IOException {
+        ByteBuffer header = file.readHeader();
+        PagedBTree tree = new PagedBTree(file, 8, header.getInt(0));
+        BitSet used = new BitSet();
+        tree.collectPages(used);
+        file.setUsedPages(used);
+        return tree;
+    }
+
+    // Every multiple of 3 below count * 3 is present, with its own value, in order.
+    private static void checkKeys(PagedBTree tree, int count) throws IOException {
+        assertEquals(count, tree.size());
+        byte[] value = new byte[8];
+        for (long i = 0; i < count; i += 97) {
+            assertTrue(tree.get(i * 3, value));
+            assertArrayEquals(value(i * 3), value);
+            assertFalse(tree.get(i * 3 + 1, value));
+            assertEquals(i, tree.rank(i * 3));
+            assertEquals(i + 1, tree.rank(i * 3 + 1));
+        }
+
+        PagedBTree.Cursor cursor = tree.cursor();
+        long expected = 0;
+        for (boolean more = cursor.seek(Long.MIN_VALUE); more; more = cursor.next()) {
+            assertEquals(expected, cursor.key());
+            expected += 3;
+        }
+        assertEquals(count * 3L, expected);
+
+        assertTrue(cursor.seekPosition(count - 1));
+        assertEquals((count - 1) * 3L, cursor.key());
+        assertTrue(cursor.previous());
+        assertEquals((count - 2) * 3L, cursor.key());
+        assertFalse(cursor.seekPosition(count));
+        assertTrue(cursor.seek(10));
+        assertEquals(12, cursor.key());
+    }
+
+    private static List<Long> keys(PagedBTree tree) throws IOException {
+        List<Long> keys = new ArrayList<>();
+        PagedBTree.Cursor cursor = tree.cursor();
+        for (boolean more = cursor.seek(Long.MIN_VALUE); more; more = cursor.next()) {
+            keys.add(cursor.key());
+        }
+        return keys;
+    }
+
+    private static int pages(PagedBTree tree) throws IOException {
+        BitSet used = new BitSet();
+        tree.collectPages(used);
+        return used.cardinality();
+    }
+
+    private static byte[] value(long key) {
+        return ByteBuffer.allocate(8).putLong(~key).array();
+    }
+}
@@ -0,0 +1,101 @@
+package expensetracker;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PagedExpenseStoreTest {
+    private static final String[] CATEGORIES = {"Food", "Housing", "Utilities"};
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void matchesTheExpensesAddedAndAfterReopening() {
+        String username = dir.resolve("alice").toString();
+        Map<Long, Expense> expected = new HashMap<>();
+        Random random = new Random(5);
+        int firstDay = ExpenseCodec.epochDay(2023, 1, 1);
+
+        // The smallest cache, so the pages are evicted and read back many times
+        PagedExpenseStore store = new PagedExpenseStore(0);
+        store.loadUserExpenses(username);
+        assertEquals(ExpenseStore.NO_DAY, store.getFirstEpochDay());
+        assertEquals(ExpenseStore.NO_DAY, store.getLastEpochDay());
+        for (int i = 0; i < 6000; i++) {
+            Expense expense = new Expense(firstDay + random.nextInt(730), CATEGORIES[random.nextInt(CATEGORIES.length)],
+                    "Item " + i, 1 + random.nextInt(100_000));
+            long id = store.addExpense(username, expense);
+            expected.put(id, new Expense(id, expense.getEpochDay(), expense.getCategory(),
+                    expense.getDescription(), expense.getAmountCents()));
+        }
+        List<Long> ids = new ArrayList<>(expected.keySet());
+        Collections.sort(ids);
+        for (int i = 0; i < ids.size(); i += 5) {
+            assertTrue(store.deleteExpense(username, ids.get(i)));
+            expected.remove(ids.get(i));
+        }
+        assertFalse(store.deleteExpense(username, ids.get(0)));
+        Expense old = expected.get(ids.get(1));
+        Expense moved = new Expense(old.getId(), firstDay + 800, "Housing", "Moved", 4242);
+        assertTrue(store.updateExpense(username, moved));
+        expected.put(moved.getId(), moved);
+
+        assertMatches(expected, store);
+        assertTrue(store.getPageCache().getEvictions() > 0);
+        store.close();
+
+        PagedExpenseStore reopened = new PagedExpenseStore(0);
+        reopened.loadUserExpenses(username);
+        assertMatches(expected, reopened);
+        long id = reopened.addExpense(username, new Expense(firstDay, "Food", "Later", 100));
+        assertTrue(id > Collections.max(ids));
+        reopened.close();
+    }
+
+    private static void assertMatches(Map<Long, Expense> expected, PagedExpenseStore store) {
+        List<Expense> byDate = new ArrayList<>(expected.values());
+        byDate.sort(Comparator.comparingInt(Expense::getEpochDay).thenComparingLong(Expense::getId));
+
+        assertEquals(expected.size(), store.getExpenseCount());
+        assertEquals(byDate.get(0).getEpochDay(), store.getFirstEpochDay());
+        assertEquals(byDate.get(byDate.size() - 1).getEpochDay(), store.getLastEpochDay());
+        for (String category : CATEGORIES) {
+            List<Expense> inCategory = byDate.stream()
+                    .filter(e -> e.getCategory().equals(category)).collect(Collectors.toList());
+            assertEquals(inCategory.size(), store.getCategoryExpenseCount(category));
+            assertEquals(inCategory.stream().mapToLong(Expense::getAmountCents).sum(), store.getTotalCents(category));
+            assertEquals(describe(inCategory.subList(100, 120)), describe(store.listExpenses(category, false, 100, 20)));
+        }
+        assertEquals(byDate.stream().mapToLong(Expense::getAmountCents).sum(), store.getTotalCents(null));
+
+        List<Expense> newest = new ArrayList<>(byDate);
+        Collections.reverse(newest);
+        assertEquals(describe(newest.subList(0, 50)), describe(store.listExpenses(null, true, 0, 50)));
+        assertEquals(describe(newest.subList(newest.size() - 10, newest.size())),
+                describe(store.listExpenses(null, true, newest.size() - 10, 50)));
+
+        int fromDay = ExpenseCodec.epochDay(2023, 6, 1);
+        int toDay = ExpenseCodec.epochDay(2023, 8, 31);
+        assertEquals(byDate.stream().filter(e -> e.getEpochDay() >= fromDay && e.getEpochDay() <= toDay)
+                        .filter(e -> e.getCategory().equals("Food")).mapToLong(Expense::getAmountCents).sum(),
+                store.sumCentsBetween(fromDay, toDay, "Food"));
+
+        for (Expense expense : byDate.subList(0, 200)) {
+            assertEquals(describe(List.of(expense)), describe(List.of(store.getExpense(expense.getId()))));
+        }
+    }
+
+    private static List<String> describe(List<Expense> expenses) {
+        List<String> result = new ArrayList<>();
+        for (Expense expense : expenses) {
+            result.add(expense.getId() + " " + expense.getEpochDay() + " " + expense.getCategory() + " "
+                    + expense.getDescription() + " " + expense.getAmountCents());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,96 @@
+package expensetracker;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class UserIndexFileTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void growsAndFindsEveryUserAfterReopening() throws IOException {
+        File file = dir.resolve("users.idx").toFile();
+        // Past two records per bucket of the initial 1024, so the table doubles
+        int users = 2500;
+        try (UserIndexFile index = UserIndexFile.open(file)) {
+            for (int i = 0; i < users; i++) {
+                index.append(new User("user" + i, "secret" + i));
+            }
+            assertEquals(users, index.getRecordCount());
+            assertEquals("secret7", index.find("user7").getPassword());
+        }
+
+        try (UserIndexFile index = UserIndexFile.open(file)) {
+            assertEquals(users, index.getRecordCount());
+            for (int i = 0; i < users; i++) {
+                User user = index.find("user" + i);
+                assertNotNull(user, "user" + i);
+                assertEquals("secret" + i, user.getPassword());
+            }
+            assertNull(index.find("user" + users));
+            assertNull(index.find("nobody"));
+        }
+    }
+
+    @Test
+    void unlinkedTailIsCutOff() throws IOException {
+        File file = dir.resolve("users.idx").toFile();
+        try (UserIndexFile index = UserIndexFile.open(file)) {
+            index.append(new User("alice", "secret"));
+            index.append(new User("bob", "hunter2"));
+        }
+        long linked = file.length();
+        // A registration that crashed after writing part of its record
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            ByteBuffer partial = ByteBuffer.allocate(12);
+            partial.putLong(0).putShort((short) 5).put((byte) 'c').put((byte) 'a').flip();
+            channel.write(partial, linked);
+        }
+
+        try (UserIndexFile index = UserIndexFile.open(file)) {
+            assertEquals(linked, file.length());
+            assertEquals("secret", index.find("alice").getPassword());
+            assertEquals("hunter2", index.find("bob").getPassword());
+            assertNull(index.find("carol"));
+            index.append(new User("carol", "pa55"));
+        }
+        try (UserIndexFile index = UserIndexFile.open(file)) {
+            assertEquals("pa55", index.find("carol").getPassword());
+            assertEquals(3, index.getRecordCount());
+        }
+    }
+
+    @Test
+    void truncatedLinkedRecordFailsToOpen() throws IOException {
+        File file = dir.resolve("users.idx").toFile();
+        try (UserIndexFile index = UserIndexFile.open(file)) {
+            index.append(new User("alice", "secret"));
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(file.length() - 3);
+        }
+        assertThrows(IOException.class, () -> UserIndexFile.open(file).close());
+    }
+
+    @Test
+    void overLongPasswordIsRejected() throws IOException {
+        File file = dir.resolve("users.idx").toFile();
+        try (UserIndexFile index = UserIndexFile.open(file)) {
+            long length = file.length();
+            assertThrows(IllegalArgumentException.class,
+                    () -> index.append(new User("alice", "x".repeat(0x10000))));
+            assertEquals(length, file.length());
+            assertEquals(0, index.getRecordCount());
+
+            index.append(new User("alice", "x".repeat(0xFFFF)));
+            assertEquals(0xFFFF, index.find("alice").getPassword().length());
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package expensetracker;
+
+import java.util.*;
+import javax.swing.table.AbstractTableModel;
+
+// Table model for the Expenses tab that reads straight from the expense
+// store through an ExpenseView. Cells are formatted when the JTable asks
+// for them, i.e. for the visible rows only. The last row is the TOTAL row.
+class ExpenseTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+    private static final String[] COLUMN_NAMES = {"Date", "Category", "Description", "Amount"};
+    private static final int DESCRIPTION_CACHE_SIZE = 256;
+
+    private final ExpenseManager expenseManager;
+    private ExpenseView view;
+
+    // Decoded descriptions of recently painted slots, valid while the modCount is unchanged
+    private final int[] cachedSlots = new int[DESCRIPTION_CACHE_SIZE];
+    private final String[] cachedDescriptions = new String[DESCRIPTION_CACHE_SIZE];
+    private int cachedModCount = -1;
+
+    public ExpenseTableModel(ExpenseManager expenseManager) {
+        this.expenseManager = expenseManager;
+        this.view = ExpenseView.empty(expenseManager);
+    }
+
+    // Switches to a category filter (null for all) and sort order.
+    public void reload(String category, ExpenseSortOrder order) {
+        setView(expenseManager.getView(category, order));
+    }
+
+    public void setView(ExpenseView view) {
+        this.view = view;
+        fireTableDataChanged();
+    }
+
+    public ExpenseView getView() {
+        return view;
+    }
+
+    // Row showing the expense, or -1 if it is not in the view.
+    public int rowOf(long id) {
+        return view.rowOf(expenseManager.slotOf(id));
+    }
+
+    public void expenseAdded(long id) {
+        int row = rowOf(id);
+        if (row < 0) {
+            return;
+        }
+
+        int rowCount = view.size();
+        if (rowCount == 1) {
+            fireTableRowsInserted(0, 1);
+        } else {
+            fireTableRowsInserted(row, row);
+            fireTableRowsUpdated(rowCount, rowCount);
+        }
+    }
+
+    // Called after the expense shown in this row has been deleted.
+    public void expenseDeleted(int row) {
+        int rowCount = view.size();
+        if (rowCount == 0) {
+            fireTableRowsDeleted(0, 1);
+        } else {
+            fireTableRowsDeleted(row, row);
+            fireTableRowsUpdated(rowCount, rowCount);
+        }
+    }
+
+    public long getIdAt(int row) {
+        return expenseManager.getStore().getId(view.slotAt(row));
+    }
+
+    // Number of expense rows, not counting the TOTAL row.
+    public int getExpenseRowCount() {
+        return view.size();
+    }
+
+    @Override
+    public int getRowCount() {
+        int rowCount = view.size();
+        return rowCount == 0 ? 0 : rowCount + 1;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        if (row == view.size()) {
+            if (column == 1) {
+                return "TOTAL";
+            }
+            if (column == 3) {
+                int fromDay = view.getFromDay();
+                long totalCents = fromDay == Integer.MIN_VALUE
+                        ? expenseManager.getTotalCents(view.getCategory())
+                        : expenseManager.sumCentsBetween(fromDay,
+                                Math.max(fromDay, expenseManager.getLastEpochDay()), view.getCategory());
+                return ExpenseCodec.formatAmount(totalCents);
+            }
+            return "";
+        }
+
+        ColumnarExpenseStore store = expenseManager.getStore();
+        int slot = view.slotAt(row);
+        switch (column) {
+            case 0:
+                return ExpenseCodec.formatDate(store.getEpochDay(slot));
+            case 1:
+                return store.getCategory(slot);
+            case 2:
+                return getDescription(store, slot);
+            default:
+                return ExpenseCodec.formatAmount(store.getAmountCents(slot));
+        }
+    }
+
+    private String getDescription(ColumnarExpenseStore store, int slot) {
+        int modCount = expenseManager.getModCount();
+        if (modCount != cachedModCount) {
+            Arrays.fill(cachedDescriptions, null);
+            cachedModCount = modCount;
+        }
+        int index = slot & (DESCRIPTION_CACHE_SIZE - 1);
+        if (cachedDescriptions[index] == null || cachedSlots[index] != slot) {
+            cachedSlots[index] = slot;
+            cachedDescriptions[index] = store.getDescription(slot);
+        }
+        return cachedDescriptions[index];
+    }
+}
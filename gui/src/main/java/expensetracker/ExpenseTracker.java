@@ -0,0 +1,59 @@
+package expensetracker;
+
+import java.awt.*;
+import java.io.*;
+import java.util.*;
+import javax.swing.*;
+
+public class ExpenseTracker {
+    public static void main(String[] args) {
+        if (args.length > 0 && "--import-csv".equals(args[0])) {
+            int status;
+            try {
+                status = CsvExpenseImporter.run(Arrays.copyOfRange(args, 1, args.length));
+            } catch (IOException e) {
+                ExpenseMetrics.error("Error importing expenses: " + e.getMessage());
+                status = 1;
+            }
+            if (status != 0) {
+                System.exit(status);
+            }
+            return;
+        }
+        if (args.length > 0 && "--server".equals(args[0])) {
+            try {
+                ExpenseServer.run(Arrays.copyOfRange(args, 1, args.length));
+            } catch (IOException e) {
+                ExpenseMetrics.error("Error starting server: " + e.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
+        if (args.length > 0 && "--load-test".equals(args[0])) {
+            try {
+                ExpenseLoadTest.run(Arrays.copyOfRange(args, 1, args.length));
+            } catch (IOException | InterruptedException e) {
+                ExpenseMetrics.error("Error running load test: " + e.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
+
+        boolean training = args.length > 0 && "--cds-training".equals(args[0]);
+        SwingUtilities.invokeLater(() -> {
+            // The system look and feel can take a while to load; -Dexpense.systemLookAndFeel=false keeps Swing's own
+            if (Boolean.parseBoolean(System.getProperty("expense.systemLookAndFeel", "true"))) {
+                try {
+                    UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+            Toolkit.getDefaultToolkit().getSystemEventQueue().push(new TimedEventQueue());
+            ExpenseTrackerGUI gui = new ExpenseTrackerGUI();
+            if (training) {
+                SwingUtilities.invokeLater(gui::runStartupTraining);
+            }
+        });
+    }
+}
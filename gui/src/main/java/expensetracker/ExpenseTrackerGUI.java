@@ -0,0 +1,1877 @@
+package expensetracker;
+
+import java.awt.*;
+import java.awt.event.*;
+import java.io.*;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.table.DefaultTableModel;
+import javax.swing.table.TableCellRenderer;
+
+class ExpenseTrackerGUI extends JFrame {
+    private static final String[] SUMMARY_COLUMNS = {"Category", "Amount", "Percentage"};
+
+    // Calendar months of expenses read at login; older ones are read as they are needed
+    private static final int HISTORY_WINDOW_MONTHS = Integer.getInteger("expense.window.months", 3);
+    // Scrolling within this many rows of the end of the table reads the next older months
+    private static final int SCROLL_MARGIN_ROWS = 200;
+    // Fewest expenses read per scroll; after that each read doubles what is loaded
+    private static final int HISTORY_CHUNK_ROWS = 2000;
+    // Calendar months, counting the current one, shown by each Period choice; 0 is all dates
+    private static final int[] PERIOD_MONTHS = {0, 1, 3, 12};
+
+    private UserManager userManager;
+    private User currentUser;
+    private ExpenseManager expenseManager;
+    // Set instead of expenseManager for an account kept in pages, which the
+    // tabs read through ExpenseStore; searching, sorting by anything but date,
+    // pivots, the chart and export need the expenses in memory and are left out
+    private PagedExpenseStore pagedStore;
+
+    // Expenses of recently logged-in users, so switching back to them is instant
+    private final ExpenseManagerCache expenseCache;
+
+    // All file I/O for expenses runs here, one task at a time, off the EDT
+    private final ScheduledExecutorService ioExecutor;
+
+    // Users are opened on the I/O thread while the login window comes up
+    private final Future<?> usersLoaded;
+
+    // Login panel components
+    private JPanel loginPanel;
+    private JTextField usernameField;
+    private JPasswordField passwordField;
+    private JProgressBar loadProgressBar;
+    private boolean loading;
+
+    // Main panel components
+    private JPanel mainPanel;
+    private JTabbedPane tabbedPane;
+    // Tabs not shown yet -> what builds them; only the Expenses tab is built with the panel
+    private final Map<Component, Runnable> unbuiltTabs = new HashMap<>();
+    private JTable expenseTable;
+    private ExpenseTableModel tableModel;
+    private PagedExpenseTableModel pagedTableModel;
+    private JTable categoryTable;
+    private DefaultTableModel categoryTableModel;
+
+    // Pivot options of the summary tab; category rows with sums and no columns is the plain summary
+    private JComboBox<GroupDimension> pivotRowCombo;
+    private JComboBox<Object> pivotColumnCombo;
+    private JComboBox<AggregateMeasure> pivotMeasureCombo;
+    private final ExpenseAggregator aggregator = new ExpenseAggregator();
+
+    // Add expense panel components
+    private JTextField dateField;
+    private JComboBox<String> categoryCombo;
+    private JTextField descriptionField;
+    private JTextField amountField;
+
+    // Sort options
+    private JComboBox<String> sortCombo;
+    private JComboBox<String> filterCategoryCombo;
+    private JComboBox<String> periodCombo;
+    private ExpenseSortOrder shownOrder = ExpenseSortOrder.DATE_NEWEST;
+
+    // Description search; typing restarts the timer, and the query runs off the EDT once it fires.
+    // A newer search or a change to the expenses supersedes the running worker.
+    private JTextField searchField;
+    private javax.swing.Timer searchTimer;
+    private SwingWorker<DescriptionIndex, Void> searchWorker;
+
+    private JButton importButton;
+
+    // Set while an export reads the store; changes to the expenses wait until it is done
+    private boolean exporting;
+
+    // Older months being read in the background, and the actions waiting for
+    // them by name, each needing every expense from historyTargetDay on
+    private SwingWorker<Void, Void> historyLoader;
+    private final Map<String, Runnable> historyActions = new LinkedHashMap<>();
+    private int historyTargetDay = Integer.MAX_VALUE;
+    private JLabel historyLabel;
+
+    // Analytics panel components
+    private JComboBox<Integer> analyticsYearCombo;
+    private DefaultTableModel monthlyTableModel;
+    private DefaultTableModel yearlyTableModel;
+
+    private SpendChart spendChart;
+
+    // Budgets panel components; row i of the table is Expense.CATEGORIES[i]
+    private JComboBox<String> budgetMonthCombo;
+    private JTable budgetTable;
+    private DefaultTableModel budgetTableModel;
+    // Month of the first budgetMonthCombo entry; each following entry is a month earlier
+    private int budgetLatestMonth;
+
+    public ExpenseTrackerGUI() {
+        userManager = new UserManager();
+        ioExecutor = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "expense-io"));
+        expenseCache = new ExpenseManagerCache(ioExecutor);
+        expenseCache.setWriteBehindScheduler(ioExecutor, ioExecutor);
+        ExpenseMetrics.registerCache(expenseCache);
+        usersLoaded = ioExecutor.submit(() -> {
+            userManager.loadUsers();
+            return null;
+        });
+
+        setTitle("Expense Tracker");
+        // Closing waits for the save in windowClosing, which exits when it is done
+        setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
+        setSize(800, 600);
+        setLocationRelativeTo(null);
+
+        createLoginPanel();
+        setContentPane(loginPanel);
+
+        // Handle window close event
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowOpened(WindowEvent e) {
+                ExpenseMetrics.loginWindowShown();
+            }
+
+            @Override
+            public void windowClosing(WindowEvent e) {
+                saveData(() -> {
+                    closePagedStore();
+                    dispose();
+                    shutdownPersistence();
+                    System.exit(0);
+                });
+            }
+        });
+
+        setVisible(true);
+    }
+
+    private void createLoginPanel() {
+        loginPanel = new JPanel(new BorderLayout());
+        loginPanel.setBorder(new EmptyBorder(20, 20, 20, 20));
+
+        JPanel formPanel = new JPanel(new GridBagLayout());
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        gbc.insets = new Insets(5, 5, 5, 5);
+
+        JLabel titleLabel = new JLabel("Expense Tracker Login", JLabel.CENTER);
+        titleLabel.setFont(new Font("Arial", Font.BOLD, 20));
+
+        JLabel usernameLabel = new JLabel("Username:");
+        JLabel passwordLabel = new JLabel("Password:");
+
+        usernameField = new JTextField(15);
+        passwordField = new JPasswordField(15);
+
+        JButton loginButton = new JButton("Login");
+        JButton registerButton = new JButton("Register");
+
+        // Add components to form
+        gbc.gridx = 0;
+        gbc.gridy = 0;
+        gbc.gridwidth = 2;
+        formPanel.add(titleLabel, gbc);
+
+        gbc.gridy = 1;
+        gbc.gridwidth = 1;
+        formPanel.add(usernameLabel, gbc);
+
+        gbc.gridx = 1;
+        formPanel.add(usernameField, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 2;
+        formPanel.add(passwordLabel, gbc);
+
+        gbc.gridx = 1;
+        formPanel.add(passwordField, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 3;
+        formPanel.add(registerButton, gbc);
+
+        gbc.gridx = 1;
+        formPanel.add(loginButton, gbc);
+
+        // Shown while a user's expenses are loading
+        loadProgressBar = new JProgressBar(0, 100);
+        loadProgressBar.setStringPainted(true);
+        loadProgressBar.setString("Loading expenses...");
+        loadProgressBar.setVisible(false);
+
+        gbc.gridx = 0;
+        gbc.gridy = 4;
+        gbc.gridwidth = 2;
+        formPanel.add(loadProgressBar, gbc);
+
+        // Add the form to the login panel
+        loginPanel.add(formPanel, BorderLayout.CENTER);
+
+        // Add action listeners
+        loginButton.addActionListener(e -> login());
+        registerButton.addActionListener(e -> register());
+
+        // Add key listener to password field
+        passwordField.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                if (e.getKeyCode() == KeyEvent.VK_ENTER) {
+                    login();
+                }
+            }
+        });
+    }
+
+    private void createMainPanel() {
+        mainPanel = new JPanel(new BorderLayout());
+
+        // Create header with welcome message and logout button
+        JPanel headerPanel = new JPanel(new BorderLayout());
+        JLabel welcomeLabel = new JLabel("Welcome, " + currentUser.getUsername() + "!");
+        welcomeLabel.setBorder(new EmptyBorder(10, 10, 10, 10));
+        welcomeLabel.setFont(new Font("Arial", Font.BOLD, 14));
+
+        JButton logoutButton = new JButton("Logout");
+        logoutButton.addActionListener(e -> logout());
+
+        headerPanel.add(welcomeLabel, BorderLayout.WEST);
+        headerPanel.add(logoutButton, BorderLayout.EAST);
+        mainPanel.add(headerPanel, BorderLayout.NORTH);
+
+        // Create tabbed pane for different views
+        tabbedPane = new JTabbedPane();
+        unbuiltTabs.clear();
+        categoryTableModel = null;
+        yearlyTableModel = null;
+        budgetTableModel = null;
+
+        // Create expenses tab
+        JPanel expensesPanel = createExpensesPanel();
+        tabbedPane.addTab("Expenses", expensesPanel);
+
+        // The other tabs are built, and filled, the first time they are selected
+        addLazyTab("Add Expense", this::createAddExpensePanel, () -> { });
+        addLazyTab("Category Summary", this::createSummaryPanel, this::refreshCategorySummary);
+        addLazyTab("Analytics", this::createAnalyticsPanel, this::refreshAnalytics);
+        // The chart covers every day, so it draws once the older months are loaded
+        if (pagedStore == null) {
+            addLazyTab("Spending Chart", this::createChartPanel,
+                    () -> withHistory("chart", Integer.MIN_VALUE, spendChart::repaint));
+        }
+        addLazyTab("Budgets", this::createBudgetPanel, this::refreshBudgets);
+        tabbedPane.addChangeListener(e -> {
+            Runnable build = unbuiltTabs.remove(tabbedPane.getSelectedComponent());
+            if (build != null) {
+                build.run();
+            }
+        });
+
+        mainPanel.add(tabbedPane, BorderLayout.CENTER);
+    }
+
+    private void addLazyTab(String title, Supplier<JPanel> factory, Runnable refresh) {
+        JPanel holder = new JPanel(new BorderLayout());
+        tabbedPane.addTab(title, holder);
+        unbuiltTabs.put(holder, () -> {
+            holder.add(factory.get(), BorderLayout.CENTER);
+            refresh.run();
+            holder.revalidate();
+        });
+    }
+
+    private JPanel createExpensesPanel() {
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.setBorder(new EmptyBorder(10, 10, 10, 10));
+
+        // Create sort and filter options
+        JPanel optionsPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+
+        JLabel sortLabel = new JLabel("Sort by:");
+        sortCombo = new JComboBox<>(new String[] {
+                "Date (newest first)",
+                "Date (oldest first)",
+                "Amount (highest first)",
+                "Category"
+        });
+        if (pagedStore != null) {
+            // Pages are kept in date order only
+            while (sortCombo.getItemCount() > 2) {
+                sortCombo.removeItemAt(2);
+            }
+        }
+
+        JLabel filterLabel = new JLabel("Filter category:");
+        filterCategoryCombo = new JComboBox<>();
+        filterCategoryCombo.addItem("All");
+        for (String category : Expense.CATEGORIES) {
+            filterCategoryCombo.addItem(category);
+        }
+
+        JLabel periodLabel = new JLabel("Period:");
+        periodCombo = new JComboBox<>(new String[] {
+                "All dates",
+                "This month",
+                "Last 3 months",
+                "Last 12 months"
+        });
+
+        JButton applyButton = new JButton("Apply");
+        applyButton.addActionListener(e -> refreshExpenseTable());
+
+        JLabel searchLabel = new JLabel("Search:");
+        searchField = new JTextField(12);
+        searchTimer = new javax.swing.Timer(200, e -> refreshExpenseTable());
+        searchTimer.setRepeats(false);
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                searchTimer.restart();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                searchTimer.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                searchTimer.restart();
+            }
+        });
+
+        optionsPanel.add(sortLabel);
+        optionsPanel.add(sortCombo);
+        optionsPanel.add(Box.createHorizontalStrut(20));
+        optionsPanel.add(filterLabel);
+        optionsPanel.add(filterCategoryCombo);
+        optionsPanel.add(periodLabel);
+        optionsPanel.add(periodCombo);
+        optionsPanel.add(applyButton);
+        optionsPanel.add(Box.createHorizontalStrut(20));
+        optionsPanel.add(searchLabel);
+        optionsPanel.add(searchField);
+        if (pagedStore != null) {
+            searchField.setEnabled(false);
+            searchField.setToolTipText("Accounts kept in pages cannot be searched");
+        }
+
+        panel.add(optionsPanel, BorderLayout.NORTH);
+
+        // Create expense table; rows of an account kept in pages are read as they are shown
+        if (pagedStore != null) {
+            tableModel = null;
+            pagedTableModel = new PagedExpenseTableModel(pagedStore, ioExecutor);
+            expenseTable = new JTable(pagedTableModel);
+        } else {
+            tableModel = new ExpenseTableModel(expenseManager);
+            expenseTable = new JTable(tableModel);
+        }
+        expenseTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        expenseTable.getTableHeader().setReorderingAllowed(false);
+
+        JScrollPane scrollPane = new JScrollPane(expenseTable);
+        scrollPane.getVerticalScrollBar().addAdjustmentListener(e -> loadOlderNearEnd());
+        panel.add(scrollPane, BorderLayout.CENTER);
+
+        // Create button panel
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        historyLabel = new JLabel();
+        buttonPanel.add(historyLabel);
+        buttonPanel.add(Box.createHorizontalStrut(20));
+        importButton = new JButton("Import CSV...");
+        importButton.addActionListener(e -> importCsv());
+        buttonPanel.add(importButton);
+
+        JButton exportButton = new JButton("Export...");
+        exportButton.addActionListener(e -> exportExpenses());
+        if (pagedStore != null) {
+            exportButton.setEnabled(false);
+            exportButton.setToolTipText("Accounts kept in pages cannot be exported here");
+        }
+        buttonPanel.add(exportButton);
+
+        JButton deleteButton = new JButton("Delete Selected");
+        deleteButton.addActionListener(e -> deleteSelectedExpense());
+        buttonPanel.add(deleteButton);
+
+        panel.add(buttonPanel, BorderLayout.SOUTH);
+
+        return panel;
+    }
+
+    private JPanel createAddExpensePanel() {
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.setBorder(new EmptyBorder(20, 20, 20, 20));
+
+        JPanel formPanel = new JPanel(new GridBagLayout());
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        gbc.insets = new Insets(5, 5, 5, 5);
+
+        // Create form components
+        JLabel dateLabel = new JLabel("Date (MM/dd/yyyy):");
+        JLabel categoryLabel = new JLabel("Category:");
+        JLabel descriptionLabel = new JLabel("Description:");
+        JLabel amountLabel = new JLabel("Amount ($):");
+
+        dateField = new JTextField(10);
+        // Set current date as default
+        dateField.setText(ExpenseCodec.formatDate((int) LocalDate.now().toEpochDay()));
+
+        categoryCombo = new JComboBox<>(Expense.CATEGORIES);
+        descriptionField = new JTextField(20);
+        amountField = new JTextField(10);
+
+        JButton addButton = new JButton("Add Expense");
+        addButton.addActionListener(e -> addExpense());
+
+        // Add components to form
+        gbc.gridx = 0;
+        gbc.gridy = 0;
+        formPanel.add(dateLabel, gbc);
+
+        gbc.gridx = 1;
+        formPanel.add(dateField, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 1;
+        formPanel.add(categoryLabel, gbc);
+
+        gbc.gridx = 1;
+        formPanel.add(categoryCombo, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 2;
+        formPanel.add(descriptionLabel, gbc);
+
+        gbc.gridx = 1;
+        formPanel.add(descriptionField, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 3;
+        formPanel.add(amountLabel, gbc);
+
+        gbc.gridx = 1;
+        formPanel.add(amountField, gbc);
+
+        gbc.gridx = 1;
+        gbc.gridy = 4;
+        gbc.anchor = GridBagConstraints.EAST;
+        formPanel.add(addButton, gbc);
+
+        // Add empty border for padding
+        formPanel.setBorder(new EmptyBorder(20, 20, 20, 20));
+
+        // Center the form
+        panel.add(formPanel, BorderLayout.CENTER);
+
+        return panel;
+    }
+
+    private JPanel createSummaryPanel() {
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.setBorder(new EmptyBorder(10, 10, 10, 10));
+
+        // Pivot options
+        JPanel optionsPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        pivotRowCombo = new JComboBox<>(GroupDimension.values());
+        pivotColumnCombo = new JComboBox<>();
+        pivotColumnCombo.addItem("None");
+        for (GroupDimension dimension : GroupDimension.values()) {
+            pivotColumnCombo.addItem(dimension);
+        }
+        pivotMeasureCombo = new JComboBox<>(AggregateMeasure.values());
+        pivotRowCombo.addActionListener(e -> refreshCategorySummary());
+        pivotColumnCombo.addActionListener(e -> refreshCategorySummary());
+        pivotMeasureCombo.addActionListener(e -> refreshCategorySummary());
+        optionsPanel.add(new JLabel("Rows:"));
+        optionsPanel.add(pivotRowCombo);
+        optionsPanel.add(new JLabel("Columns:"));
+        optionsPanel.add(pivotColumnCombo);
+        optionsPanel.add(new JLabel("Show:"));
+        optionsPanel.add(pivotMeasureCombo);
+        if (pagedStore != null) {
+            // A pivot reads every expense; pages only keep totals per category and day
+            pivotRowCombo.setEnabled(false);
+            pivotColumnCombo.setEnabled(false);
+            pivotMeasureCombo.setEnabled(false);
+        }
+        panel.add(optionsPanel, BorderLayout.NORTH);
+
+        // Create summary table
+        categoryTableModel = new DefaultTableModel(SUMMARY_COLUMNS, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+
+        categoryTable = new JTable(categoryTableModel);
+        categoryTable.getTableHeader().setReorderingAllowed(false);
+
+        JScrollPane scrollPane = new JScrollPane(categoryTable);
+        panel.add(scrollPane, BorderLayout.CENTER);
+
+        // Refresh button
+        JButton refreshButton = new JButton("Refresh");
+        refreshButton.addActionListener(e -> refreshCategorySummary());
+
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttonPanel.add(refreshButton);
+        panel.add(buttonPanel, BorderLayout.SOUTH);
+
+        return panel;
+    }
+
+    private JPanel createAnalyticsPanel() {
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.setBorder(new EmptyBorder(10, 10, 10, 10));
+
+        // Year selection
+        JPanel optionsPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        analyticsYearCombo = new JComboBox<>();
+        analyticsYearCombo.addActionListener(e -> refreshMonthlyBreakdown());
+        optionsPanel.add(new JLabel("Year:"));
+        optionsPanel.add(analyticsYearCombo);
+        panel.add(optionsPanel, BorderLayout.NORTH);
+
+        // Monthly breakdown of the selected year, per category
+        String[] monthlyColumns = new String[Expense.CATEGORIES.length + 2];
+        monthlyColumns[0] = "Month";
+        System.arraycopy(Expense.CATEGORIES, 0, monthlyColumns, 1, Expense.CATEGORIES.length);
+        monthlyColumns[monthlyColumns.length - 1] = "Total";
+        monthlyTableModel = new DefaultTableModel(monthlyColumns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        JTable monthlyTable = new JTable(monthlyTableModel);
+        monthlyTable.getTableHeader().setReorderingAllowed(false);
+
+        // Yearly totals with the change against the previous year
+        yearlyTableModel = new DefaultTableModel(new String[] {"Year", "Total", "Change vs previous year"}, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        JTable yearlyTable = new JTable(yearlyTableModel);
+        yearlyTable.getTableHeader().setReorderingAllowed(false);
+
+        JSplitPane splitPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT,
+                new JScrollPane(monthlyTable), new JScrollPane(yearlyTable));
+        splitPane.setResizeWeight(0.6);
+        panel.add(splitPane, BorderLayout.CENTER);
+
+        return panel;
+    }
+
+    private JPanel createChartPanel() {
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.setBorder(new EmptyBorder(10, 10, 10, 10));
+
+        spendChart = new SpendChart(expenseManager);
+        panel.add(spendChart, BorderLayout.CENTER);
+
+        JPanel optionsPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        optionsPanel.add(new JLabel("Scroll to zoom, drag to move, double-click to show all dates."));
+        JButton showAllButton = new JButton("Show All");
+        showAllButton.addActionListener(e -> spendChart.showAll());
+        optionsPanel.add(showAllButton);
+        panel.add(optionsPanel, BorderLayout.SOUTH);
+
+        return panel;
+    }
+
+    private JPanel createBudgetPanel() {
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.setBorder(new EmptyBorder(10, 10, 10, 10));
+
+        // The current month and the eleven before it
+        JPanel optionsPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        budgetLatestMonth = ExpenseCodec.monthIndex((int) LocalDate.now().toEpochDay());
+        budgetMonthCombo = new JComboBox<>();
+        for (int month = budgetLatestMonth; month > budgetLatestMonth - 12; month--) {
+            budgetMonthCombo.addItem(monthLabel(month));
+        }
+        budgetMonthCombo.addActionListener(e -> refreshBudgets());
+        optionsPanel.add(new JLabel("Month:"));
+        optionsPanel.add(budgetMonthCombo);
+        panel.add(optionsPanel, BorderLayout.NORTH);
+
+        budgetTableModel = new DefaultTableModel(new String[] {"Category", "Monthly Budget", "Spent", "Used"}, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        budgetTable = new JTable(budgetTableModel);
+        budgetTable.getTableHeader().setReorderingAllowed(false);
+        budgetTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        budgetTable.getColumnModel().getColumn(3).setCellRenderer(new BudgetBarRenderer());
+        budgetTable.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) {
+                    editBudget();
+                }
+            }
+        });
+        panel.add(new JScrollPane(budgetTable), BorderLayout.CENTER);
+
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        JButton setButton = new JButton("Set Budget...");
+        setButton.addActionListener(e -> editBudget());
+        buttonPanel.add(setButton);
+        panel.add(buttonPanel, BorderLayout.SOUTH);
+
+        return panel;
+    }
+
+    private void register() {
+        String username = usernameField.getText().trim();
+        String password = new String(passwordField.getPassword());
+        awaitUsers();
+
+        if (username.isEmpty() || password.isEmpty()) {
+            JOptionPane.showMessageDialog(this,
+                    "Username and password cannot be empty.",
+                    "Registration Error",
+                    JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        try {
+            UserManager.checkUsername(username);
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(this,
+                    e.getMessage() + ".",
+                    "Registration Error",
+                    JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        if (userManager.usernameExists(username)) {
+            JOptionPane.showMessageDialog(this,
+                    "Username already exists. Please choose another one.",
+                    "Registration Error",
+                    JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        User newUser = new User(username, password);
+        try {
+            userManager.addUser(newUser);
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(this,
+                    e.getMessage() + ".",
+                    "Registration Error",
+                    JOptionPane.ERROR_MESSAGE);
+            return;
+        } catch (IOException e) {
+            ExpenseMetrics.error("Error saving user data: " + e.getMessage());
+            JOptionPane.showMessageDialog(this,
+                    "Could not save the new account: " + e.getMessage(),
+                    "Registration Error",
+                    JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        userManager.saveUsers();
+
+        JOptionPane.showMessageDialog(this,
+                "Registration successful! You can now login.",
+                "Registration Success",
+                JOptionPane.INFORMATION_MESSAGE);
+
+        usernameField.setText("");
+        passwordField.setText("");
+    }
+
+    private void login() {
+        String username = usernameField.getText().trim();
+        String password = new String(passwordField.getPassword());
+
+        if (loading) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        awaitUsers();
+        User user = userManager.authenticateUser(username, password);
+        if (user != null) {
+            currentUser = user;
+            loading = true;
+            boolean paged = PagedExpenseStore.exists(user.getUsername());
+            loadProgressBar.setValue(0);
+            // Pages are opened without reading a snapshot, so there is no percentage to show
+            loadProgressBar.setIndeterminate(paged);
+            loadProgressBar.setVisible(true);
+            loginPanel.revalidate();
+
+            // Load on the I/O thread so it queues behind any writes from the previous session
+            SwingWorker<ExpenseStore, Void> loader = new SwingWorker<ExpenseStore, Void>() {
+                @Override
+                protected ExpenseStore doInBackground() throws Exception {
+                    if (paged) {
+                        return ioExecutor.submit(() -> openPagedStore(user.getUsername())).get();
+                    }
+                    return ioExecutor.submit(() -> {
+                        ExpenseManagerCache.Entry entry = expenseCache.acquire(user.getUsername(),
+                                HISTORY_WINDOW_MONTHS, this::setProgress);
+                        expenseCache.release(entry);
+                        return entry.expenseManager;
+                    }).get();
+                }
+
+                @Override
+                protected void done() {
+                    loading = false;
+                    loadProgressBar.setVisible(false);
+                    try {
+                        ExpenseStore store = get();
+                        if (paged) {
+                            pagedStore = (PagedExpenseStore) store;
+                            expenseManager = null;
+                        } else {
+                            expenseManager = (ExpenseManager) store;
+                            // Searches build the description index on a worker, see startSearch
+                            expenseManager.setSearchBuildsIndex(false);
+                        }
+                    } catch (Exception e) {
+                        ExpenseMetrics.error("Error loading expense data: " + e.getMessage());
+                        currentUser = null;
+                        JOptionPane.showMessageDialog(ExpenseTrackerGUI.this,
+                                "Could not load your expenses. Please try again.",
+                                "Login Error",
+                                JOptionPane.ERROR_MESSAGE);
+                        return;
+                    }
+
+                    createMainPanel();
+                    setContentPane(mainPanel);
+                    refreshExpenseTable();
+                    refreshCategorySummary();
+                    refreshAnalytics();
+                    refreshBudgets();
+                    updateHistoryLabel();
+                    validate();
+                    ExpenseMetrics.LOGIN.recordSince(start);
+                    // Runs after the new panel's first paint, which validate() has already queued
+                    SwingUtilities.invokeLater(ExpenseMetrics::mainPanelShown);
+                }
+            };
+            loader.addPropertyChangeListener(e -> {
+                if ("progress".equals(e.getPropertyName())) {
+                    loadProgressBar.setValue((Integer) e.getNewValue());
+                }
+            });
+            loader.execute();
+
+        } else {
+            JOptionPane.showMessageDialog(this,
+                    "Invalid username or password.",
+                    "Login Error",
+                    JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    // Opens the pages of an account kept in pages, with the daily totals the tabs read. Runs on the I/O thread.
+    private static PagedExpenseStore openPagedStore(String username) {
+        PagedExpenseStore store = new PagedExpenseStore();
+        try {
+            store.loadUserExpenses(username);
+            store.loadDailyTotals();
+        } catch (RuntimeException e) {
+            store.close();
+            throw e;
+        }
+        return store;
+    }
+
+    // What the tabs read: the pages of an account kept in pages, otherwise the expense manager.
+    private ExpenseStore expenseStore() {
+        return pagedStore != null ? pagedStore : expenseManager;
+    }
+
+    private void logout() {
+        if (waitForExport()) {
+            return;
+        }
+        historyTargetDay = Integer.MAX_VALUE;
+        // The user's expenses stay cached for a quick re-login; pages are closed
+        saveData(() -> {
+            closePagedStore();
+            currentUser = null;
+
+            usernameField.setText("");
+            passwordField.setText("");
+            setContentPane(loginPanel);
+            validate();
+        });
+    }
+
+    private void addExpense() {
+        if (waitForExport()) {
+            return;
+        }
+        try {
+            String dateStr = dateField.getText().trim();
+            int epochDay = ExpenseCodec.parseDate(dateStr);
+
+            String category = (String) categoryCombo.getSelectedItem();
+            String description = descriptionField.getText().trim();
+
+            if (description.isEmpty()) {
+                JOptionPane.showMessageDialog(this,
+                        "Description cannot be empty.",
+                        "Input Error",
+                        JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+
+            String amountStr = amountField.getText().trim();
+            if (amountStr.isEmpty()) {
+                JOptionPane.showMessageDialog(this,
+                        "Amount cannot be empty.",
+                        "Input Error",
+                        JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+
+            // Rejects zero, signs and misplaced grouping commas
+            long amountCents = ExpenseCodec.parseCents(amountStr);
+
+            Expense expense = new Expense(epochDay, category, description, amountCents);
+            if (pagedStore != null) {
+                addPagedExpense(expense);
+                return;
+            }
+            tableModel.expenseAdded(expenseManager.addExpense(currentUser.getUsername(), expense));
+            expenseAdded(expense, expenseManager.crossedBudget(expense));
+
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(this,
+                    "Invalid amount. Please enter a positive amount, such as 12.50 or 1,250.00.",
+                    "Input Error",
+                    JOptionPane.ERROR_MESSAGE);
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(this,
+                    "Invalid date. Use MM/dd/yyyy format, with a year from "
+                            + ExpenseCodec.MIN_YEAR + " to " + ExpenseCodec.MAX_YEAR + ".",
+                    "Input Error",
+                    JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    // Adds the expense to the pages on the I/O thread, where pages are read
+    // and written, and updates the tabs once it is in.
+    private void addPagedExpense(Expense expense) {
+        PagedExpenseStore store = pagedStore;
+        String username = currentUser.getUsername();
+        SwingWorker<Boolean, Void> adder = new SwingWorker<Boolean, Void>() {
+            @Override
+            protected Boolean doInBackground() throws Exception {
+                return ioExecutor.submit(() -> {
+                    store.addExpense(username, expense);
+                    return store.crossedBudget(expense);
+                }).get();
+            }
+
+            @Override
+            protected void done() {
+                if (pagedStore != store) {
+                    // Logged out meanwhile
+                    return;
+                }
+                try {
+                    boolean crossedBudget = get();
+                    pagedTableModel.reload();
+                    expenseAdded(expense, crossedBudget);
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    ExpenseMetrics.error("Error adding expense: " + cause.getMessage());
+                    JOptionPane.showMessageDialog(ExpenseTrackerGUI.this,
+                            "Could not add the expense: " + cause.getMessage(),
+                            "Add Error",
+                            JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        };
+        adder.execute();
+    }
+
+    // Tells the user the expense is in, clears the form and refreshes the
+    // tabs; the expense table already holds the new row.
+    private void expenseAdded(Expense expense, boolean crossedBudget) {
+        if (crossedBudget) {
+            JOptionPane.showMessageDialog(this,
+                    "Expense added. " + budgetWarning(expense.getCategory(), ExpenseCodec.monthIndex(expense.getEpochDay())),
+                    "Over Budget",
+                    JOptionPane.WARNING_MESSAGE);
+        } else {
+            JOptionPane.showMessageDialog(this,
+                    "Expense added successfully!",
+                    "Success",
+                    JOptionPane.INFORMATION_MESSAGE);
+        }
+
+        // Clear input fields except date
+        descriptionField.setText("");
+        amountField.setText("");
+
+        refreshCategorySummary();
+        refreshAnalytics();
+        refreshBudgets();
+
+        // Switch to expenses tab
+        tabbedPane.setSelectedIndex(0);
+    }
+
+    private void refreshExpenseTable() {
+        long start = System.nanoTime();
+        searchTimer.stop();
+        cancelSearch();
+        ExpenseSortOrder order = ExpenseSortOrder.values()[sortCombo.getSelectedIndex()];
+        String category = selectedFilterCategory();
+        String query = searchField.getText();
+        int fromDay = selectedFromDay();
+        if (pagedStore != null) {
+            pagedTableModel.show(category, order == ExpenseSortOrder.DATE_NEWEST, fromDay);
+            ExpenseMetrics.REFRESH_EXPENSE_TABLE.recordSince(start);
+            return;
+        }
+        // Newest first with no search pages in older months as the table scrolls;
+        // anything else needs every expense of the period before it can be shown
+        boolean pages = order == ExpenseSortOrder.DATE_NEWEST && query.trim().isEmpty();
+        withHistory("table", pages ? Integer.MAX_VALUE : fromDay,
+                () -> showExpenses(expenseManager.getView(category, order, query, fromDay), order, start));
+    }
+
+    private void showExpenses(ExpenseView view, ExpenseSortOrder order, long start) {
+        shownOrder = order;
+        if (view.getQuery() == null) {
+            tableModel.setView(view);
+            ExpenseMetrics.REFRESH_EXPENSE_TABLE.recordSince(start);
+            SwingUtilities.invokeLater(this::loadOlderNearEnd);
+            return;
+        }
+
+        // Resolve the matches in the background; the table keeps its rows until they are ready
+        startSearch(view, start);
+    }
+
+    // Resolves the search view, first building the description index in the
+    // background if there is none. The worker builds it from a copy of the
+    // store taken here on the EDT, so nothing it reads changes under it; the
+    // index is put in place only if the modCount is still the one the copy
+    // was taken at, otherwise it starts over. A built index is only read and
+    // changed on the EDT, and searching it takes milliseconds, so the view
+    // is resolved here.
+    private void startSearch(ExpenseView view, long start) {
+        if (expenseManager.isDescriptionIndexBuilt()) {
+            tableModel.setView(view);
+            ExpenseMetrics.REFRESH_EXPENSE_TABLE.recordSince(start);
+            return;
+        }
+        int modCount = expenseManager.getModCount();
+        ColumnarExpenseStore copy = expenseManager.getStore().copy();
+        SwingWorker<DescriptionIndex, Void> worker = new SwingWorker<DescriptionIndex, Void>() {
+            @Override
+            protected DescriptionIndex doInBackground() {
+                return DescriptionIndex.build(copy);
+            }
+
+            @Override
+            protected void done() {
+                if (searchWorker != this) {
+                    return;
+                }
+                searchWorker = null;
+                DescriptionIndex index;
+                try {
+                    index = get();
+                } catch (Exception e) {
+                    ExpenseMetrics.error("Error searching expenses: " + e.getMessage());
+                    return;
+                }
+                if (expenseManager.getModCount() == modCount) {
+                    expenseManager.installDescriptionIndex(index);
+                }
+                startSearch(view, start);
+            }
+        };
+        cancelSearch();
+        searchWorker = worker;
+        worker.execute();
+    }
+
+    // Drops the running search, if any; it carries on in the background but its result is ignored.
+    private void cancelSearch() {
+        if (searchWorker != null) {
+            searchWorker.cancel(false);
+            searchWorker = null;
+        }
+    }
+
+    // The category chosen in the filter combo, or null for "All".
+    private String selectedFilterCategory() {
+        String selectedCategory = (String) filterCategoryCombo.getSelectedItem();
+        return "All".equals(selectedCategory) ? null : selectedCategory;
+    }
+
+    // First day of the period chosen in the period combo, or Integer.MIN_VALUE for all dates.
+    private int selectedFromDay() {
+        int months = PERIOD_MONTHS[periodCombo.getSelectedIndex()];
+        if (months == 0) {
+            return Integer.MIN_VALUE;
+        }
+        return (int) LocalDate.now().withDayOfMonth(1).minusMonths(months - 1).toEpochDay();
+    }
+
+    // Runs the action once every expense dated fromDay or later is loaded and no
+    // older months are being merged in. Until then it waits, replacing any
+    // earlier action of the same name, while the months are read in the background.
+    private void withHistory(String name, int fromDay, Runnable action) {
+        // Pages hold every month from the start
+        if (pagedStore != null || (historyLoader == null && expenseManager.getLoadedFromDay() <= fromDay)) {
+            historyActions.remove(name);
+            action.run();
+            return;
+        }
+        historyActions.put(name, action);
+        historyTargetDay = Math.min(historyTargetDay, fromDay);
+        loadOlderExpenses(historyTargetDay, 0);
+    }
+
+    private void runHistoryActions() {
+        List<Runnable> actions = new ArrayList<>(historyActions.values());
+        historyActions.clear();
+        historyTargetDay = Integer.MAX_VALUE;
+        for (Runnable action : actions) {
+            action.run();
+        }
+    }
+
+    // Newest first, the table reads older months once it is scrolled close to its last loaded row.
+    private void loadOlderNearEnd() {
+        if (currentUser == null || pagedStore != null || expenseManager.isHistoryLoaded()
+                || shownOrder != ExpenseSortOrder.DATE_NEWEST || tableModel.getView().getFromDay() >= expenseManager.getLoadedFromDay()) {
+            return;
+        }
+        Rectangle visible = expenseTable.getVisibleRect();
+        int lastVisibleRow = expenseTable.rowAtPoint(new Point(0, visible.y + visible.height - 1));
+        if (lastVisibleRow >= 0 && lastVisibleRow < tableModel.getExpenseRowCount() - SCROLL_MARGIN_ROWS) {
+            return;
+        }
+        loadOlderExpenses(Integer.MAX_VALUE, Math.max(HISTORY_CHUNK_ROWS, expenseManager.getStore().size()));
+    }
+
+    // Reads the older months needed for everything dated fromDay or later, plus
+    // at least minRows more expenses, in the background and merges them in on
+    // the EDT. Once the waiting actions have what they need they run.
+    private void loadOlderExpenses(int fromDay, int minRows) {
+        if (historyLoader != null || exporting) {
+            // The running read, or the end of the export, carries on from here
+            return;
+        }
+        ExpenseHistory.Chunk chunk = expenseManager.planHistory(fromDay, minRows);
+        if (chunk == null) {
+            runHistoryActions();
+            return;
+        }
+        ExpenseManager manager = expenseManager;
+        SwingWorker<Void, Void> loader = new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() throws Exception {
+                chunk.read();
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                if (historyLoader != this) {
+                    return;
+                }
+                historyLoader = null;
+                try {
+                    get();
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    ExpenseMetrics.error("Error loading older expenses: " + cause.getMessage());
+                    historyActions.clear();
+                    historyTargetDay = Integer.MAX_VALUE;
+                    updateHistoryLabel();
+                    JOptionPane.showMessageDialog(ExpenseTrackerGUI.this,
+                            "Could not load older expenses: " + cause.getMessage(),
+                            "Load Error",
+                            JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+
+                int selectedRow = expenseTable.getSelectedRow();
+                long selectedId = selectedRow >= 0 && selectedRow < tableModel.getExpenseRowCount()
+                        ? tableModel.getIdAt(selectedRow) : -1;
+                if (manager.addHistory(chunk)) {
+                    ExpenseView shown = tableModel.getView();
+                    if (shown.getQuery() != null && searchWorker == null) {
+                        // Merging drops the description index, which is rebuilt in the background
+                        startSearch(manager.getView(shown.getCategory(), shownOrder, shown.getQuery(),
+                                shown.getFromDay()), System.nanoTime());
+                    }
+                    tableModel.setView(tableModel.getView());
+                    int row = selectedId < 0 ? -1 : tableModel.rowOf(selectedId);
+                    if (row >= 0) {
+                        expenseTable.setRowSelectionInterval(row, row);
+                    }
+                }
+                updateHistoryLabel();
+                if (expenseManager.getLoadedFromDay() > historyTargetDay) {
+                    loadOlderExpenses(historyTargetDay, 0);
+                } else {
+                    runHistoryActions();
+                }
+            }
+        };
+        historyLoader = loader;
+        updateHistoryLabel();
+        loader.execute();
+    }
+
+    private void updateHistoryLabel() {
+        if (historyLoader != null) {
+            historyLabel.setText("Loading older expenses...");
+        } else if (pagedStore != null || expenseManager.isHistoryLoaded()) {
+            historyLabel.setText("");
+        } else {
+            historyLabel.setText("Loaded from " + ExpenseCodec.formatDate(expenseManager.getLoadedFromDay()));
+        }
+    }
+
+    private void refreshCategorySummary() {
+        if (categoryTableModel == null) {
+            // Filled when its tab is first shown
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            GroupDimension rows = (GroupDimension) pivotRowCombo.getSelectedItem();
+            Object columns = pivotColumnCombo.getSelectedItem();
+            AggregateMeasure measure = (AggregateMeasure) pivotMeasureCombo.getSelectedItem();
+            if (rows == GroupDimension.CATEGORY && !(columns instanceof GroupDimension) && measure == AggregateMeasure.SUM) {
+                fillCategorySummary();
+            } else if (!expenseManager.isHistoryLoaded()) {
+                // A pivot reads every expense, so it fills in once the older months are loaded
+                categoryTableModel.setRowCount(0);
+                withHistory("summary", Integer.MIN_VALUE, this::refreshCategorySummary);
+            } else {
+                fillPivot(rows, columns instanceof GroupDimension ? (GroupDimension) columns : null, measure);
+            }
+        } finally {
+            ExpenseMetrics.REFRESH_CATEGORY_SUMMARY.recordSince(start);
+        }
+    }
+
+    private void fillCategorySummary() {
+        categoryTableModel.setRowCount(0);
+        categoryTableModel.setColumnIdentifiers(SUMMARY_COLUMNS);
+
+        Map<String, Long> categoryTotals = expenseStore().calculateCategoryTotalsCents();
+        if (categoryTotals.isEmpty()) {
+            return;
+        }
+
+        long totalCents = expenseStore().getTotalCents(null);
+
+        // Sort categories by amount (descending)
+        List<Map.Entry<String, Long>> sortedEntries = new ArrayList<>(categoryTotals.entrySet());
+        Collections.sort(sortedEntries, Map.Entry.<String, Long>comparingByValue().reversed());
+
+        // Add rows to table
+        for (Map.Entry<String, Long> entry : sortedEntries) {
+            double percentage = totalCents == 0 ? 0 : (entry.getValue() * 100.0) / totalCents;
+            categoryTableModel.addRow(new Object[] {
+                    entry.getKey(),
+                    ExpenseCodec.formatAmount(entry.getValue()),
+                    String.format("%.1f%%", percentage)
+            });
+        }
+
+        // Add total row
+        categoryTableModel.addRow(new Object[] {
+                "TOTAL", ExpenseCodec.formatAmount(totalCents), "100.0%"
+        });
+    }
+
+    // One row per value of the row dimension, one column per value of the column
+    // dimension (if any) and a Total column, all showing the chosen measure.
+    private void fillPivot(GroupDimension rowDimension, GroupDimension columnDimension, AggregateMeasure measure) {
+        categoryTableModel.setRowCount(0);
+        boolean hasColumns = columnDimension != null && columnDimension != rowDimension;
+        ExpenseAggregation cells = hasColumns
+                ? aggregator.aggregate(expenseManager, rowDimension, columnDimension)
+                : aggregator.aggregate(expenseManager, rowDimension);
+        ExpenseAggregation rowTotals = hasColumns ? cells.rollUp(rowDimension) : cells;
+        ExpenseAggregation columnTotals = hasColumns ? cells.rollUp(columnDimension) : null;
+        ExpenseAggregation total = rowTotals.rollUp();
+
+        int columnCount = hasColumns ? cells.getValueCount(1) : 0;
+        Object[] columnNames = new Object[columnCount + 2];
+        columnNames[0] = rowDimension.toString();
+        for (int column = 0; column < columnCount; column++) {
+            columnNames[column + 1] = cells.getLabel(1, column);
+        }
+        columnNames[columnCount + 1] = "Total";
+        categoryTableModel.setColumnIdentifiers(columnNames);
+        if (total.getCount(0) == 0) {
+            return;
+        }
+
+        for (int row = 0; row < rowTotals.getValueCount(0); row++) {
+            if (rowTotals.getCount(row) == 0) {
+                continue;
+            }
+            Object[] values = new Object[columnCount + 2];
+            values[0] = rowTotals.getLabel(0, row);
+            for (int column = 0; column < columnCount; column++) {
+                values[column + 1] = measure.format(cells, cells.cellOf(row, column));
+            }
+            values[columnCount + 1] = measure.format(rowTotals, row);
+            categoryTableModel.addRow(values);
+        }
+
+        Object[] totals = new Object[columnCount + 2];
+        totals[0] = "TOTAL";
+        for (int column = 0; column < columnCount; column++) {
+            totals[column + 1] = measure.format(columnTotals, column);
+        }
+        totals[columnCount + 1] = measure.format(total, 0);
+        categoryTableModel.addRow(totals);
+    }
+
+    private void refreshAnalytics() {
+        if (yearlyTableModel == null) {
+            // Filled when its tab is first shown
+            return;
+        }
+        yearlyTableModel.setRowCount(0);
+        Integer selectedYear = (Integer) analyticsYearCombo.getSelectedItem();
+
+        ExpenseStore store = expenseStore();
+        if (store.getExpenseCount() == 0) {
+            analyticsYearCombo.removeAllItems();
+            monthlyTableModel.setRowCount(0);
+            return;
+        }
+
+        int firstYear = ExpenseCodec.year(store.getFirstEpochDay());
+        int lastYear = ExpenseCodec.year(store.getLastEpochDay());
+
+        // Newest year first; keeps the current selection if it still exists
+        DefaultComboBoxModel<Integer> years = new DefaultComboBoxModel<>();
+        for (int year = lastYear; year >= firstYear; year--) {
+            years.addElement(year);
+        }
+        years.setSelectedItem(selectedYear != null && selectedYear >= firstYear && selectedYear <= lastYear
+                ? selectedYear : lastYear);
+        analyticsYearCombo.setModel(years);
+
+        long previous = 0;
+        for (int year = firstYear; year <= lastYear; year++) {
+            long total = store.sumCentsBetween(
+                    (int) LocalDate.of(year, 1, 1).toEpochDay(), (int) LocalDate.of(year, 12, 31).toEpochDay(), null);
+            String change = year == firstYear || previous == 0
+                    ? "" : String.format("%+.1f%%", (total - previous) * 100.0 / previous);
+            yearlyTableModel.insertRow(0, new Object[] {
+                    year, ExpenseCodec.formatAmount(total), change
+            });
+            previous = total;
+        }
+        refreshMonthlyBreakdown();
+    }
+
+    private void refreshBudgets() {
+        if (budgetTableModel == null) {
+            // Filled when its tab is first shown
+            return;
+        }
+        int selectedRow = budgetTable.getSelectedRow();
+        int month = budgetLatestMonth - Math.max(0, budgetMonthCombo.getSelectedIndex());
+        budgetTableModel.setRowCount(0);
+        for (String category : Expense.CATEGORIES) {
+            long limit = expenseStore().getBudgetCents(category);
+            long spent = expenseStore().getMonthTotalCents(month, category);
+            budgetTableModel.addRow(new Object[] {
+                    category,
+                    limit < 0 ? "" : ExpenseCodec.formatAmount(limit),
+                    ExpenseCodec.formatAmount(spent),
+                    limit < 0 ? null : (int) Math.min(spent * 100 / Math.max(limit, 1), 999)
+            });
+        }
+        if (selectedRow >= 0) {
+            budgetTable.setRowSelectionInterval(selectedRow, selectedRow);
+        }
+    }
+
+    private void editBudget() {
+        int selectedRow = budgetTable.getSelectedRow();
+        if (selectedRow < 0) {
+            JOptionPane.showMessageDialog(this,
+                    "Please select a category.",
+                    "Selection Error",
+                    JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        String category = Expense.CATEGORIES[selectedRow];
+        long limit = expenseStore().getBudgetCents(category);
+        String input = (String) JOptionPane.showInputDialog(this,
+                "Monthly budget for " + category + " (leave empty for none):",
+                "Set Budget",
+                JOptionPane.PLAIN_MESSAGE,
+                null,
+                null,
+                limit < 0 ? "" : ExpenseCodec.formatDecimal(limit));
+        if (input == null) {
+            return;
+        }
+        try {
+            long cents = input.trim().isEmpty() ? -1 : ExpenseCodec.parseCents(input.trim());
+            expenseStore().setBudget(currentUser.getUsername(), category, cents);
+            refreshBudgets();
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(this,
+                    "Invalid amount. Please enter a valid number.",
+                    "Input Error",
+                    JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    // Draws the Used column as a bar of the budget spent, red once it is exceeded.
+    private static class BudgetBarRenderer extends JProgressBar implements TableCellRenderer {
+        private static final long serialVersionUID = 1L;
+        private final Color normalColor;
+
+        BudgetBarRenderer() {
+            super(0, 100);
+            setStringPainted(true);
+            normalColor = getForeground();
+        }
+
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                       boolean hasFocus, int row, int column) {
+            if (value == null) {
+                setValue(0);
+                setString("No budget");
+                setForeground(normalColor);
+            } else {
+                int percent = (Integer) value;
+                setValue(Math.min(percent, 100));
+                setString(percent + "%");
+                setForeground(percent > 100 ? Color.RED : normalColor);
+            }
+            return this;
+        }
+    }
+
+    private void refreshMonthlyBreakdown() {
+        monthlyTableModel.setRowCount(0);
+        Integer year = (Integer) analyticsYearCombo.getSelectedItem();
+        if (year == null) {
+            return;
+        }
+
+        for (int month = 1; month <= 12; month++) {
+            LocalDate first = LocalDate.of(year, month, 1);
+            int fromDay = (int) first.toEpochDay();
+            int toDay = (int) first.withDayOfMonth(first.lengthOfMonth()).toEpochDay();
+
+            Object[] row = new Object[Expense.CATEGORIES.length + 2];
+            row[0] = first.getMonth().getDisplayName(java.time.format.TextStyle.FULL, Locale.getDefault());
+            for (int i = 0; i < Expense.CATEGORIES.length; i++) {
+                long cents = expenseStore().sumCentsBetween(fromDay, toDay, Expense.CATEGORIES[i]);
+                row[i + 1] = ExpenseCodec.formatAmount(cents);
+            }
+            long total = expenseStore().sumCentsBetween(fromDay, toDay, null);
+            row[row.length - 1] = ExpenseCodec.formatAmount(total);
+            monthlyTableModel.addRow(row);
+        }
+    }
+
+    // Parses the file in the background and adds all valid rows in one commit.
+    private void importCsv() {
+        if (waitForExport()) {
+            return;
+        }
+        JFileChooser chooser = new JFileChooser();
+        // Rows are not matched against the expenses already there
+        chooser.setDialogTitle("Import CSV (importing a file again adds its rows again)");
+        chooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("CSV files", "csv"));
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File file = chooser.getSelectedFile();
+        String username = currentUser.getUsername();
+        importButton.setEnabled(false);
+
+        SwingWorker<CsvExpenseImporter.Result, Void> importer = new SwingWorker<CsvExpenseImporter.Result, Void>() {
+            @Override
+            protected CsvExpenseImporter.Result doInBackground() throws Exception {
+                return new CsvExpenseImporter().parse(file, this::setProgress);
+            }
+
+            @Override
+            protected void done() {
+                CsvExpenseImporter.Result result;
+                try {
+                    result = get();
+                } catch (Exception e) {
+                    importButton.setEnabled(true);
+                    setCursor(Cursor.getDefaultCursor());
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    JOptionPane.showMessageDialog(ExpenseTrackerGUI.this,
+                            "Could not read " + file.getName() + ": " + cause.getMessage(),
+                            "Import Error",
+                            JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                // The commit adds to every month and snapshots them all, so the older months come first
+                withHistory("import", Integer.MIN_VALUE, () -> commitImport(file, username, result));
+            }
+        };
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        importer.execute();
+    }
+
+    // Adds the rows to the expense manager here on the EDT; its snapshot is
+    // written on the I/O thread. The paged store adds them on the I/O thread,
+    // like a load, and a progress panel stands in for the tabs meanwhile.
+    private void commitImport(File file, String username, CsvExpenseImporter.Result result) {
+        searchTimer.stop();
+        cancelSearch();
+        if (pagedStore == null) {
+            long commitStart = System.nanoTime();
+            try {
+                int imported = expenseManager.importExpenses(username, result.rows);
+                importCommitted(file, result, imported, System.nanoTime() - commitStart);
+            } catch (RuntimeException e) {
+                importFailed(file, e);
+            }
+            return;
+        }
+        PagedExpenseStore store = pagedStore;
+
+        JProgressBar progress = new JProgressBar();
+        progress.setIndeterminate(true);
+        progress.setStringPainted(true);
+        progress.setString(String.format("Adding %,d expenses from %s...", result.rows.size(), file.getName()));
+        JPanel importPanel = new JPanel(new GridBagLayout());
+        importPanel.add(progress);
+        setContentPane(importPanel);
+        validate();
+
+        SwingWorker<Integer, Void> committer = new SwingWorker<Integer, Void>() {
+            private volatile long commitNanos;
+
+            @Override
+            protected Integer doInBackground() throws Exception {
+                return ioExecutor.submit(() -> {
+                    long commitStart = System.nanoTime();
+                    int imported = store.importExpenses(username, result.rows);
+                    commitNanos = System.nanoTime() - commitStart;
+                    return imported;
+                }).get();
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    importCommitted(file, result, get(), commitNanos);
+                } catch (Exception e) {
+                    importFailed(file, e.getCause() != null ? e.getCause() : e);
+                }
+            }
+        };
+        committer.execute();
+    }
+
+    private void importCommitted(File file, CsvExpenseImporter.Result result, int imported, long commitNanos) {
+        showImportTabs();
+        showImportSummary(file, result, imported, commitNanos);
+    }
+
+    private void importFailed(File file, Throwable cause) {
+        showImportTabs();
+        ExpenseMetrics.error("Error importing " + file.getName() + ": " + cause);
+        JOptionPane.showMessageDialog(this,
+                "Could not import " + file.getName() + ": " + cause.getMessage(),
+                "Import Error",
+                JOptionPane.ERROR_MESSAGE);
+    }
+
+    private void showImportTabs() {
+        importButton.setEnabled(true);
+        setCursor(Cursor.getDefaultCursor());
+        setContentPane(mainPanel);
+        refreshExpenseTable();
+        refreshCategorySummary();
+        refreshAnalytics();
+        refreshBudgets();
+        validate();
+    }
+
+    private void showImportSummary(File file, CsvExpenseImporter.Result result, int imported, long commitNanos) {
+        StringBuilder message = new StringBuilder(CsvExpenseImporter.summary(result, imported, commitNanos));
+        List<String> overBudget = budgetWarnings(result.rows);
+        for (int i = 0; i < Math.min(10, overBudget.size()); i++) {
+            message.append("\n").append(overBudget.get(i));
+        }
+        if (result.errorCount > 0) {
+            File report = CsvExpenseImporter.errorReportFile(file);
+            try {
+                CsvExpenseImporter.writeErrorReport(report, result);
+                message.append("\nRejected lines are listed in ").append(report.getPath());
+            } catch (IOException e) {
+                ExpenseMetrics.error("Error writing import report: " + e.getMessage());
+            }
+            for (int i = 0; i < Math.min(10, result.errors.size()); i++) {
+                message.append("\n").append(result.errors.get(i));
+            }
+        }
+        JOptionPane.showMessageDialog(this,
+                message.toString(),
+                "Import Complete",
+                result.errorCount > 0 || !overBudget.isEmpty()
+                        ? JOptionPane.WARNING_MESSAGE : JOptionPane.INFORMATION_MESSAGE);
+    }
+
+    // A warning for each category and month the rows add to that is over budget
+    // now; only those pairs are checked, each with a single month total.
+    private List<String> budgetWarnings(ColumnarExpenseStore rows) {
+        Map<String, Set<Integer>> months = new TreeMap<>();
+        for (int slot = rows.nextLiveSlot(0); slot >= 0; slot = rows.nextLiveSlot(slot + 1)) {
+            if (expenseStore().getBudgetCents(rows.getCategory(slot)) >= 0) {
+                months.computeIfAbsent(rows.getCategory(slot), c -> new TreeSet<>())
+                        .add(ExpenseCodec.monthIndex(rows.getEpochDay(slot)));
+            }
+        }
+        List<String> warnings = new ArrayList<>();
+        for (Map.Entry<String, Set<Integer>> entry : months.entrySet()) {
+            for (int month : entry.getValue()) {
+                if (expenseStore().isOverBudget(entry.getKey(), month)) {
+                    warnings.add(budgetWarning(entry.getKey(), month));
+                }
+            }
+        }
+        return warnings;
+    }
+
+    private String budgetWarning(String category, int month) {
+        return category + " is over budget for " + monthLabel(month) + ": "
+                + ExpenseCodec.formatAmount(expenseStore().getMonthTotalCents(month, category)) + " of "
+                + ExpenseCodec.formatAmount(expenseStore().getBudgetCents(category)) + " spent.";
+    }
+
+    private static String monthLabel(int month) {
+        LocalDate first = LocalDate.ofEpochDay(ExpenseCodec.firstDayOfMonth(month));
+        return first.getMonth().getDisplayName(java.time.format.TextStyle.FULL, Locale.getDefault())
+                + " " + first.getYear();
+    }
+
+    // Writes the rows of the Expenses tab, with its filter and sort order, in the background.
+    private void exportExpenses() {
+        if (exporting || !importButton.isEnabled()) {
+            // An import in progress commits its rows when it finishes
+            return;
+        }
+        JFileChooser chooser = new JFileChooser();
+        chooser.addChoosableFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("CSV files", "csv"));
+        chooser.addChoosableFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("JSON Lines files", "jsonl"));
+        chooser.setAcceptAllFileFilterUsed(false);
+        chooser.setSelectedFile(new File(currentUser.getUsername() + "_expenses.csv"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File file = chooser.getSelectedFile();
+        if (file.getName().indexOf('.') < 0) {
+            String extension = chooser.getFileFilter().getDescription().startsWith("JSON") ? ".jsonl" : ".csv";
+            file = new File(file.getPath() + extension);
+        }
+        File target = file;
+
+        ExpenseSortOrder order = ExpenseSortOrder.values()[sortCombo.getSelectedIndex()];
+        int fromDay = selectedFromDay();
+        ExpenseView view = expenseManager.getView(selectedFilterCategory(), order, null, fromDay);
+        withHistory("export", fromDay, () -> writeExport(target, view));
+    }
+
+    private void writeExport(File target, ExpenseView view) {
+        ColumnarExpenseStore store = expenseManager.getStore();
+        ProgressMonitor monitor = new ProgressMonitor(this, "Exporting to " + target.getName(), null, 0, 100);
+        monitor.setMillisToDecideToPopup(200);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        exporting = true;
+
+        SwingWorker<Long, Void> exporter = new SwingWorker<Long, Void>() {
+            @Override
+            protected Long doInBackground() throws Exception {
+                return new ExpenseExporter().export(view, store, target, ExpenseExporter.formatFor(target),
+                        cancelled::get, this::setProgress);
+            }
+
+            @Override
+            protected void done() {
+                exporting = false;
+                monitor.close();
+                if (!historyActions.isEmpty()) {
+                    loadOlderExpenses(historyTargetDay, 0);
+                }
+                try {
+                    long rows = get();
+                    if (rows >= 0) {
+                        JOptionPane.showMessageDialog(ExpenseTrackerGUI.this,
+                                String.format("Exported %,d expenses to %s", rows, target.getPath()),
+                                "Export Complete",
+                                JOptionPane.INFORMATION_MESSAGE);
+                    }
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    JOptionPane.showMessageDialog(ExpenseTrackerGUI.this,
+                            "Could not write " + target.getName() + ": " + cause.getMessage(),
+                            "Export Error",
+                            JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        };
+        // The worker is never cancelled itself, so done() only runs once the file is closed
+        exporter.addPropertyChangeListener(e -> {
+            if ("progress".equals(e.getPropertyName())) {
+                monitor.setProgress((Integer) e.getNewValue());
+                if (monitor.isCanceled()) {
+                    cancelled.set(true);
+                }
+            }
+        });
+        exporter.execute();
+    }
+
+    // True (after telling the user) while an export still needs the expenses unchanged.
+    private boolean waitForExport() {
+        if (exporting) {
+            JOptionPane.showMessageDialog(this,
+                    "An export is still running. Please wait for it to finish or cancel it.",
+                    "Export Running",
+                    JOptionPane.WARNING_MESSAGE);
+        }
+        return exporting;
+    }
+
+    private void deleteSelectedExpense() {
+        if (waitForExport()) {
+            return;
+        }
+        int selectedRow = expenseTable.getSelectedRow();
+        int rowCount = pagedStore != null ? pagedTableModel.getExpenseRowCount() : tableModel.getExpenseRowCount();
+        // Each row carries the id of the expense it shows; a paged row still being read has none yet
+        long id = selectedRow < 0 || selectedRow >= rowCount ? -1
+                : pagedStore != null ? pagedTableModel.getIdAt(selectedRow) : tableModel.getIdAt(selectedRow);
+        if (id < 0) {
+            JOptionPane.showMessageDialog(this,
+                    "Please select an expense to delete.",
+                    "Selection Error",
+                    JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+
+        int confirm = JOptionPane.showConfirmDialog(this,
+                "Are you sure you want to delete this expense?",
+                "Confirm Delete",
+                JOptionPane.YES_NO_OPTION);
+
+        if (confirm != JOptionPane.YES_OPTION) {
+            return;
+        }
+        if (pagedStore != null) {
+            deletePagedExpense(id);
+            return;
+        }
+        expenseManager.deleteExpense(currentUser.getUsername(), id);
+        tableModel.expenseDeleted(selectedRow);
+
+        // Refresh the UI
+        refreshCategorySummary();
+        refreshAnalytics();
+        refreshBudgets();
+    }
+
+    // Deletes from the pages on the I/O thread, like addPagedExpense.
+    private void deletePagedExpense(long id) {
+        PagedExpenseStore store = pagedStore;
+        String username = currentUser.getUsername();
+        SwingWorker<Boolean, Void> deleter = new SwingWorker<Boolean, Void>() {
+            @Override
+            protected Boolean doInBackground() throws Exception {
+                return ioExecutor.submit(() -> store.deleteExpense(username, id)).get();
+            }
+
+            @Override
+            protected void done() {
+                if (pagedStore != store) {
+                    return;
+                }
+                try {
+                    get();
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    ExpenseMetrics.error("Error deleting expense: " + cause.getMessage());
+                    JOptionPane.showMessageDialog(ExpenseTrackerGUI.this,
+                            "Could not delete the expense: " + cause.getMessage(),
+                            "Delete Error",
+                            JOptionPane.ERROR_MESSAGE);
+                }
+                pagedTableModel.reload();
+                refreshCategorySummary();
+                refreshAnalytics();
+                refreshBudgets();
+            }
+        };
+        deleter.execute();
+    }
+
+    // Syncs the expenses and saves the users, then runs then on the EDT.
+    // Searches and older months still being read are dropped, and a
+    // progress panel stands in for the tabs until the writes are done.
+    private void saveData(Runnable then) {
+        if (searchTimer != null) {
+            searchTimer.stop();
+        }
+        cancelSearch();
+        // Older months still being read are dropped along with what waits for them
+        historyLoader = null;
+        historyActions.clear();
+        String username = currentUser == null ? null : currentUser.getUsername();
+
+        JProgressBar progress = new JProgressBar();
+        progress.setIndeterminate(true);
+        progress.setStringPainted(true);
+        progress.setString("Saving...");
+        JPanel savePanel = new JPanel(new GridBagLayout());
+        savePanel.add(progress);
+        setContentPane(savePanel);
+        validate();
+        syncAndThen(username, true, then);
+    }
+
+    // Starts the sync here on the EDT, where the expense manager's state
+    // lives; the paged store syncs on the I/O thread, behind an import still
+    // adding rows. A worker waits for the writes. If they failed, the sync is
+    // tried once more, which writes a full snapshot instead of the journal.
+    private void syncAndThen(String username, boolean retry, Runnable then) {
+        CompletableFuture<Boolean> synced;
+        if (username == null) {
+            synced = CompletableFuture.completedFuture(true);
+        } else if (pagedStore != null) {
+            PagedExpenseStore store = pagedStore;
+            synced = CompletableFuture.supplyAsync(() -> store.syncUserExpenses(username).join(), ioExecutor);
+        } else {
+            synced = expenseManager.syncUserExpenses(username);
+        }
+
+        SwingWorker<Boolean, Void> saver = new SwingWorker<Boolean, Void>() {
+            @Override
+            protected Boolean doInBackground() throws Exception {
+                awaitUsers();
+                ioExecutor.submit(userManager::saveUsers).get();
+                return synced.get();
+            }
+
+            @Override
+            protected void done() {
+                boolean saved;
+                try {
+                    saved = get();
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    ExpenseMetrics.error("Error saving data: " + cause);
+                    saved = false;
+                }
+                if (!saved && retry && username != null) {
+                    syncAndThen(username, false, then);
+                    return;
+                }
+                then.run();
+            }
+        };
+        saver.execute();
+    }
+
+    // Waits for the users opened in the background; anything that looks up or saves users calls this first.
+    private void awaitUsers() {
+        try {
+            usersLoaded.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            ExpenseMetrics.error("Error loading user data: " + e.getCause());
+        }
+    }
+
+    // Walks the startup path once without a real account: shows the main
+    // panel for an empty expense manager that is never loaded or saved,
+    // builds every tab and exits. Run under -XX:ArchiveClassesAtExit so the
+    // classes it loads go into a class-data-sharing archive.
+    void runStartupTraining() {
+        awaitUsers();
+        currentUser = new User("cds-training", "");
+        expenseManager = new ExpenseManager();
+        createMainPanel();
+        setContentPane(mainPanel);
+        refreshExpenseTable();
+        validate();
+        for (int tab = tabbedPane.getTabCount() - 1; tab >= 0; tab--) {
+            tabbedPane.setSelectedIndex(tab);
+        }
+        SwingUtilities.invokeLater(() -> {
+            ExpenseMetrics.mainPanelShown();
+            System.out.println(ExpenseMetrics.startupReport());
+            dispose();
+            shutdownPersistence();
+            System.exit(0);
+        });
+    }
+
+    // Hands the open pages, if any, to the I/O thread, which checkpoints and closes them.
+    private void closePagedStore() {
+        if (pagedStore != null) {
+            ioExecutor.execute(pagedStore::close);
+            pagedStore = null;
+            pagedTableModel = null;
+        }
+    }
+
+    // Lets queued writes finish before the JVM exits.
+    private void shutdownPersistence() {
+        ioExecutor.shutdown();
+        try {
+            if (!ioExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                ExpenseMetrics.error("Timed out waiting for expense data to be written");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package expensetracker;
+
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import javax.swing.SwingUtilities;
+import javax.swing.table.AbstractTableModel;
+
+// Table model for the Expenses tab of an account kept in pages. Rows are
+// read BLOCK_ROWS at a time through PagedExpenseStore.listExpenses, one
+// descent of the date tree per block, and the last blocks read are kept, so
+// scrolling reads only the pages of the rows shown. Rows are in date order,
+// optionally of one category and from a given day on. The last row is the
+// TOTAL row.
+//
+// Pages are never read on the EDT. Counting the rows and reading blocks run
+// on the executor (the GUI's I/O thread), and the results are put in place
+// on the EDT, which then repaints the rows they cover. Until its block
+// arrives a row shows as loading, and the block after it is read along with
+// it, so scrolling down usually finds its rows read already.
+class PagedExpenseTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+    private static final String[] COLUMN_NAMES = {"Date", "Category", "Description", "Amount"};
+    private static final int BLOCK_ROWS = 256;
+    private static final int CACHED_BLOCKS = 16;
+
+    private final PagedExpenseStore store;
+    private final Executor executor;
+    private String category;
+    private boolean newestFirst = true;
+    private int fromDay = Integer.MIN_VALUE;
+    private int rowCount;
+    private long totalCents;
+    // Expenses left out at the start of the listing: oldest first, those before fromDay
+    private int skippedRows;
+    // Changes on every reload, so reads started for an older one are dropped
+    private int generation;
+    // Set while a reload counts the rows; no blocks are read until it is done
+    private boolean counting;
+
+    // Recently read blocks of rows by block number, direct-mapped like the description cache of ExpenseTableModel
+    private final int[] cachedBlocks = new int[CACHED_BLOCKS];
+    private final Expense[][] cachedRows = new Expense[CACHED_BLOCKS][];
+    // Blocks being read for the current generation
+    private final Set<Integer> pendingBlocks = new HashSet<>();
+
+    public PagedExpenseTableModel(PagedExpenseStore store, Executor executor) {
+        this.store = store;
+        this.executor = executor;
+    }
+
+    // Shows the expenses of the category (null for all) dated fromDay or later
+    // (Integer.MIN_VALUE for all dates), newest or oldest first.
+    public void show(String category, boolean newestFirst, int fromDay) {
+        this.category = category;
+        this.newestFirst = newestFirst;
+        this.fromDay = fromDay;
+        // The rows read so far are of another listing
+        Arrays.fill(cachedRows, null);
+        reload();
+    }
+
+    // Counts the rows again on the executor and forgets the rows read once
+    // the count is in, after the expenses changed. Until then the rows read
+    // so far are shown, and rows not read yet wait for the count.
+    public void reload() {
+        int reloadGeneration = ++generation;
+        String reloadCategory = category;
+        boolean reloadNewestFirst = newestFirst;
+        int reloadFromDay = fromDay;
+        counting = true;
+        pendingBlocks.clear();
+        runInBackground(() -> {
+            int total = reloadCategory == null ? store.getExpenseCount() : store.getCategoryExpenseCount(reloadCategory);
+            int count = reloadFromDay == Integer.MIN_VALUE ? total : store.getExpenseCountFrom(reloadFromDay, reloadCategory);
+            long cents = reloadFromDay == Integer.MIN_VALUE
+                    ? store.getTotalCents(reloadCategory)
+                    : store.sumCentsBetween(reloadFromDay, Math.max(reloadFromDay, store.getLastEpochDay()), reloadCategory);
+            SwingUtilities.invokeLater(() -> {
+                if (generation != reloadGeneration) {
+                    return;
+                }
+                counting = false;
+                rowCount = count;
+                totalCents = cents;
+                skippedRows = reloadNewestFirst ? 0 : total - count;
+                Arrays.fill(cachedRows, null);
+                fireTableDataChanged();
+            });
+        });
+    }
+
+    // Id of the expense in the row, or -1 while its block is being read.
+    public long getIdAt(int row) {
+        Expense expense = expenseAt(row);
+        return expense == null ? -1 : expense.getId();
+    }
+
+    // Number of expense rows, not counting the TOTAL row.
+    public int getExpenseRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount == 0 ? 0 : rowCount + 1;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        if (row == rowCount) {
+            if (column == 1) {
+                return "TOTAL";
+            }
+            if (column == 3) {
+                return ExpenseCodec.formatAmount(totalCents);
+            }
+            return "";
+        }
+
+        Expense expense = expenseAt(row);
+        if (expense == null) {
+            return column == 2 ? "Loading..." : "";
+        }
+        switch (column) {
+            case 0:
+                return ExpenseCodec.formatDate(expense.getEpochDay());
+            case 1:
+                return expense.getCategory();
+            case 2:
+                return expense.getDescription();
+            default:
+                return ExpenseCodec.formatAmount(expense.getAmountCents());
+        }
+    }
+
+    // The expense in the row if its block has been read; otherwise starts
+    // reading the block, and the next one, and returns null.
+    private Expense expenseAt(int row) {
+        int block = row / BLOCK_ROWS;
+        Expense[] rows = cachedBlock(block);
+        if (rows == null) {
+            readBlock(block);
+            readBlock(block + 1);
+            return null;
+        }
+        return row % BLOCK_ROWS < rows.length ? rows[row % BLOCK_ROWS] : null;
+    }
+
+    private Expense[] cachedBlock(int block) {
+        int index = block & (CACHED_BLOCKS - 1);
+        return cachedRows[index] != null && cachedBlocks[index] == block ? cachedRows[index] : null;
+    }
+
+    private void readBlock(int block) {
+        int firstRow = block * BLOCK_ROWS;
+        if (counting || firstRow >= rowCount || cachedBlock(block) != null || !pendingBlocks.add(block)) {
+            return;
+        }
+        int readGeneration = generation;
+        String readCategory = category;
+        boolean readNewestFirst = newestFirst;
+        int offset = skippedRows + firstRow;
+        runInBackground(() -> {
+            Expense[] rows = store.listExpenses(readCategory, readNewestFirst, offset, BLOCK_ROWS).toArray(new Expense[0]);
+            SwingUtilities.invokeLater(() -> {
+                if (generation != readGeneration) {
+                    return;
+                }
+                pendingBlocks.remove(block);
+                int index = block & (CACHED_BLOCKS - 1);
+                cachedBlocks[index] = block;
+                cachedRows[index] = rows;
+                fireTableRowsUpdated(firstRow, Math.min(rowCount, firstRow + BLOCK_ROWS) - 1);
+            });
+        });
+    }
+
+    private void runInBackground(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // The window is closing and the pages with it
+        }
+    }
+}
@@ -0,0 +1,416 @@
+package expensetracker;
+
+import java.awt.*;
+import java.awt.event.*;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import javax.swing.*;
+
+// Daily spending over time as stacked areas, one per category, outlined by
+// the day's total. The per-day totals come from the manager's DailyTotals,
+// copied out once per change, so zooming (mouse wheel) and panning (drag)
+// only re-slice them however many expenses there are. When more days are
+// visible than the plot is wide, a largest-triangle-three-buckets pass over
+// the daily totals keeps about one day per pixel, and every category is
+// drawn at those days. The picture is rendered into an off-screen image
+// that is reused until the size, the visible days or the expenses change.
+class SpendChart extends JComponent {
+    private static final long serialVersionUID = 1L;
+    private static final int LEFT = 80;
+    private static final int RIGHT = 16;
+    private static final int TOP = 28;
+    private static final int BOTTOM = 28;
+    private static final int MIN_VISIBLE_DAYS = 7;
+    private static final double ZOOM_STEP = 1.25;
+    private static final Color[] PALETTE = {
+            new Color(0x4E79A7), new Color(0xF28E2B), new Color(0xE15759), new Color(0x76B7B2),
+            new Color(0x59A14F), new Color(0xEDC948), new Color(0xB07AA1), new Color(0xFF9DA7),
+            new Color(0x9C755F), new Color(0xBAB0AC)
+    };
+
+    private final ExpenseManager expenseManager;
+
+    // Totals of every day from firstDay on; row 0 is all categories, row 1 + id one category
+    private long[][] days = new long[0][];
+    private int firstDay;
+    private int dataModCount = -1;
+
+    // Visible days as [viewFrom, viewTo), fractional while zooming; showing all follows the data as it grows
+    private double viewFrom;
+    private double viewTo;
+    private boolean showingAll = true;
+
+    private BufferedImage cachedImage;
+    private double cachedFrom;
+    private double cachedTo;
+    private int cachedModCount = -1;
+
+    private int dragX;
+    private double dragFrom;
+
+    public SpendChart(ExpenseManager expenseManager) {
+        this.expenseManager = expenseManager;
+        setPreferredSize(new Dimension(640, 360));
+        setOpaque(true);
+
+        addMouseWheelListener(e -> zoom(e.getX(), Math.pow(ZOOM_STEP, e.getPreciseWheelRotation())));
+        MouseAdapter mouse = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                dragX = e.getX();
+                dragFrom = viewFrom;
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                double daysPerPixel = (viewTo - viewFrom) / plotWidth(getWidth());
+                moveTo(dragFrom - (e.getX() - dragX) * daysPerPixel);
+            }
+
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) {
+                    showAll();
+                }
+            }
+        };
+        addMouseListener(mouse);
+        addMouseMotionListener(mouse);
+    }
+
+    public void showAll() {
+        showingAll = true;
+        viewFrom = firstDay;
+        viewTo = firstDay + dayCount();
+        repaint();
+    }
+
+    // Shows the days [fromDay, toDay), kept within the days that have expenses.
+    public void setVisibleDays(double fromDay, double toDay) {
+        updateData();
+        double span = Math.max(MIN_VISIBLE_DAYS, toDay - fromDay);
+        viewFrom = fromDay;
+        viewTo = fromDay + span;
+        clampView();
+        repaint();
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        if (!expenseManager.isHistoryLoaded()) {
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, getWidth(), getHeight());
+            g.setColor(Color.GRAY);
+            g.drawString("Loading older expenses...", LEFT, TOP + 20);
+            return;
+        }
+        updateData();
+        int width = getWidth();
+        int height = getHeight();
+        if (cachedImage == null || cachedImage.getWidth() != width || cachedImage.getHeight() != height
+                || cachedFrom != viewFrom || cachedTo != viewTo || cachedModCount != dataModCount) {
+            cachedImage = render(width, height);
+            cachedFrom = viewFrom;
+            cachedTo = viewTo;
+            cachedModCount = dataModCount;
+        }
+        g.drawImage(cachedImage, 0, 0, null);
+    }
+
+    // Draws the visible days into a new image of the given size.
+    public BufferedImage render(int width, int height) {
+        updateData();
+        BufferedImage image = new BufferedImage(Math.max(1, width), Math.max(1, height), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, width, height);
+            int plotWidth = plotWidth(width);
+            int plotHeight = height - TOP - BOTTOM;
+            if (dayCount() == 0) {
+                g.setColor(Color.GRAY);
+                g.drawString("No expenses yet", LEFT, TOP + 20);
+                return image;
+            }
+            if (plotWidth < 3 || plotHeight < 1) {
+                return image;
+            }
+
+            int from = Math.max(0, (int) Math.floor(viewFrom) - firstDay);
+            int to = Math.min(dayCount(), (int) Math.ceil(viewTo) - firstDay);
+            int[] picked = downsample(days[0], from, to, plotWidth);
+            long maxCents = 0;
+            for (int index : picked) {
+                maxCents = Math.max(maxCents, days[0][index]);
+            }
+            long step = niceStep(Math.max(1, maxCents / 4));
+            long topCents = Math.max(step, (maxCents + step - 1) / step * step);
+
+            drawAxes(g, plotWidth, plotHeight, step, topCents);
+            g.clipRect(LEFT, TOP, plotWidth, plotHeight);
+
+            // Each category is stacked on the ones before it, at the picked days
+            double[] xs = new double[picked.length];
+            for (int i = 0; i < picked.length; i++) {
+                xs[i] = LEFT + (firstDay + picked[i] + 0.5 - viewFrom) / (viewTo - viewFrom) * plotWidth;
+            }
+            // Smooth areas once days are a few pixels apart, stacked columns before that
+            boolean sparse = picked.length * 8 <= plotWidth;
+            long[] base = new long[picked.length];
+            if (sparse) {
+                g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            } else {
+                fillColumns(g, picked, xs, base, topCents, plotHeight);
+            }
+            for (int row = 1; row < days.length && sparse; row++) {
+                long[] values = days[row];
+                Path2D.Double area = new Path2D.Double();
+                boolean any = false;
+                for (int i = 0; i < picked.length; i++) {
+                    any |= values[picked[i]] != 0;
+                    double y = y(base[i] + values[picked[i]], topCents, plotHeight);
+                    if (i == 0) {
+                        area.moveTo(xs[i], y);
+                    } else {
+                        area.lineTo(xs[i], y);
+                    }
+                }
+                if (!any) {
+                    continue;
+                }
+                for (int i = picked.length - 1; i >= 0; i--) {
+                    area.lineTo(xs[i], y(base[i], topCents, plotHeight));
+                    base[i] += values[picked[i]];
+                }
+                area.closePath();
+                g.setColor(PALETTE[(row - 1) % PALETTE.length]);
+                g.fill(area);
+            }
+
+            Path2D.Double outline = new Path2D.Double();
+            for (int i = 0; i < picked.length; i++) {
+                double y = y(days[0][picked[i]], topCents, plotHeight);
+                if (i == 0) {
+                    outline.moveTo(xs[i], y);
+                } else {
+                    outline.lineTo(xs[i], y);
+                }
+            }
+            g.setColor(Color.DARK_GRAY);
+            g.draw(outline);
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+
+    // With days only a few pixels apart, each picked day becomes a column of
+    // stacked bars reaching to the next one; an area outline zigzagging that
+    // often takes many times longer to fill, antialiased or not.
+    private void fillColumns(Graphics2D g, int[] picked, double[] xs, long[] base, long topCents, int plotHeight) {
+        for (int row = 1; row < days.length; row++) {
+            long[] values = days[row];
+            g.setColor(PALETTE[(row - 1) % PALETTE.length]);
+            for (int i = 0; i < picked.length; i++) {
+                long cents = values[picked[i]];
+                if (cents == 0) {
+                    continue;
+                }
+                int x = (int) xs[i];
+                int width = i + 1 < picked.length ? Math.max(1, (int) xs[i + 1] - x) : 1;
+                int bottom = (int) Math.round(y(base[i], topCents, plotHeight));
+                int top = (int) Math.round(y(base[i] + cents, topCents, plotHeight));
+                g.fillRect(x, top, width, bottom - top);
+                base[i] += cents;
+            }
+        }
+    }
+
+    // Largest-triangle-three-buckets: picks threshold of the indices [from, to)
+    // of values, always the first and last, keeping in each bucket the point
+    // that makes the largest triangle with the point picked before it and the
+    // average of the next bucket. Returns every index when there are no more.
+    static int[] downsample(long[] values, int from, int to, int threshold) {
+        int count = to - from;
+        if (count <= threshold || threshold < 3) {
+            int[] all = new int[Math.max(0, count)];
+            for (int i = 0; i < all.length; i++) {
+                all[i] = from + i;
+            }
+            return all;
+        }
+        int[] picked = new int[threshold];
+        picked[0] = from;
+        double bucketSize = (double) (count - 2) / (threshold - 2);
+        int previous = from;
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            int start = from + 1 + (int) (bucket * bucketSize);
+            int end = from + 1 + (int) ((bucket + 1) * bucketSize);
+            int nextEnd = Math.min(to, from + 1 + (int) ((bucket + 2) * bucketSize));
+            double averageX = 0;
+            double averageY = 0;
+            for (int i = end; i < nextEnd; i++) {
+                averageX += i;
+                averageY += values[i];
+            }
+            averageX /= nextEnd - end;
+            averageY /= nextEnd - end;
+
+            double largestArea = -1;
+            int best = start;
+            for (int i = start; i < end; i++) {
+                double area = Math.abs((previous - averageX) * (values[i] - values[previous])
+                        - (previous - i) * (averageY - values[previous]));
+                if (area > largestArea) {
+                    largestArea = area;
+                    best = i;
+                }
+            }
+            picked[bucket + 1] = best;
+            previous = best;
+        }
+        picked[threshold - 1] = to - 1;
+        return picked;
+    }
+
+    // Copies the daily totals out again after the expenses have changed.
+    private void updateData() {
+        int modCount = expenseManager.getModCount();
+        if (modCount == dataModCount) {
+            return;
+        }
+        dataModCount = modCount;
+        ColumnarExpenseStore store = expenseManager.getStore();
+        if (store.size() == 0 || !expenseManager.isHistoryLoaded()) {
+            days = new long[0][];
+            return;
+        }
+        firstDay = expenseManager.getFirstEpochDay();
+        int dayCount = expenseManager.getLastEpochDay() - firstDay + 1;
+        days = new long[store.getCategoryCount() + 1][dayCount];
+        for (int row = 0; row < days.length; row++) {
+            expenseManager.copyDayTotals(firstDay, row - 1, days[row]);
+        }
+        if (showingAll) {
+            viewFrom = firstDay;
+            viewTo = firstDay + dayCount;
+        } else {
+            clampView();
+        }
+    }
+
+    private void zoom(int x, double factor) {
+        double span = viewTo - viewFrom;
+        if (dayCount() == 0 || span <= 0) {
+            return;
+        }
+        double anchor = viewFrom + Math.max(0, Math.min(1, (double) (x - LEFT) / plotWidth(getWidth()))) * span;
+        double newSpan = Math.max(MIN_VISIBLE_DAYS, Math.min(dayCount(), span * factor));
+        viewFrom = anchor - (anchor - viewFrom) * newSpan / span;
+        viewTo = viewFrom + newSpan;
+        clampView();
+        repaint();
+    }
+
+    private void moveTo(double fromDay) {
+        double span = viewTo - viewFrom;
+        viewFrom = fromDay;
+        viewTo = fromDay + span;
+        clampView();
+        repaint();
+    }
+
+    private void clampView() {
+        double span = Math.min(viewTo - viewFrom, dayCount());
+        viewFrom = Math.max(firstDay, Math.min(viewFrom, firstDay + dayCount() - span));
+        viewTo = viewFrom + span;
+        showingAll = span >= dayCount();
+    }
+
+    private void drawAxes(Graphics2D g, int plotWidth, int plotHeight, long step, long topCents) {
+        FontMetrics metrics = g.getFontMetrics();
+        for (long cents = 0; cents <= topCents; cents += step) {
+            int y = (int) Math.round(y(cents, topCents, plotHeight));
+            g.setColor(new Color(0xE0E0E0));
+            g.drawLine(LEFT, y, LEFT + plotWidth, y);
+            String label = ExpenseCodec.formatAmount(cents);
+            g.setColor(Color.DARK_GRAY);
+            g.drawString(label, LEFT - 6 - metrics.stringWidth(label), y + metrics.getAscent() / 2);
+        }
+
+        // Years, months or days along the bottom, whichever gives a handful of labels
+        double span = viewTo - viewFrom;
+        LocalDate start = LocalDate.ofEpochDay((long) Math.floor(viewFrom));
+        LocalDate tick;
+        java.time.Period interval;
+        DateTimeFormatter format;
+        if (span > 3 * 365) {
+            int years = (int) Math.ceil(span / 365 / 10);
+            tick = LocalDate.of(start.getYear() + 1, 1, 1);
+            interval = java.time.Period.ofYears(years);
+            format = DateTimeFormatter.ofPattern("yyyy");
+        } else if (span > 60) {
+            int months = (int) Math.ceil(span / 30 / 10);
+            tick = start.withDayOfMonth(1).plusMonths(1);
+            interval = java.time.Period.ofMonths(months);
+            format = DateTimeFormatter.ofPattern("MMM yyyy");
+        } else {
+            int daysApart = Math.max(1, (int) Math.ceil(span / 10));
+            tick = start.plusDays(1);
+            interval = java.time.Period.ofDays(daysApart);
+            format = DateTimeFormatter.ofPattern("MM/dd");
+        }
+        int baseline = TOP + plotHeight;
+        g.setColor(Color.DARK_GRAY);
+        g.drawLine(LEFT, baseline, LEFT + plotWidth, baseline);
+        for (; tick.toEpochDay() < viewTo; tick = tick.plus(interval)) {
+            int x = (int) Math.round(LEFT + (tick.toEpochDay() - viewFrom) / span * plotWidth);
+            String label = tick.format(format);
+            g.drawLine(x, baseline, x, baseline + 4);
+            g.drawString(label, x - metrics.stringWidth(label) / 2, baseline + 6 + metrics.getAscent());
+        }
+
+        // Legend along the top, for the categories with any spending
+        int x = LEFT;
+        ColumnarExpenseStore store = expenseManager.getStore();
+        for (int categoryId = 0; categoryId < store.getCategoryCount(); categoryId++) {
+            if (store.getCategoryExpenseCount(categoryId) == 0) {
+                continue;
+            }
+            String name = store.getCategoryName(categoryId);
+            g.setColor(PALETTE[categoryId % PALETTE.length]);
+            g.fillRect(x, TOP / 2 - 5, 10, 10);
+            g.setColor(Color.DARK_GRAY);
+            g.drawString(name, x + 14, TOP / 2 + metrics.getAscent() / 2 - 1);
+            x += 14 + metrics.stringWidth(name) + 12;
+        }
+    }
+
+    private int dayCount() {
+        return days.length == 0 ? 0 : days[0].length;
+    }
+
+    private static int plotWidth(int width) {
+        return Math.max(1, width - LEFT - RIGHT);
+    }
+
+    private static double y(long cents, long topCents, int plotHeight) {
+        return TOP + plotHeight - (double) cents * plotHeight / topCents;
+    }
+
+    // 1, 2 or 5 times a power of ten, at least the given amount.
+    private static long niceStep(long cents) {
+        long power = 1;
+        while (power * 10 <= cents) {
+            power *= 10;
+        }
+        for (long multiple : new long[] {1, 2, 5, 10}) {
+            if (power * multiple >= cents) {
+                return power * multiple;
+            }
+        }
+        return power * 10;
+    }
+}
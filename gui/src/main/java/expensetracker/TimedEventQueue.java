@@ -0,0 +1,17 @@
+package expensetracker;
+
+import java.awt.*;
+
+// Event queue that times every event the Swing thread dispatches, so long
+// handlers show up in the EventDispatchThread metrics.
+class TimedEventQueue extends EventQueue {
+    @Override
+    protected void dispatchEvent(AWTEvent event) {
+        long start = System.nanoTime();
+        try {
+            super.dispatchEvent(event);
+        } finally {
+            ExpenseMetrics.edtEventDispatched(System.nanoTime() - start);
+        }
+    }
+}